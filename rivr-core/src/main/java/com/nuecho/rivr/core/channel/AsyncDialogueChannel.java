@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.channel;
+
+import java.util.concurrent.*;
+
+import com.nuecho.rivr.core.dialogue.*;
+
+/**
+ * {@link DialogueChannel} on which turns can be exchanged without blocking the
+ * calling thread. Instead of waiting for the {@link InputTurn}, the dialogue
+ * obtains a {@link CompletionStage} which is completed when the controller
+ * provides the input turn.
+ * <p>
+ * Between turns, the dialogue is reduced to the continuations registered on
+ * these stages: no thread is held while waiting for the controller.
+ *
+ * @param <O> type of {@link OutputTurn}
+ * @param <I> type of {@link InputTurn}
+ * @see AsyncDialogue
+ * @see DialogueUtils#doTurnAsync(OutputTurn, DialogueContext)
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public interface AsyncDialogueChannel<I extends InputTurn, O extends OutputTurn> extends DialogueChannel<I, O> {
+
+    /**
+     * Performs a turn exchange without blocking: the returned stage is
+     * completed with the {@link InputTurn} once provided by the controller. It
+     * is completed exceptionally with a {@link Timeout} if the controller does
+     * not provide the input turn within the default delay of this dialogue
+     * channel or with a
+     * {@link com.nuecho.rivr.core.channel.synchronous.DialogueChannelStopped}
+     * if the dialogue channel is stopped.
+     *
+     * @param outputTurn The output turn to send. Cannot be <code>null</code>.
+     * @return the stage completed with the received {@link InputTurn}.
+     */
+    CompletionStage<I> doTurn(O outputTurn);
+}
@@ -0,0 +1,527 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.channel.asynchronous;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+import org.slf4j.*;
+import org.slf4j.helpers.*;
+
+import com.nuecho.rivr.core.channel.*;
+import com.nuecho.rivr.core.channel.synchronous.*;
+import com.nuecho.rivr.core.channel.synchronous.executor.*;
+import com.nuecho.rivr.core.channel.synchronous.step.*;
+import com.nuecho.rivr.core.dialogue.*;
+import com.nuecho.rivr.core.servlet.*;
+import com.nuecho.rivr.core.util.*;
+
+/**
+ * Implementation of {@link AsyncDialogueChannel} where the dialogue does not
+ * own a thread. The dialogue is started and resumed on a worker
+ * {@link Executor} shared by all dialogues. Between turns, the dialogue only
+ * exists as the continuations registered on the {@link CompletionStage}
+ * returned by {@link #doTurn(OutputTurn)}.
+ * <p>
+ * When the controller (such as the {@link DialogueServlet}) uses the
+ * {@link AsynchronousDialogueChannel}, it uses the
+ * {@link #start(Dialogue, FirstTurn, DialogueContext)} method to start the
+ * dialogue and the {@link #doTurn(InputTurn)} method to send input turns to the
+ * dialogue. In exchange, the {@link AsynchronousDialogueChannel} returns a
+ * {@link CompletionStage} completed with the same {@link Step Steps} as the
+ * {@link SynchronousDialogueChannel}:
+ * <ul>
+ * <li>{@link OutputTurnStep}: if the dialogue sends an OutputTurn in
+ * response</li>
+ * <li>{@link LastTurnStep}: when the dialogue is done</li>
+ * <li>{@link ErrorStep}: if an error occurred following the delivery of the
+ * {@link InputTurn}</li>
+ * </ul>
+ * The dialogue should implement {@link AsyncDialogue}. A regular
+ * {@link Dialogue} can also be used: since it blocks while waiting for each
+ * input turn, it runs on a thread provided by a {@link DialogueExecutor} (see
+ * {@link #setDialogueExecutor(DialogueExecutor)}) instead of a worker thread,
+ * and its input turns are handed to it directly by the thread calling
+ * {@link #doTurn(InputTurn)}, without going through the worker executor.
+ * <h2>Time-out values</h2>
+ * <p>
+ * The default maximum duration the dialogue can wait for an input turn can be
+ * set with {@link #setDefaultReceiveFromControllerTimeout(Duration)}. It
+ * defaults to <b>5 minutes</b>. When this delay expires, the stage returned by
+ * {@link #doTurn(OutputTurn)} is completed exceptionally with a
+ * {@link Timeout}. Time-outs are tracked by the {@link ScheduledExecutorService}
+ * given to the constructor. The controller decides itself how long it waits for
+ * the returned stages.
+ *
+ * @param <F> type of {@link FirstTurn}
+ * @param <L> type of {@link LastTurn}
+ * @param <O> type of {@link OutputTurn}
+ * @param <I> type of {@link InputTurn}
+ * @param <C> type of {@link DialogueContext}
+ * @see DialogueServlet
+ * @see AsyncDialogue
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public final class AsynchronousDialogueChannel<I extends InputTurn, O extends OutputTurn, F extends FirstTurn, L extends LastTurn, C extends DialogueContext<I, O>>
+        implements AsyncDialogueChannel<I, O> {
+
+    private final Executor mWorkerExecutor;
+    private final ScheduledExecutorService mTimeoutScheduler;
+    private DialogueExecutor mDialogueExecutor = new ThreadDialogueExecutor();
+
+    private Duration mDefaultReceiveFromControllerTimeout = Duration.minutes(5);
+
+    private final List<DialogueChannelListener<I, O>> mListener = new ArrayList<DialogueChannelListener<I, O>>();
+    private Logger mLogger = NOPLogger.NOP_LOGGER;
+
+    private final Object mLock = new Object();
+    private CompletableFuture<Step<O, L>> mPendingStep;
+    private CompletableFuture<I> mPendingInputTurn;
+    private ScheduledFuture<?> mPendingInputTurnTimeout;
+    private final CountDownLatch mDialogueTermination = new CountDownLatch(1);
+
+    private volatile boolean mStopped;
+    private volatile boolean mDialogueStarted;
+    private volatile boolean mDialogueDone;
+
+    private volatile long mTurnReceivedTime;
+    private volatile long mDialogueProcessingTime;
+
+    /**
+     * @param workerExecutor The executor on which the dialogue is started and
+     *            resumed. Cannot be <code>null</code>.
+     * @param timeoutScheduler The scheduler used to expire input turns not
+     *            provided in time by the controller. Cannot be
+     *            <code>null</code>.
+     */
+    public AsynchronousDialogueChannel(Executor workerExecutor, ScheduledExecutorService timeoutScheduler) {
+        Assert.notNull(workerExecutor, "workerExecutor");
+        Assert.notNull(timeoutScheduler, "timeoutScheduler");
+        mWorkerExecutor = workerExecutor;
+        mTimeoutScheduler = timeoutScheduler;
+    }
+
+    /**
+     * Gets the maximum duration the dialogue can wait for a turn from the
+     * controller when not specified by the dialogue.
+     *
+     * @return the maximum time allowed for the dialogue to wait for the
+     *         controller.
+     */
+    public Duration getDefaultReceiveFromControllerTimeout() {
+        return mDefaultReceiveFromControllerTimeout;
+    }
+
+    /**
+     * Sets the maximum duration the dialogue can wait for a turn from the
+     * controller when not specified by the dialogue.
+     *
+     * @param defaultReceiveFromControllerTimeout The default timeout to use
+     *            when not specified by the dialogue. Cannot be
+     *            <code>null</code>. A value of Duration.ZERO (or equivalent)
+     *            means to wait forever.
+     */
+    public void setDefaultReceiveFromControllerTimeout(Duration defaultReceiveFromControllerTimeout) {
+        Assert.notNull(defaultReceiveFromControllerTimeout, "defaultReceiveFromControllerTimeout");
+        mDefaultReceiveFromControllerTimeout = defaultReceiveFromControllerTimeout;
+    }
+
+    /**
+     * Sets the {@link DialogueExecutor} providing the thread in which a regular
+     * (blocking) {@link Dialogue} runs. {@link AsyncDialogue AsyncDialogues}
+     * always run on the worker executor. If this method is not called, a new
+     * thread is created for a regular dialogue.
+     *
+     * @param dialogueExecutor The dialogue executor. Cannot be
+     *            <code>null</code>.
+     */
+    public void setDialogueExecutor(DialogueExecutor dialogueExecutor) {
+        Assert.notNull(dialogueExecutor, "dialogueExecutor");
+        if (mDialogueStarted) throw new IllegalStateException("Dialogue already started");
+        mDialogueExecutor = dialogueExecutor;
+    }
+
+    /**
+     * Sets the logger for this dialogue channel.
+     *
+     * @param logger The logger. Cannot be <code>null</code>.
+     */
+    public void setLogger(Logger logger) {
+        Assert.notNull(logger, "logger");
+        mLogger = logger;
+    }
+
+    /**
+     * Starts a {@link Dialogue} on the worker executor, or on the
+     * {@link DialogueExecutor} if it is not an {@link AsyncDialogue}.
+     *
+     * @param dialogue Dialogue to start. Cannot be <code>null</code>.
+     * @param firstTurn First turn passed to the dialogue. Cannot be
+     *            <code>null</code>.
+     * @param context Dialogue context passed to the dialogue. Cannot be
+     *            <code>null</code>.
+     * @return the stage completed with the first Step of the dialogue.
+     * @throws RejectedExecutionException if the worker executor or the
+     *             dialogue executor cannot accept the dialogue.
+     */
+    public CompletionStage<Step<O, L>> start(final Dialogue<I, O, F, L, C> dialogue,
+                                             final F firstTurn,
+                                             final C context) {
+        Assert.notNull(dialogue, "dialogue");
+        Assert.notNull(firstTurn, "firstTurn");
+        Assert.notNull(context, "context");
+
+        CompletableFuture<Step<O, L>> firstStep = new CompletableFuture<Step<O, L>>();
+        synchronized (mLock) {
+            if (mDialogueStarted) throw new IllegalStateException("Dialogue already started");
+            mDialogueStarted = true;
+            mPendingStep = firstStep;
+        }
+
+        Runnable runnable = new Runnable() {
+            @Override
+            public void run() {
+                runDialogue(dialogue, firstTurn, context);
+            }
+        };
+
+        try {
+            if (dialogue instanceof AsyncDialogue) {
+                mWorkerExecutor.execute(runnable);
+            } else {
+                mDialogueExecutor.execute(runnable, "Dialogue " + context.getDialogueId());
+            }
+        } catch (RejectedExecutionException exception) {
+            mLogger.warn("Dialogue rejected by executor.");
+            synchronized (mLock) {
+                mPendingStep = null;
+            }
+            terminate();
+            throw exception;
+        }
+        mLogger.info("Dialogue started.");
+
+        return firstStep;
+    }
+
+    private void runDialogue(Dialogue<I, O, F, L, C> dialogue, F firstTurn, C context) {
+        mTurnReceivedTime = System.nanoTime();
+        for (DialogueChannelListener<I, O> listener : mListener) {
+            listener.onStart(this);
+        }
+
+        CompletionStage<L> lastTurn;
+        try {
+            if (dialogue instanceof AsyncDialogue) {
+                lastTurn = ((AsyncDialogue<I, O, F, L, C>) dialogue).runAsync(firstTurn, context);
+            } else {
+                lastTurn = CompletableFuture.completedFuture(dialogue.run(firstTurn, context));
+            }
+        } catch (Throwable throwable) {
+            CompletableFuture<L> failure = new CompletableFuture<L>();
+            failure.completeExceptionally(throwable);
+            lastTurn = failure;
+        }
+
+        lastTurn.whenComplete(new BiConsumer<L, Throwable>() {
+            @Override
+            public void accept(L result, Throwable throwable) {
+                dialogueCompleted(result, throwable);
+            }
+        });
+    }
+
+    private void dialogueCompleted(L lastTurn, Throwable throwable) {
+        Step<O, L> lastStep;
+        try {
+            if (throwable != null) throw throwable;
+            lastStep = new LastTurnStep<O, L>(lastTurn);
+        } catch (Throwable error) {
+            if (error instanceof CompletionException && error.getCause() != null) {
+                error = error.getCause();
+            }
+            mLogger.error("Error in dialogue.", error);
+            lastStep = new ErrorStep<O, L>(error);
+        }
+
+        CompletableFuture<Step<O, L>> pendingStep;
+        synchronized (mLock) {
+            pendingStep = mPendingStep;
+            mPendingStep = null;
+            clearPendingInputTurn();
+        }
+
+        if (pendingStep != null && !mStopped) {
+            mLogger.trace("Last step: {}", lastStep);
+            mDialogueProcessingTime = System.nanoTime() - mTurnReceivedTime;
+            pendingStep.complete(lastStep);
+        }
+
+        terminate();
+        mLogger.info("Dialogue ended.");
+    }
+
+    private void terminate() {
+        mDialogueDone = true;
+        for (DialogueChannelListener<I, O> listener : mListener) {
+            listener.onStop(this);
+        }
+        mDialogueTermination.countDown();
+    }
+
+    /**
+     * Tells if the dialogue has started.
+     *
+     * @return <code>true</code> if the dialogue has started, <code>false</code>
+     *         otherwise.
+     */
+    public boolean isDialogueStarted() {
+        return mDialogueStarted;
+    }
+
+    /**
+     * Tells if the dialogue has ended.
+     *
+     * @return <code>true</code> if the dialogue has ended, <code>false</code>
+     *         otherwise.
+     */
+    public boolean isDialogueDone() {
+        return mDialogueDone;
+    }
+
+    /**
+     * Tells if the dialogue has started but not yet ended.
+     *
+     * @return <code>true</code> if the dialogue has started but not ended yet,
+     *         <code>false</code> otherwise.
+     */
+    public boolean isDialogueActive() {
+        return mDialogueStarted && !mDialogueDone;
+    }
+
+    /**
+     * Gets the time spent by the dialogue to produce the last step received by
+     * the controller, i.e. the time elapsed on worker threads between the
+     * resumption of the dialogue with the first turn or input turn and the
+     * completion of the step.
+     *
+     * @return the dialogue processing time, in nanoseconds.
+     * @since 1.0.13
+     */
+    public long getDialogueProcessingTime() {
+        return mDialogueProcessingTime;
+    }
+
+    /**
+     * Stops the dialogue. Pending stages are completed exceptionally with
+     * {@link DialogueChannelStopped}.
+     */
+    public void stop() {
+        mStopped = true;
+
+        CompletableFuture<I> pendingInputTurn;
+        CompletableFuture<Step<O, L>> pendingStep;
+        synchronized (mLock) {
+            pendingInputTurn = mPendingInputTurn;
+            clearPendingInputTurn();
+            pendingStep = mPendingStep;
+            mPendingStep = null;
+        }
+
+        if (pendingInputTurn != null) {
+            resume(pendingInputTurn, null, new DialogueChannelStopped());
+        }
+
+        if (pendingStep != null) {
+            pendingStep.completeExceptionally(new DialogueChannelStopped());
+        }
+    }
+
+    /**
+     * Waits for the dialogue to end.
+     *
+     * @param timeout maximum time to wait for the dialogue to end. A value of
+     *            Duration.ZERO (or equivalent) means to wait forever.
+     * @throws InterruptedException if the current thread was interrupted while
+     *             waiting for the dialogue to terminate.
+     */
+    public void join(Duration timeout) throws InterruptedException {
+        if (!mDialogueStarted) return;
+
+        long milliseconds = timeout.getMilliseconds();
+        if (milliseconds == 0) {
+            mDialogueTermination.await();
+        } else {
+            mDialogueTermination.await(milliseconds, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public CompletionStage<I> doTurn(O turn) {
+        return exchange(turn, mDefaultReceiveFromControllerTimeout, new CompletableFuture<I>());
+    }
+
+    /**
+     * Performs a turn exchange, blocking the calling thread until the
+     * {@link InputTurn} is received. This method is provided for regular
+     * {@link Dialogue Dialogues}; {@link AsyncDialogue AsyncDialogues} should
+     * use {@link #doTurn(OutputTurn)} instead. The input turn is handed to the
+     * blocked thread directly, so this never depends on a free worker thread.
+     *
+     * @param turn The output turn to send. Cannot be <code>null</code>.
+     * @param timeout maximum time allowed to receive the turn from the
+     *            controller. If <code>null</code>, uses the
+     *            <code>defaultReceiveFromControllerTimeout</code>. A value of
+     *            Duration.ZERO (or equivalent) means to wait forever.
+     * @return the received {@link InputTurn}. Cannot be <code>null</code>.
+     * @throws Timeout if the dialogue channel has not been able to give the
+     *             InputTurn before <code>timeout</code> parameter.
+     * @throws InterruptedException if the thread has been interrupted while
+     *             waiting for the result.
+     */
+    @Override
+    public I doTurn(O turn, Duration timeout) throws Timeout, InterruptedException {
+        if (timeout == null) {
+            timeout = mDefaultReceiveFromControllerTimeout;
+        }
+
+        try {
+            return exchange(turn, timeout, new BlockingInputTurn<I>()).get();
+        } catch (ExecutionException exception) {
+            Throwable cause = exception.getCause();
+            if (cause instanceof Timeout) throw (Timeout) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IllegalStateException("Unable to receive input turn.", cause);
+        }
+    }
+
+    /**
+     * Sends an input turn to the dialogue. The dialogue is resumed on the
+     * worker executor.
+     *
+     * @param turn the input turn to send to the dialogue. Cannot be
+     *            <code>null</code>.
+     * @return the stage completed with the {@link Step} wrapping the dialogue
+     *         next step.
+     */
+    public CompletionStage<Step<O, L>> doTurn(I turn) {
+        Assert.notNull(turn, "turn");
+        mLogger.trace("InputTurn: {}", turn);
+
+        CompletableFuture<Step<O, L>> nextStep = new CompletableFuture<Step<O, L>>();
+        CompletableFuture<I> pendingInputTurn;
+        synchronized (mLock) {
+            verifyState();
+            if (mPendingInputTurn == null) throw new IllegalStateException("Dialogue is not waiting for an input turn");
+            pendingInputTurn = mPendingInputTurn;
+            clearPendingInputTurn();
+            mPendingStep = nextStep;
+        }
+
+        resume(pendingInputTurn, turn, null);
+        return nextStep;
+    }
+
+    private CompletableFuture<I> exchange(O turn, Duration timeout, CompletableFuture<I> inputTurn) {
+        Assert.notNull(turn, "turn");
+        mLogger.trace("OutputTurn: {}", turn);
+
+        CompletableFuture<Step<O, L>> pendingStep;
+        synchronized (mLock) {
+            verifyState();
+            if (mPendingInputTurn != null)
+                throw new IllegalStateException("Dialogue is already waiting for an input turn");
+            if (mPendingStep == null) throw new IllegalStateException("Controller is not waiting for a turn");
+            pendingStep = mPendingStep;
+            mPendingStep = null;
+            mPendingInputTurn = inputTurn;
+            mPendingInputTurnTimeout = scheduleTimeout(inputTurn, timeout);
+        }
+
+        mDialogueProcessingTime = System.nanoTime() - mTurnReceivedTime;
+        pendingStep.complete(new OutputTurnStep<O, L>(turn));
+        return inputTurn;
+    }
+
+    private ScheduledFuture<?> scheduleTimeout(final CompletableFuture<I> inputTurn, final Duration timeout) {
+        long milliseconds = timeout.getMilliseconds();
+        if (milliseconds == 0) return null;
+
+        return mTimeoutScheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (mLock) {
+                    if (mPendingInputTurn != inputTurn) return;
+                    mPendingInputTurn = null;
+                    mPendingInputTurnTimeout = null;
+                }
+                resume(inputTurn, null, new Timeout("Timed-out after " + timeout + " waiting for input turn"));
+            }
+        }, milliseconds, TimeUnit.MILLISECONDS);
+    }
+
+    private void clearPendingInputTurn() {
+        if (mPendingInputTurnTimeout != null) {
+            mPendingInputTurnTimeout.cancel(false);
+            mPendingInputTurnTimeout = null;
+        }
+        mPendingInputTurn = null;
+    }
+
+    private void resume(final CompletableFuture<I> inputTurn, final I turn, final Throwable throwable) {
+        Runnable continuation = new Runnable() {
+            @Override
+            public void run() {
+                mTurnReceivedTime = System.nanoTime();
+                if (throwable == null) {
+                    inputTurn.complete(turn);
+                } else {
+                    inputTurn.completeExceptionally(throwable);
+                }
+            }
+        };
+
+        // a thread is blocked waiting for this turn: wake it up from here, it may hold the last free worker
+        if (inputTurn instanceof BlockingInputTurn) {
+            continuation.run();
+            return;
+        }
+
+        try {
+            mWorkerExecutor.execute(continuation);
+        } catch (RejectedExecutionException exception) {
+            mLogger.warn("Dialogue continuation rejected by worker executor.");
+            if (throwable == null) {
+                inputTurn.completeExceptionally(exception);
+            } else {
+                continuation.run();
+            }
+        }
+    }
+
+    private void verifyState() {
+        if (!mDialogueStarted) throw new IllegalStateException("Dialogue is not started");
+        if (mDialogueDone) throw new IllegalStateException("Dialogue is done");
+        if (mStopped) throw new IllegalStateException("Dialogue is stopped");
+    }
+
+    @Override
+    public void addListener(DialogueChannelListener<I, O> listener) {
+        mListener.add(listener);
+    }
+
+    @Override
+    public void removeListener(DialogueChannelListener<I, O> listener) {
+        mListener.remove(listener);
+    }
+
+    /**
+     * Input turn waited for by a thread blocked in
+     * {@link AsynchronousDialogueChannel#doTurn(OutputTurn, Duration)}.
+     */
+    private static final class BlockingInputTurn<I> extends CompletableFuture<I> {}
+}
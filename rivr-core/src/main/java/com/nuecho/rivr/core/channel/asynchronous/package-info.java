@@ -0,0 +1,5 @@
+/**
+ * Implementation of the dialogue channel resuming the dialogue on a shared pool
+ * of worker threads.
+ */
+package com.nuecho.rivr.core.channel.asynchronous;
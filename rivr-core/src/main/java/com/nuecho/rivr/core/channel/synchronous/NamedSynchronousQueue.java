@@ -11,7 +11,11 @@ import java.util.concurrent.*;
 
 /**
  * A {@link SynchronousQueue} with an additional <i>name</i> property.
+ *
+ * @deprecated No longer used by the {@link SynchronousDialogueChannel}, which
+ *             now relies on {@link TurnHandoff}.
  */
+@Deprecated
 public class NamedSynchronousQueue<E> extends SynchronousQueue<E> {
 
     private static final long serialVersionUID = 6507522115811287461L;
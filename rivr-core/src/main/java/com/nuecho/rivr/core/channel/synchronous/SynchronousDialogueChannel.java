@@ -11,6 +11,7 @@ import org.slf4j.*;
 import org.slf4j.helpers.*;
 
 import com.nuecho.rivr.core.channel.*;
+import com.nuecho.rivr.core.channel.synchronous.executor.*;
 import com.nuecho.rivr.core.channel.synchronous.step.*;
 import com.nuecho.rivr.core.dialogue.*;
 import com.nuecho.rivr.core.servlet.*;
@@ -51,7 +52,7 @@ import com.nuecho.rivr.core.util.*;
  * <h2>Time-out values</h2>
  * <p>
  * The {@link SynchronousDialogueChannel} internally keeps two
- * {@link SynchronousQueue SynchronousQueues}:
+ * {@link TurnHandoff TurnHandoffs}:
  * <ul>
  * <li>one for communication of output turn from the {@link Dialogue} to the
  * controller</li>
@@ -82,6 +83,13 @@ import com.nuecho.rivr.core.util.*;
  * should not block. For this reason, the default value for this property is
  * <b>5 seconds</b>. This property can be set with the
  * {@link #setSendTimeout(Duration)} property.
+ * <h2>Dialogue thread</h2>
+ * <p>
+ * The dialogue runs in a thread obtained from a {@link DialogueExecutor}. By
+ * default, a new thread is created for each dialogue. Another strategy (pooled
+ * threads, virtual threads) can be set with
+ * {@link #setDialogueExecutor(DialogueExecutor)} before the dialogue is
+ * started.
  * <p>
  *
  * @param <F> type of {@link FirstTurn}
@@ -99,11 +107,13 @@ import com.nuecho.rivr.core.util.*;
 public final class SynchronousDialogueChannel<I extends InputTurn, O extends OutputTurn, F extends FirstTurn, L extends LastTurn, C extends DialogueContext<I, O>>
         implements DialogueChannel<I, O> {
 
-    private NamedSynchronousQueue<Step<O, L>> mFromDialogueToController = new NamedSynchronousQueue<Step<O, L>>("dialogue to controller",
-                                                                                                                true);
-    private NamedSynchronousQueue<I> mFromControllerToDialogue = new NamedSynchronousQueue<I>("controller to dialogue",
-                                                                                              true);
+    private TurnHandoff<Step<O, L>> mFromDialogueToController = new TurnHandoff<Step<O, L>>("dialogue to controller");
+    private TurnHandoff<I> mFromControllerToDialogue = new TurnHandoff<I>("controller to dialogue");
+    private DialogueExecutor mDialogueExecutor = new ThreadDialogueExecutor();
+    private final Object mDialogueThreadLock = new Object();
     private Thread mDialogueThread;
+    private final CountDownLatch mDialogueTermination = new CountDownLatch(1);
+    private volatile boolean mDialogueSubmitted;
 
     private Duration mSendTimeout = Duration.seconds(5);
 
@@ -117,6 +127,9 @@ public final class SynchronousDialogueChannel<I extends InputTurn, O extends Out
     private volatile boolean mDialogueStarted;
     private volatile boolean mDialogueDone;
 
+    private long mTurnReceivedTime;
+    private volatile long mDialogueProcessingTime;
+
     /**
      * Gets the maximum duration for send operations. A send operation occurs
      * when the controller sends the input turn to the dialogue and when the
@@ -208,7 +221,23 @@ public final class SynchronousDialogueChannel<I extends InputTurn, O extends Out
     }
 
     /**
-     * Starts a {@link Dialogue} in a new thread.
+     * Sets the {@link DialogueExecutor} providing the thread in which the
+     * dialogue will run. If this method is not called, a new thread is created
+     * for the dialogue.
+     *
+     * @param dialogueExecutor The dialogue executor. Cannot be
+     *            <code>null</code>.
+     * @since 1.0.13
+     */
+    public void setDialogueExecutor(DialogueExecutor dialogueExecutor) {
+        Assert.notNull(dialogueExecutor, "dialogueExecutor");
+        if (mDialogueSubmitted) throw new IllegalStateException("Dialogue already started");
+        mDialogueExecutor = dialogueExecutor;
+    }
+
+    /**
+     * Starts a {@link Dialogue} in a thread provided by the
+     * {@link DialogueExecutor}.
      *
      * @param dialogue Dialogue to start. Cannot be <code>null</code>.
      * @param firstTurn First turn used passed to
@@ -225,6 +254,8 @@ public final class SynchronousDialogueChannel<I extends InputTurn, O extends Out
      * @throws Timeout If no result can be obtain from dialogue after delay
      *             specified by <code>timeout</code> parameter.
      * @throws InterruptedException if the dialogue has been interrupted.
+     * @throws RejectedExecutionException if the {@link DialogueExecutor}
+     *             cannot accept the dialogue.
      */
     public Step<O, L> start(final Dialogue<I, O, F, L, C> dialogue, final F firstTurn, Duration timeout, final C context)
             throws Timeout, InterruptedException {
@@ -232,51 +263,85 @@ public final class SynchronousDialogueChannel<I extends InputTurn, O extends Out
         Runnable runnable = new Runnable() {
             @Override
             public void run() {
-                mDialogueStarted = true;
-                for (DialogueChannelListener<I, O> listener : mListener) {
-                    listener.onStart(SynchronousDialogueChannel.this);
-                }
-
-                Step<O, L> lastStep;
-                try {
-                    L lastTurn = dialogue.run(firstTurn, context);
-                    lastStep = new LastTurnStep<O, L>(lastTurn);
-                } catch (Throwable throwable) {
-                    mLogger.error("Error in dialogue.", throwable);
-                    lastStep = new ErrorStep<O, L>(throwable);
+                synchronized (mDialogueThreadLock) {
+                    mDialogueThread = Thread.currentThread();
                 }
 
                 try {
-                    if (!mStopped) {
-                        mLogger.trace("Last step: {}", lastStep);
-                        send(mFromDialogueToController, lastStep, mSendTimeout);
+                    if (mStopped) {
+                        terminate();
+                    } else {
+                        runDialogue(dialogue, firstTurn, context);
                     }
-                } catch (Timeout exception) {
-                    mLogger.warn("Timeout while sending last step.", exception);
-                } catch (InterruptedException exception) {
-                    mLogger.info("Dialogue interrupted while sending last step.", exception);
-                    Thread.currentThread().interrupt();
-                } catch (Throwable throwable) {
-                    mLogger.info("Unexpected error while sending last step.", throwable);
                 } finally {
-                    mDialogueDone = true;
-                    mFromDialogueToController = null; // ensure we can't receive further output turns from dialogue
-                    mFromControllerToDialogue = null; // ensure we can't send further input turns to dialogue
-                    for (DialogueChannelListener<I, O> listener : mListener) {
-                        listener.onStop(SynchronousDialogueChannel.this);
+                    synchronized (mDialogueThreadLock) {
+                        mDialogueThread = null;
                     }
-                    mLogger.info("Dialogue ended.");
+                    // the thread may be reused by the executor: clear interruption aimed at this dialogue
+                    Thread.interrupted();
+                    mDialogueTermination.countDown();
                 }
             }
         };
 
-        mDialogueThread = new Thread(runnable, "Dialogue " + context.getDialogueId());
-        mDialogueThread.start();
+        mDialogueSubmitted = true;
+        try {
+            mDialogueExecutor.execute(runnable, "Dialogue " + context.getDialogueId());
+        } catch (RejectedExecutionException exception) {
+            mLogger.warn("Dialogue rejected by executor.");
+            terminate();
+            mDialogueTermination.countDown();
+            throw exception;
+        }
         mLogger.info("Dialogue started.");
 
         return receive(mFromDialogueToController, timeout);
     }
 
+    private void runDialogue(Dialogue<I, O, F, L, C> dialogue, F firstTurn, C context) {
+        mTurnReceivedTime = System.nanoTime();
+        mDialogueStarted = true;
+        for (DialogueChannelListener<I, O> listener : mListener) {
+            listener.onStart(this);
+        }
+
+        Step<O, L> lastStep;
+        try {
+            L lastTurn = dialogue.run(firstTurn, context);
+            lastStep = new LastTurnStep<O, L>(lastTurn);
+        } catch (Throwable throwable) {
+            mLogger.error("Error in dialogue.", throwable);
+            lastStep = new ErrorStep<O, L>(throwable);
+        }
+
+        try {
+            if (!mStopped) {
+                mLogger.trace("Last step: {}", lastStep);
+                mDialogueProcessingTime = System.nanoTime() - mTurnReceivedTime;
+                send(mFromDialogueToController, lastStep, mSendTimeout);
+            }
+        } catch (Timeout exception) {
+            mLogger.warn("Timeout while sending last step.", exception);
+        } catch (InterruptedException exception) {
+            mLogger.info("Dialogue interrupted while sending last step.", exception);
+            Thread.currentThread().interrupt();
+        } catch (Throwable throwable) {
+            mLogger.info("Unexpected error while sending last step.", throwable);
+        } finally {
+            terminate();
+            mLogger.info("Dialogue ended.");
+        }
+    }
+
+    private void terminate() {
+        mDialogueDone = true;
+        mFromDialogueToController = null; // ensure we can't receive further output turns from dialogue
+        mFromControllerToDialogue = null; // ensure we can't send further input turns to dialogue
+        for (DialogueChannelListener<I, O> listener : mListener) {
+            listener.onStop(this);
+        }
+    }
+
     /**
      * Tells if the dialogue has started.
      *
@@ -307,6 +372,18 @@ public final class SynchronousDialogueChannel<I extends InputTurn, O extends Out
         return mDialogueStarted && !mDialogueDone;
     }
 
+    /**
+     * Gets the time spent by the dialogue to produce the last step received by
+     * the controller, i.e. the time elapsed in the dialogue thread between the
+     * reception of the first turn or input turn and the sending of the step.
+     *
+     * @return the dialogue processing time, in nanoseconds.
+     * @since 1.0.13
+     */
+    public long getDialogueProcessingTime() {
+        return mDialogueProcessingTime;
+    }
+
     /**
      * Stops the dialogue and wait for the dialogue thread to end.
      *
@@ -325,11 +402,15 @@ public final class SynchronousDialogueChannel<I extends InputTurn, O extends Out
      */
     public void stop() {
         mStopped = true;
-        mDialogueThread.interrupt();
+        synchronized (mDialogueThreadLock) {
+            if (mDialogueThread != null) {
+                mDialogueThread.interrupt();
+            }
+        }
     }
 
     /**
-     * Waits for the dialogue thread to end.
+     * Waits for the dialogue to end.
      *
      * @param timeout maximum time to wait for the thread to end. A value of
      *            Duration.ZERO (or equivalent) means to wait forever.
@@ -337,7 +418,14 @@ public final class SynchronousDialogueChannel<I extends InputTurn, O extends Out
      *             waiting for the dialogue thread to terminate.
      */
     public void join(Duration timeout) throws InterruptedException {
-        mDialogueThread.join(timeout.getMilliseconds());
+        if (!mDialogueSubmitted) return;
+
+        long milliseconds = timeout.getMilliseconds();
+        if (milliseconds == 0) {
+            mDialogueTermination.await();
+        } else {
+            mDialogueTermination.await(milliseconds, TimeUnit.MILLISECONDS);
+        }
     }
 
     /**
@@ -364,7 +452,10 @@ public final class SynchronousDialogueChannel<I extends InputTurn, O extends Out
         if (timeout == null) {
             timeout = mDefaultReceiveFromControllerTimeout;
         }
-        return exchange(mFromDialogueToController, mFromControllerToDialogue, turnStep, mSendTimeout, timeout);
+        mDialogueProcessingTime = System.nanoTime() - mTurnReceivedTime;
+        I inputTurn = exchange(mFromDialogueToController, mFromControllerToDialogue, turnStep, mSendTimeout, timeout);
+        mTurnReceivedTime = System.nanoTime();
+        return inputTurn;
     }
 
     /**
@@ -391,39 +482,39 @@ public final class SynchronousDialogueChannel<I extends InputTurn, O extends Out
     }
 
     private void verifyState() {
-        if (mDialogueThread == null) throw new IllegalStateException("Dialogue is not set");
-        if (!mDialogueThread.isAlive()) throw new IllegalStateException("Dialogue is not started");
+        if (!mDialogueSubmitted) throw new IllegalStateException("Dialogue is not set");
+        if (mDialogueTermination.getCount() == 0) throw new IllegalStateException("Dialogue is not started");
         if (mStopped) throw new IllegalStateException("Dialogue is stopped");
     }
 
-    private <S, R> R exchange(NamedSynchronousQueue<S> sendQueue,
-                              NamedSynchronousQueue<R> receiveQueue,
+    private <S, R> R exchange(TurnHandoff<S> sendHandoff,
+                              TurnHandoff<R> receiveHandoff,
                               S itemToSend,
                               Duration sendTimeout,
                               Duration receiveTimeout) throws Timeout, InterruptedException {
         try {
-            send(sendQueue, itemToSend, sendTimeout);
-            return receive(receiveQueue, receiveTimeout);
+            send(sendHandoff, itemToSend, sendTimeout);
+            return receive(receiveHandoff, receiveTimeout);
         } catch (InterruptedException interruptedException) {
             if (mStopped) throw new DialogueChannelStopped();
             else throw interruptedException;
         }
     }
 
-    private static <R> R receive(NamedSynchronousQueue<R> receiveQueue, Duration timeout) throws Timeout,
+    private static <R> R receive(TurnHandoff<R> receiveHandoff, Duration timeout) throws Timeout,
             InterruptedException {
-        if (receiveQueue == null) throw new IllegalStateException("Receive queue is closed.");
-        R result = receiveQueue.poll(timeout.getMilliseconds(), TimeUnit.MILLISECONDS);
+        if (receiveHandoff == null) throw new IllegalStateException("Receive handoff is closed.");
+        R result = receiveHandoff.poll(timeout.getMilliseconds(), TimeUnit.MILLISECONDS);
         if (result == null)
-            throw new Timeout("Timed-out in receive() after " + timeout + " in [" + receiveQueue.getName() + "]");
+            throw new Timeout("Timed-out in receive() after " + timeout + " in [" + receiveHandoff.getName() + "]");
         return result;
     }
 
-    private static <S> void send(NamedSynchronousQueue<S> sendQueue, S itemToSend, Duration timeout) throws Timeout,
+    private static <S> void send(TurnHandoff<S> sendHandoff, S itemToSend, Duration timeout) throws Timeout,
             InterruptedException {
-        if (sendQueue == null) throw new IllegalStateException("Send queue is closed.");
-        boolean success = sendQueue.offer(itemToSend, timeout.getMilliseconds(), TimeUnit.MILLISECONDS);
-        if (!success) throw new Timeout("Timed-out in send() after " + timeout + " in [" + sendQueue.getName() + "]");
+        if (sendHandoff == null) throw new IllegalStateException("Send handoff is closed.");
+        boolean success = sendHandoff.offer(itemToSend, timeout.getMilliseconds(), TimeUnit.MILLISECONDS);
+        if (!success) throw new Timeout("Timed-out in send() after " + timeout + " in [" + sendHandoff.getName() + "]");
     }
 
     @Override
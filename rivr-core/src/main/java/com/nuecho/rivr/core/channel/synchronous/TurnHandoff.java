@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.channel.synchronous;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+
+/**
+ * Rendezvous point between one sending thread and one receiving thread, used
+ * by the {@link SynchronousDialogueChannel} to hand turns over between the
+ * controller and the dialogue.
+ * <p>
+ * Like a {@link SynchronousQueue}, an {@link #offer(Object, long, TimeUnit)}
+ * only succeeds once the item has been taken by a
+ * {@link #poll(long, TimeUnit)}. Unlike the fair {@link SynchronousQueue}, the
+ * waiting side is kept in a single atomic slot and the matching side wakes it
+ * up directly with {@link LockSupport#unpark(Thread)}. Since at most one
+ * sender and one receiver are expected at any time, an operation finding the
+ * slot occupied by a waiter of its own kind waits for it to leave, within its
+ * own time-out.
+ *
+ * @param <E> type of the items handed over.
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public final class TurnHandoff<E> {
+
+    private static final Object TAKEN = new Object();
+    private static final Object CANCELLED = new Object();
+
+    private static final int SPINS = Runtime.getRuntime().availableProcessors() > 1 ? 512 : 0;
+    private static final long BUSY_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final String mName;
+    private final AtomicReference<Waiter> mSlot = new AtomicReference<Waiter>();
+
+    public TurnHandoff(String name) {
+        mName = name;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * Hands an item over to the receiving thread, waiting if necessary up to
+     * the specified time for the receiving thread to take it.
+     *
+     * @param item the item to hand over. Cannot be <code>null</code>.
+     * @param timeout how long to wait before giving up. A value of
+     *            <code>0</code> means to wait forever.
+     * @param unit the unit of the <code>timeout</code> parameter.
+     * @return <code>true</code> if the item was taken by the receiving thread,
+     *         <code>false</code> if the time-out expired first.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public boolean offer(E item, long timeout, TimeUnit unit) throws InterruptedException {
+        if (item == null) throw new NullPointerException();
+        if (Thread.interrupted()) throw new InterruptedException();
+
+        long deadline = deadline(timeout, unit);
+        while (true) {
+            Waiter waiter = mSlot.get();
+            if (waiter == null) {
+                Waiter sender = new Waiter(true, item);
+                if (mSlot.compareAndSet(null, sender)) return await(sender, item, deadline) != item;
+            } else if (!waiter.mData) {
+                if (waiter.compareAndSetItem(null, item)) {
+                    mSlot.compareAndSet(waiter, null);
+                    LockSupport.unpark(waiter.mThread);
+                    return true;
+                }
+                mSlot.compareAndSet(waiter, null);
+            } else if (!waitWhileBusy(waiter, deadline)) return false;
+        }
+    }
+
+    /**
+     * Takes the item handed over by the sending thread, waiting if necessary up
+     * to the specified time for the sending thread to provide it.
+     *
+     * @param timeout how long to wait before giving up. A value of
+     *            <code>0</code> means to wait forever.
+     * @param unit the unit of the <code>timeout</code> parameter.
+     * @return the item, or <code>null</code> if the time-out expired first.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        if (Thread.interrupted()) throw new InterruptedException();
+
+        long deadline = deadline(timeout, unit);
+        while (true) {
+            Waiter waiter = mSlot.get();
+            if (waiter == null) {
+                Waiter receiver = new Waiter(false, null);
+                if (mSlot.compareAndSet(null, receiver)) return itemOf(await(receiver, null, deadline));
+            } else if (waiter.mData) {
+                Object item = waiter.getItem();
+                if (item != TAKEN && item != CANCELLED && waiter.compareAndSetItem(item, TAKEN)) {
+                    mSlot.compareAndSet(waiter, null);
+                    LockSupport.unpark(waiter.mThread);
+                    return itemOf(item);
+                }
+                mSlot.compareAndSet(waiter, null);
+            } else if (!waitWhileBusy(waiter, deadline)) return null;
+        }
+    }
+
+    /**
+     * Parks the current thread until its waiter is matched, cancelled or timed
+     * out.
+     *
+     * @param initial the item of the waiter when it was placed in the slot.
+     * @return the current value of the waiter item: unchanged if the waiter
+     *         gave up, changed if the waiter was matched.
+     */
+    private Object await(Waiter waiter, Object initial, long deadline) throws InterruptedException {
+        // the peer is usually about to arrive: spin briefly and yield once before parking
+        for (int spin = 0; spin < SPINS; spin++) {
+            Object current = waiter.getItem();
+            if (current != initial) return current;
+        }
+
+        boolean yielded = false;
+        while (true) {
+            Object current = waiter.getItem();
+            if (current != initial) return current;
+
+            boolean interrupted = Thread.interrupted();
+            if (interrupted || expired(deadline)) {
+                if (waiter.compareAndSetItem(initial, CANCELLED)) {
+                    mSlot.compareAndSet(waiter, null);
+                    if (interrupted) throw new InterruptedException();
+                    return initial;
+                }
+
+                // matched concurrently: complete the exchange and preserve the interruption
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+                return waiter.getItem();
+            }
+
+            if (yielded) {
+                park(deadline);
+            } else {
+                yielded = true;
+                Thread.yield();
+            }
+        }
+    }
+
+    private boolean waitWhileBusy(Waiter waiter, long deadline) throws InterruptedException {
+        Object item = waiter.getItem();
+        boolean gone = waiter.mData ? item == TAKEN || item == CANCELLED : item != null;
+        if (gone) {
+            mSlot.compareAndSet(waiter, null);
+            return true;
+        }
+
+        if (expired(deadline)) return false;
+
+        long nanos = BUSY_WAIT_NANOS;
+        if (deadline != 0) {
+            nanos = Math.min(nanos, deadline - System.nanoTime());
+        }
+        LockSupport.parkNanos(this, nanos);
+        if (Thread.interrupted()) throw new InterruptedException();
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private E itemOf(Object item) {
+        if (item == null || item == TAKEN || item == CANCELLED) return null;
+        return (E) item;
+    }
+
+    private void park(long deadline) {
+        if (deadline == 0) {
+            LockSupport.park(this);
+        } else {
+            LockSupport.parkNanos(this, deadline - System.nanoTime());
+        }
+    }
+
+    private static long deadline(long timeout, TimeUnit unit) {
+        if (timeout <= 0) return 0;
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        return deadline == 0 ? 1 : deadline;
+    }
+
+    private static boolean expired(long deadline) {
+        return deadline != 0 && deadline - System.nanoTime() <= 0;
+    }
+
+    @Override
+    public String toString() {
+        return "TurnHandoff[" + mName + "]";
+    }
+
+    private static final class Waiter {
+        private static final AtomicReferenceFieldUpdater<Waiter, Object> ITEM;
+        static {
+            ITEM = AtomicReferenceFieldUpdater.newUpdater(Waiter.class, Object.class, "mItem");
+        }
+
+        private final boolean mData;
+        private final Thread mThread = Thread.currentThread();
+        private volatile Object mItem;
+
+        Waiter(boolean data, Object item) {
+            mData = data;
+            mItem = item;
+        }
+
+        Object getItem() {
+            return mItem;
+        }
+
+        boolean compareAndSetItem(Object expected, Object item) {
+            return ITEM.compareAndSet(this, expected, item);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.channel.synchronous.executor;
+
+import java.util.concurrent.*;
+
+import com.nuecho.rivr.core.channel.synchronous.*;
+import com.nuecho.rivr.core.servlet.*;
+
+/**
+ * Strategy used by the {@link SynchronousDialogueChannel} to obtain the thread
+ * on which a dialogue runs.
+ * <p>
+ * The dialogue occupies its thread for the whole duration of the call, most of
+ * the time parked while waiting for the next input turn. The choice of
+ * {@link DialogueExecutor} therefore determines how many dialogues can be
+ * active at once:
+ * <ul>
+ * <li>{@link ThreadDialogueExecutor}: one new platform thread per dialogue
+ * (default)</li>
+ * <li>{@link PooledDialogueExecutor}: platform threads are reused from a
+ * bounded pool</li>
+ * <li>{@link VirtualThreadDialogueExecutor}: one virtual thread per dialogue
+ * (requires a Java 21+ runtime)</li>
+ * </ul>
+ *
+ * @see DialogueServlet#setDialogueExecutor(DialogueExecutor)
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public interface DialogueExecutor {
+
+    /**
+     * Runs the dialogue in a thread provided by this executor.
+     *
+     * @param dialogue the runnable performing the dialogue. Cannot be
+     *            <code>null</code>.
+     * @param name the name of the dialogue, typically used to name the thread.
+     *            Cannot be <code>null</code>.
+     * @throws RejectedExecutionException if the dialogue cannot be accepted
+     *             for execution.
+     */
+    void execute(Runnable dialogue, String name);
+
+    /**
+     * Releases the resources held by this executor. Dialogues already running
+     * are not interrupted.
+     */
+    void shutdown();
+}
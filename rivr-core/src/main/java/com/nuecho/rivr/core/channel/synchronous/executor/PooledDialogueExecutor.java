@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.channel.synchronous.executor;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import com.nuecho.rivr.core.util.*;
+
+/**
+ * {@link DialogueExecutor} reusing platform threads from a pool. Idle threads
+ * are kept for the <code>keepAlive</code> duration before being released.
+ * <p>
+ * Since a dialogue keeps its thread until it terminates, dialogues are never
+ * queued: once <code>maximumThreads</code> dialogues are running, new
+ * dialogues are rejected with a {@link RejectedExecutionException}.
+ * <p>
+ * While a dialogue runs, the pooled thread is renamed after the dialogue.
+ *
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public final class PooledDialogueExecutor implements DialogueExecutor {
+
+    private static final String THREAD_NAME_PREFIX = "Dialogue pool thread ";
+
+    private final ThreadPoolExecutor mExecutor;
+
+    /**
+     * @param maximumThreads maximum number of dialogues running at the same
+     *            time. Must be positive.
+     * @param keepAlive time after which an idle thread is released. Cannot be
+     *            <code>null</code>.
+     */
+    public PooledDialogueExecutor(int maximumThreads, Duration keepAlive) {
+        Assert.positive(maximumThreads, "maximumThreads");
+        Assert.notNull(keepAlive, "keepAlive");
+
+        ThreadFactory threadFactory = new ThreadFactory() {
+            private final AtomicInteger mThreadCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, THREAD_NAME_PREFIX + mThreadCount.incrementAndGet());
+            }
+        };
+
+        mExecutor = new ThreadPoolExecutor(0,
+                                           maximumThreads,
+                                           keepAlive.getMilliseconds(),
+                                           TimeUnit.MILLISECONDS,
+                                           new SynchronousQueue<Runnable>(),
+                                           threadFactory);
+    }
+
+    @Override
+    public void execute(final Runnable dialogue, final String name) {
+        Assert.notNull(dialogue, "dialogue");
+        Assert.notNull(name, "name");
+
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Thread thread = Thread.currentThread();
+                String poolThreadName = thread.getName();
+                thread.setName(name);
+                try {
+                    dialogue.run();
+                } finally {
+                    thread.setName(poolThreadName);
+                }
+            }
+        });
+    }
+
+    /**
+     * Gets the number of threads currently running a dialogue.
+     *
+     * @return the number of active threads.
+     */
+    public int getActiveCount() {
+        return mExecutor.getActiveCount();
+    }
+
+    /**
+     * Gets the number of threads in the pool, either active or idle.
+     *
+     * @return the pool size.
+     */
+    public int getPoolSize() {
+        return mExecutor.getPoolSize();
+    }
+
+    @Override
+    public void shutdown() {
+        mExecutor.shutdown();
+    }
+}
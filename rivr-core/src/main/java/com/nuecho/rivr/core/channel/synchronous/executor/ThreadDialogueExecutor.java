@@ -0,0 +1,27 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.channel.synchronous.executor;
+
+import com.nuecho.rivr.core.util.*;
+
+/**
+ * {@link DialogueExecutor} starting a new platform thread for each dialogue.
+ * This is the default executor.
+ *
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public final class ThreadDialogueExecutor implements DialogueExecutor {
+
+    @Override
+    public void execute(Runnable dialogue, String name) {
+        Assert.notNull(dialogue, "dialogue");
+        Assert.notNull(name, "name");
+        new Thread(dialogue, name).start();
+    }
+
+    @Override
+    public void shutdown() {}
+}
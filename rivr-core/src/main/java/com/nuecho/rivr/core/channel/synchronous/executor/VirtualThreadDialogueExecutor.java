@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.channel.synchronous.executor;
+
+import java.lang.reflect.*;
+
+import com.nuecho.rivr.core.util.*;
+
+/**
+ * {@link DialogueExecutor} starting a new virtual thread for each dialogue. A
+ * parked virtual thread only costs heap, so the number of concurrent dialogues
+ * is no longer bound by the number of platform threads.
+ * <p>
+ * Rivr is compiled for Java 8: the virtual thread API is looked up
+ * reflectively. Use {@link #isSupported()} to check if the runtime provides
+ * virtual threads (Java 21+).
+ *
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public final class VirtualThreadDialogueExecutor implements DialogueExecutor {
+
+    private static final Method OF_VIRTUAL_METHOD;
+    private static final Method NAME_METHOD;
+    private static final Method START_METHOD;
+
+    static {
+        Method ofVirtualMethod;
+        Method nameMethod;
+        Method startMethod;
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            ofVirtualMethod = Thread.class.getMethod("ofVirtual");
+            nameMethod = builderClass.getMethod("name", String.class);
+            startMethod = builderClass.getMethod("start", Runnable.class);
+        } catch (ClassNotFoundException exception) {
+            ofVirtualMethod = null;
+            nameMethod = null;
+            startMethod = null;
+        } catch (NoSuchMethodException exception) {
+            ofVirtualMethod = null;
+            nameMethod = null;
+            startMethod = null;
+        }
+
+        OF_VIRTUAL_METHOD = ofVirtualMethod;
+        NAME_METHOD = nameMethod;
+        START_METHOD = startMethod;
+    }
+
+    /**
+     * Tells if the current runtime supports virtual threads.
+     *
+     * @return <code>true</code> if virtual threads are available,
+     *         <code>false</code> otherwise.
+     */
+    public static boolean isSupported() {
+        return OF_VIRTUAL_METHOD != null;
+    }
+
+    /**
+     * @throws UnsupportedOperationException if the runtime does not support
+     *             virtual threads.
+     */
+    public VirtualThreadDialogueExecutor() {
+        if (!isSupported())
+            throw new UnsupportedOperationException("Virtual threads are not supported by this Java runtime ("
+                                                    + System.getProperty("java.version")
+                                                    + ").");
+    }
+
+    @Override
+    public void execute(Runnable dialogue, String name) {
+        Assert.notNull(dialogue, "dialogue");
+        Assert.notNull(name, "name");
+
+        try {
+            Object builder = OF_VIRTUAL_METHOD.invoke(null);
+            builder = NAME_METHOD.invoke(builder, name);
+            START_METHOD.invoke(builder, dialogue);
+        } catch (IllegalAccessException exception) {
+            throw new AssertionError(exception);
+        } catch (InvocationTargetException exception) {
+            Throwable cause = exception.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new AssertionError(cause);
+        }
+    }
+
+    @Override
+    public void shutdown() {}
+}
@@ -0,0 +1,6 @@
+/**
+ * Strategies providing the threads on which dialogues are run by the
+ * {@link com.nuecho.rivr.core.channel.synchronous.SynchronousDialogueChannel}.
+ */
+package com.nuecho.rivr.core.channel.synchronous.executor;
+
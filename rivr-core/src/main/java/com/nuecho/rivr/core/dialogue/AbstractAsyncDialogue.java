@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.dialogue;
+
+import java.util.concurrent.*;
+
+import com.nuecho.rivr.core.channel.*;
+
+/**
+ * Base class for {@link AsyncDialogue} implementations. The
+ * {@link #run(FirstTurn, DialogueContext)} method waits for the completion of
+ * {@link #runAsync(FirstTurn, DialogueContext)} so that the dialogue can also
+ * run on a synchronous {@link DialogueChannel}.
+ *
+ * @param <F> type of {@link FirstTurn}
+ * @param <L> type of {@link LastTurn}
+ * @param <O> type of {@link OutputTurn}
+ * @param <I> type of {@link InputTurn}
+ * @param <C> type of {@link DialogueContext}
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public abstract class AbstractAsyncDialogue<I extends InputTurn, O extends OutputTurn, F extends FirstTurn, L extends LastTurn, C extends DialogueContext<I, O>>
+        implements AsyncDialogue<I, O, F, L, C> {
+
+    @Override
+    public final L run(F firstTurn, C context) throws Exception {
+        try {
+            return runAsync(firstTurn, context).toCompletableFuture().get();
+        } catch (ExecutionException exception) {
+            Throwable cause = exception.getCause();
+            if (cause instanceof Exception) throw (Exception) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw exception;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.dialogue;
+
+import java.util.concurrent.*;
+
+import com.nuecho.rivr.core.channel.*;
+import com.nuecho.rivr.core.channel.asynchronous.*;
+
+/**
+ * {@link Dialogue} expressed as a chain of {@link CompletionStage
+ * CompletionStages} instead of a blocking sequence of turn exchanges. Turns are
+ * exchanged with {@link DialogueUtils#doTurnAsync(OutputTurn, DialogueContext)}
+ * and the dialogue is resumed by the controller once the {@link InputTurn} is
+ * available.
+ * <p>
+ * When run on an {@link AsynchronousDialogueChannel}, the
+ * {@link #runAsync(FirstTurn, DialogueContext)} method is used and no thread is
+ * held by the dialogue between turns. On any other {@link DialogueChannel}, the
+ * {@link #run(FirstTurn, DialogueContext)} method is used. See
+ * {@link AbstractAsyncDialogue} for an implementation of this method waiting
+ * for the completion of {@link #runAsync(FirstTurn, DialogueContext)}.
+ *
+ * @param <F> type of {@link FirstTurn}
+ * @param <L> type of {@link LastTurn}
+ * @param <O> type of {@link OutputTurn}
+ * @param <I> type of {@link InputTurn}
+ * @param <C> type of {@link DialogueContext}
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public interface AsyncDialogue<I extends InputTurn, O extends OutputTurn, F extends FirstTurn, L extends LastTurn, C extends DialogueContext<I, O>>
+        extends Dialogue<I, O, F, L, C> {
+
+    /**
+     * Method called by the controller to run the dialogue. It takes initial
+     * parameters from the <code>firstTurn</code> parameter and must return a
+     * stage completed with the {@link LastTurn}.
+     *
+     * @param firstTurn First turn. Contains dialogue initialization
+     *            information. Cannot be <code>null</code>.
+     * @param context Dialogue context. Cannot be <code>null</code>.
+     * @return the stage completed with the result of the dialogue as a
+     *         {@link LastTurn} or completed exceptionally when something
+     *         prevents the dialogue from completing normally. Cannot be
+     *         <code>null</code>.
+     */
+    CompletionStage<L> runAsync(F firstTurn, C context);
+}
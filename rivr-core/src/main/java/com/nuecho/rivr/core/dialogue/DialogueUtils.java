@@ -4,6 +4,8 @@
 
 package com.nuecho.rivr.core.dialogue;
 
+import java.util.concurrent.*;
+
 import com.nuecho.rivr.core.channel.*;
 import com.nuecho.rivr.core.util.*;
 
@@ -59,4 +61,40 @@ public final class DialogueUtils {
         return context.getDialogueChannel().doTurn(outputTurn, timeout);
     }
 
+    /**
+     * Performs turn exchange without blocking. If the dialogue channel is an
+     * {@link AsyncDialogueChannel}, the returned stage is completed when the
+     * controller provides the input turn. Otherwise, the turn is exchanged
+     * synchronously with default timeout and the returned stage is already
+     * completed.
+     *
+     * @param <I> input turn type.
+     * @param <O> output turn type.
+     * @param outputTurn the output turn to return to the controller (i.e. the
+     *            servlet).
+     * @param context the dialogue context.
+     * @return the stage completed with the input turn provided by the
+     *         controller or completed exceptionally with a {@link Timeout} if
+     *         the controller did not provided the input turn within the
+     *         allocated time (default timeout).
+     * @since 1.0.13
+     */
+    public static <I extends InputTurn, O extends OutputTurn> CompletionStage<I> doTurnAsync(O outputTurn,
+                                                                                           DialogueContext<I, O> context) {
+        DialogueChannel<I, O> dialogueChannel = context.getDialogueChannel();
+        if (dialogueChannel instanceof AsyncDialogueChannel)
+            return ((AsyncDialogueChannel<I, O>) dialogueChannel).doTurn(outputTurn);
+
+        CompletableFuture<I> inputTurn = new CompletableFuture<I>();
+        try {
+            inputTurn.complete(dialogueChannel.doTurn(outputTurn, null));
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            inputTurn.completeExceptionally(exception);
+        } catch (Throwable throwable) {
+            inputTurn.completeExceptionally(throwable);
+        }
+        return inputTurn;
+    }
+
 }
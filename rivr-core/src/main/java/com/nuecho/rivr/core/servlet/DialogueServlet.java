@@ -5,7 +5,11 @@
 package com.nuecho.rivr.core.servlet;
 
 import java.io.*;
+import java.nio.charset.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
 
 import javax.servlet.*;
 import javax.servlet.http.*;
@@ -13,15 +17,20 @@ import javax.servlet.http.*;
 import org.slf4j.*;
 
 import com.nuecho.rivr.core.channel.*;
+import com.nuecho.rivr.core.channel.asynchronous.*;
 import com.nuecho.rivr.core.channel.synchronous.*;
+import com.nuecho.rivr.core.channel.synchronous.executor.*;
 import com.nuecho.rivr.core.channel.synchronous.step.*;
 import com.nuecho.rivr.core.dialogue.*;
+import com.nuecho.rivr.core.servlet.admission.*;
 import com.nuecho.rivr.core.servlet.session.*;
+import com.nuecho.rivr.core.servlet.timing.*;
 import com.nuecho.rivr.core.util.*;
 
 /**
  * Abstract servlet interacting with a web client acting as the controller of a
- * {@link SynchronousDialogueChannel}.
+ * {@link SynchronousDialogueChannel} (or of an
+ * {@link AsynchronousDialogueChannel} if enabled).
  * <p>
  * This abstract servlet must be extended in order to provide a specific
  * implementation. For each session,
@@ -58,9 +67,11 @@ import com.nuecho.rivr.core.util.*;
  * </dl>
  * <dl>
  * <dt>com.nuecho.rivr.core.sessionScanPeriod</dt>
- * <dd>Time between each scan for dead sessions in the session container. Value
- * specified must be followed by unit (ms, s, m, h, d, y), e.g. <code>10s</code>
- * for 10 seconds. Default value: <code>2 m</code></dd>
+ * <dd>Maximum time the session container clean-up thread waits for a session
+ * expiration before checking if the container was stopped. Sessions are
+ * expired as soon as their time-out is reached, independently of this value.
+ * Value specified must be followed by unit (ms, s, m, h, d, y), e.g.
+ * <code>10s</code> for 10 seconds. Default value: <code>2 m</code></dd>
  * </dl>
  * <dl>
  * <dt>com.nuecho.rivr.core.webappServerSessionTrackingEnabled</dt>
@@ -70,6 +81,102 @@ import com.nuecho.rivr.core.util.*;
  * <code>true</code> or <code>false</code>. Default value:
  * <code>true</code></dd>
  * </dl>
+ * <dl>
+ * <dt>com.nuecho.rivr.core.dialogueExecutor</dt>
+ * <dd>How dialogue threads are obtained. Value should be <code>thread</code>
+ * (a new platform thread for each dialogue), <code>pooled</code> (platform
+ * threads reused from a bounded pool) or <code>virtual</code> (a new virtual
+ * thread for each dialogue, requires Java 21+). Default value:
+ * <code>thread</code></dd>
+ * </dl>
+ * <dl>
+ * <dt>com.nuecho.rivr.core.dialogueExecutorMaximumThreads</dt>
+ * <dd>Maximum number of threads when <code>dialogueExecutor</code> is
+ * <code>pooled</code>, i.e. maximum number of concurrent dialogues. Default
+ * value: <code>500</code></dd>
+ * </dl>
+ * <dl>
+ * <dt>com.nuecho.rivr.core.asynchronousDialogueChannelEnabled</dt>
+ * <dd>Whether dialogues should run on an {@link AsynchronousDialogueChannel}
+ * instead of a {@link SynchronousDialogueChannel}. Dialogues are then resumed
+ * on a shared pool of worker threads when the next HTTP request arrives instead
+ * of holding a thread between turns. Dialogues should implement
+ * {@link AsyncDialogue}. Value should be <code>true</code> or
+ * <code>false</code>. Default value: <code>false</code></dd>
+ * </dl>
+ * <dl>
+ * <dt>com.nuecho.rivr.core.asynchronousDialogueWorkers</dt>
+ * <dd>Number of worker threads resuming dialogues when
+ * <code>asynchronousDialogueChannelEnabled</code> is <code>true</code>.
+ * Default value: twice the number of available processors</dd>
+ * </dl>
+ * <dl>
+ * <dt>com.nuecho.rivr.core.asynchronousRequestProcessingEnabled</dt>
+ * <dd>Whether HTTP requests should be processed asynchronously (Servlet 3.0
+ * <code>AsyncContext</code>). The container thread is then released as soon as
+ * the turn is handed to the dialogue and the response is rendered from the
+ * worker thread producing the next step. Requires
+ * <code>asynchronousDialogueChannelEnabled</code> and a servlet declared with
+ * <code>&lt;async-supported&gt;true&lt;/async-supported&gt;</code>, otherwise
+ * requests are processed synchronously. Value should be <code>true</code> or
+ * <code>false</code>. Default value: <code>false</code></dd>
+ * </dl>
+ * <dl>
+ * <dt>com.nuecho.rivr.core.maximumConcurrentDialogues</dt>
+ * <dd>Maximum number of dialogues running concurrently. Once reached, new
+ * dialogues wait to be admitted or are refused: an overflow response is then
+ * rendered without creating the dialogue (see
+ * {@link #createOverflowResponseContent(HttpServletRequest, HttpServletResponse)}
+ * ). Default value: (none: the number of dialogues is not limited)</dd>
+ * </dl>
+ * <dl>
+ * <dt>com.nuecho.rivr.core.maximumWaitingDialogues</dt>
+ * <dd>Maximum number of new dialogues waiting to be admitted when
+ * <code>maximumConcurrentDialogues</code> is reached. Default value:
+ * <code>0</code></dd>
+ * </dl>
+ * <dl>
+ * <dt>com.nuecho.rivr.core.admissionTimeout</dt>
+ * <dd>Maximum time for a new dialogue to wait to be admitted. Value specified
+ * must be followed by unit (ms, s, m, h, d, y), e.g. <code>10s</code> for 10
+ * seconds. Default value: <code>5 s</code></dd>
+ * </dl>
+ * <dl>
+ * <dt>com.nuecho.rivr.core.dialoguePriorityParameter</dt>
+ * <dd>Name of the initial request parameter identifying the entry point of the
+ * dialogue, used to determine its priority for admission. Default value:
+ * (none: all dialogues have the same priority)</dd>
+ * </dl>
+ * <dl>
+ * <dt>com.nuecho.rivr.core.dialoguePriorities</dt>
+ * <dd>Priority of each entry point, in the
+ * <code>value=priority,value=priority</code> format, e.g.
+ * <code>5145551234=10,5145554321=5</code>. Waiting dialogues with higher
+ * priority are admitted first. Entry points not listed have priority
+ * <code>0</code>.</dd>
+ * </dl>
+ * <dl>
+ * <dt>com.nuecho.rivr.core.admissionTargetLatency</dt>
+ * <dd>Turn processing latency above which the number of concurrent dialogues
+ * is lowered so that new dialogues are refused early (see
+ * {@link AdaptiveAdmissionLimiter}). <code>maximumConcurrentDialogues</code>
+ * is then the highest limit. Value specified must be followed by unit (ms, s,
+ * m, h, d, y), e.g. <code>2s</code> for 2 seconds. Default value: (none: the
+ * limit is fixed)</dd>
+ * </dl>
+ * <dl>
+ * <dt>com.nuecho.rivr.core.minimumConcurrentDialogues</dt>
+ * <dd>Lowest limit set when <code>admissionTargetLatency</code> is exceeded.
+ * Default value: <code>1</code></dd>
+ * </dl>
+ * <dl>
+ * <dt>com.nuecho.rivr.core.turnReplayEnabled</dt>
+ * <dd>Whether a retried request for the last turn of a dialogue should be
+ * answered with the response already rendered for this turn instead of being
+ * processed again by the dialogue (see
+ * {@link #setTurnReplayEnabled(boolean)}). Value should be <code>true</code> or
+ * <code>false</code>. Default value: <code>false</code></dd>
+ * </dl>
  *
  * @param <F> type of {@link FirstTurn}
  * @param <L> type of {@link LastTurn}
@@ -101,15 +208,72 @@ public abstract class DialogueServlet<I extends InputTurn, O extends OutputTurn,
     private static final String INITIAL_ARGUMENT_SESSION_SCAN_PERIOD = INITIAL_ARGUMENT_PREFIX + "sessionScanPeriod";
     private static final String INITIAL_ARGUMENT_CONTROLLER_TIMEOUT = INITIAL_ARGUMENT_PREFIX + "controllerTimeout";
 
+    private static final String INITIAL_ARGUMENT_DIALOGUE_EXECUTOR = INITIAL_ARGUMENT_PREFIX + "dialogueExecutor";
+    private static final String INITIAL_ARGUMENT_DIALOGUE_EXECUTOR_MAXIMUM_THREADS = INITIAL_ARGUMENT_PREFIX
+                                                                                     + "dialogueExecutorMaximumThreads";
+
+    private static final String DIALOGUE_EXECUTOR_THREAD = "thread";
+    private static final String DIALOGUE_EXECUTOR_POOLED = "pooled";
+    private static final String DIALOGUE_EXECUTOR_VIRTUAL = "virtual";
+
+    private static final int DEFAULT_DIALOGUE_EXECUTOR_MAXIMUM_THREADS = 500;
+    private static final Duration DIALOGUE_EXECUTOR_KEEP_ALIVE = Duration.minutes(1);
+
+    private static final String INITIAL_ARGUMENT_ENABLE_ASYNCHRONOUS_DIALOGUE_CHANNEL = INITIAL_ARGUMENT_PREFIX
+                                                                                       + "asynchronousDialogueChannelEnabled";
+    private static final String INITIAL_ARGUMENT_ASYNCHRONOUS_DIALOGUE_WORKERS = INITIAL_ARGUMENT_PREFIX
+                                                                                 + "asynchronousDialogueWorkers";
+    private static final String INITIAL_ARGUMENT_ENABLE_ASYNCHRONOUS_REQUEST_PROCESSING = INITIAL_ARGUMENT_PREFIX
+                                                                                         + "asynchronousRequestProcessingEnabled";
+
+    private static final String INITIAL_ARGUMENT_MAXIMUM_CONCURRENT_DIALOGUES = INITIAL_ARGUMENT_PREFIX
+                                                                                + "maximumConcurrentDialogues";
+    private static final String INITIAL_ARGUMENT_MAXIMUM_WAITING_DIALOGUES = INITIAL_ARGUMENT_PREFIX
+                                                                             + "maximumWaitingDialogues";
+    private static final String INITIAL_ARGUMENT_ADMISSION_TIMEOUT = INITIAL_ARGUMENT_PREFIX + "admissionTimeout";
+    private static final String INITIAL_ARGUMENT_DIALOGUE_PRIORITY_PARAMETER = INITIAL_ARGUMENT_PREFIX
+                                                                               + "dialoguePriorityParameter";
+    private static final String INITIAL_ARGUMENT_DIALOGUE_PRIORITIES = INITIAL_ARGUMENT_PREFIX + "dialoguePriorities";
+    private static final String INITIAL_ARGUMENT_ADMISSION_TARGET_LATENCY = INITIAL_ARGUMENT_PREFIX
+                                                                            + "admissionTargetLatency";
+    private static final String INITIAL_ARGUMENT_MINIMUM_CONCURRENT_DIALOGUES = INITIAL_ARGUMENT_PREFIX
+                                                                                + "minimumConcurrentDialogues";
+
+    private static final String INITIAL_ARGUMENT_ENABLE_TURN_REPLAY = INITIAL_ARGUMENT_PREFIX + "turnReplayEnabled";
+
+    private static final Duration DEFAULT_ADMISSION_TIMEOUT = Duration.seconds(5);
+
+    private static final String ASYNCHRONOUS_DIALOGUE_WORKER_THREAD_NAME_PREFIX = "Dialogue worker thread ";
+    private static final String ASYNCHRONOUS_DIALOGUE_TIMEOUT_THREAD_NAME = "Dialogue timeout thread";
+
     private static final String INITIAL_ARGUMENT_ENABLE_WEBAPP_SERVER_SESSION_TRACKING = INITIAL_ARGUMENT_PREFIX
                                                                                          + "webappServerSessionTrackingEnabled";
 
+    private static final String TURN_TIMER_ATTRIBUTE = "com.nuecho.rivr.core.turnTimer";
+    private static final String ERROR_TURN_TYPE = "error";
+
     private ErrorHandler<L> mErrorHandler;
     private DialogueFactory<I, O, F, L, C> mDialogueFactory;
     private DialogueContextFactory<C, I, O> mDialogueContextFactory;
     private ILoggerFactory mLoggerFactory;
     private SessionContainer<I, O, F, L, C> mSessionContainer;
     private InputTurnFactory<I, F> mInputTurnFactory;
+    private DialogueExecutor mDialogueExecutor = new ThreadDialogueExecutor();
+
+    private boolean mAsynchronousDialogueChannelEnabled;
+    private int mAsynchronousDialogueWorkers = 2 * Runtime.getRuntime().availableProcessors();
+    private ExecutorService mAsynchronousDialogueWorkerExecutor;
+    private ScheduledExecutorService mAsynchronousDialogueTimeoutScheduler;
+    private boolean mAsynchronousRequestProcessingEnabled;
+
+    private DialogueAdmissionController mDialogueAdmissionController;
+    private DialoguePriorityResolver mDialoguePriorityResolver;
+    private AdaptiveAdmissionLimiter mAdaptiveAdmissionLimiter;
+
+    private boolean mTurnReplayEnabled;
+    private final AtomicLong mReplayedTurnCount = new AtomicLong();
+
+    private final List<TurnTimingListener> mTurnTimingListeners = new CopyOnWriteArrayList<TurnTimingListener>();
 
     private Duration mDialogueTimeout = Duration.seconds(10);
     private Duration mControllerTimeout = Duration.minutes(5);
@@ -212,6 +376,57 @@ public abstract class DialogueServlet<I extends InputTurn, O extends OutputTurn,
             setWebappServerSessionTrackingEnabled(enableWebappServerSessionTracking);
         }
 
+        DialogueExecutor dialogueExecutor = getDialogueExecutor();
+        if (dialogueExecutor != null) {
+            setDialogueExecutor(dialogueExecutor);
+        }
+
+        Boolean enableAsynchronousDialogueChannel = getBoolean(INITIAL_ARGUMENT_ENABLE_ASYNCHRONOUS_DIALOGUE_CHANNEL);
+        if (enableAsynchronousDialogueChannel != null) {
+            setAsynchronousDialogueChannelEnabled(enableAsynchronousDialogueChannel);
+        }
+
+        Integer asynchronousDialogueWorkers = getInteger(INITIAL_ARGUMENT_ASYNCHRONOUS_DIALOGUE_WORKERS);
+        if (asynchronousDialogueWorkers != null) {
+            setAsynchronousDialogueWorkers(asynchronousDialogueWorkers);
+        }
+
+        if (mAsynchronousDialogueChannelEnabled) {
+            startAsynchronousDialogueExecutors();
+        }
+
+        Boolean enableAsynchronousRequestProcessing = getBoolean(INITIAL_ARGUMENT_ENABLE_ASYNCHRONOUS_REQUEST_PROCESSING);
+        if (enableAsynchronousRequestProcessing != null) {
+            setAsynchronousRequestProcessingEnabled(enableAsynchronousRequestProcessing);
+        }
+
+        if (mAsynchronousRequestProcessingEnabled && !mAsynchronousDialogueChannelEnabled)
+            throw new ServletException("Init-arg '"
+                                       + INITIAL_ARGUMENT_ENABLE_ASYNCHRONOUS_REQUEST_PROCESSING
+                                       + "' requires init-arg '"
+                                       + INITIAL_ARGUMENT_ENABLE_ASYNCHRONOUS_DIALOGUE_CHANNEL
+                                       + "'.");
+
+        Boolean enableTurnReplay = getBoolean(INITIAL_ARGUMENT_ENABLE_TURN_REPLAY);
+        if (enableTurnReplay != null) {
+            setTurnReplayEnabled(enableTurnReplay);
+        }
+
+        DialogueAdmissionController dialogueAdmissionController = createDialogueAdmissionController();
+        if (dialogueAdmissionController != null) {
+            setDialogueAdmissionController(dialogueAdmissionController);
+        }
+
+        AdaptiveAdmissionLimiter adaptiveAdmissionLimiter = createAdaptiveAdmissionLimiter();
+        if (adaptiveAdmissionLimiter != null) {
+            setAdaptiveAdmissionLimiter(adaptiveAdmissionLimiter);
+        }
+
+        DialoguePriorityResolver dialoguePriorityResolver = createDialoguePriorityResolver();
+        if (dialoguePriorityResolver != null) {
+            setDialoguePriorityResolver(dialoguePriorityResolver);
+        }
+
         mLogger.info("Dialogue servlet initialized.");
 
     }
@@ -227,6 +442,11 @@ public abstract class DialogueServlet<I extends InputTurn, O extends OutputTurn,
         if (mSessionContainer != null) {
             mSessionContainer.stop();
         }
+        mDialogueExecutor.shutdown();
+        if (mAsynchronousDialogueWorkerExecutor != null) {
+            mAsynchronousDialogueWorkerExecutor.shutdown();
+            mAsynchronousDialogueTimeoutScheduler.shutdownNow();
+        }
         destroyDialogueServlet();
 
         mLogger.info("Dialogue servlet destroyed.");
@@ -261,6 +481,138 @@ public abstract class DialogueServlet<I extends InputTurn, O extends OutputTurn,
                                    + "'.");
     }
 
+    private Integer getInteger(String key) throws ServletException {
+        ServletConfig servletConfig = getServletConfig();
+        String integer = servletConfig.getInitParameter(key);
+        if (integer == null) return null;
+        try {
+            return Integer.valueOf(integer.trim());
+        } catch (NumberFormatException exception) {
+            throw new ServletException("Unable to parse integer for init-arg '" + key + "'", exception);
+        }
+    }
+
+    private DialogueExecutor getDialogueExecutor() throws ServletException {
+        String dialogueExecutor = getServletConfig().getInitParameter(INITIAL_ARGUMENT_DIALOGUE_EXECUTOR);
+        if (dialogueExecutor == null) return null;
+
+        if (dialogueExecutor.equalsIgnoreCase(DIALOGUE_EXECUTOR_THREAD)) return new ThreadDialogueExecutor();
+
+        if (dialogueExecutor.equalsIgnoreCase(DIALOGUE_EXECUTOR_POOLED)) {
+            Integer maximumThreads = getInteger(INITIAL_ARGUMENT_DIALOGUE_EXECUTOR_MAXIMUM_THREADS);
+            if (maximumThreads == null) {
+                maximumThreads = DEFAULT_DIALOGUE_EXECUTOR_MAXIMUM_THREADS;
+            }
+            return new PooledDialogueExecutor(maximumThreads, DIALOGUE_EXECUTOR_KEEP_ALIVE);
+        }
+
+        if (dialogueExecutor.equalsIgnoreCase(DIALOGUE_EXECUTOR_VIRTUAL)) {
+            if (!VirtualThreadDialogueExecutor.isSupported())
+                throw new ServletException("Virtual threads are not supported by this Java runtime. Cannot use '"
+                                           + DIALOGUE_EXECUTOR_VIRTUAL
+                                           + "' for init-arg '"
+                                           + INITIAL_ARGUMENT_DIALOGUE_EXECUTOR
+                                           + "'.");
+            return new VirtualThreadDialogueExecutor();
+        }
+
+        throw new ServletException("Unable to parse dialogue executor for init-arg '"
+                                   + INITIAL_ARGUMENT_DIALOGUE_EXECUTOR
+                                   + "'.  Should be '"
+                                   + DIALOGUE_EXECUTOR_THREAD
+                                   + "', '"
+                                   + DIALOGUE_EXECUTOR_POOLED
+                                   + "' or '"
+                                   + DIALOGUE_EXECUTOR_VIRTUAL
+                                   + "' but not '"
+                                   + dialogueExecutor
+                                   + "'.");
+    }
+
+    private DialogueAdmissionController createDialogueAdmissionController() throws ServletException {
+        Integer maximumConcurrentDialogues = getInteger(INITIAL_ARGUMENT_MAXIMUM_CONCURRENT_DIALOGUES);
+        if (maximumConcurrentDialogues == null) return null;
+
+        Integer maximumWaitingDialogues = getInteger(INITIAL_ARGUMENT_MAXIMUM_WAITING_DIALOGUES);
+        if (maximumWaitingDialogues == null) {
+            maximumWaitingDialogues = 0;
+        }
+
+        Duration admissionTimeout = getDuration(INITIAL_ARGUMENT_ADMISSION_TIMEOUT);
+        if (admissionTimeout == null) {
+            admissionTimeout = DEFAULT_ADMISSION_TIMEOUT;
+        }
+
+        return new DialogueAdmissionController(maximumConcurrentDialogues, maximumWaitingDialogues, admissionTimeout);
+    }
+
+    private AdaptiveAdmissionLimiter createAdaptiveAdmissionLimiter() throws ServletException {
+        Duration targetLatency = getDuration(INITIAL_ARGUMENT_ADMISSION_TARGET_LATENCY);
+        if (targetLatency == null) return null;
+
+        if (mDialogueAdmissionController == null)
+            throw new ServletException("Init-arg '"
+                                       + INITIAL_ARGUMENT_ADMISSION_TARGET_LATENCY
+                                       + "' requires init-arg '"
+                                       + INITIAL_ARGUMENT_MAXIMUM_CONCURRENT_DIALOGUES
+                                       + "'.");
+
+        Integer minimumConcurrentDialogues = getInteger(INITIAL_ARGUMENT_MINIMUM_CONCURRENT_DIALOGUES);
+        if (minimumConcurrentDialogues == null) {
+            minimumConcurrentDialogues = 1;
+        }
+
+        return new AdaptiveAdmissionLimiter(mDialogueAdmissionController, targetLatency, minimumConcurrentDialogues);
+    }
+
+    private DialoguePriorityResolver createDialoguePriorityResolver() throws ServletException {
+        ServletConfig servletConfig = getServletConfig();
+        String parameterName = servletConfig.getInitParameter(INITIAL_ARGUMENT_DIALOGUE_PRIORITY_PARAMETER);
+        if (parameterName == null) return null;
+
+        String priorities = servletConfig.getInitParameter(INITIAL_ARGUMENT_DIALOGUE_PRIORITIES);
+        try {
+            Map<String, Integer> priorityMap = priorities == null
+                    ? Collections.<String, Integer> emptyMap()
+                    : ParameterDialoguePriorityResolver.parsePriorities(priorities);
+            return new ParameterDialoguePriorityResolver(parameterName, priorityMap, 0);
+        } catch (IllegalArgumentException exception) {
+            throw new ServletException("Unable to parse priorities for init-arg '"
+                                       + INITIAL_ARGUMENT_DIALOGUE_PRIORITIES
+                                       + "'", exception);
+        }
+    }
+
+    private void startAsynchronousDialogueExecutors() {
+        ThreadFactory workerThreadFactory = new ThreadFactory() {
+            private final AtomicInteger mThreadCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable,
+                                           ASYNCHRONOUS_DIALOGUE_WORKER_THREAD_NAME_PREFIX
+                                                   + mThreadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+
+        ThreadFactory timeoutThreadFactory = new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, ASYNCHRONOUS_DIALOGUE_TIMEOUT_THREAD_NAME);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+
+        mAsynchronousDialogueWorkerExecutor = Executors.newFixedThreadPool(mAsynchronousDialogueWorkers,
+                                                                           workerThreadFactory);
+        ScheduledThreadPoolExecutor timeoutScheduler = new ScheduledThreadPoolExecutor(1, timeoutThreadFactory);
+        timeoutScheduler.setRemoveOnCancelPolicy(true);
+        mAsynchronousDialogueTimeoutScheduler = timeoutScheduler;
+    }
+
     private void ensureFieldIsSet(Object fieldValue, String fieldName) {
         if (fieldValue == null) throw new IllegalStateException(fieldName + " is not set.");
     }
@@ -283,22 +635,26 @@ public abstract class DialogueServlet<I extends InputTurn, O extends OutputTurn,
                                     HttpServletRequest request,
                                     final HttpServletResponse response,
                                     Session<I, O, F, L, C> session) throws IOException, StepRendererException {
+        long startTime = System.nanoTime();
         ServletResponseContent responseContent = getStepRenderer(request, session).createDocumentForOutputTurn(outputTurn,
                                                                                                                request,
                                                                                                                response,
                                                                                                                session.getDialogueContext());
-        commitToResponse(response, responseContent);
+        recordTiming(request, TurnPhase.RENDERING, startTime);
+        commitTurnResponse(request, response, responseContent, session);
     }
 
     protected void renderLastTurn(L result,
                                   HttpServletRequest request,
                                   HttpServletResponse response,
                                   Session<I, O, F, L, C> session) throws IOException, StepRendererException {
+        long startTime = System.nanoTime();
         ServletResponseContent responseContent = getStepRenderer(request, session).createDocumentForLastTurn(result,
                                                                                                              request,
                                                                                                              response,
                                                                                                              session.getDialogueContext());
-        commitToResponse(response, responseContent);
+        recordTiming(request, TurnPhase.RENDERING, startTime);
+        commitTurnResponse(request, response, responseContent, session);
         session.stop();
     }
 
@@ -309,11 +665,13 @@ public abstract class DialogueServlet<I extends InputTurn, O extends OutputTurn,
 
         L fatalErrorTurn = mErrorHandler.handleError(error);
 
+        long startTime = System.nanoTime();
         ServletResponseContent responseContent = getStepRenderer(request, session).createDocumentForLastTurn(fatalErrorTurn,
                                                                                                              request,
                                                                                                              response,
                                                                                                              session.getDialogueContext());
-        commitToResponse(response, responseContent);
+        recordTiming(request, TurnPhase.RENDERING, startTime);
+        commitTurnResponse(request, response, responseContent, session);
         session.stop();
     }
 
@@ -379,6 +737,185 @@ public abstract class DialogueServlet<I extends InputTurn, O extends OutputTurn,
         mErrorHandler = errorHandler;
     }
 
+    /**
+     * Sets the {@link DialogueExecutor} providing the threads in which
+     * dialogues run. If not set, a new platform thread is created for each
+     * dialogue. The executor is shut down when the servlet is destroyed.
+     *
+     * @param dialogueExecutor the dialogue executor. Cannot be
+     *            <code>null</code>.
+     * @since 1.0.13
+     */
+    public final void setDialogueExecutor(DialogueExecutor dialogueExecutor) {
+        Assert.notNull(dialogueExecutor, "dialogueExecutor");
+        mDialogueExecutor = dialogueExecutor;
+    }
+
+    /**
+     * Indicates if dialogues should run on an {@link AsynchronousDialogueChannel}
+     * rather than on a {@link SynchronousDialogueChannel}. In this mode, no
+     * thread is held by a dialogue between turns: dialogues are resumed on a
+     * shared pool of worker threads upon each HTTP request. Dialogues should
+     * implement {@link AsyncDialogue}, otherwise they hold a worker thread
+     * while waiting for input turns.
+     *
+     * @param asynchronousDialogueChannelEnabled true if dialogues are to be run
+     *            on an {@link AsynchronousDialogueChannel}.
+     * @since 1.0.13
+     */
+    public final void setAsynchronousDialogueChannelEnabled(boolean asynchronousDialogueChannelEnabled) {
+        mAsynchronousDialogueChannelEnabled = asynchronousDialogueChannelEnabled;
+    }
+
+    /**
+     * Sets the number of worker threads resuming dialogues when the
+     * {@link AsynchronousDialogueChannel} is enabled. If not set, defaults to
+     * twice the number of available processors.
+     *
+     * @param asynchronousDialogueWorkers the number of worker threads. Must be
+     *            positive.
+     * @since 1.0.13
+     */
+    public final void setAsynchronousDialogueWorkers(int asynchronousDialogueWorkers) {
+        Assert.positive(asynchronousDialogueWorkers, "asynchronousDialogueWorkers");
+        mAsynchronousDialogueWorkers = asynchronousDialogueWorkers;
+    }
+
+    /**
+     * Indicates if HTTP requests should be processed asynchronously using the
+     * Servlet 3.0 <code>AsyncContext</code>. In this mode, the container thread
+     * is released as soon as the turn is handed to the dialogue and the
+     * response is rendered and completed from the worker thread producing the
+     * next step. The {@link AsynchronousDialogueChannel} must be enabled and
+     * the servlet must be declared as supporting asynchronous processing,
+     * otherwise requests are processed synchronously.
+     *
+     * @param asynchronousRequestProcessingEnabled true if HTTP requests are to
+     *            be processed asynchronously.
+     * @see #setAsynchronousDialogueChannelEnabled(boolean)
+     * @since 1.0.13
+     */
+    public final void setAsynchronousRequestProcessingEnabled(boolean asynchronousRequestProcessingEnabled) {
+        mAsynchronousRequestProcessingEnabled = asynchronousRequestProcessingEnabled;
+    }
+
+    /**
+     * Sets the {@link DialogueAdmissionController} limiting the number of
+     * dialogues running concurrently. If not set, the number of dialogues is
+     * not limited.
+     *
+     * @param dialogueAdmissionController the admission controller. Cannot be
+     *            <code>null</code>.
+     * @since 1.0.13
+     */
+    public final void setDialogueAdmissionController(DialogueAdmissionController dialogueAdmissionController) {
+        Assert.notNull(dialogueAdmissionController, "dialogueAdmissionController");
+        mDialogueAdmissionController = dialogueAdmissionController;
+    }
+
+    /**
+     * @return the admission controller, or <code>null</code> if the number of
+     *         dialogues is not limited.
+     * @since 1.0.13
+     */
+    public final DialogueAdmissionController getDialogueAdmissionController() {
+        return mDialogueAdmissionController;
+    }
+
+    /**
+     * Sets the {@link AdaptiveAdmissionLimiter} adjusting the limit of the
+     * {@link DialogueAdmissionController} according to the measured turn
+     * latency. The limiter is registered as a {@link TurnTimingListener} and
+     * replaces the previous one, if any. It should adjust the admission
+     * controller of this servlet.
+     *
+     * @param adaptiveAdmissionLimiter the limiter. Cannot be <code>null</code>.
+     * @see #setDialogueAdmissionController(DialogueAdmissionController)
+     * @since 1.0.13
+     */
+    public final void setAdaptiveAdmissionLimiter(AdaptiveAdmissionLimiter adaptiveAdmissionLimiter) {
+        Assert.notNull(adaptiveAdmissionLimiter, "adaptiveAdmissionLimiter");
+        if (mAdaptiveAdmissionLimiter != null) {
+            removeTurnTimingListener(mAdaptiveAdmissionLimiter);
+        }
+        mAdaptiveAdmissionLimiter = adaptiveAdmissionLimiter;
+        addTurnTimingListener(adaptiveAdmissionLimiter);
+    }
+
+    /**
+     * @return the adaptive admission limiter, or <code>null</code> if the
+     *         limit of the admission controller is fixed.
+     * @since 1.0.13
+     */
+    public final AdaptiveAdmissionLimiter getAdaptiveAdmissionLimiter() {
+        return mAdaptiveAdmissionLimiter;
+    }
+
+    /**
+     * Sets the {@link DialoguePriorityResolver} determining the admission
+     * priority of new dialogues. If not set, all dialogues have priority
+     * <code>0</code>.
+     *
+     * @param dialoguePriorityResolver the priority resolver. Cannot be
+     *            <code>null</code>.
+     * @since 1.0.13
+     */
+    public final void setDialoguePriorityResolver(DialoguePriorityResolver dialoguePriorityResolver) {
+        Assert.notNull(dialoguePriorityResolver, "dialoguePriorityResolver");
+        mDialoguePriorityResolver = dialoguePriorityResolver;
+    }
+
+    /**
+     * Indicates if retried requests should be answered from the last rendered
+     * response. The VoiceXML platform may submit the same request again when
+     * the response is late or lost (e.g. on a fetch timeout). When enabled, a
+     * request for the same path as the last request of a dialogue (the path
+     * identifies the turn, e.g. with its turn index) is answered with the
+     * response rendered for the first request, waiting for it if needed,
+     * instead of being passed to the dialogue as a new input turn. Only the
+     * last response of each dialogue is kept.
+     *
+     * @param turnReplayEnabled true if retried requests are to be answered
+     *            from the last rendered response.
+     * @see #getReplayedTurnCount()
+     * @since 1.0.13
+     */
+    public final void setTurnReplayEnabled(boolean turnReplayEnabled) {
+        mTurnReplayEnabled = turnReplayEnabled;
+    }
+
+    /**
+     * @return the number of retried requests answered from the last rendered
+     *         response since the servlet was started.
+     * @see #setTurnReplayEnabled(boolean)
+     * @since 1.0.13
+     */
+    public final long getReplayedTurnCount() {
+        return mReplayedTurnCount.get();
+    }
+
+    /**
+     * Adds a {@link TurnTimingListener} notified of the time spent in each
+     * {@link TurnPhase} for every turn processed by this servlet. Timings are
+     * only measured when at least one listener is registered.
+     *
+     * @param turnTimingListener the listener. Cannot be <code>null</code>.
+     * @see HistogramTurnTimingListener
+     * @since 1.0.13
+     */
+    public final void addTurnTimingListener(TurnTimingListener turnTimingListener) {
+        Assert.notNull(turnTimingListener, "turnTimingListener");
+        mTurnTimingListeners.add(turnTimingListener);
+    }
+
+    /**
+     * @param turnTimingListener the listener to remove.
+     * @since 1.0.13
+     */
+    public final void removeTurnTimingListener(TurnTimingListener turnTimingListener) {
+        mTurnTimingListeners.remove(turnTimingListener);
+    }
+
     /**
      * Indicates if the servlet should create an HttpSession object for each
      * dialogue. Note: Nothing is stored in the <code>HttpSession</code>.
@@ -396,34 +933,115 @@ public abstract class DialogueServlet<I extends InputTurn, O extends OutputTurn,
     }
 
     private void process(HttpServletRequest request, HttpServletResponse response) throws ServletException {
+        DialogueAdmissionController admissionController = null;
+        if (mDialogueAdmissionController != null && isNewSessionRequest(request)) {
+            if (!admit(request)) {
+                renderOverflow(request, response);
+                return;
+            }
+            admissionController = mDialogueAdmissionController;
+        }
+
         Session<I, O, F, L, C> session;
         try {
             session = getSession(request);
+            if (admissionController != null) {
+                session.setAdmissionController(admissionController);
+                admissionController = null;
+            }
             MDC.put(MDC_KEY_DIALOGUE_ID, session.getId());
             process(request, response, session);
         } catch (SessionNotFoundException exception) {
             throw new ServletException("Cannot find session.", exception);
         } finally {
+            if (admissionController != null) {
+                admissionController.release();
+            }
             MDC.remove(MDC_KEY_DIALOGUE_ID);
         }
 
     }
 
+    private boolean admit(HttpServletRequest request) throws ServletException {
+        int priority = mDialoguePriorityResolver == null ? 0 : mDialoguePriorityResolver.getPriority(request);
+        try {
+            if (mDialogueAdmissionController.admit(priority)) return true;
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+
+        mLogger.warn("Dialogue refused: maximum number of concurrent dialogues reached ({}).",
+                     mDialogueAdmissionController.getMaximumDialogues());
+        return false;
+    }
+
+    private void renderOverflow(HttpServletRequest request, HttpServletResponse response) throws ServletException {
+        try {
+            ServletResponseContent responseContent = createOverflowResponseContent(request, response);
+            if (responseContent == null) {
+                response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            } else {
+                commitToResponse(request, response, responseContent);
+            }
+        } catch (Exception exception) {
+            throw new ServletException("Error while rendering overflow response.", exception);
+        }
+    }
+
+    /**
+     * Provides the response sent when a new dialogue is refused by the
+     * {@link DialogueAdmissionController}, or rejected by the
+     * {@link DialogueExecutor} or the asynchronous dialogue workers. This
+     * response is sent without running the dialogue, so it should be cheap to
+     * produce. The default implementation returns <code>null</code>, in which
+     * case an HTTP 503 (Service Unavailable) error is sent.
+     *
+     * @param request the request
+     * @param response the response
+     * @return the content of the response, or <code>null</code> to send an HTTP
+     *         503 error.
+     * @throws StepRendererException if the response cannot be rendered.
+     * @since 1.0.13
+     */
+    protected ServletResponseContent createOverflowResponseContent(HttpServletRequest request,
+                                                                   HttpServletResponse response)
+            throws StepRendererException {
+        return null;
+    }
+
     private void process(HttpServletRequest request, HttpServletResponse response, Session<I, O, F, L, C> session)
             throws ServletException {
+        if (mTurnReplayEnabled && session.getDialogueContext() != null && replay(request, response, session)) return;
+
+        TurnTimer turnTimer = null;
+        if (!mTurnTimingListeners.isEmpty()) {
+            turnTimer = new TurnTimer();
+            request.setAttribute(TURN_TIMER_ATTRIBUTE, turnTimer);
+        }
+
+        String turnType;
+        C dialogueContext = session.getDialogueContext();
         try {
 
             Step<O, L> step;
-            C dialogueContext = session.getDialogueContext();
 
             try {
                 if (dialogueContext == null) {
-                    step = startDialogue(request, response, session);
+                    try {
+                        step = startDialogue(request, response, session);
+                    } catch (RejectedExecutionException exception) {
+                        // the dialogue executor is saturated: refuse the dialogue like the admission controller does
+                        session.stop();
+                        renderOverflow(request, response);
+                        return;
+                    }
                 } else {
                     step = continueDialogue(request, response, session);
                 }
             } catch (Timeout exception) {
+                stopDialogueWaitTiming(request, Long.MAX_VALUE);
                 renderError(exception, request, response, session);
+                notifyTurnTimingListeners(turnTimer, session, ERROR_TURN_TYPE);
                 return;
             } catch (InterruptedException exception) {
                 Thread.currentThread().interrupt();
@@ -431,20 +1049,109 @@ public abstract class DialogueServlet<I extends InputTurn, O extends OutputTurn,
                 return;
             }
 
-            if (step instanceof OutputTurnStep) {
-                OutputTurnStep<O, L> outputTurnStep = (OutputTurnStep<O, L>) step;
-                renderOutputTurn(outputTurnStep.getOutputTurn(), request, response, session);
-            } else if (step instanceof LastTurnStep) {
-                LastTurnStep<O, L> lastTurnStep = (LastTurnStep<O, L>) step;
-                renderLastTurn(lastTurnStep.getLastTurn(), request, response, session);
-            } else if (step instanceof ErrorStep) {
-                ErrorStep<O, L> errorStep = (ErrorStep<O, L>) step;
-                Throwable throwable = errorStep.getThrowable();
-                renderError(throwable, request, response, session);
-            }
+            if (step == null) return; // response is rendered asynchronously
+
+            turnType = renderStep(step, request, response, session);
         } catch (Exception exception) {
+            session.setTurnResponse(null);
+            if (dialogueContext == null) {
+                // the first turn failed: nobody will continue this dialogue, release it and its admission now
+                session.stop();
+            }
             throw new ServletException("Error while rendering step.", exception);
         }
+
+        notifyTurnTimingListeners(turnTimer, session, turnType);
+    }
+
+    /**
+     * Answers the request with the response of the last turn if the request is
+     * a retry of the last request.
+     *
+     * @return <code>true</code> if the request was a retry and was answered,
+     *         <code>false</code> if the request must be processed.
+     */
+    private boolean replay(HttpServletRequest request, HttpServletResponse response, Session<I, O, F, L, C> session)
+            throws ServletException {
+        String turnKey = getTurnKey(request);
+        if (turnKey == null) return false;
+
+        Future<ServletResponseContent> turnResponse = session.startTurn(turnKey);
+        if (turnResponse == null) return false;
+
+        try {
+            ServletResponseContent responseContent;
+            try {
+                responseContent = turnResponse.get(mDialogueTimeout.getMilliseconds(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException exception) {
+                responseContent = null;
+            } catch (ExecutionException exception) {
+                responseContent = null;
+            }
+
+            if (responseContent == null) {
+                mLogger.warn("Unable to replay turn [{}]: no response was rendered for this turn.", turnKey);
+                response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            } else {
+                mLogger.info("Replaying response of turn [{}].", turnKey);
+                commitToResponse(request, response, responseContent);
+                mReplayedTurnCount.incrementAndGet();
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new ServletException("Interrupted while waiting for the response of turn [" + turnKey + "].");
+        } catch (IOException exception) {
+            throw new ServletException("Error while replaying turn.", exception);
+        }
+        return true;
+    }
+
+    /**
+     * Gets the part of the request path following the session id, identifying
+     * the turn of the dialogue submitting the request.
+     */
+    private static String getTurnKey(HttpServletRequest request) {
+        String pathInfo = request.getPathInfo();
+        if (pathInfo == null) return null;
+
+        int start = pathInfo.startsWith("/") ? 1 : 0;
+        int slash = pathInfo.indexOf('/', start);
+        if (slash == -1 || slash == pathInfo.length() - 1) return null;
+        return pathInfo.substring(slash + 1);
+    }
+
+    private String renderStep(Step<O, L> step,
+                              HttpServletRequest request,
+                              HttpServletResponse response,
+                              Session<I, O, F, L, C> session) throws IOException, StepRendererException {
+        String turnType = ERROR_TURN_TYPE;
+        if (step instanceof OutputTurnStep) {
+            OutputTurnStep<O, L> outputTurnStep = (OutputTurnStep<O, L>) step;
+            turnType = outputTurnStep.getOutputTurn().getClass().getSimpleName();
+            renderOutputTurn(outputTurnStep.getOutputTurn(), request, response, session);
+        } else if (step instanceof LastTurnStep) {
+            LastTurnStep<O, L> lastTurnStep = (LastTurnStep<O, L>) step;
+            turnType = lastTurnStep.getLastTurn().getClass().getSimpleName();
+            renderLastTurn(lastTurnStep.getLastTurn(), request, response, session);
+        } else if (step instanceof ErrorStep) {
+            ErrorStep<O, L> errorStep = (ErrorStep<O, L>) step;
+            Throwable throwable = errorStep.getThrowable();
+            renderError(throwable, request, response, session);
+        }
+        return turnType;
+    }
+
+    private void notifyTurnTimingListeners(TurnTimer turnTimer, Session<I, O, F, L, C> session, String turnType) {
+        if (turnTimer == null) return;
+
+        TurnTimings turnTimings = new TurnTimings(session.getId(), turnType, turnTimer.getTimes());
+        for (TurnTimingListener listener : mTurnTimingListeners) {
+            try {
+                listener.onTurn(turnTimings);
+            } catch (RuntimeException exception) {
+                mLogger.warn("Error in turn timing listener.", exception);
+            }
+        }
     }
 
     private Step<O, L> continueDialogue(HttpServletRequest request,
@@ -453,42 +1160,124 @@ public abstract class DialogueServlet<I extends InputTurn, O extends OutputTurn,
             InterruptedException {
         Assert.notNull(session, "session");
         I inputTurn = createInputTurn(request, response);
-        SynchronousDialogueChannel<I, O, F, L, C> dialogueChannel = session.getDialogueChannel();
-        Assert.notNull(dialogueChannel, "dialogueChannel");
-        return dialogueChannel.doTurn(inputTurn, mDialogueTimeout);
+        startDialogueWaitTiming(request);
+
+        Step<O, L> step;
+        AsynchronousDialogueChannel<I, O, F, L, C> asynchronousDialogueChannel = session.getAsynchronousDialogueChannel();
+        if (asynchronousDialogueChannel != null) {
+            step = waitForStep(asynchronousDialogueChannel.doTurn(inputTurn), request, response, session, false);
+        } else {
+            SynchronousDialogueChannel<I, O, F, L, C> dialogueChannel = session.getDialogueChannel();
+            Assert.notNull(dialogueChannel, "dialogueChannel");
+            step = dialogueChannel.doTurn(inputTurn, mDialogueTimeout);
+        }
+
+        if (step != null) {
+            stopDialogueWaitTiming(request, session.getDialogueProcessingTime());
+        }
+        return step;
     }
 
     private Step<O, L> startDialogue(HttpServletRequest request,
                                      HttpServletResponse response,
                                      Session<I, O, F, L, C> session) throws ServletException, Timeout,
             InterruptedException {
+        Logger logger = mLoggerFactory.getLogger(DIALOGUE_LOGGER_NAME);
+        if (mAsynchronousDialogueChannelEnabled) return startAsynchronousDialogue(request, response, session, logger);
+
         SynchronousDialogueChannel<I, O, F, L, C> dialogueChannel;
         dialogueChannel = new SynchronousDialogueChannel<I, O, F, L, C>();
         session.setDialogueChannel(dialogueChannel);
-
-        Logger logger = mLoggerFactory.getLogger(DIALOGUE_LOGGER_NAME);
         dialogueChannel.setLogger(logger);
 
         dialogueChannel.setDefaultReceiveFromControllerTimeout(mControllerTimeout);
         dialogueChannel.setDefaultReceiveFromDialogueTimeout(mDialogueTimeout);
+        dialogueChannel.setDialogueExecutor(mDialogueExecutor);
 
         C dialogueContext = createContext(request, session, dialogueChannel, logger);
+        Dialogue<I, O, F, L, C> dialogue = createDialogue(request, response, dialogueContext);
+        F firstTurn = createFirstTurn(request, response);
+        startDialogueWaitTiming(request);
+        Step<O, L> step = dialogueChannel.start(dialogue, firstTurn, mDialogueTimeout, dialogueContext);
+        stopDialogueWaitTiming(request, session.getDialogueProcessingTime());
+        return step;
+    }
+
+    private Step<O, L> startAsynchronousDialogue(HttpServletRequest request,
+                                                 HttpServletResponse response,
+                                                 Session<I, O, F, L, C> session,
+                                                 Logger logger) throws ServletException, Timeout,
+            InterruptedException {
+        AsynchronousDialogueChannel<I, O, F, L, C> dialogueChannel;
+        dialogueChannel = new AsynchronousDialogueChannel<I, O, F, L, C>(mAsynchronousDialogueWorkerExecutor,
+                                                                         mAsynchronousDialogueTimeoutScheduler);
+        session.setAsynchronousDialogueChannel(dialogueChannel);
+        dialogueChannel.setLogger(logger);
+        dialogueChannel.setDefaultReceiveFromControllerTimeout(mControllerTimeout);
+        dialogueChannel.setDialogueExecutor(mDialogueExecutor);
 
+        C dialogueContext = createContext(request, session, dialogueChannel, logger);
+        Dialogue<I, O, F, L, C> dialogue = createDialogue(request, response, dialogueContext);
+        F firstTurn = createFirstTurn(request, response);
+        startDialogueWaitTiming(request);
+        Step<O, L> step = waitForStep(dialogueChannel.start(dialogue, firstTurn, dialogueContext),
+                                      request,
+                                      response,
+                                      session,
+                                      true);
+        if (step != null) {
+            stopDialogueWaitTiming(request, session.getDialogueProcessingTime());
+        }
+        return step;
+    }
+
+    /**
+     * Waits for the step produced by the {@link AsynchronousDialogueChannel}.
+     * If asynchronous request processing is enabled, the response is instead
+     * rendered when the step is produced and <code>null</code> is returned.
+     *
+     * @param firstTurn whether the step is the first one of the dialogue, in
+     *            which case the session is stopped if the step cannot be
+     *            rendered.
+     */
+    private Step<O, L> waitForStep(CompletionStage<Step<O, L>> stepStage,
+                                   HttpServletRequest request,
+                                   HttpServletResponse response,
+                                   Session<I, O, F, L, C> session,
+                                   boolean firstTurn) throws Timeout, InterruptedException {
+        if (mAsynchronousRequestProcessingEnabled && request.isAsyncSupported()) {
+            new AsynchronousResponse(request, response, session, firstTurn).start(stepStage);
+            return null;
+        }
+
+        Future<Step<O, L>> step = stepStage.toCompletableFuture();
+        Duration timeout = mDialogueTimeout;
+        try {
+            long milliseconds = timeout.getMilliseconds();
+            if (milliseconds == 0) return step.get();
+            return step.get(milliseconds, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException exception) {
+            throw new Timeout("Timed-out after " + timeout + " while waiting for dialogue step", exception);
+        } catch (ExecutionException exception) {
+            return new ErrorStep<O, L>(exception.getCause());
+        }
+    }
+
+    private Dialogue<I, O, F, L, C> createDialogue(HttpServletRequest request,
+                                                   HttpServletResponse response,
+                                                   C dialogueContext) throws ServletException {
         DialogueInitializationInfo<I, O, C> initializationInfo;
         initializationInfo = createInitializationInfo(request, response, dialogueContext);
-        Dialogue<I, O, F, L, C> dialogue;
         try {
-            dialogue = mDialogueFactory.create(initializationInfo);
+            return mDialogueFactory.create(initializationInfo);
         } catch (DialogueFactoryException exception) {
             throw new ServletException("Unable to create dialogue.", exception);
         }
-        F firstTurn = createFirstTurn(request, response);
-        return dialogueChannel.start(dialogue, firstTurn, mDialogueTimeout, dialogueContext);
     }
 
     private C createContext(HttpServletRequest request,
                             Session<I, O, F, L, C> session,
-                            SynchronousDialogueChannel<I, O, F, L, C> dialogueChannel,
+                            DialogueChannel<I, O> dialogueChannel,
                             Logger logger) {
         C dialogueContext = mDialogueContextFactory.createDialogueContext(request,
                                                                           session.getId(),
@@ -504,10 +1293,15 @@ public abstract class DialogueServlet<I extends InputTurn, O extends OutputTurn,
         return new WebDialogueInitializationInfo<I, O, C>(dialogueContext, request, response, getServletContext(), this);
     }
 
+    private static boolean isNewSessionRequest(HttpServletRequest request) {
+        String pathInfo = request.getPathInfo();
+        return pathInfo == null || pathInfo.equals("/");
+    }
+
     protected Session<I, O, F, L, C> getSession(HttpServletRequest request) throws SessionNotFoundException {
         String pathInfo = request.getPathInfo();
 
-        if (pathInfo != null && !pathInfo.equals("/")) {
+        if (!isNewSessionRequest(request)) {
             if (pathInfo.startsWith("/")) {
                 pathInfo = pathInfo.substring(1);
             }
@@ -540,24 +1334,97 @@ public abstract class DialogueServlet<I extends InputTurn, O extends OutputTurn,
     }
 
     private I createInputTurn(HttpServletRequest request, HttpServletResponse response) throws ServletException {
+        long startTime = System.nanoTime();
         try {
             return mInputTurnFactory.createInputTurn(request, response);
         } catch (InputTurnFactoryException exception) {
             throw new ServletException(exception);
+        } finally {
+            recordTiming(request, TurnPhase.INPUT_TURN_PARSING, startTime);
         }
     }
 
     private F createFirstTurn(HttpServletRequest request, HttpServletResponse response) throws ServletException {
+        long startTime = System.nanoTime();
         try {
             return mInputTurnFactory.createFirstTurn(request, response);
         } catch (InputTurnFactoryException exception) {
             throw new ServletException(exception);
+        } finally {
+            recordTiming(request, TurnPhase.INPUT_TURN_PARSING, startTime);
+        }
+    }
+
+    private static TurnTimer getTurnTimer(HttpServletRequest request) {
+        return (TurnTimer) request.getAttribute(TURN_TIMER_ATTRIBUTE);
+    }
+
+    private static void recordTiming(HttpServletRequest request, TurnPhase phase, long startTime) {
+        TurnTimer turnTimer = getTurnTimer(request);
+        if (turnTimer != null) {
+            turnTimer.add(phase, System.nanoTime() - startTime);
+        }
+    }
+
+    private static void startDialogueWaitTiming(HttpServletRequest request) {
+        TurnTimer turnTimer = getTurnTimer(request);
+        if (turnTimer != null) {
+            turnTimer.mDialogueWaitStartTime = System.nanoTime();
+        }
+    }
+
+    /**
+     * Splits the time waited for the dialogue between the dialogue processing
+     * time reported by the dialogue channel and the handoff time.
+     */
+    private static void stopDialogueWaitTiming(HttpServletRequest request, long reportedDialogueProcessingTime) {
+        TurnTimer turnTimer = getTurnTimer(request);
+        if (turnTimer == null || turnTimer.mDialogueWaitStartTime == 0) return;
+
+        long waitTime = System.nanoTime() - turnTimer.mDialogueWaitStartTime;
+        long dialogueProcessingTime = Math.min(reportedDialogueProcessingTime, waitTime);
+        turnTimer.add(TurnPhase.DIALOGUE_PROCESSING, dialogueProcessingTime);
+        turnTimer.add(TurnPhase.HANDOFF, waitTime - dialogueProcessingTime);
+        turnTimer.mDialogueWaitStartTime = 0;
+    }
+
+    /**
+     * Commits the response of a turn. With turn replay, a copy of the response
+     * is kept while it is written and is published to the session only once
+     * the response is written, so that a retried request never writes a
+     * response that is still being written, nor content that can only be
+     * written once, such as a streamed document.
+     */
+    private void commitTurnResponse(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    ServletResponseContent responseContent,
+                                    Session<I, O, F, L, C> session) throws IOException {
+        if (!mTurnReplayEnabled) {
+            commitToResponse(request, response, responseContent, null);
+            return;
         }
+
+        ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        commitToResponse(request, response, responseContent, copy);
+        session.setTurnResponse(new BufferedServletResponseContent(responseContent.getContentType(),
+                                                                   copy.toByteArray()));
     }
 
-    private void commitToResponse(final HttpServletResponse response, ServletResponseContent responseContent)
-            throws IOException {
-        ServletOutputStream outputStream = response.getOutputStream();
+    private void commitToResponse(HttpServletRequest request,
+                                  HttpServletResponse response,
+                                  ServletResponseContent responseContent) throws IOException {
+        commitToResponse(request, response, responseContent, null);
+    }
+
+    private void commitToResponse(HttpServletRequest request,
+                                  HttpServletResponse response,
+                                  ServletResponseContent responseContent,
+                                  OutputStream copy) throws IOException {
+        long startTime = System.nanoTime();
+        OutputStream outputStream = response.getOutputStream();
+        if (copy != null) {
+            outputStream = new CopyingOutputStream(outputStream, copy);
+        }
 
         if (mResponseLogger.isDebugEnabled()) {
             mResponseLogger.debug("Content-length: {}", responseContent.getContentLength());
@@ -572,5 +1439,193 @@ public abstract class DialogueServlet<I extends InputTurn, O extends OutputTurn,
         }
 
         responseContent.writeTo(outputStream);
+        recordTiming(request, TurnPhase.COMMIT, startTime);
+    }
+
+    /**
+     * Writes to the response and to a copy of the response.
+     */
+    private static final class CopyingOutputStream extends FilterOutputStream {
+        private final OutputStream mCopy;
+
+        public CopyingOutputStream(OutputStream outputStream, OutputStream copy) {
+            super(outputStream);
+            mCopy = copy;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            mCopy.write(b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            out.write(bytes, offset, length);
+            mCopy.write(bytes, offset, length);
+        }
+    }
+
+    /**
+     * Response of a turn kept for replay.
+     */
+    private static final class BufferedServletResponseContent implements ServletResponseContent {
+        private final String mContentType;
+        private final byte[] mContent;
+
+        public BufferedServletResponseContent(String contentType, byte[] content) {
+            mContentType = contentType;
+            mContent = content;
+        }
+
+        @Override
+        public String getContentType() {
+            return mContentType;
+        }
+
+        @Override
+        public void writeTo(OutputStream outputStream) throws IOException {
+            outputStream.write(mContent);
+        }
+
+        @Override
+        public String getContentAsString() {
+            return new String(mContent, Charset.forName(Encoding.UTF_8.getId()));
+        }
+
+        @Override
+        public Integer getContentLength() {
+            return mContent.length;
+        }
+    }
+
+    /**
+     * Response rendered from the thread completing the step, using the Servlet
+     * 3.0 <code>AsyncContext</code>. Other Servlet 3.0 types are only
+     * referenced by this class so that the servlet can still be deployed in a
+     * Servlet 2.5 container when asynchronous request processing is not
+     * enabled.
+     */
+    private final class AsynchronousResponse implements AsyncListener, BiConsumer<Step<O, L>, Throwable> {
+        private final HttpServletRequest mRequest;
+        private final HttpServletResponse mResponse;
+        private final Session<I, O, F, L, C> mSession;
+        private final boolean mFirstTurn;
+        private final AtomicBoolean mResponded = new AtomicBoolean();
+        private AsyncContext mAsyncContext;
+
+        public AsynchronousResponse(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    Session<I, O, F, L, C> session,
+                                    boolean firstTurn) {
+            mRequest = request;
+            mResponse = response;
+            mSession = session;
+            mFirstTurn = firstTurn;
+        }
+
+        public void start(CompletionStage<Step<O, L>> stepStage) {
+            mAsyncContext = mRequest.startAsync(mRequest, mResponse);
+            mAsyncContext.setTimeout(mDialogueTimeout.getMilliseconds());
+            mAsyncContext.addListener(this);
+            stepStage.whenComplete(this);
+        }
+
+        @Override
+        public void accept(Step<O, L> step, Throwable throwable) {
+            if (!mResponded.compareAndSet(false, true)) return;
+
+            if (throwable == null) {
+                stopDialogueWaitTiming(mRequest, mSession.getDialogueProcessingTime());
+            } else {
+                if (throwable instanceof CompletionException && throwable.getCause() != null) {
+                    throwable = throwable.getCause();
+                }
+                step = new ErrorStep<O, L>(throwable);
+            }
+
+            MDC.put(MDC_KEY_DIALOGUE_ID, mSession.getId());
+            try {
+                String turnType = renderStep(step, mRequest, mResponse, mSession);
+                notifyTurnTimingListeners(getTurnTimer(mRequest), mSession, turnType);
+            } catch (Exception exception) {
+                mLogger.error("Error while rendering step.", exception);
+                renderingFailed();
+            } finally {
+                MDC.remove(MDC_KEY_DIALOGUE_ID);
+                mAsyncContext.complete();
+            }
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            if (!mResponded.compareAndSet(false, true)) return;
+
+            MDC.put(MDC_KEY_DIALOGUE_ID, mSession.getId());
+            try {
+                stopDialogueWaitTiming(mRequest, Long.MAX_VALUE);
+                renderError(new Timeout("Timed-out after " + mDialogueTimeout + " while waiting for dialogue step"),
+                            mRequest,
+                            mResponse,
+                            mSession);
+                notifyTurnTimingListeners(getTurnTimer(mRequest), mSession, ERROR_TURN_TYPE);
+            } catch (Exception exception) {
+                mLogger.error("Error while rendering step.", exception);
+                renderingFailed();
+            } finally {
+                MDC.remove(MDC_KEY_DIALOGUE_ID);
+                mAsyncContext.complete();
+            }
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            if (mResponded.compareAndSet(false, true)) {
+                mLogger.error("Error during asynchronous request processing.", event.getThrowable());
+                mSession.setTurnResponse(null);
+                mSession.stop();
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {}
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {}
+
+        private void renderingFailed() {
+            mSession.setTurnResponse(null);
+            if (mFirstTurn) {
+                // the first turn failed: nobody will continue this dialogue, release it and its admission now
+                mSession.stop();
+            }
+            sendError();
+        }
+
+        private void sendError() {
+            if (mResponse.isCommitted()) return;
+            try {
+                mResponse.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            } catch (IOException exception) {
+                mLogger.warn("Unable to send error.", exception);
+            }
+        }
+    }
+
+    /**
+     * Accumulates the time spent in each {@link TurnPhase} while processing a
+     * request. Only accessed by one thread at a time.
+     */
+    private static final class TurnTimer {
+        private final long[] mTimes = new long[TurnPhase.values().length];
+        private long mDialogueWaitStartTime;
+
+        public void add(TurnPhase phase, long time) {
+            mTimes[phase.ordinal()] += time;
+        }
+
+        public long[] getTimes() {
+            return mTimes;
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.servlet.admission;
+
+import java.util.concurrent.*;
+
+import com.nuecho.rivr.core.servlet.*;
+import com.nuecho.rivr.core.servlet.timing.*;
+import com.nuecho.rivr.core.util.*;
+
+/**
+ * Adjusts the limit of a {@link DialogueAdmissionController} according to the
+ * measured turn latency (additive increase, multiplicative decrease).
+ * <p>
+ * The time spent by the dialogues processing the turns (the
+ * {@link TurnPhase#DIALOGUE_PROCESSING} phase) is collected in windows of
+ * {@link #setSampleSize(int) sample size} turns. The other phases are left out
+ * since they mostly depend on the size of the requests and responses and on
+ * the network rather than on the number of running dialogues. When a window is
+ * complete, its {@link #setPercentile(double) percentile} latency is compared
+ * to the target latency:
+ * <ul>
+ * <li>above the target, the limit is lowered to a fraction (see
+ * {@link #setBackoffRatio(double)}) of the number of dialogues currently
+ * running, so that new dialogues are refused right away;</li>
+ * <li>otherwise, if the dialogues use at least half of the limit, the limit is
+ * raised by one.</li>
+ * </ul>
+ * The limit stays between the minimum given at construction and the limit the
+ * controller had when the limiter was created. Dialogues already running are
+ * never affected by a lower limit: only new dialogues are refused.
+ * <p>
+ * A turn that times out is measured as the whole dialogue timeout, which makes
+ * a window containing timeouts likely to exceed the target.
+ *
+ * @see DialogueServlet#setAdaptiveAdmissionLimiter(AdaptiveAdmissionLimiter)
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public final class AdaptiveAdmissionLimiter implements TurnTimingListener {
+
+    public static final int DEFAULT_SAMPLE_SIZE = 50;
+    public static final double DEFAULT_PERCENTILE = 90;
+    public static final double DEFAULT_BACKOFF_RATIO = 0.9;
+
+    private final DialogueAdmissionController mAdmissionController;
+    private final long mTargetLatency;
+    private final int mMinimumDialogues;
+    private final int mMaximumDialogues;
+
+    private volatile int mSampleSize = DEFAULT_SAMPLE_SIZE;
+    private volatile double mPercentile = DEFAULT_PERCENTILE;
+    private volatile double mBackoffRatio = DEFAULT_BACKOFF_RATIO;
+
+    private LatencyHistogram mWindow = new LatencyHistogram();
+    private int mLimit;
+    private long mLatency;
+    private long mIncreaseCount;
+    private long mDecreaseCount;
+
+    /**
+     * @param admissionController the controller whose limit is adjusted. Its
+     *            current limit is the maximum limit. Cannot be
+     *            <code>null</code>.
+     * @param targetLatency the turn latency above which the limit is lowered.
+     *            Cannot be <code>null</code>.
+     * @param minimumDialogues the lowest limit. Must be positive and not
+     *            greater than the current limit of the controller.
+     */
+    public AdaptiveAdmissionLimiter(DialogueAdmissionController admissionController,
+                                    Duration targetLatency,
+                                    int minimumDialogues) {
+        Assert.notNull(admissionController, "admissionController");
+        Assert.notNull(targetLatency, "targetLatency");
+        Assert.positive(minimumDialogues, "minimumDialogues");
+        mAdmissionController = admissionController;
+        mTargetLatency = TimeUnit.MILLISECONDS.toNanos(targetLatency.getMilliseconds());
+        mMaximumDialogues = admissionController.getMaximumDialogues();
+        Assert.ensure(minimumDialogues <= mMaximumDialogues,
+                      "minimumDialogues should not be greater than the limit of the admission controller.");
+        mMinimumDialogues = minimumDialogues;
+        mLimit = mMaximumDialogues;
+    }
+
+    /**
+     * @param sampleSize the number of turns measured before each adjustment.
+     *            Must be positive.
+     */
+    public void setSampleSize(int sampleSize) {
+        Assert.positive(sampleSize, "sampleSize");
+        mSampleSize = sampleSize;
+    }
+
+    /**
+     * @param percentile the percentile of the turn latencies of a window
+     *            compared to the target latency, between 0 and 100.
+     */
+    public void setPercentile(double percentile) {
+        Assert.between(0.0, percentile, 100.0);
+        mPercentile = percentile;
+    }
+
+    /**
+     * @param backoffRatio the fraction of the running dialogues to which the
+     *            limit is lowered when the target latency is exceeded, between
+     *            0 and 1.
+     */
+    public void setBackoffRatio(double backoffRatio) {
+        Assert.between(0.0, backoffRatio, 1.0);
+        mBackoffRatio = backoffRatio;
+    }
+
+    @Override
+    public synchronized void onTurn(TurnTimings turnTimings) {
+        // recording and replacing the window under the same lock, so that no sample is lost
+        mWindow.record(turnTimings.getTime(TurnPhase.DIALOGUE_PROCESSING));
+        if (mWindow.getCount() >= mSampleSize) {
+            adjust(mWindow.getValueAtPercentile(mPercentile));
+            mWindow = new LatencyHistogram();
+        }
+    }
+
+    private void adjust(long latency) {
+        mLatency = latency;
+        int limit = mLimit;
+        int activeDialogues = mAdmissionController.getActiveDialogues();
+        if (latency > mTargetLatency) {
+            limit = Math.max(mMinimumDialogues, (int) (Math.min(limit, activeDialogues) * mBackoffRatio));
+            if (limit < mLimit) {
+                mDecreaseCount++;
+            }
+        } else if (limit < mMaximumDialogues
+                   && 2 * (activeDialogues + mAdmissionController.getWaitingDialogues()) >= limit) {
+            limit++;
+            mIncreaseCount++;
+        }
+
+        if (limit != mLimit) {
+            mLimit = limit;
+            mAdmissionController.setMaximumDialogues(limit);
+        }
+    }
+
+    /**
+     * @return the current limit.
+     */
+    public synchronized int getLimit() {
+        return mLimit;
+    }
+
+    /**
+     * @return the latency of the last complete window, in nanoseconds, or
+     *         <code>0</code> if no window was completed yet.
+     */
+    public synchronized long getLatency() {
+        return mLatency;
+    }
+
+    /**
+     * @return the number of times the limit was raised.
+     */
+    public synchronized long getIncreaseCount() {
+        return mIncreaseCount;
+    }
+
+    /**
+     * @return the number of times the limit was lowered.
+     */
+    public synchronized long getDecreaseCount() {
+        return mDecreaseCount;
+    }
+
+    public DialogueAdmissionController getAdmissionController() {
+        return mAdmissionController;
+    }
+
+    @Override
+    public String toString() {
+        ToStringBuilder builder = new ToStringBuilder(this);
+        builder.appendItem("mTargetLatency", mTargetLatency);
+        builder.appendItem("mMinimumDialogues", mMinimumDialogues);
+        builder.appendItem("mMaximumDialogues", mMaximumDialogues);
+        builder.appendItem("mLimit", getLimit());
+        return builder.getString();
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.servlet.admission;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.*;
+
+import com.nuecho.rivr.core.util.*;
+
+/**
+ * Limits the number of dialogues running concurrently. Once the limit is
+ * reached, new dialogues can wait in a bounded queue for a running dialogue to
+ * end. Waiting dialogues are admitted by decreasing priority, then in arrival
+ * order. Dialogues that cannot be queued, or that waited longer than the
+ * maximum wait, are refused.
+ * <p>
+ * Each successful {@link #admit(int)} must be balanced by a {@link #release()}
+ * when the dialogue ends.
+ * <p>
+ * The limit can be changed while dialogues are running, e.g. by an
+ * {@link AdaptiveAdmissionLimiter}. Lowering it below the number of running
+ * dialogues does not affect them: new dialogues are simply refused or kept
+ * waiting until enough of them have ended.
+ *
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public final class DialogueAdmissionController {
+
+    private int mMaximumDialogues;
+    private final int mMaximumWaitingDialogues;
+    private final Duration mMaximumWait;
+
+    private final ReentrantLock mLock = new ReentrantLock();
+    private final PriorityQueue<Waiter> mWaiters = new PriorityQueue<Waiter>();
+    private int mActiveDialogues;
+    private long mSequence;
+    private long mRefusedDialogues;
+
+    /**
+     * @param maximumDialogues maximum number of dialogues running
+     *            concurrently. Must be positive.
+     * @param maximumWaitingDialogues maximum number of dialogues waiting to be
+     *            admitted. A value of <code>0</code> refuses dialogues as soon
+     *            as the limit is reached.
+     * @param maximumWait maximum time a dialogue can wait to be admitted.
+     *            Cannot be <code>null</code>. A value of Duration.ZERO (or
+     *            equivalent) means to wait forever.
+     */
+    public DialogueAdmissionController(int maximumDialogues, int maximumWaitingDialogues, Duration maximumWait) {
+        Assert.positive(maximumDialogues, "maximumDialogues");
+        Assert.notNegative(maximumWaitingDialogues, "maximumWaitingDialogues");
+        Assert.notNull(maximumWait, "maximumWait");
+        mMaximumDialogues = maximumDialogues;
+        mMaximumWaitingDialogues = maximumWaitingDialogues;
+        mMaximumWait = maximumWait;
+    }
+
+    /**
+     * Admits a new dialogue, waiting if necessary.
+     *
+     * @param priority the priority of the dialogue. Higher values are admitted
+     *            first.
+     * @return <code>true</code> if the dialogue is admitted,
+     *         <code>false</code> if it is refused.
+     * @throws InterruptedException if the current thread was interrupted while
+     *             waiting.
+     */
+    public boolean admit(int priority) throws InterruptedException {
+        mLock.lock();
+        try {
+            if (mActiveDialogues < mMaximumDialogues && mWaiters.isEmpty()) {
+                mActiveDialogues++;
+                return true;
+            }
+
+            if (mWaiters.size() >= mMaximumWaitingDialogues) {
+                mRefusedDialogues++;
+                return false;
+            }
+
+            Waiter waiter = new Waiter(priority, mSequence++, mLock.newCondition());
+            mWaiters.add(waiter);
+            try {
+                return await(waiter);
+            } catch (InterruptedException exception) {
+                if (waiter.mAdmitted) {
+                    releaseLocked();
+                } else {
+                    mWaiters.remove(waiter);
+                }
+                throw exception;
+            }
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    private boolean await(Waiter waiter) throws InterruptedException {
+        long milliseconds = mMaximumWait.getMilliseconds();
+        long nanoseconds = TimeUnit.MILLISECONDS.toNanos(milliseconds);
+        while (!waiter.mAdmitted) {
+            if (milliseconds == 0) {
+                waiter.mCondition.await();
+            } else if (nanoseconds > 0) {
+                nanoseconds = waiter.mCondition.awaitNanos(nanoseconds);
+            } else {
+                mWaiters.remove(waiter);
+                mRefusedDialogues++;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Releases the place of a dialogue that ended. The place is given to the
+     * waiting dialogue with the highest priority, if any.
+     */
+    public void release() {
+        mLock.lock();
+        try {
+            releaseLocked();
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    private void releaseLocked() {
+        mActiveDialogues--;
+        admitWaiters();
+    }
+
+    private void admitWaiters() {
+        while (mActiveDialogues < mMaximumDialogues && !mWaiters.isEmpty()) {
+            Waiter waiter = mWaiters.poll();
+            mActiveDialogues++;
+            waiter.mAdmitted = true;
+            waiter.mCondition.signal();
+        }
+    }
+
+    /**
+     * Changes the maximum number of dialogues running concurrently. If the
+     * limit is raised, waiting dialogues are admitted accordingly.
+     *
+     * @param maximumDialogues maximum number of dialogues running
+     *            concurrently. Must be positive.
+     * @since 1.0.13
+     */
+    public void setMaximumDialogues(int maximumDialogues) {
+        Assert.positive(maximumDialogues, "maximumDialogues");
+        mLock.lock();
+        try {
+            mMaximumDialogues = maximumDialogues;
+            admitWaiters();
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of admitted dialogues not yet released.
+     */
+    public int getActiveDialogues() {
+        mLock.lock();
+        try {
+            return mActiveDialogues;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of dialogues waiting to be admitted.
+     */
+    public int getWaitingDialogues() {
+        mLock.lock();
+        try {
+            return mWaiters.size();
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of dialogues refused since creation.
+     */
+    public long getRefusedDialogues() {
+        mLock.lock();
+        try {
+            return mRefusedDialogues;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    public int getMaximumDialogues() {
+        mLock.lock();
+        try {
+            return mMaximumDialogues;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        ToStringBuilder builder = new ToStringBuilder(this);
+        builder.appendItem("mMaximumDialogues", getMaximumDialogues());
+        builder.appendItem("mMaximumWaitingDialogues", mMaximumWaitingDialogues);
+        builder.appendItem("mMaximumWait", mMaximumWait);
+        return builder.getString();
+    }
+
+    private static final class Waiter implements Comparable<Waiter> {
+        private final int mPriority;
+        private final long mSequence;
+        private final Condition mCondition;
+        private boolean mAdmitted;
+
+        Waiter(int priority, long sequence, Condition condition) {
+            mPriority = priority;
+            mSequence = sequence;
+            mCondition = condition;
+        }
+
+        @Override
+        public int compareTo(Waiter other) {
+            if (mPriority != other.mPriority) return mPriority > other.mPriority ? -1 : 1;
+            if (mSequence != other.mSequence) return mSequence < other.mSequence ? -1 : 1;
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.servlet.admission;
+
+import javax.servlet.http.*;
+
+/**
+ * Determines the priority class of a new dialogue from the initial HTTP
+ * request. When the {@link DialogueAdmissionController} is full, waiting
+ * dialogues with a higher priority are admitted first.
+ *
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public interface DialoguePriorityResolver {
+
+    /**
+     * @param request the initial HTTP request of the dialogue.
+     * @return the priority of the dialogue. Higher values are admitted first.
+     */
+    int getPriority(HttpServletRequest request);
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.servlet.admission;
+
+import java.util.*;
+
+import javax.servlet.http.*;
+
+import com.nuecho.rivr.core.util.*;
+
+/**
+ * {@link DialoguePriorityResolver} assigning priorities according to the value
+ * of a request parameter identifying the entry point of the dialogue (e.g. the
+ * called number).
+ *
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public final class ParameterDialoguePriorityResolver implements DialoguePriorityResolver {
+
+    private final String mParameterName;
+    private final Map<String, Integer> mPriorities;
+    private final int mDefaultPriority;
+
+    /**
+     * @param parameterName name of the request parameter identifying the entry
+     *            point. Cannot be <code>null</code>.
+     * @param priorities priority for each parameter value. Cannot be
+     *            <code>null</code>.
+     * @param defaultPriority priority of dialogues whose parameter value is
+     *            absent or not found in <code>priorities</code>.
+     */
+    public ParameterDialoguePriorityResolver(String parameterName, Map<String, Integer> priorities, int defaultPriority) {
+        Assert.notEmpty(parameterName, "parameterName");
+        Assert.notNull(priorities, "priorities");
+        mParameterName = parameterName;
+        mPriorities = new HashMap<String, Integer>(priorities);
+        mDefaultPriority = defaultPriority;
+    }
+
+    /**
+     * Parses priorities in the <code>value=priority,value=priority</code>
+     * format, e.g. <code>5145551234=10,5145554321=5</code>.
+     *
+     * @param priorities the priorities to parse. Cannot be <code>null</code>.
+     * @return the priority for each value.
+     * @throws IllegalArgumentException if the priorities cannot be parsed.
+     */
+    public static Map<String, Integer> parsePriorities(String priorities) {
+        Assert.notNull(priorities, "priorities");
+        Map<String, Integer> map = new HashMap<String, Integer>();
+        for (String entry : priorities.split(",")) {
+            entry = entry.trim();
+            if (entry.isEmpty()) {
+                continue;
+            }
+
+            int separator = entry.lastIndexOf('=');
+            if (separator <= 0) throw new IllegalArgumentException("Invalid priority entry: '" + entry + "'");
+
+            try {
+                map.put(entry.substring(0, separator).trim(), Integer.valueOf(entry.substring(separator + 1).trim()));
+            } catch (NumberFormatException exception) {
+                throw new IllegalArgumentException("Invalid priority entry: '" + entry + "'", exception);
+            }
+        }
+        return map;
+    }
+
+    @Override
+    public int getPriority(HttpServletRequest request) {
+        String value = request.getParameter(mParameterName);
+        if (value == null) return mDefaultPriority;
+        Integer priority = mPriorities.get(value);
+        if (priority == null) return mDefaultPriority;
+        return priority;
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * Admission control limiting the number of dialogues running concurrently in
+ * the {@link com.nuecho.rivr.core.servlet.DialogueServlet}.
+ */
+package com.nuecho.rivr.core.servlet.admission;
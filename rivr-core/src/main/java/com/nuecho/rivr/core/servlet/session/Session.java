@@ -4,12 +4,16 @@
 
 package com.nuecho.rivr.core.servlet.session;
 
+import java.util.concurrent.*;
+
 import javax.servlet.http.*;
 
 import com.nuecho.rivr.core.channel.*;
+import com.nuecho.rivr.core.channel.asynchronous.*;
 import com.nuecho.rivr.core.channel.synchronous.*;
 import com.nuecho.rivr.core.dialogue.*;
 import com.nuecho.rivr.core.servlet.*;
+import com.nuecho.rivr.core.servlet.admission.*;
 import com.nuecho.rivr.core.util.*;
 
 /**
@@ -34,16 +38,23 @@ import com.nuecho.rivr.core.util.*;
 public final class Session<I extends InputTurn, O extends OutputTurn, F extends FirstTurn, L extends LastTurn, C extends DialogueContext<I, O>>
         implements DialogueChannelListener<I, O> {
     private SynchronousDialogueChannel<I, O, F, L, C> mDialogueChannel;
+    private AsynchronousDialogueChannel<I, O, F, L, C> mAsynchronousDialogueChannel;
 
     private C mDialogueContext;
 
     private final SessionContainer<I, O, F, L, C> mContainer;
     private final String mId;
     private HttpSession mAssociatedHttpSession;
+    private DialogueAdmissionController mAdmissionController;
+    private volatile long mLastAccessTime;
+
+    private String mTurnKey;
+    private CompletableFuture<ServletResponseContent> mTurnResponse;
 
     public Session(SessionContainer<I, O, F, L, C> container, String sessionId) {
         mContainer = container;
         mId = sessionId;
+        mLastAccessTime = System.currentTimeMillis();
     }
 
     @Override
@@ -55,12 +66,21 @@ public final class Session<I extends InputTurn, O extends OutputTurn, F extends
     }
 
     public synchronized void stop() {
-        if (mDialogueChannel != null && mDialogueChannel.isDialogueActive()) {
+        if (mDialogueChannel != null && !mDialogueChannel.isDialogueDone()) {
             mDialogueChannel.stop();
         }
 
+        if (mAsynchronousDialogueChannel != null && !mAsynchronousDialogueChannel.isDialogueDone()) {
+            mAsynchronousDialogueChannel.stop();
+        }
+
         mContainer.removeSession(mId);
 
+        if (mAdmissionController != null) {
+            mAdmissionController.release();
+            mAdmissionController = null;
+        }
+
         if (mAssociatedHttpSession != null) {
             try {
                 mAssociatedHttpSession.invalidate();
@@ -81,6 +101,20 @@ public final class Session<I extends InputTurn, O extends OutputTurn, F extends
         return mId;
     }
 
+    /**
+     * Gets the last time this session was accessed by the controller.
+     *
+     * @return the last access time, in milliseconds since the epoch.
+     * @since 1.0.13
+     */
+    public long getLastAccessTime() {
+        return mLastAccessTime;
+    }
+
+    void updateLastAccessTime() {
+        mLastAccessTime = System.currentTimeMillis();
+    }
+
     public SynchronousDialogueChannel<I, O, F, L, C> getDialogueChannel() {
         return mDialogueChannel;
     }
@@ -90,6 +124,67 @@ public final class Session<I extends InputTurn, O extends OutputTurn, F extends
         mDialogueChannel.addListener(this);
     }
 
+    /**
+     * @since 1.0.13
+     */
+    public AsynchronousDialogueChannel<I, O, F, L, C> getAsynchronousDialogueChannel() {
+        return mAsynchronousDialogueChannel;
+    }
+
+    /**
+     * @since 1.0.13
+     */
+    public void setAsynchronousDialogueChannel(AsynchronousDialogueChannel<I, O, F, L, C> asynchronousDialogueChannel) {
+        mAsynchronousDialogueChannel = asynchronousDialogueChannel;
+        mAsynchronousDialogueChannel.addListener(this);
+    }
+
+    /**
+     * Tells if the dialogue of this session has ended, whatever the dialogue
+     * channel used.
+     *
+     * @return <code>true</code> if no dialogue is running in this session.
+     * @since 1.0.13
+     */
+    public boolean isDialogueDone() {
+        if (mDialogueChannel != null) return mDialogueChannel.isDialogueDone();
+        if (mAsynchronousDialogueChannel != null) return mAsynchronousDialogueChannel.isDialogueDone();
+        return true;
+    }
+
+    /**
+     * Gets the time spent by the dialogue to produce the last step, whatever
+     * the dialogue channel used.
+     *
+     * @return the dialogue processing time, in nanoseconds.
+     * @since 1.0.13
+     */
+    public long getDialogueProcessingTime() {
+        if (mDialogueChannel != null) return mDialogueChannel.getDialogueProcessingTime();
+        if (mAsynchronousDialogueChannel != null) return mAsynchronousDialogueChannel.getDialogueProcessingTime();
+        return 0;
+    }
+
+    /**
+     * Waits for the dialogue of this session to end, whatever the dialogue
+     * channel used.
+     *
+     * @param timeout maximum time to wait for the dialogue to end. A value of
+     *            Duration.ZERO (or equivalent) means to wait forever.
+     * @throws InterruptedException if the current thread was interrupted while
+     *             waiting for the dialogue to terminate.
+     * @since 1.0.13
+     */
+    public void joinDialogue(Duration timeout) throws InterruptedException {
+        if (mDialogueChannel != null) {
+            mDialogueChannel.join(timeout);
+        }
+
+        if (mAsynchronousDialogueChannel != null) {
+            mAsynchronousDialogueChannel.join(timeout);
+        }
+    }
+
     public C getDialogueContext() {
         return mDialogueContext;
     }
@@ -102,10 +197,61 @@ public final class Session<I extends InputTurn, O extends OutputTurn, F extends
         mAssociatedHttpSession = associatedHttpSession;
     }
 
+    /**
+     * Indicates that the dialogue of this session was admitted by the
+     * specified {@link DialogueAdmissionController}. The admission is released
+     * when the session is stopped.
+     *
+     * @param admissionController the admission controller.
+     * @since 1.0.13
+     */
+    public synchronized void setAdmissionController(DialogueAdmissionController admissionController) {
+        mAdmissionController = admissionController;
+    }
+
+    /**
+     * Starts the processing of a request for the turn identified by the
+     * specified key, unless this turn was the last one started. The response of
+     * the last turn is kept so that a retried request for this turn can be
+     * answered again without involving the dialogue.
+     *
+     * @param turnKey the key identifying the turn in the request, e.g. the path
+     *            of the request. Cannot be <code>null</code>.
+     * @return <code>null</code> if the turn was started, or the response of the
+     *         turn, possibly not yet completed, if the turn is the last one
+     *         started. The response is completed with <code>null</code> if no
+     *         response could be rendered.
+     * @since 1.0.13
+     */
+    public synchronized CompletableFuture<ServletResponseContent> startTurn(String turnKey) {
+        Assert.notNull(turnKey, "turnKey");
+        if (turnKey.equals(mTurnKey)) return mTurnResponse;
+
+        mTurnKey = turnKey;
+        mTurnResponse = new CompletableFuture<ServletResponseContent>();
+        return null;
+    }
+
+    /**
+     * Sets the response of the last turn started with
+     * {@link #startTurn(String)}. Has no effect if no turn was started or if
+     * the response was already set.
+     *
+     * @param responseContent the response content, or <code>null</code> if no
+     *            response could be rendered.
+     * @since 1.0.13
+     */
+    public synchronized void setTurnResponse(ServletResponseContent responseContent) {
+        if (mTurnResponse != null) {
+            mTurnResponse.complete(responseContent);
+        }
+    }
+
     @Override
     public String toString() {
         ToStringBuilder builder = new ToStringBuilder(this);
         builder.appendItem("mDialogueChannel", mDialogueChannel);
+        builder.appendItem("mAsynchronousDialogueChannel", mAsynchronousDialogueChannel);
         builder.appendItem("mDialogueContext", mDialogueContext);
         builder.appendItem("mId", mId);
         return builder.getString();
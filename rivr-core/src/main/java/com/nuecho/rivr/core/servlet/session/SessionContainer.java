@@ -5,6 +5,7 @@
 package com.nuecho.rivr.core.servlet.session;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 import org.slf4j.*;
 
@@ -19,8 +20,16 @@ import com.nuecho.rivr.core.util.*;
  * Rivr has its own SessionContainer independent from the Web server. This
  * solves many issues related to cookies and encoding of session ID in the URI.
  * <p>
- * A clean-up thread checks periodically that every session has not timed-out.
- * The scan period and the session time-out value can be specified in the
+ * Sessions are kept in a concurrent map and their last access time is kept on
+ * the {@link Session} itself, so that looking up a session does not require
+ * any global lock. Each session has an expiration entry in a
+ * {@link DelayQueue}. A clean-up thread takes the entries as they become due:
+ * if the session was accessed in the meantime, its entry is re-scheduled,
+ * otherwise the session is stopped. The expiration work is thus proportional
+ * to the number of sessions reaching their time-out rather than to the number
+ * of live sessions.
+ * <p>
+ * The session time-out value and the scan period can be specified in the
  * {@link #SessionContainer(Logger, Duration, Duration, String) constructor},
  * although they are normally specified via the {@link DialogueServlet}.
  * 
@@ -40,11 +49,19 @@ public final class SessionContainer<I extends InputTurn, O extends OutputTurn, F
     private final Duration mTimeoutCheckScanPeriod;
     private final String mName;
 
-    private final Map<String, Session<I, O, F, L, C>> mSessions = new HashMap<String, Session<I, O, F, L, C>>();
-    private final Map<String, Long> mLastAccess = new HashMap<String, Long>();
-    private boolean mStopped;
+    private final ConcurrentMap<String, Session<I, O, F, L, C>> mSessions = new ConcurrentHashMap<String, Session<I, O, F, L, C>>();
+    private final DelayQueue<SessionExpiration> mSessionExpirations = new DelayQueue<SessionExpiration>();
+    private volatile boolean mStopped;
     private Thread mTimeoutCheckScanThread;
 
+    /**
+     * @param logger the logger.
+     * @param sessionTimeout time after which an inactive session is stopped.
+     * @param timeoutCheckScanPeriod maximum time the clean-up thread waits for
+     *            an expiration before checking whether the container was
+     *            stopped.
+     * @param name the name of the container, used to name the clean-up thread.
+     */
     public SessionContainer(Logger logger, Duration sessionTimeout, Duration timeoutCheckScanPeriod, String name) {
         mLogger = logger;
         mSessionTimeout = sessionTimeout;
@@ -62,21 +79,11 @@ public final class SessionContainer<I extends InputTurn, O extends OutputTurn, F
 
                 while (!mStopped) {
                     try {
-                        Iterator<String> sessionIdsIterator = mSessions.keySet().iterator();
-
-                        long currentTime = System.currentTimeMillis();
-                        while (sessionIdsIterator.hasNext()) {
-                            String sessionId = sessionIdsIterator.next();
-                            Long lastAccess = mLastAccess.get(sessionId);
-                            if (lastAccess != null) {
-                                if (currentTime - lastAccess > mSessionTimeout.getMilliseconds()) {
-                                    Session<I, O, F, L, C> sessionContext = mSessions.get(sessionId);
-                                    sessionContext.stop();
-                                }
-                            }
+                        SessionExpiration expiration = mSessionExpirations.poll(mTimeoutCheckScanPeriod.getMilliseconds(),
+                                                                                TimeUnit.MILLISECONDS);
+                        if (expiration != null) {
+                            checkExpiration(expiration.getSessionId());
                         }
-
-                        Thread.sleep(mTimeoutCheckScanPeriod.getMilliseconds());
                     } catch (InterruptedException interruptedException) {
                         if (mStopped) {
                             //Interrupts can be swallowed if you know the thread is about to exit
@@ -88,12 +95,11 @@ public final class SessionContainer<I extends InputTurn, O extends OutputTurn, F
                     }
                 }
 
-                Iterator<String> sessionIdsIterator = mSessions.keySet().iterator();
-
                 //stopping all sessions
-                while (sessionIdsIterator.hasNext()) {
-                    mSessions.get(sessionIdsIterator.next()).stop();
+                for (Session<I, O, F, L, C> session : mSessions.values()) {
+                    session.stop();
                 }
+                mSessionExpirations.clear();
             }
         };
 
@@ -102,30 +108,38 @@ public final class SessionContainer<I extends InputTurn, O extends OutputTurn, F
         mTimeoutCheckScanThread.start();
     }
 
+    private void checkExpiration(String sessionId) {
+        Session<I, O, F, L, C> session = mSessions.get(sessionId);
+        if (session == null) return; // already removed
+
+        long expirationTime = session.getLastAccessTime() + mSessionTimeout.getMilliseconds();
+        if (expirationTime > System.currentTimeMillis()) {
+            mSessionExpirations.add(new SessionExpiration(sessionId, expirationTime));
+        } else {
+            session.stop();
+        }
+    }
+
     public void addSession(Session<I, O, F, L, C> session) {
-        String sessionId = session.getId();
-        mSessions.put(sessionId, session);
-        updateLastAccessTime(sessionId);
+        session.updateLastAccessTime();
+        mSessions.put(session.getId(), session);
+        mSessionExpirations.add(new SessionExpiration(session.getId(), session.getLastAccessTime()
+                                                                       + mSessionTimeout.getMilliseconds()));
     }
 
     public void removeSession(String sessionId) {
         mSessions.remove(sessionId);
-        mLastAccess.remove(sessionId);
     }
 
     public Session<I, O, F, L, C> getSession(String sessionId) {
-        updateLastAccessTime(sessionId);
         Session<I, O, F, L, C> session = mSessions.get(sessionId);
         if (session != null) {
+            session.updateLastAccessTime();
             session.keepAlive();
         }
         return session;
     }
 
-    private void updateLastAccessTime(String sessionId) {
-        mLastAccess.put(sessionId, System.currentTimeMillis());
-    }
-
     public synchronized void stop() {
         if (!mStopped) {
 
@@ -147,7 +161,7 @@ public final class SessionContainer<I extends InputTurn, O extends OutputTurn, F
                         String sessionId = session.getId();
                         try {
                             mLogger.info("Waiting for dialogue thread {} to terminate.", sessionId);
-                            session.getDialogueChannel().join(Duration.seconds(10));
+                            session.joinDialogue(Duration.seconds(10));
                             mLogger.info("Dialogue thread {} terminated.", sessionId);
                         } catch (InterruptedException throwable) {
                             mLogger.error("Stopped waiting for dialogue threads to terminate.", sessionId);
@@ -169,7 +183,7 @@ public final class SessionContainer<I extends InputTurn, O extends OutputTurn, F
                 }
 
                 for (Session<I, O, F, L, C> session : sessions) {
-                    if (!session.getDialogueChannel().isDialogueDone()) {
+                    if (!session.isDialogueDone()) {
                         mLogger.warn("Dialogue {} is still not terminated.  Possible leak detected.", session.getId());
                     }
                 }
@@ -186,4 +200,39 @@ public final class SessionContainer<I extends InputTurn, O extends OutputTurn, F
     public Collection<String> getSessionIds() {
         return new HashSet<String>(mSessions.keySet());
     }
+
+    /**
+     * Expiration entry of a session in the {@link DelayQueue}. The entry may
+     * be stale if the session was accessed after it was scheduled, in which
+     * case it is re-scheduled when it becomes due, or if the session was
+     * removed, in which case it is dropped. The entry only holds the session
+     * id so that a removed session can be garbage collected without waiting
+     * for its entry to become due.
+     */
+    private static final class SessionExpiration implements Delayed {
+        private final String mSessionId;
+        private final long mExpirationTime;
+
+        public SessionExpiration(String sessionId, long expirationTime) {
+            mSessionId = sessionId;
+            mExpirationTime = expirationTime;
+        }
+
+        public String getSessionId() {
+            return mSessionId;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(mExpirationTime - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            if (other == this) return 0;
+            if (other instanceof SessionExpiration)
+                return Long.compare(mExpirationTime, ((SessionExpiration) other).mExpirationTime);
+            return Long.compare(getDelay(TimeUnit.MILLISECONDS), other.getDelay(TimeUnit.MILLISECONDS));
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.servlet.timing;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import com.nuecho.rivr.core.util.*;
+
+/**
+ * {@link TurnTimingListener} keeping a {@link LatencyHistogram} for each
+ * {@link TurnPhase} of each turn type.
+ *
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public final class HistogramTurnTimingListener implements TurnTimingListener {
+
+    private final ConcurrentMap<String, LatencyHistogram[]> mHistograms = new ConcurrentHashMap<String, LatencyHistogram[]>();
+
+    @Override
+    public void onTurn(TurnTimings turnTimings) {
+        LatencyHistogram[] histograms = getHistograms(turnTimings.getTurnType());
+        for (TurnPhase phase : TurnPhase.values()) {
+            histograms[phase.ordinal()].record(turnTimings.getTime(phase));
+        }
+    }
+
+    private LatencyHistogram[] getHistograms(String turnType) {
+        LatencyHistogram[] histograms = mHistograms.get(turnType);
+        if (histograms != null) return histograms;
+
+        histograms = new LatencyHistogram[TurnPhase.values().length];
+        for (int index = 0; index < histograms.length; index++) {
+            histograms[index] = new LatencyHistogram();
+        }
+
+        LatencyHistogram[] existingHistograms = mHistograms.putIfAbsent(turnType, histograms);
+        return existingHistograms == null ? histograms : existingHistograms;
+    }
+
+    /**
+     * @return the turn types for which timings were received.
+     */
+    public Set<String> getTurnTypes() {
+        return new HashSet<String>(mHistograms.keySet());
+    }
+
+    /**
+     * @param turnType the turn type.
+     * @param phase the turn phase.
+     * @return the histogram of the phase for the turn type, or
+     *         <code>null</code> if no timings were received for this turn type.
+     */
+    public LatencyHistogram getHistogram(String turnType, TurnPhase phase) {
+        Assert.notNull(phase, "phase");
+        LatencyHistogram[] histograms = mHistograms.get(turnType);
+        if (histograms == null) return null;
+        return histograms[phase.ordinal()];
+    }
+
+    /**
+     * Discards all recorded timings.
+     */
+    public void clear() {
+        mHistograms.clear();
+    }
+
+    @Override
+    public String toString() {
+        ToStringBuilder builder = new ToStringBuilder(this);
+        builder.appendItem("mHistograms", mHistograms.keySet());
+        return builder.getString();
+    }
+}
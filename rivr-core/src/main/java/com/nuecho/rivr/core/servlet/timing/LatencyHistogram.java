@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.servlet.timing;
+
+import java.util.concurrent.atomic.*;
+
+import com.nuecho.rivr.core.util.*;
+
+/**
+ * Lock-free histogram of latencies expressed in nanoseconds.
+ * <p>
+ * Values are counted in log-linear buckets: each power of two is divided in
+ * {@value #SUB_BUCKET_COUNT} linear sub-buckets, which bounds the relative
+ * error of reported values to about 6% over the whole <code>long</code> range
+ * with a fixed footprint. Recording a value only increments atomic counters,
+ * so the histogram can be updated concurrently by request threads without
+ * locking. Read operations are not atomic with respect to concurrent updates
+ * and should be treated as an approximate snapshot.
+ *
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray mCounts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mTotal = new AtomicLong();
+    private final AtomicLong mMaximum = new AtomicLong();
+
+    /**
+     * Records a value.
+     *
+     * @param nanoseconds the value to record. Negative values are recorded as
+     *            <code>0</code>.
+     */
+    public void record(long nanoseconds) {
+        long value = Math.max(nanoseconds, 0);
+        mCounts.incrementAndGet(getBucketIndex(value));
+        mCount.incrementAndGet();
+        mTotal.addAndGet(value);
+
+        long maximum = mMaximum.get();
+        while (value > maximum && !mMaximum.compareAndSet(maximum, value)) {
+            maximum = mMaximum.get();
+        }
+    }
+
+    /**
+     * @return the number of recorded values.
+     */
+    public long getCount() {
+        return mCount.get();
+    }
+
+    /**
+     * @return the largest recorded value, in nanoseconds.
+     */
+    public long getMaximum() {
+        return mMaximum.get();
+    }
+
+    /**
+     * @return the mean of recorded values, in nanoseconds, or <code>0</code>
+     *         if no value was recorded.
+     */
+    public double getMean() {
+        long count = mCount.get();
+        if (count == 0) return 0;
+        return (double) mTotal.get() / count;
+    }
+
+    /**
+     * Gets the value at the specified percentile. The returned value is the
+     * upper bound of the bucket containing the percentile, capped to the
+     * largest recorded value.
+     *
+     * @param percentile the percentile, between 0 and 100.
+     * @return the value, in nanoseconds, or <code>0</code> if no value was
+     *         recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        Assert.between(0.0, percentile, 100.0);
+        long count = mCount.get();
+        if (count == 0) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long cumulativeCount = 0;
+        for (int index = 0; index < BUCKET_COUNT; index++) {
+            cumulativeCount += mCounts.get(index);
+            if (cumulativeCount >= rank) return Math.min(getBucketUpperBound(index), mMaximum.get());
+        }
+        return mMaximum.get();
+    }
+
+    private static int getBucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) return (int) value;
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> exponent - SUB_BUCKET_BITS) & SUB_BUCKET_COUNT - 1;
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    private static long getBucketUpperBound(int index) {
+        if (index < SUB_BUCKET_COUNT) return index;
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long subBucket = SUB_BUCKET_COUNT + index % SUB_BUCKET_COUNT;
+        return (subBucket + 1 << shift) - 1;
+    }
+
+    @Override
+    public String toString() {
+        ToStringBuilder builder = new ToStringBuilder(this);
+        builder.appendItem("count", getCount());
+        builder.appendItem("mean", getMean());
+        builder.appendItem("p50", getValueAtPercentile(50));
+        builder.appendItem("p90", getValueAtPercentile(90));
+        builder.appendItem("p99", getValueAtPercentile(99));
+        builder.appendItem("max", getMaximum());
+        return builder.getString();
+    }
+}
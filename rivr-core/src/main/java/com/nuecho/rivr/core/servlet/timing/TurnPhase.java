@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.servlet.timing;
+
+import com.nuecho.rivr.core.servlet.*;
+
+/**
+ * Phases of a turn processed by the {@link DialogueServlet}.
+ *
+ * @see TurnTimings
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public enum TurnPhase {
+    /**
+     * Creation of the input turn (or first turn) from the HTTP request by the
+     * {@link InputTurnFactory}.
+     */
+    INPUT_TURN_PARSING,
+
+    /**
+     * Time spent passing the input turn to the dialogue and passing the
+     * resulting step back to the controller, i.e. the time the controller
+     * waited for the dialogue minus {@link #DIALOGUE_PROCESSING}.
+     */
+    HANDOFF,
+
+    /**
+     * Time spent by the dialogue between the reception of the input turn and
+     * the production of the next step. When the controller times out waiting
+     * for the dialogue, the whole wait is accounted in this phase.
+     */
+    DIALOGUE_PROCESSING,
+
+    /**
+     * Creation of the response content by the {@link StepRenderer}.
+     */
+    RENDERING,
+
+    /**
+     * Writing of the response content to the HTTP response.
+     */
+    COMMIT;
+}
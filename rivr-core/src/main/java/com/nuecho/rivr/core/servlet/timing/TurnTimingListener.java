@@ -0,0 +1,20 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.servlet.timing;
+
+import com.nuecho.rivr.core.servlet.*;
+
+/**
+ * Receives the {@link TurnTimings} of each turn processed by the
+ * {@link DialogueServlet}. Listeners are notified from the servlet request
+ * thread once the response has been committed, so they should return quickly.
+ *
+ * @see DialogueServlet#addTurnTimingListener(TurnTimingListener)
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public interface TurnTimingListener {
+    void onTurn(TurnTimings turnTimings);
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.servlet.timing;
+
+import com.nuecho.rivr.core.util.*;
+
+/**
+ * Time spent in each {@link TurnPhase} while processing a turn.
+ *
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public final class TurnTimings {
+
+    private final String mDialogueId;
+    private final String mTurnType;
+    private final long[] mTimes;
+
+    /**
+     * @param dialogueId the dialogue identifier. Cannot be <code>null</code>.
+     * @param turnType the type of the turn sent in response, e.g. the simple
+     *            class name of the output turn. Cannot be <code>null</code>.
+     * @param times the time spent in each phase, in nanoseconds, indexed by
+     *            {@link TurnPhase#ordinal()}. Cannot be <code>null</code>.
+     */
+    public TurnTimings(String dialogueId, String turnType, long[] times) {
+        Assert.notNull(dialogueId, "dialogueId");
+        Assert.notNull(turnType, "turnType");
+        Assert.notNull(times, "times");
+        Assert.ensure(times.length == TurnPhase.values().length, "times should have one entry for each phase.");
+        mDialogueId = dialogueId;
+        mTurnType = turnType;
+        mTimes = times.clone();
+    }
+
+    public String getDialogueId() {
+        return mDialogueId;
+    }
+
+    public String getTurnType() {
+        return mTurnType;
+    }
+
+    /**
+     * @param phase the turn phase.
+     * @return the time spent in the phase, in nanoseconds.
+     */
+    public long getTime(TurnPhase phase) {
+        return mTimes[phase.ordinal()];
+    }
+
+    /**
+     * @return the time spent in all phases, in nanoseconds.
+     */
+    public long getTotalTime() {
+        long total = 0;
+        for (long time : mTimes) {
+            total += time;
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        ToStringBuilder builder = new ToStringBuilder(this);
+        builder.appendItem("mDialogueId", mDialogueId);
+        builder.appendItem("mTurnType", mTurnType);
+        for (TurnPhase phase : TurnPhase.values()) {
+            builder.appendItem(phase.name(), getTime(phase));
+        }
+        return builder.getString();
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * Per-turn latency measurements of the
+ * {@link com.nuecho.rivr.core.servlet.DialogueServlet}.
+ */
+package com.nuecho.rivr.core.servlet.timing;
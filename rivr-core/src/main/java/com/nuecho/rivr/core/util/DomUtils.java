@@ -5,8 +5,12 @@
 package com.nuecho.rivr.core.util;
 
 import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
 
+import javax.xml.*;
 import javax.xml.parsers.*;
+import javax.xml.stream.*;
 
 import org.w3c.dom.*;
 import org.w3c.dom.bootstrap.*;
@@ -14,6 +18,10 @@ import org.w3c.dom.ls.*;
 
 /**
  * XML DOM manipulation utility class.
+ * <p>
+ * All methods are thread-safe. Since neither {@link DocumentBuilder} nor
+ * {@link LSSerializer} are, instances are kept in pools and each one is used
+ * by a single thread at a time.
  * 
  * @author Nu Echo Inc.
  */
@@ -21,16 +29,17 @@ public final class DomUtils {
 
     private static final String FORMAT_PRETTY_PRINT_DOM_CONFIG_PARAMETER = "format-pretty-print";
 
+    private static final int MAXIMUM_POOLED_BUFFER_SIZE = 64 * 1024;
+    private static final int INITIAL_BUFFER_SIZE = 4 * 1024;
+
     private static final DOMImplementationLS DOM_IMPLEMENTATION;
-    private static final DocumentBuilder DOCUMENT_BUILDER;
+    private static final DocumentBuilderFactory DOCUMENT_BUILDER_FACTORY = DocumentBuilderFactory.newInstance();
 
-    static {
-        try {
-            DOCUMENT_BUILDER = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-        } catch (ParserConfigurationException exception) {
-            throw new AssertionError(exception);
-        }
+    private static final Queue<DocumentBuilder> DOCUMENT_BUILDERS = new ConcurrentLinkedQueue<DocumentBuilder>();
+    private static final Queue<LSSerializer> SERIALIZERS = new ConcurrentLinkedQueue<LSSerializer>();
+    private static final Queue<ReusableByteArrayOutputStream> BUFFERS = new ConcurrentLinkedQueue<ReusableByteArrayOutputStream>();
 
+    static {
         try {
             DOMImplementationRegistry registry = DOMImplementationRegistry.newInstance();
             DOM_IMPLEMENTATION = (DOMImplementationLS) registry.getDOMImplementation("LS");
@@ -51,7 +60,16 @@ public final class DomUtils {
     }
 
     public static Document createDocument() {
-        return DOCUMENT_BUILDER.newDocument();
+        DocumentBuilder documentBuilder = DOCUMENT_BUILDERS.poll();
+        if (documentBuilder == null) {
+            documentBuilder = createDocumentBuilder();
+        }
+
+        try {
+            return documentBuilder.newDocument();
+        } finally {
+            DOCUMENT_BUILDERS.offer(documentBuilder);
+        }
     }
 
     public static Element appendNewElement(Node parent, String elementName) {
@@ -76,39 +94,190 @@ public final class DomUtils {
     }
 
     public static void writeToOutputStream(Node node, OutputStream outputStream, Encoding encoding) throws IOException {
-
-        LSSerializer xmlSerializer = getSerializer();
-
         LSOutput destination = DOM_IMPLEMENTATION.createLSOutput();
         destination.setByteStream(outputStream);
         destination.setEncoding(encoding.getId());
-
-        try {
-            xmlSerializer.write(node, destination);
-        } catch (LSException exception) {
-            throw new IOException("Error while writing document to output stream.", exception);
-        }
+        write(node, destination);
     }
 
     public static String writeToString(Node node) throws IOException {
-
-        LSSerializer xmlSerializer = getSerializer();
-
         StringWriter stringWriter = new StringWriter();
 
         LSOutput destination = DOM_IMPLEMENTATION.createLSOutput();
         destination.setCharacterStream(stringWriter);
+        write(node, destination);
+
+        return stringWriter.toString();
+    }
+
+    /**
+     * Serializes a node to a byte array. The intermediate buffer is pooled so
+     * that it doesn't have to grow again for each document.
+     *
+     * @param node the node to write.
+     * @param encoding the encoding of the resulting bytes.
+     * @return the serialized node.
+     * @throws IOException if an error occurred while serializing the node.
+     * @since 1.0.13
+     */
+    public static byte[] writeToByteArray(Node node, Encoding encoding) throws IOException {
+        ReusableByteArrayOutputStream buffer = BUFFERS.poll();
+        if (buffer == null) {
+            buffer = new ReusableByteArrayOutputStream();
+        }
+
+        try {
+            writeToOutputStream(node, buffer, encoding);
+            return buffer.toByteArray();
+        } finally {
+            if (buffer.capacity() <= MAXIMUM_POOLED_BUFFER_SIZE) {
+                buffer.reset();
+                BUFFERS.offer(buffer);
+            }
+        }
+    }
+
+    private static void write(Node node, LSOutput destination) throws IOException {
+        LSSerializer xmlSerializer = SERIALIZERS.poll();
+        if (xmlSerializer == null) {
+            xmlSerializer = createSerializer();
+        }
 
         try {
             xmlSerializer.write(node, destination);
         } catch (LSException exception) {
             throw new IOException("Error while writing document to output stream.", exception);
+        } finally {
+            SERIALIZERS.offer(xmlSerializer);
         }
+    }
 
-        return stringWriter.toString();
+    /**
+     * Writes a node and its descendants to an {@link XMLStreamWriter}. Unlike
+     * {@link #writeToOutputStream(Node, OutputStream, Encoding)}, no
+     * intermediate serializer is created and the output is not pretty-printed.
+     * If the node is a {@link Document}, the XML declaration is written using
+     * the specified encoding.
+     *
+     * @param node the node to write.
+     * @param writer the destination writer. It is not flushed nor closed.
+     * @param encoding the encoding declared in the XML declaration.
+     * @throws XMLStreamException if an error occurred while writing the node.
+     * @since 1.0.13
+     */
+    public static void writeToXmlStreamWriter(Node node, XMLStreamWriter writer, Encoding encoding)
+            throws XMLStreamException {
+        switch (node.getNodeType()) {
+            case Node.DOCUMENT_NODE:
+                writer.writeStartDocument(encoding.getId(), "1.0");
+                writeChildren(node, writer, encoding);
+                writer.writeEndDocument();
+                break;
+            case Node.DOCUMENT_FRAGMENT_NODE:
+                writeChildren(node, writer, encoding);
+                break;
+            case Node.ELEMENT_NODE:
+                writeElement((Element) node, writer, encoding);
+                break;
+            case Node.TEXT_NODE:
+                writer.writeCharacters(node.getNodeValue());
+                break;
+            case Node.CDATA_SECTION_NODE:
+                writer.writeCData(node.getNodeValue());
+                break;
+            case Node.COMMENT_NODE:
+                writer.writeComment(node.getNodeValue());
+                break;
+            case Node.PROCESSING_INSTRUCTION_NODE:
+                writer.writeProcessingInstruction(node.getNodeName(), node.getNodeValue());
+                break;
+            case Node.ENTITY_REFERENCE_NODE:
+                writer.writeEntityRef(node.getNodeName());
+                break;
+            default:
+                // document type and other nodes are not part of the content
+                break;
+        }
+    }
+
+    private static void writeElement(Element element, XMLStreamWriter writer, Encoding encoding)
+            throws XMLStreamException {
+        String namespaceUri = element.getNamespaceURI();
+        String localName = element.getLocalName();
+        boolean empty = !element.hasChildNodes();
+        if (namespaceUri == null || localName == null) {
+            if (empty) {
+                writer.writeEmptyElement(element.getNodeName());
+            } else {
+                writer.writeStartElement(element.getNodeName());
+            }
+        } else if (empty) {
+            writer.writeEmptyElement(nonNull(element.getPrefix()), localName, namespaceUri);
+        } else {
+            writer.writeStartElement(nonNull(element.getPrefix()), localName, namespaceUri);
+        }
+
+        NamedNodeMap attributes = element.getAttributes();
+        for (int index = 0; index < attributes.getLength(); index++) {
+            Attr attribute = (Attr) attributes.item(index);
+            if (XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attribute.getNamespaceURI())) {
+                String prefix = attribute.getPrefix() == null ? XMLConstants.DEFAULT_NS_PREFIX : attribute.getLocalName();
+                writer.writeNamespace(prefix, attribute.getValue());
+            }
+        }
+
+        if (namespaceUri != null && localName != null) {
+            String prefix = nonNull(element.getPrefix());
+            if (!namespaceUri.equals(writer.getNamespaceContext().getNamespaceURI(prefix))) {
+                writer.writeNamespace(prefix, namespaceUri);
+            }
+        }
+
+        for (int index = 0; index < attributes.getLength(); index++) {
+            Attr attribute = (Attr) attributes.item(index);
+            String attributeNamespaceUri = attribute.getNamespaceURI();
+            if (XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attributeNamespaceUri)) {
+                continue;
+            }
+
+            if (attributeNamespaceUri == null || attribute.getLocalName() == null) {
+                writer.writeAttribute(attribute.getName(), attribute.getValue());
+            } else {
+                writer.writeAttribute(nonNull(attribute.getPrefix()),
+                                      attributeNamespaceUri,
+                                      attribute.getLocalName(),
+                                      attribute.getValue());
+            }
+        }
+
+        if (!empty) {
+            writeChildren(element, writer, encoding);
+            writer.writeEndElement();
+        }
     }
 
-    private static LSSerializer getSerializer() {
+    private static void writeChildren(Node parent, XMLStreamWriter writer, Encoding encoding)
+            throws XMLStreamException {
+        for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+            writeToXmlStreamWriter(child, writer, encoding);
+        }
+    }
+
+    private static String nonNull(String prefix) {
+        return prefix == null ? XMLConstants.DEFAULT_NS_PREFIX : prefix;
+    }
+
+    private static DocumentBuilder createDocumentBuilder() {
+        try {
+            synchronized (DOCUMENT_BUILDER_FACTORY) {
+                return DOCUMENT_BUILDER_FACTORY.newDocumentBuilder();
+            }
+        } catch (ParserConfigurationException exception) {
+            throw new AssertionError(exception);
+        }
+    }
+
+    private static LSSerializer createSerializer() {
         LSSerializer xmlSerializer = DOM_IMPLEMENTATION.createLSSerializer();
 
         if (xmlSerializer.getDomConfig().canSetParameter(FORMAT_PRETTY_PRINT_DOM_CONFIG_PARAMETER, Boolean.TRUE)) {
@@ -117,4 +286,14 @@ public final class DomUtils {
         return xmlSerializer;
     }
 
+    private static final class ReusableByteArrayOutputStream extends ByteArrayOutputStream {
+        public ReusableByteArrayOutputStream() {
+            super(INITIAL_BUFFER_SIZE);
+        }
+
+        public int capacity() {
+            return buf.length;
+        }
+    }
+
 }
\ No newline at end of file
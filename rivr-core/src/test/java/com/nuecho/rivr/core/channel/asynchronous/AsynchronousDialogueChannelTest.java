@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.channel.asynchronous;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+import org.junit.*;
+import org.slf4j.*;
+
+import com.nuecho.rivr.core.channel.*;
+import com.nuecho.rivr.core.channel.synchronous.*;
+import com.nuecho.rivr.core.channel.synchronous.step.*;
+import com.nuecho.rivr.core.dialogue.*;
+import com.nuecho.rivr.core.util.*;
+
+/**
+ * @author Nu Echo Inc.
+ */
+public final class AsynchronousDialogueChannelTest {
+
+    private static final int TURNS = 1000;
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private ExecutorService mWorkerExecutor;
+    private ScheduledExecutorService mTimeoutScheduler;
+
+    @Before
+    public void setUp() {
+        mWorkerExecutor = Executors.newSingleThreadExecutor();
+        mTimeoutScheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        mWorkerExecutor.shutdownNow();
+        mTimeoutScheduler.shutdownNow();
+    }
+
+    @Test(timeout = 60000)
+    public void asyncDialoguesShareASingleWorker() throws Exception {
+        AsynchronousDialogueChannel<Input, Output, First, Last, Context> first = createChannel();
+        AsynchronousDialogueChannel<Input, Output, First, Last, Context> second = createChannel();
+        Step<Output, Last> firstStep = get(first.start(new CountingDialogue(), new First(), new Context(first)));
+        Step<Output, Last> secondStep = get(second.start(new CountingDialogue(), new First(), new Context(second)));
+
+        int turns = 0;
+        while (firstStep instanceof OutputTurnStep) {
+            firstStep = get(first.doTurn(new Input(getValue(firstStep) + 1)));
+            secondStep = get(second.doTurn(new Input(getValue(secondStep) + 1)));
+            turns++;
+        }
+
+        assertEquals(TURNS, turns);
+        assertEquals(TURNS * (TURNS + 1) / 2, ((LastTurnStep<Output, Last>) firstStep).getLastTurn().mValue);
+        assertEquals(TURNS * (TURNS + 1) / 2, ((LastTurnStep<Output, Last>) secondStep).getLastTurn().mValue);
+    }
+
+    @Test(timeout = 60000)
+    public void blockingDialogueReceivesTurnsWhileWorkersAreBusy() throws Exception {
+        final CountDownLatch workerRelease = new CountDownLatch(1);
+        mWorkerExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    workerRelease.await();
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        try {
+            AsynchronousDialogueChannel<Input, Output, First, Last, Context> channel = createChannel();
+            Dialogue<Input, Output, First, Last, Context> dialogue = new Dialogue<Input, Output, First, Last, Context>() {
+                @Override
+                public Last run(First firstTurn, Context context) throws Exception {
+                    Input input = context.getDialogueChannel().doTurn(new Output(0), null);
+                    return new Last(input.mValue);
+                }
+            };
+
+            Step<Output, Last> step = get(channel.start(dialogue, new First(), new Context(channel)));
+            assertEquals(0, getValue(step));
+            step = get(channel.doTurn(new Input(42)));
+            assertEquals(42, ((LastTurnStep<Output, Last>) step).getLastTurn().mValue);
+        } finally {
+            workerRelease.countDown();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void dialogueTimesOutWaitingForController() throws Exception {
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        AsynchronousDialogueChannel<Input, Output, First, Last, Context> channel = createChannel();
+        channel.setDefaultReceiveFromControllerTimeout(Duration.parse("100ms"));
+
+        Step<Output, Last> step = get(channel.start(new FailureRecordingDialogue(failure),
+                                                    new First(),
+                                                    new Context(channel)));
+        assertTrue(step instanceof OutputTurnStep);
+
+        channel.join(Duration.seconds(TIMEOUT_SECONDS));
+        assertTrue(channel.isDialogueDone());
+        assertTrue(failure.get() instanceof Timeout);
+    }
+
+    @Test(timeout = 10000)
+    public void stopAbortsWaitingDialogue() throws Exception {
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        AsynchronousDialogueChannel<Input, Output, First, Last, Context> channel = createChannel();
+
+        Step<Output, Last> step = get(channel.start(new FailureRecordingDialogue(failure),
+                                                    new First(),
+                                                    new Context(channel)));
+        assertTrue(step instanceof OutputTurnStep);
+
+        channel.stop();
+        channel.join(Duration.seconds(TIMEOUT_SECONDS));
+        assertTrue(channel.isDialogueDone());
+        assertTrue(failure.get() instanceof DialogueChannelStopped);
+    }
+
+    private AsynchronousDialogueChannel<Input, Output, First, Last, Context> createChannel() {
+        return new AsynchronousDialogueChannel<Input, Output, First, Last, Context>(mWorkerExecutor, mTimeoutScheduler);
+    }
+
+    private static Step<Output, Last> get(CompletionStage<Step<Output, Last>> step) throws Exception {
+        return step.toCompletableFuture().get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private static int getValue(Step<Output, Last> step) {
+        return ((OutputTurnStep<Output, Last>) step).getOutputTurn().mValue;
+    }
+
+    /**
+     * Sends {@link #TURNS} turns and returns the sum of the received values.
+     */
+    private static final class CountingDialogue implements AsyncDialogue<Input, Output, First, Last, Context> {
+
+        @Override
+        public CompletionStage<Last> runAsync(First firstTurn, Context context) {
+            return doTurns(0, 0, context);
+        }
+
+        private CompletionStage<Last> doTurns(final int index, final int sum, final Context context) {
+            if (index == TURNS) return CompletableFuture.completedFuture(new Last(sum));
+
+            return DialogueUtils.doTurnAsync(new Output(index), context)
+                                .thenCompose(new Function<Input, CompletionStage<Last>>() {
+                                    @Override
+                                    public CompletionStage<Last> apply(Input input) {
+                                        return doTurns(index + 1, sum + input.mValue, context);
+                                    }
+                                });
+        }
+
+        @Override
+        public Last run(First firstTurn, Context context) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Sends one turn and records why no input turn was received.
+     */
+    private static final class FailureRecordingDialogue implements AsyncDialogue<Input, Output, First, Last, Context> {
+        private final AtomicReference<Throwable> mFailure;
+
+        FailureRecordingDialogue(AtomicReference<Throwable> failure) {
+            mFailure = failure;
+        }
+
+        @Override
+        public CompletionStage<Last> runAsync(First firstTurn, Context context) {
+            return DialogueUtils.doTurnAsync(new Output(0), context).handle(new BiFunction<Input, Throwable, Last>() {
+                @Override
+                public Last apply(Input input, Throwable throwable) {
+                    mFailure.set(throwable);
+                    return new Last(0);
+                }
+            });
+        }
+
+        @Override
+        public Last run(First firstTurn, Context context) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static final class Input implements InputTurn {
+        private final int mValue;
+
+        Input(int value) {
+            mValue = value;
+        }
+    }
+
+    private static final class Output implements OutputTurn {
+        private final int mValue;
+
+        Output(int value) {
+            mValue = value;
+        }
+    }
+
+    private static final class First implements FirstTurn {}
+
+    private static final class Last implements LastTurn {
+        private final int mValue;
+
+        Last(int value) {
+            mValue = value;
+        }
+    }
+
+    private static final class Context implements DialogueContext<Input, Output> {
+        private final DialogueChannel<Input, Output> mDialogueChannel;
+
+        Context(DialogueChannel<Input, Output> dialogueChannel) {
+            mDialogueChannel = dialogueChannel;
+        }
+
+        @Override
+        public DialogueChannel<Input, Output> getDialogueChannel() {
+            return mDialogueChannel;
+        }
+
+        @Override
+        public Logger getLogger() {
+            return LoggerFactory.getLogger(AsynchronousDialogueChannelTest.class);
+        }
+
+        @Override
+        public String getDialogueId() {
+            return "dialogue";
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.channel.synchronous;
+
+import java.lang.management.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.*;
+import org.slf4j.helpers.*;
+
+import com.nuecho.rivr.core.channel.*;
+import com.nuecho.rivr.core.channel.synchronous.executor.*;
+import com.nuecho.rivr.core.channel.synchronous.step.*;
+import com.nuecho.rivr.core.dialogue.*;
+import com.nuecho.rivr.core.util.*;
+
+/**
+ * Measures the heap retained by each dialogue parked in
+ * {@link DialogueChannel#doTurn(OutputTurn, Duration)}, waiting for the next
+ * input turn, for each {@link DialogueExecutor}. One operation starts
+ * {@link #mDialogues} dialogues up to their first output turn, as the servlet
+ * does for new calls, and measures the used heap once they are all parked.
+ * The dialogues are then stopped. The retained heap per parked dialogue,
+ * including its channel, is reported as the
+ * <code>heapBytesPerDialogue</code> secondary result. As for all event
+ * counters, JMH sums it over the measurement iterations: divide it by the
+ * iteration count.
+ * <p>
+ * The stacks of platform threads are not on the heap: their memory, reserved
+ * according to <code>-Xss</code> and committed as they grow, comes in
+ * addition to this figure. The stacks of parked virtual threads are on the
+ * heap and are included. The <code>virtual</code> executor requires Java 21
+ * or later.
+ * <p>
+ * Run with <code>gradle :rivr-core:jmh -Pbenchmark=ParkedDialogueFootprint</code>.
+ *
+ * @author Nu Echo Inc.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+// explicit collections do not report the used heap reliably with the serial collector
+@Fork(value = 1, jvmArgsAppend = "-XX:+UseG1GC")
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class ParkedDialogueFootprintBenchmark {
+
+    private static final Duration TIMEOUT = Duration.seconds(60);
+    private static final Duration KEEP_ALIVE = Duration.minutes(10);
+    private static final int MAXIMUM_COLLECTIONS = 20;
+    private static final long SETTLE_DELAY_MILLISECONDS = 50;
+
+    // CHECKSTYLE.OFF: JMH parameters must be public fields
+    @Param({"1000", "10000"})
+    public int mDialogues;
+
+    @Param({"thread", "pooled", "virtual"})
+    public String mExecutor;
+    // CHECKSTYLE.ON
+
+    private DialogueExecutor mDialogueExecutor;
+
+    @Setup(Level.Trial)
+    public void createExecutor() {
+        if ("thread".equals(mExecutor)) {
+            mDialogueExecutor = new ThreadDialogueExecutor();
+        } else if ("pooled".equals(mExecutor)) {
+            mDialogueExecutor = new PooledDialogueExecutor(mDialogues, KEEP_ALIVE);
+        } else if ("virtual".equals(mExecutor)) {
+            mDialogueExecutor = new VirtualThreadDialogueExecutor();
+        } else throw new IllegalArgumentException("Unknown executor: " + mExecutor);
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdownExecutor() {
+        mDialogueExecutor.shutdown();
+    }
+
+    @Benchmark
+    public void parkDialogues(Footprint footprint) throws Exception {
+        List<SynchronousDialogueChannel<Input, Output, First, Last, Context>> channels = new ArrayList<SynchronousDialogueChannel<Input, Output, First, Last, Context>>(mDialogues);
+        Dialogue<Input, Output, First, Last, Context> dialogue = new ParkingDialogue();
+
+        long usedHeapBefore = getUsedHeap();
+        try {
+            for (int index = 0; index < mDialogues; index++) {
+                SynchronousDialogueChannel<Input, Output, First, Last, Context> channel = new SynchronousDialogueChannel<Input, Output, First, Last, Context>();
+                channel.setDialogueExecutor(mDialogueExecutor);
+                channels.add(channel);
+                Step<Output, Last> step = channel.start(dialogue, new First(), TIMEOUT, new Context(channel, index));
+                if (!(step instanceof OutputTurnStep)) throw new IllegalStateException("Dialogue is not parked.");
+            }
+            footprint.add((getUsedHeap() - usedHeapBefore) / mDialogues);
+        } finally {
+            for (SynchronousDialogueChannel<Input, Output, First, Last, Context> channel : channels) {
+                channel.stop(TIMEOUT);
+            }
+        }
+    }
+
+    // collects until the used heap stops decreasing, e.g. while the threads of the previous operation terminate
+    private static long getUsedHeap() throws InterruptedException {
+        MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+        memoryBean.gc();
+        long usedHeap = memoryBean.getHeapMemoryUsage().getUsed();
+        for (int attempt = 0; attempt < MAXIMUM_COLLECTIONS; attempt++) {
+            Thread.sleep(SETTLE_DELAY_MILLISECONDS);
+            memoryBean.gc();
+            long previousUsedHeap = usedHeap;
+            usedHeap = memoryBean.getHeapMemoryUsage().getUsed();
+            if (usedHeap >= previousUsedHeap) return usedHeap;
+        }
+        return usedHeap;
+    }
+
+    /**
+     * Retained heap per parked dialogue.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        private long mHeapBytesPerDialogue;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            mHeapBytesPerDialogue = 0;
+        }
+
+        // reported by JMH
+        public long heapBytesPerDialogue() {
+            return mHeapBytesPerDialogue;
+        }
+
+        void add(long heapBytesPerDialogue) {
+            mHeapBytesPerDialogue += heapBytesPerDialogue;
+        }
+    }
+
+    // parks in doTurn until the channel is stopped
+    private static final class ParkingDialogue implements Dialogue<Input, Output, First, Last, Context> {
+        @Override
+        public Last run(First firstTurn, Context context) throws Exception {
+            try {
+                context.getDialogueChannel().doTurn(new Output(), Duration.ZERO);
+            } catch (DialogueChannelStopped exception) {
+                // benchmark iteration ended
+            }
+            return new Last();
+        }
+    }
+
+    private static final class Input implements InputTurn {}
+
+    private static final class Output implements OutputTurn {}
+
+    private static final class First implements FirstTurn {}
+
+    private static final class Last implements LastTurn {}
+
+    private static final class Context implements DialogueContext<Input, Output> {
+        private final DialogueChannel<Input, Output> mDialogueChannel;
+        private final String mDialogueId;
+
+        Context(DialogueChannel<Input, Output> dialogueChannel, int index) {
+            mDialogueChannel = dialogueChannel;
+            mDialogueId = "dialogue " + index;
+        }
+
+        @Override
+        public DialogueChannel<Input, Output> getDialogueChannel() {
+            return mDialogueChannel;
+        }
+
+        @Override
+        public Logger getLogger() {
+            return NOPLogger.NOP_LOGGER;
+        }
+
+        @Override
+        public String getDialogueId() {
+            return mDialogueId;
+        }
+    }
+}
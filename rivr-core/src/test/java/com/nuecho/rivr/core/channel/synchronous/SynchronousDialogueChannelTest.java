@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.channel.synchronous;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.*;
+
+import org.junit.*;
+import org.slf4j.*;
+
+import com.nuecho.rivr.core.channel.*;
+import com.nuecho.rivr.core.channel.synchronous.step.*;
+import com.nuecho.rivr.core.dialogue.*;
+import com.nuecho.rivr.core.util.*;
+
+/**
+ * @author Nu Echo Inc.
+ */
+public final class SynchronousDialogueChannelTest {
+
+    private static final int TURNS = 10000;
+
+    private SynchronousDialogueChannel<Input, Output, First, Last, Context> mChannel;
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mChannel = new SynchronousDialogueChannel<Input, Output, First, Last, Context>();
+        mContext = new Context(mChannel);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        mChannel.stop(Duration.seconds(5));
+    }
+
+    @Test(timeout = 60000)
+    public void runsManyTurns() throws Exception {
+        Dialogue<Input, Output, First, Last, Context> dialogue = new Dialogue<Input, Output, First, Last, Context>() {
+            @Override
+            public Last run(First firstTurn, Context context) throws Exception {
+                int sum = 0;
+                for (int index = 0; index < TURNS; index++) {
+                    sum += context.getDialogueChannel().doTurn(new Output(index), null).mValue;
+                }
+                return new Last(sum);
+            }
+        };
+
+        Step<Output, Last> step = mChannel.start(dialogue, new First(), Duration.seconds(5), mContext);
+        int turns = 0;
+        while (step instanceof OutputTurnStep) {
+            Output outputTurn = ((OutputTurnStep<Output, Last>) step).getOutputTurn();
+            assertEquals(turns, outputTurn.mValue);
+            step = mChannel.doTurn(new Input(outputTurn.mValue + 1), Duration.seconds(5));
+            turns++;
+        }
+
+        assertEquals(TURNS, turns);
+        assertEquals(TURNS * (TURNS + 1) / 2, ((LastTurnStep<Output, Last>) step).getLastTurn().mValue);
+    }
+
+    @Test(timeout = 10000)
+    public void controllerTimesOutWaitingForDialogue() throws Exception {
+        Dialogue<Input, Output, First, Last, Context> dialogue = new Dialogue<Input, Output, First, Last, Context>() {
+            @Override
+            public Last run(First firstTurn, Context context) throws Exception {
+                context.getDialogueChannel().doTurn(new Output(0), null);
+                Thread.sleep(5000);
+                return new Last(0);
+            }
+        };
+
+        mChannel.start(dialogue, new First(), Duration.seconds(5), mContext);
+        try {
+            mChannel.doTurn(new Input(0), Duration.parse("100ms"));
+            fail("Timeout expected.");
+        } catch (Timeout exception) {
+            // expected
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void dialogueTimesOutWaitingForController() throws Exception {
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Dialogue<Input, Output, First, Last, Context> dialogue = new Dialogue<Input, Output, First, Last, Context>() {
+            @Override
+            public Last run(First firstTurn, Context context) throws Exception {
+                try {
+                    context.getDialogueChannel().doTurn(new Output(0), Duration.parse("100ms"));
+                } catch (Throwable throwable) {
+                    failure.set(throwable);
+                }
+                return new Last(0);
+            }
+        };
+
+        mChannel.start(dialogue, new First(), Duration.seconds(5), mContext);
+        mChannel.join(Duration.seconds(5));
+        assertTrue(failure.get() instanceof Timeout);
+    }
+
+    @Test(timeout = 10000)
+    public void stopAbortsWaitingDialogue() throws Exception {
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Dialogue<Input, Output, First, Last, Context> dialogue = new Dialogue<Input, Output, First, Last, Context>() {
+            @Override
+            public Last run(First firstTurn, Context context) throws Exception {
+                try {
+                    context.getDialogueChannel().doTurn(new Output(0), Duration.ZERO);
+                } catch (Throwable throwable) {
+                    failure.set(throwable);
+                }
+                return new Last(0);
+            }
+        };
+
+        Step<Output, Last> step = mChannel.start(dialogue, new First(), Duration.seconds(5), mContext);
+        assertTrue(step instanceof OutputTurnStep);
+
+        mChannel.stop(Duration.seconds(5));
+        assertTrue(mChannel.isDialogueDone());
+        assertTrue(failure.get() instanceof DialogueChannelStopped);
+    }
+
+    private static final class Input implements InputTurn {
+        private final int mValue;
+
+        Input(int value) {
+            mValue = value;
+        }
+    }
+
+    private static final class Output implements OutputTurn {
+        private final int mValue;
+
+        Output(int value) {
+            mValue = value;
+        }
+    }
+
+    private static final class First implements FirstTurn {}
+
+    private static final class Last implements LastTurn {
+        private final int mValue;
+
+        Last(int value) {
+            mValue = value;
+        }
+    }
+
+    private static final class Context implements DialogueContext<Input, Output> {
+        private final DialogueChannel<Input, Output> mDialogueChannel;
+
+        Context(DialogueChannel<Input, Output> dialogueChannel) {
+            mDialogueChannel = dialogueChannel;
+        }
+
+        @Override
+        public DialogueChannel<Input, Output> getDialogueChannel() {
+            return mDialogueChannel;
+        }
+
+        @Override
+        public Logger getLogger() {
+            return LoggerFactory.getLogger(SynchronousDialogueChannelTest.class);
+        }
+
+        @Override
+        public String getDialogueId() {
+            return "dialogue";
+        }
+    }
+}
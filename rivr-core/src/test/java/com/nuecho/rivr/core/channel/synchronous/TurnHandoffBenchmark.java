@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.channel.synchronous;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compares the {@link TurnHandoff} with the fair {@link SynchronousQueue} pair
+ * it replaced in the {@link SynchronousDialogueChannel}. Each session has a
+ * controller thread and a dialogue thread exchanging turns; one operation is
+ * {@value #TURNS} turns in every session, all sessions running concurrently.
+ * <p>
+ * Run with <code>gradle :rivr-core:jmh</code>.
+ *
+ * @author Nu Echo Inc.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TurnHandoffBenchmark {
+
+    private static final int TURNS = 10;
+    private static final long TIMEOUT_SECONDS = 60;
+    private static final long THREAD_STACK_SIZE = 256 * 1024;
+
+    // CHECKSTYLE.OFF: JMH parameters must be public fields
+    @Param({"1", "1000", "10000"})
+    public int mSessions;
+
+    @Param({"handoff", "queue"})
+    public String mImplementation;
+    // CHECKSTYLE.ON
+
+    private final List<Thread> mThreads = new ArrayList<Thread>();
+    private final Semaphore mStart = new Semaphore(0);
+    private volatile CountDownLatch mDone;
+
+    @Setup(Level.Trial)
+    public void startSessions() {
+        for (int session = 0; session < mSessions; session++) {
+            Exchanger toDialogue = createExchanger();
+            Exchanger toController = createExchanger();
+            startThread(new Dialogue(toDialogue, toController), "dialogue " + session);
+            startThread(new Controller(toDialogue, toController), "controller " + session);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopSessions() throws InterruptedException {
+        for (Thread thread : mThreads) {
+            thread.interrupt();
+        }
+        for (Thread thread : mThreads) {
+            thread.join();
+        }
+        mThreads.clear();
+    }
+
+    @Benchmark
+    public void turns() throws InterruptedException {
+        mDone = new CountDownLatch(mSessions);
+        mStart.release(mSessions);
+        mDone.await();
+    }
+
+    private Exchanger createExchanger() {
+        if ("handoff".equals(mImplementation)) return new HandoffExchanger();
+        return new QueueExchanger();
+    }
+
+    private void startThread(Runnable runnable, String name) {
+        Thread thread = new Thread(null, runnable, name, THREAD_STACK_SIZE);
+        thread.setDaemon(true);
+        thread.start();
+        mThreads.add(thread);
+    }
+
+    private final class Controller implements Runnable {
+        private final Exchanger mToDialogue;
+        private final Exchanger mToController;
+
+        Controller(Exchanger toDialogue, Exchanger toController) {
+            mToDialogue = toDialogue;
+            mToController = toController;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    mStart.acquire();
+                    for (int turn = 0; turn < TURNS; turn++) {
+                        mToDialogue.send(turn);
+                        mToController.receive();
+                    }
+                    mDone.countDown();
+                }
+            } catch (InterruptedException exception) {
+                // trial ended
+            }
+        }
+    }
+
+    private static final class Dialogue implements Runnable {
+        private final Exchanger mToDialogue;
+        private final Exchanger mToController;
+
+        Dialogue(Exchanger toDialogue, Exchanger toController) {
+            mToDialogue = toDialogue;
+            mToController = toController;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    mToController.send(mToDialogue.receive() + 1);
+                }
+            } catch (InterruptedException exception) {
+                // trial ended
+            }
+        }
+    }
+
+    private interface Exchanger {
+        void send(Integer item) throws InterruptedException;
+
+        Integer receive() throws InterruptedException;
+    }
+
+    private static final class HandoffExchanger implements Exchanger {
+        private final TurnHandoff<Integer> mHandoff = new TurnHandoff<Integer>("benchmark");
+
+        @Override
+        public void send(Integer item) throws InterruptedException {
+            if (!mHandoff.offer(item, TIMEOUT_SECONDS, TimeUnit.SECONDS)) throw new IllegalStateException("Timeout");
+        }
+
+        @Override
+        public Integer receive() throws InterruptedException {
+            Integer item = mHandoff.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            if (item == null) throw new IllegalStateException("Timeout");
+            return item;
+        }
+    }
+
+    private static final class QueueExchanger implements Exchanger {
+        private final SynchronousQueue<Integer> mQueue = new SynchronousQueue<Integer>(true);
+
+        @Override
+        public void send(Integer item) throws InterruptedException {
+            if (!mQueue.offer(item, TIMEOUT_SECONDS, TimeUnit.SECONDS)) throw new IllegalStateException("Timeout");
+        }
+
+        @Override
+        public Integer receive() throws InterruptedException {
+            Integer item = mQueue.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            if (item == null) throw new IllegalStateException("Timeout");
+            return item;
+        }
+    }
+}
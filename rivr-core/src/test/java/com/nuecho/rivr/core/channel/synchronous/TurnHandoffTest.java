@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.channel.synchronous;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.junit.*;
+
+/**
+ * @author Nu Echo Inc.
+ */
+public final class TurnHandoffTest {
+
+    private static final int ROUND_TRIPS = 10000;
+    private static final int PAIRS = 100;
+
+    @Test(timeout = 30000)
+    public void pingPongPreservesOrder() throws Exception {
+        TurnHandoff<Integer> requests = new TurnHandoff<Integer>("requests");
+        TurnHandoff<Integer> responses = new TurnHandoff<Integer>("responses");
+        Thread echo = startEcho(requests, responses, ROUND_TRIPS);
+
+        for (int index = 0; index < ROUND_TRIPS; index++) {
+            assertTrue(requests.offer(index, 5, TimeUnit.SECONDS));
+            assertEquals(Integer.valueOf(index + 1), responses.poll(5, TimeUnit.SECONDS));
+        }
+
+        echo.join(5000);
+        assertFalse(echo.isAlive());
+    }
+
+    @Test(timeout = 60000)
+    public void concurrentPairsDoNotInterfere() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(PAIRS);
+        List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+        final int roundTrips = ROUND_TRIPS / 10;
+        for (int pair = 0; pair < PAIRS; pair++) {
+            final TurnHandoff<Integer> requests = new TurnHandoff<Integer>("requests " + pair);
+            final TurnHandoff<Integer> responses = new TurnHandoff<Integer>("responses " + pair);
+            startEcho(requests, responses, roundTrips);
+            results.add(executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    int sum = 0;
+                    for (int index = 0; index < roundTrips; index++) {
+                        requests.offer(index, 10, TimeUnit.SECONDS);
+                        sum += responses.poll(10, TimeUnit.SECONDS) - index;
+                    }
+                    return sum;
+                }
+            }));
+        }
+
+        for (Future<Integer> result : results) {
+            assertEquals(Integer.valueOf(roundTrips), result.get());
+        }
+        executor.shutdown();
+    }
+
+    @Test(timeout = 10000)
+    public void offerTimesOutWithoutReceiver() throws Exception {
+        TurnHandoff<String> handoff = new TurnHandoff<String>("handoff");
+        long start = System.nanoTime();
+        assertFalse(handoff.offer("item", 100, TimeUnit.MILLISECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+
+        // the item of the timed-out offer must not be received afterward
+        assertNull(handoff.poll(50, TimeUnit.MILLISECONDS));
+    }
+
+    @Test(timeout = 10000)
+    public void pollTimesOutWithoutSender() throws Exception {
+        TurnHandoff<String> handoff = new TurnHandoff<String>("handoff");
+        long start = System.nanoTime();
+        assertNull(handoff.poll(100, TimeUnit.MILLISECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+
+        // the timed-out receiver must not take the next item
+        assertFalse(handoff.offer("item", 50, TimeUnit.MILLISECONDS));
+    }
+
+    @Test(timeout = 10000)
+    public void zeroTimeoutWaitsForPeer() throws Exception {
+        final TurnHandoff<String> handoff = new TurnHandoff<String>("handoff");
+        Thread sender = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(200);
+                    handoff.offer("item", 0, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        sender.start();
+        assertEquals("item", handoff.poll(0, TimeUnit.MILLISECONDS));
+    }
+
+    @Test(timeout = 10000)
+    public void interruptionAbortsWaitingReceiver() throws Exception {
+        final TurnHandoff<String> handoff = new TurnHandoff<String>("handoff");
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread receiver = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    handoff.poll(0, TimeUnit.MILLISECONDS);
+                } catch (Throwable throwable) {
+                    failure.set(throwable);
+                }
+            }
+        };
+        receiver.start();
+        Thread.sleep(100);
+        receiver.interrupt();
+        receiver.join(5000);
+
+        assertTrue(failure.get() instanceof InterruptedException);
+        assertFalse(handoff.offer("item", 50, TimeUnit.MILLISECONDS));
+    }
+
+    private static Thread startEcho(final TurnHandoff<Integer> requests,
+                                    final TurnHandoff<Integer> responses,
+                                    final int roundTrips) {
+        Thread echo = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    for (int index = 0; index < roundTrips; index++) {
+                        Integer request = requests.poll(10, TimeUnit.SECONDS);
+                        responses.offer(request + 1, 10, TimeUnit.SECONDS);
+                    }
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        echo.setDaemon(true);
+        echo.start();
+        return echo;
+    }
+}
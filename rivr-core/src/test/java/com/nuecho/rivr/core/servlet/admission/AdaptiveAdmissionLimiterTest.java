@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.servlet.admission;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.*;
+
+import org.junit.*;
+
+import com.nuecho.rivr.core.servlet.timing.*;
+import com.nuecho.rivr.core.util.*;
+
+/**
+ * @author Nu Echo Inc.
+ */
+public final class AdaptiveAdmissionLimiterTest {
+
+    private static final int MAXIMUM_DIALOGUES = 10;
+    private static final int SAMPLE_SIZE = 5;
+
+    private DialogueAdmissionController mAdmissionController;
+    private AdaptiveAdmissionLimiter mLimiter;
+
+    @Before
+    public void setUp() throws Exception {
+        mAdmissionController = new DialogueAdmissionController(MAXIMUM_DIALOGUES, 0, Duration.ZERO);
+        mLimiter = new AdaptiveAdmissionLimiter(mAdmissionController, Duration.milliseconds(100), 2);
+        mLimiter.setSampleSize(SAMPLE_SIZE);
+        mLimiter.setBackoffRatio(0.5);
+        for (int index = 0; index < MAXIMUM_DIALOGUES; index++) {
+            assertTrue(mAdmissionController.admit(0));
+        }
+    }
+
+    @Test
+    public void limitIsLoweredToAFractionOfTheRunningDialogues() {
+        recordWindow(200, 0);
+
+        assertEquals(5, mLimiter.getLimit());
+        assertEquals(5, mAdmissionController.getMaximumDialogues());
+        assertEquals(1, mLimiter.getDecreaseCount());
+    }
+
+    @Test
+    public void limitIsNotAdjustedBeforeTheWindowIsComplete() {
+        for (int index = 0; index < SAMPLE_SIZE - 1; index++) {
+            mLimiter.onTurn(createTurnTimings(200, 0));
+        }
+
+        assertEquals(MAXIMUM_DIALOGUES, mLimiter.getLimit());
+        assertEquals(0, mLimiter.getLatency());
+    }
+
+    @Test
+    public void limitIsRaisedByOneWhenTheDialoguesUseHalfOfIt() {
+        recordWindow(200, 0);
+        recordWindow(10, 0);
+
+        assertEquals(6, mLimiter.getLimit());
+        assertEquals(1, mLimiter.getIncreaseCount());
+
+        for (int index = 0; index < MAXIMUM_DIALOGUES; index++) {
+            mAdmissionController.release();
+        }
+        recordWindow(10, 0);
+        assertEquals(6, mLimiter.getLimit());
+    }
+
+    @Test
+    public void limitNeverGoesBelowTheMinimum() {
+        for (int window = 0; window < 5; window++) {
+            recordWindow(200, 0);
+        }
+
+        assertEquals(2, mLimiter.getLimit());
+    }
+
+    @Test
+    public void onlyDialogueProcessingIsMeasured() {
+        recordWindow(10, 10000);
+
+        assertEquals(MAXIMUM_DIALOGUES, mLimiter.getLimit());
+        assertEquals(0, mLimiter.getDecreaseCount());
+        assertTrue(mLimiter.getLatency() < TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    private void recordWindow(long dialogueProcessingMilliseconds, long commitMilliseconds) {
+        for (int index = 0; index < SAMPLE_SIZE; index++) {
+            mLimiter.onTurn(createTurnTimings(dialogueProcessingMilliseconds, commitMilliseconds));
+        }
+    }
+
+    private static TurnTimings createTurnTimings(long dialogueProcessingMilliseconds, long commitMilliseconds) {
+        long[] times = new long[TurnPhase.values().length];
+        times[TurnPhase.DIALOGUE_PROCESSING.ordinal()] = TimeUnit.MILLISECONDS.toNanos(dialogueProcessingMilliseconds);
+        times[TurnPhase.COMMIT.ordinal()] = TimeUnit.MILLISECONDS.toNanos(commitMilliseconds);
+        return new TurnTimings("dialogue", "Message", times);
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.servlet.admission;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.*;
+
+import org.junit.*;
+import org.slf4j.helpers.*;
+
+import com.nuecho.rivr.core.channel.*;
+import com.nuecho.rivr.core.dialogue.*;
+import com.nuecho.rivr.core.servlet.session.*;
+import com.nuecho.rivr.core.util.*;
+
+/**
+ * @author Nu Echo Inc.
+ */
+public final class DialogueAdmissionControllerTest {
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private final ExecutorService mExecutor = Executors.newCachedThreadPool();
+
+    @After
+    public void shutdownExecutor() {
+        mExecutor.shutdownNow();
+    }
+
+    @Test(timeout = 60000)
+    public void releasedPlaceGoesToTheWaiterWithTheHighestPriority() throws Exception {
+        DialogueAdmissionController admissionController = new DialogueAdmissionController(1, 2, Duration.ZERO);
+        assertTrue(admissionController.admit(0));
+
+        Future<Boolean> lowPriority = admitLater(admissionController, 1, 1);
+        Future<Boolean> highPriority = admitLater(admissionController, 5, 2);
+
+        admissionController.release();
+        assertTrue(highPriority.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertFalse(lowPriority.isDone());
+        assertEquals(1, admissionController.getActiveDialogues());
+
+        admissionController.release();
+        assertTrue(lowPriority.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(1, admissionController.getActiveDialogues());
+        assertEquals(0, admissionController.getWaitingDialogues());
+    }
+
+    @Test(timeout = 60000)
+    public void dialoguesAreRefusedWhenNoPlaceIsReleased() throws Exception {
+        DialogueAdmissionController admissionController = new DialogueAdmissionController(1,
+                                                                                           1,
+                                                                                           Duration.milliseconds(50));
+        assertTrue(admissionController.admit(0));
+        assertFalse(admissionController.admit(0));
+
+        Future<Boolean> waiting = admitLater(admissionController, 0, 1);
+        assertFalse(admissionController.admit(0));
+        assertFalse(waiting.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        assertEquals(3, admissionController.getRefusedDialogues());
+        assertEquals(1, admissionController.getActiveDialogues());
+        assertEquals(0, admissionController.getWaitingDialogues());
+    }
+
+    @Test(timeout = 60000)
+    public void interruptedWaiterDoesNotKeepAPlace() throws Exception {
+        DialogueAdmissionController admissionController = new DialogueAdmissionController(1, 1, Duration.ZERO);
+        assertTrue(admissionController.admit(0));
+
+        Future<Boolean> waiting = admitLater(admissionController, 0, 1);
+        waiting.cancel(true);
+        while (admissionController.getWaitingDialogues() != 0) {
+            Thread.sleep(1);
+        }
+
+        admissionController.release();
+        assertEquals(0, admissionController.getActiveDialogues());
+        assertTrue(admissionController.admit(0));
+    }
+
+    @Test
+    public void stoppedSessionReleasesItsPlaceOnce() throws Exception {
+        DialogueAdmissionController admissionController = new DialogueAdmissionController(2, 0, Duration.ZERO);
+        SessionContainer<InputTurn, OutputTurn, FirstTurn, LastTurn, DialogueContext<InputTurn, OutputTurn>> container = new SessionContainer<InputTurn, OutputTurn, FirstTurn, LastTurn, DialogueContext<InputTurn, OutputTurn>>(NOPLogger.NOP_LOGGER,
+                                                                                                                                                                                                                                Duration.minutes(10),
+                                                                                                                                                                                                                                Duration.minutes(1),
+                                                                                                                                                                                                                                "test");
+        try {
+            Session<InputTurn, OutputTurn, FirstTurn, LastTurn, DialogueContext<InputTurn, OutputTurn>> session = new Session<InputTurn, OutputTurn, FirstTurn, LastTurn, DialogueContext<InputTurn, OutputTurn>>(container,
+                                                                                                                                                                                                                 "session");
+            container.addSession(session);
+            assertTrue(admissionController.admit(0));
+            session.setAdmissionController(admissionController);
+            assertTrue(admissionController.admit(0));
+
+            session.stop();
+            session.stop();
+            assertEquals(1, admissionController.getActiveDialogues());
+        } finally {
+            container.stop();
+        }
+    }
+
+    /**
+     * Admits a dialogue from another thread and waits until it is queued.
+     */
+    private Future<Boolean> admitLater(final DialogueAdmissionController admissionController,
+                                       final int priority,
+                                       int waitingDialogues) throws InterruptedException {
+        Future<Boolean> admitted = mExecutor.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws InterruptedException {
+                return admissionController.admit(priority);
+            }
+        });
+        while (admissionController.getWaitingDialogues() < waitingDialogues && !admitted.isDone()) {
+            Thread.sleep(1);
+        }
+        return admitted;
+    }
+}
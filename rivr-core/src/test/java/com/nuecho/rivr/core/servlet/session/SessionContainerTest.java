@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.servlet.session;
+
+import static org.junit.Assert.*;
+
+import java.lang.ref.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.junit.*;
+import org.slf4j.helpers.*;
+
+import com.nuecho.rivr.core.channel.*;
+import com.nuecho.rivr.core.dialogue.*;
+import com.nuecho.rivr.core.util.*;
+
+/**
+ * @author Nu Echo Inc.
+ */
+public final class SessionContainerTest {
+
+    private static final int SESSIONS = 50000;
+    private static final int LOOKUP_THREADS = 8;
+    private static final int LOOKUPS_PER_THREAD = 200000;
+    private static final int ACTIVE_SESSIONS = 100;
+
+    private SessionContainer<InputTurn, OutputTurn, FirstTurn, LastTurn, DialogueContext<InputTurn, OutputTurn>> mContainer;
+
+    @After
+    public void stopContainer() {
+        if (mContainer != null) {
+            mContainer.stop();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void concurrentLookupsFindAllSessions() throws Exception {
+        createContainer(Duration.minutes(10));
+        String[] sessionIds = addSessions(SESSIONS);
+
+        final AtomicInteger misses = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(LOOKUP_THREADS + 1);
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (int thread = 0; thread < LOOKUP_THREADS; thread++) {
+                futures.add(executor.submit(new Lookups(sessionIds, thread, misses)));
+            }
+
+            // sessions added and removed concurrently with the lookups
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (int index = 0; index < SESSIONS; index++) {
+                        Session<InputTurn, OutputTurn, FirstTurn, LastTurn, DialogueContext<InputTurn, OutputTurn>> session = createSession("transient-"
+                                                                                                                                            + index);
+                        mContainer.addSession(session);
+                        session.stop();
+                    }
+                    return null;
+                }
+            }));
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(0, misses.get());
+        assertEquals(SESSIONS, mContainer.getSessionIds().size());
+    }
+
+    @Test(timeout = 60000)
+    public void idleSessionsExpireWhileActiveSessionsAreKept() throws Exception {
+        createContainer(Duration.milliseconds(500));
+        final String[] sessionIds = addSessions(SESSIONS);
+
+        final AtomicBoolean done = new AtomicBoolean();
+        Thread activity = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!done.get()) {
+                    for (int index = 0; index < ACTIVE_SESSIONS; index++) {
+                        mContainer.getSession(sessionIds[index]);
+                    }
+                    try {
+                        Thread.sleep(50);
+                    } catch (InterruptedException exception) {
+                        return;
+                    }
+                }
+            }
+        });
+        activity.start();
+
+        try {
+            while (mContainer.getSessionIds().size() > ACTIVE_SESSIONS) {
+                Thread.sleep(50);
+            }
+            Thread.sleep(1000);
+        } finally {
+            done.set(true);
+            activity.join();
+        }
+
+        Collection<String> remaining = mContainer.getSessionIds();
+        assertEquals(ACTIVE_SESSIONS, remaining.size());
+        for (int index = 0; index < ACTIVE_SESSIONS; index++) {
+            assertTrue(remaining.contains(sessionIds[index]));
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void removedSessionIsNotRetainedUntilItsExpiration() throws Exception {
+        createContainer(Duration.minutes(60));
+        Session<InputTurn, OutputTurn, FirstTurn, LastTurn, DialogueContext<InputTurn, OutputTurn>> session = createSession("removed");
+        mContainer.addSession(session);
+        ReferenceQueue<Object> queue = new ReferenceQueue<Object>();
+        WeakReference<Object> reference = new WeakReference<Object>(session, queue);
+        session.stop();
+        session = null;
+
+        Reference<?> collected = null;
+        while (collected == null) {
+            System.gc();
+            collected = queue.remove(100);
+        }
+        assertSame(reference, collected);
+    }
+
+    private void createContainer(Duration sessionTimeout) {
+        mContainer = new SessionContainer<InputTurn, OutputTurn, FirstTurn, LastTurn, DialogueContext<InputTurn, OutputTurn>>(NOPLogger.NOP_LOGGER,
+                                                                                                                              sessionTimeout,
+                                                                                                                              Duration.milliseconds(50),
+                                                                                                                              "test");
+    }
+
+    private Session<InputTurn, OutputTurn, FirstTurn, LastTurn, DialogueContext<InputTurn, OutputTurn>> createSession(String sessionId) {
+        return new Session<InputTurn, OutputTurn, FirstTurn, LastTurn, DialogueContext<InputTurn, OutputTurn>>(mContainer,
+                                                                                                               sessionId);
+    }
+
+    private String[] addSessions(int count) {
+        String[] sessionIds = new String[count];
+        for (int index = 0; index < count; index++) {
+            sessionIds[index] = "session-" + index;
+            mContainer.addSession(createSession(sessionIds[index]));
+        }
+        return sessionIds;
+    }
+
+    private final class Lookups implements Callable<Void> {
+        private final String[] mSessionIds;
+        private final int mSeed;
+        private final AtomicInteger mMisses;
+
+        public Lookups(String[] sessionIds, int seed, AtomicInteger misses) {
+            mSessionIds = sessionIds;
+            mSeed = seed;
+            mMisses = misses;
+        }
+
+        @Override
+        public Void call() {
+            Random random = new Random(mSeed);
+            for (int lookup = 0; lookup < LOOKUPS_PER_THREAD; lookup++) {
+                String sessionId = mSessionIds[random.nextInt(mSessionIds.length)];
+                if (mContainer.getSession(sessionId) == null) {
+                    mMisses.incrementAndGet();
+                }
+            }
+            return null;
+        }
+    }
+}
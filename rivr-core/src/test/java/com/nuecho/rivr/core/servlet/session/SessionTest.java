@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.servlet.session;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.concurrent.*;
+
+import org.junit.*;
+import org.slf4j.helpers.*;
+
+import com.nuecho.rivr.core.channel.*;
+import com.nuecho.rivr.core.dialogue.*;
+import com.nuecho.rivr.core.servlet.*;
+import com.nuecho.rivr.core.util.*;
+
+/**
+ * @author Nu Echo Inc.
+ */
+public final class SessionTest {
+
+    private SessionContainer<InputTurn, OutputTurn, FirstTurn, LastTurn, DialogueContext<InputTurn, OutputTurn>> mContainer;
+    private Session<InputTurn, OutputTurn, FirstTurn, LastTurn, DialogueContext<InputTurn, OutputTurn>> mSession;
+
+    @Before
+    public void setUp() {
+        mContainer = new SessionContainer<InputTurn, OutputTurn, FirstTurn, LastTurn, DialogueContext<InputTurn, OutputTurn>>(NOPLogger.NOP_LOGGER,
+                                                                                                                              Duration.minutes(10),
+                                                                                                                              Duration.minutes(1),
+                                                                                                                              "test");
+        mSession = new Session<InputTurn, OutputTurn, FirstTurn, LastTurn, DialogueContext<InputTurn, OutputTurn>>(mContainer,
+                                                                                                                   "session");
+    }
+
+    @After
+    public void tearDown() {
+        mContainer.stop();
+    }
+
+    @Test
+    public void newTurnIsStarted() {
+        assertNull(mSession.startTurn("0/input"));
+        assertNull(mSession.startTurn("1/input"));
+    }
+
+    @Test
+    public void retriedTurnGetsTheResponseOfTheTurn() throws Exception {
+        assertNull(mSession.startTurn("0/input"));
+
+        Future<ServletResponseContent> turnResponse = mSession.startTurn("0/input");
+        assertNotNull(turnResponse);
+        assertFalse(turnResponse.isDone());
+
+        ServletResponseContent responseContent = new TestResponseContent();
+        mSession.setTurnResponse(responseContent);
+        assertSame(responseContent, turnResponse.get(0, TimeUnit.MILLISECONDS));
+        assertSame(responseContent, mSession.startTurn("0/input").get(0, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void failedTurnIsRepliedWithoutResponse() throws Exception {
+        assertNull(mSession.startTurn("0/input"));
+        mSession.setTurnResponse(null);
+
+        assertNull(mSession.startTurn("0/input").get(0, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void onlyTheLastTurnIsReplayed() throws Exception {
+        assertNull(mSession.startTurn("0/input"));
+        mSession.setTurnResponse(new TestResponseContent());
+        assertNull(mSession.startTurn("1/input"));
+
+        Future<ServletResponseContent> turnResponse = mSession.startTurn("1/input");
+        assertFalse(turnResponse.isDone());
+        assertNull(mSession.startTurn("0/input"));
+    }
+
+    @Test
+    public void firstResponseIsKept() throws Exception {
+        assertNull(mSession.startTurn("0/input"));
+        ServletResponseContent responseContent = new TestResponseContent();
+        mSession.setTurnResponse(responseContent);
+        mSession.setTurnResponse(null);
+
+        assertSame(responseContent, mSession.startTurn("0/input").get(0, TimeUnit.MILLISECONDS));
+    }
+
+    private static final class TestResponseContent implements ServletResponseContent {
+        @Override
+        public String getContentType() {
+            return "text/plain";
+        }
+
+        @Override
+        public void writeTo(OutputStream outputStream) throws IOException {
+            outputStream.write('x');
+        }
+
+        @Override
+        public String getContentAsString() {
+            return "x";
+        }
+
+        @Override
+        public Integer getContentLength() {
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.util;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.*;
+import org.w3c.dom.*;
+
+/**
+ * @author Nu Echo Inc.
+ */
+public final class DomUtilsTest {
+
+    private static final int DOCUMENT_VARIANTS = 50;
+    private static final int THREADS = 16;
+    private static final int DOCUMENTS_PER_THREAD = 2000;
+
+    @Test(timeout = 120000)
+    public void parallelRenderingIsByteIdentical() throws Exception {
+        final byte[][] expectedBytes = new byte[DOCUMENT_VARIANTS][];
+        final String[] expectedStrings = new String[DOCUMENT_VARIANTS];
+        for (int variant = 0; variant < DOCUMENT_VARIANTS; variant++) {
+            Document document = createDocument(variant);
+            expectedBytes[variant] = DomUtils.writeToByteArray(document, Encoding.UTF_8);
+            expectedStrings[variant] = DomUtils.writeToString(document);
+        }
+
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                final int seed = thread;
+                futures.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        start.await();
+                        Random random = new Random(seed);
+                        int mismatches = 0;
+                        for (int index = 0; index < DOCUMENTS_PER_THREAD; index++) {
+                            int variant = random.nextInt(DOCUMENT_VARIANTS);
+                            Document document = createDocument(variant);
+                            switch (index % 3) {
+                                case 0:
+                                    if (!Arrays.equals(expectedBytes[variant],
+                                                       DomUtils.writeToByteArray(document, Encoding.UTF_8))) {
+                                        mismatches++;
+                                    }
+                                    break;
+                                case 1:
+                                    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                                    DomUtils.writeToOutputStream(document, outputStream, Encoding.UTF_8);
+                                    if (!Arrays.equals(expectedBytes[variant], outputStream.toByteArray())) {
+                                        mismatches++;
+                                    }
+                                    break;
+                                default:
+                                    if (!expectedStrings[variant].equals(DomUtils.writeToString(document))) {
+                                        mismatches++;
+                                    }
+                            }
+                        }
+                        return mismatches;
+                    }
+                }));
+            }
+
+            start.countDown();
+            for (Future<Integer> future : futures) {
+                assertEquals(Integer.valueOf(0), future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static Document createDocument(int variant) {
+        Document document = DomUtils.createDocument("vxml");
+        Element root = document.getDocumentElement();
+        root.setAttribute("version", "2.1");
+        root.setAttribute("variant", Integer.toString(variant));
+        DomUtils.appendNewComment(root, "document " + variant);
+        for (int index = 0; index <= variant % 10; index++) {
+            Element form = DomUtils.appendNewElement(root, "form");
+            form.setAttribute("id", "form" + index);
+            Element block = DomUtils.appendNewElement(form, "block");
+            DomUtils.appendNewText(block, "Prompt " + variant + " & <" + index + "> \u00e9t\u00e9");
+            Element script = DomUtils.appendNewElement(block, "script");
+            DomUtils.appendNewCData(script, "if (a < b && c > d) { x = '" + variant + "'; }");
+        }
+        return document;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.dialogue;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import com.nuecho.rivr.core.channel.*;
+import com.nuecho.rivr.core.servlet.*;
+import com.nuecho.rivr.core.util.*;
+import com.nuecho.rivr.voicexml.servlet.*;
+import com.nuecho.rivr.voicexml.turn.input.*;
+import com.nuecho.rivr.voicexml.turn.output.*;
+
+/**
+ * {@link DialogueChannel} decorator buffering the output turns that do not need
+ * any input back from the VoiceXML platform (see
+ * {@link VoiceXmlOutputTurn#isCoalescable()}). Such turns are not sent to the
+ * platform: an empty {@link VoiceXmlInputTurn} is returned immediately to the
+ * dialogue and the turns are rendered as consecutive forms at the beginning of
+ * the document of the next turn, saving a round trip for each of them.
+ * <p>
+ * As a consequence, the events occurring while a buffered turn is executed
+ * (e.g. <code>connection.disconnect.hangup</code> or
+ * <code>error.badfetch</code>) are reported in the input turn of the next
+ * interactive turn. Also, {@link DialogueChannelListener DialogueChannelListeners}
+ * are not notified of buffered turns.
+ *
+ * @author Nu Echo Inc.
+ * @see VoiceXmlDialogueContextFactory#setTurnCoalescingEnabled(boolean)
+ * @since 1.0.13
+ */
+public class CoalescingVoiceXmlDialogueChannel implements VoiceXmlDialogueChannel {
+
+    private final DialogueChannel<VoiceXmlInputTurn, VoiceXmlOutputTurn> mDialogueChannel;
+    private final List<VoiceXmlOutputTurn> mPendingTurns = new ArrayList<VoiceXmlOutputTurn>();
+
+    protected CoalescingVoiceXmlDialogueChannel(DialogueChannel<VoiceXmlInputTurn, VoiceXmlOutputTurn> dialogueChannel) {
+        Assert.notNull(dialogueChannel, "dialogueChannel");
+        mDialogueChannel = dialogueChannel;
+    }
+
+    /**
+     * Decorates a dialogue channel. If the channel is an
+     * {@link AsyncDialogueChannel}, so is the returned channel.
+     *
+     * @param dialogueChannel the decorated channel. Cannot be <code>null</code>.
+     */
+    public static CoalescingVoiceXmlDialogueChannel wrap(DialogueChannel<VoiceXmlInputTurn, VoiceXmlOutputTurn> dialogueChannel) {
+        if (dialogueChannel instanceof AsyncDialogueChannel)
+            return new Async((AsyncDialogueChannel<VoiceXmlInputTurn, VoiceXmlOutputTurn>) dialogueChannel);
+        return new CoalescingVoiceXmlDialogueChannel(dialogueChannel);
+    }
+
+    public final DialogueChannel<VoiceXmlInputTurn, VoiceXmlOutputTurn> getDialogueChannel() {
+        return mDialogueChannel;
+    }
+
+    @Override
+    public final VoiceXmlInputTurn doTurn(VoiceXmlOutputTurn outputTurn, Duration timeout) throws Timeout,
+            InterruptedException {
+        if (buffer(outputTurn)) return createEmptyInputTurn();
+        return mDialogueChannel.doTurn(outputTurn, timeout);
+    }
+
+    /**
+     * Removes and returns the buffered turns. This is called when the next turn
+     * is rendered.
+     *
+     * @return the buffered turns, in the order they were sent. Possibly empty.
+     */
+    public final List<VoiceXmlOutputTurn> takePendingTurns() {
+        synchronized (mPendingTurns) {
+            if (mPendingTurns.isEmpty()) return Collections.emptyList();
+            List<VoiceXmlOutputTurn> turns = new ArrayList<VoiceXmlOutputTurn>(mPendingTurns);
+            mPendingTurns.clear();
+            return turns;
+        }
+    }
+
+    @Override
+    public final void addListener(DialogueChannelListener<VoiceXmlInputTurn, VoiceXmlOutputTurn> listener) {
+        mDialogueChannel.addListener(listener);
+    }
+
+    @Override
+    public final void removeListener(DialogueChannelListener<VoiceXmlInputTurn, VoiceXmlOutputTurn> listener) {
+        mDialogueChannel.removeListener(listener);
+    }
+
+    final boolean buffer(VoiceXmlOutputTurn outputTurn) {
+        Assert.notNull(outputTurn, "outputTurn");
+        if (!outputTurn.isCoalescable()) return false;
+
+        synchronized (mPendingTurns) {
+            mPendingTurns.add(outputTurn);
+        }
+        return true;
+    }
+
+    static VoiceXmlInputTurn createEmptyInputTurn() {
+        VoiceXmlInputTurn inputTurn = new VoiceXmlInputTurn();
+        inputTurn.setFiles(Collections.<String, FileUpload> emptyMap());
+        return inputTurn;
+    }
+
+    private static final class Async extends CoalescingVoiceXmlDialogueChannel implements
+            AsyncDialogueChannel<VoiceXmlInputTurn, VoiceXmlOutputTurn> {
+
+        private final AsyncDialogueChannel<VoiceXmlInputTurn, VoiceXmlOutputTurn> mAsyncDialogueChannel;
+
+        public Async(AsyncDialogueChannel<VoiceXmlInputTurn, VoiceXmlOutputTurn> dialogueChannel) {
+            super(dialogueChannel);
+            mAsyncDialogueChannel = dialogueChannel;
+        }
+
+        @Override
+        public CompletionStage<VoiceXmlInputTurn> doTurn(VoiceXmlOutputTurn outputTurn) {
+            if (buffer(outputTurn)) return CompletableFuture.completedFuture(createEmptyInputTurn());
+            return mAsyncDialogueChannel.doTurn(outputTurn);
+        }
+    }
+}
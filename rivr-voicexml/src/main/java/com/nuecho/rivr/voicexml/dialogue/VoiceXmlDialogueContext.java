@@ -10,10 +10,14 @@ import org.slf4j.*;
 
 import com.nuecho.rivr.core.channel.*;
 import com.nuecho.rivr.core.dialogue.*;
+import com.nuecho.rivr.core.servlet.*;
 import com.nuecho.rivr.core.util.*;
+import com.nuecho.rivr.voicexml.rendering.voicexml.*;
 import com.nuecho.rivr.voicexml.rendering.voicexml.errorhandling.*;
+import com.nuecho.rivr.voicexml.servlet.*;
 import com.nuecho.rivr.voicexml.turn.input.*;
 import com.nuecho.rivr.voicexml.turn.output.*;
+import com.nuecho.rivr.voicexml.turn.output.audio.*;
 import com.nuecho.rivr.voicexml.turn.output.fetch.*;
 
 /**
@@ -53,6 +57,19 @@ public final class VoiceXmlDialogueContext implements DialogueContext<VoiceXmlIn
 
     private FatalErrorFormFactory mFatalErrorFormFactory = new ExitFatalErrorFormFactory();
 
+    private boolean mRootDocumentScaffoldingEnabled;
+    private String mScaffoldedRootDocumentPath;
+    private CachedResource mScaffoldedRootDocument;
+
+    private GrammarRegistry mGrammarRegistry;
+
+    private AudioRepository mAudioRepository;
+
+    private PrefetchHintLearner mPrefetchHintLearner;
+
+    private final List<FileUpload> mFileUploads = new ArrayList<FileUpload>();
+    private boolean mDialogueStopped;
+
     public VoiceXmlDialogueContext(DialogueChannel<VoiceXmlInputTurn, VoiceXmlOutputTurn> dialogueChannel,
                                    Logger logger,
                                    String dialogueId,
@@ -63,6 +80,18 @@ public final class VoiceXmlDialogueContext implements DialogueContext<VoiceXmlIn
         mDialogueId = dialogueId;
         mContextPath = contextPath;
         mServletPath = servletPath;
+
+        if (dialogueChannel != null) {
+            dialogueChannel.addListener(new DialogueChannelListener<VoiceXmlInputTurn, VoiceXmlOutputTurn>() {
+                @Override
+                public void onStart(DialogueChannel<VoiceXmlInputTurn, VoiceXmlOutputTurn> channel) {}
+
+                @Override
+                public void onStop(DialogueChannel<VoiceXmlInputTurn, VoiceXmlOutputTurn> channel) {
+                    releaseFileUploads();
+                }
+            });
+        }
     }
 
     public void setDialogueId(String dialogueId) {
@@ -115,6 +144,36 @@ public final class VoiceXmlDialogueContext implements DialogueContext<VoiceXmlIn
         return mDialogueChannel;
     }
 
+    /**
+     * Removes and returns the output turns buffered by the dialogue channel
+     * since the last rendered turn, when it is a
+     * {@link CoalescingVoiceXmlDialogueChannel}.
+     *
+     * @return the buffered turns, in the order they were sent. Possibly empty.
+     * @since 1.0.13
+     */
+    public List<VoiceXmlOutputTurn> takeCoalescedTurns() {
+        if (!(mDialogueChannel instanceof CoalescingVoiceXmlDialogueChannel)) return Collections.emptyList();
+        return ((CoalescingVoiceXmlDialogueChannel) mDialogueChannel).takePendingTurns();
+    }
+
+    /**
+     * Completes the rendering of the current turn: the output turns coalesced
+     * before it are removed (see {@link #takeCoalescedTurns()}) and the turn
+     * index is incremented. Step renderers must call this method exactly once
+     * per rendered turn, whether or not the VoiceXML document of the turn is
+     * rendered, and after the submit path of the turn has been computed.
+     *
+     * @return the turns coalesced before the current turn, in the order they
+     *         were sent. Possibly empty.
+     * @since 1.0.13
+     */
+    public List<VoiceXmlOutputTurn> completeTurn() {
+        List<VoiceXmlOutputTurn> coalescedTurns = takeCoalescedTurns();
+        incrementTurnIndex();
+        return coalescedTurns;
+    }
+
     @Override
     public Logger getLogger() {
         return mLogger;
@@ -128,6 +187,157 @@ public final class VoiceXmlDialogueContext implements DialogueContext<VoiceXmlIn
         return mFatalErrorFormFactory;
     }
 
+    /**
+     * Sets whether the parts of the output turn documents that only depend on
+     * this context (properties, fetch configuration, event handler, fatal error
+     * form and submit form) are rendered once in the root document of the
+     * dialogue instead of in each document. The root document path changes
+     * when the properties, the fetch configuration or the fatal error form
+     * factory change, so that the VoiceXML platform can cache it.
+     *
+     * @param rootDocumentScaffoldingEnabled <code>true</code> to render these
+     *            parts in the root document.
+     * @see VoiceXmlDomUtil#addRootDocumentScaffolding(org.w3c.dom.Document,
+     *      VoiceXmlDialogueContext)
+     * @since 1.0.13
+     */
+    public void setRootDocumentScaffoldingEnabled(boolean rootDocumentScaffoldingEnabled) {
+        mRootDocumentScaffoldingEnabled = rootDocumentScaffoldingEnabled;
+    }
+
+    /**
+     * @since 1.0.13
+     */
+    public boolean isRootDocumentScaffoldingEnabled() {
+        return mRootDocumentScaffoldingEnabled;
+    }
+
+    /**
+     * Sets the root document rendered for the scaffolding of this dialogue. It
+     * is rendered along with the output turns, while the dialogue waits for
+     * its next input turn, and then served as is to the VoiceXML platform.
+     * Only the document of the last path is kept.
+     *
+     * @param path the path of the root document (see
+     *            {@link VoiceXmlDomUtil#getScaffoldedRootDocumentPath(VoiceXmlDialogueContext)}
+     *            ).
+     * @param rootDocument the rendered root document.
+     * @since 1.0.13
+     */
+    public synchronized void setScaffoldedRootDocument(String path, CachedResource rootDocument) {
+        mScaffoldedRootDocumentPath = path;
+        mScaffoldedRootDocument = rootDocument;
+    }
+
+    /**
+     * @param path the path of the root document.
+     * @return the root document rendered for this path, or <code>null</code>
+     *         if the last root document was rendered for another path.
+     * @since 1.0.13
+     */
+    public synchronized CachedResource getScaffoldedRootDocument(String path) {
+        return path.equals(mScaffoldedRootDocumentPath) ? mScaffoldedRootDocument : null;
+    }
+
+    /**
+     * Registers an uploaded file to be {@link FileUpload#release() released}
+     * when the dialogue ends. If the dialogue has already ended, the file is
+     * released right away.
+     *
+     * @param fileUpload the uploaded file. Cannot be <code>null</code>.
+     * @since 1.0.13
+     */
+    public void addFileUpload(FileUpload fileUpload) {
+        Assert.notNull(fileUpload, "fileUpload");
+        synchronized (mFileUploads) {
+            if (!mDialogueStopped) {
+                mFileUploads.add(fileUpload);
+                return;
+            }
+        }
+        fileUpload.release();
+    }
+
+    private void releaseFileUploads() {
+        List<FileUpload> fileUploads;
+        synchronized (mFileUploads) {
+            mDialogueStopped = true;
+            fileUploads = new ArrayList<FileUpload>(mFileUploads);
+            mFileUploads.clear();
+        }
+
+        for (FileUpload fileUpload : fileUploads) {
+            fileUpload.release();
+        }
+    }
+
+    /**
+     * Sets the registry in which the inline grammars above its threshold are
+     * registered when documents are rendered. Such grammars are rendered as
+     * references to the servlet grammar URI instead of being inlined, so that
+     * the VoiceXML platform can cache them.
+     * <p>
+     * Relative URIs in these grammars are resolved against the grammar URI
+     * instead of the document URI. Grammars with relative references should
+     * either be below the threshold or use absolute URIs.
+     *
+     * @param grammarRegistry the registry, or <code>null</code> to inline all
+     *            grammars (the default).
+     * @since 1.0.13
+     */
+    public void setGrammarRegistry(GrammarRegistry grammarRegistry) {
+        mGrammarRegistry = grammarRegistry;
+    }
+
+    /**
+     * @since 1.0.13
+     */
+    public GrammarRegistry getGrammarRegistry() {
+        return mGrammarRegistry;
+    }
+
+    /**
+     * Sets the repository of the audio files served by the servlet. When set,
+     * the relative locations of {@link AudioFile AudioFiles} (e.g.
+     * <code>prompts/welcome.wav</code>) are rendered as URIs of the servlet
+     * audio endpoint.
+     *
+     * @param audioRepository the repository, or <code>null</code> to render
+     *            the locations as is (the default).
+     * @see VoiceXmlDomUtil#resolveAudioLocation(String, VoiceXmlDialogueContext)
+     * @since 1.0.13
+     */
+    public void setAudioRepository(AudioRepository audioRepository) {
+        mAudioRepository = audioRepository;
+    }
+
+    /**
+     * @since 1.0.13
+     */
+    public AudioRepository getAudioRepository() {
+        return mAudioRepository;
+    }
+
+    /**
+     * Sets the learner recording the turns rendered in this dialogue and
+     * declaring the resources likely to be used by the next turns in each
+     * document.
+     *
+     * @param prefetchHintLearner the learner, or <code>null</code> to declare
+     *            no resources (the default).
+     * @since 1.0.13
+     */
+    public void setPrefetchHintLearner(PrefetchHintLearner prefetchHintLearner) {
+        mPrefetchHintLearner = prefetchHintLearner;
+    }
+
+    /**
+     * @since 1.0.13
+     */
+    public PrefetchHintLearner getPrefetchHintLearner() {
+        return mPrefetchHintLearner;
+    }
+
     @Override
     public String toString() {
         ToStringBuilder builder = new ToStringBuilder(this);
@@ -139,6 +349,7 @@ public final class VoiceXmlDialogueContext implements DialogueContext<VoiceXmlIn
         builder.appendItem("mServletPath", mServletPath);
         builder.appendItem("mTurnIndex", mTurnIndex);
         builder.appendItem("mFatalErrorFormFactory", mFatalErrorFormFactory);
+        builder.appendItem("mRootDocumentScaffoldingEnabled", mRootDocumentScaffoldingEnabled);
         return builder.getString();
     }
 
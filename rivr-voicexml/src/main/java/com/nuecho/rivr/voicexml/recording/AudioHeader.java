@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.recording;
+
+import com.nuecho.rivr.core.util.*;
+
+/**
+ * Audio format information read from the header of a recorded file by the
+ * {@link AudioHeaderParsingStage}.
+ * 
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public final class AudioHeader {
+
+    /**
+     * Sample encoding.
+     */
+    public enum Encoding {
+        PCM_SIGNED, PCM_UNSIGNED, MU_LAW, A_LAW, OTHER
+    }
+
+    private final String mContainer;
+    private final Encoding mEncoding;
+    private final int mSampleRate;
+    private final int mChannels;
+    private final int mBitsPerSample;
+    private final long mDataOffset;
+    private final long mDataLength;
+
+    /**
+     * @param container the file format, e.g. <code>wav</code> or
+     *            <code>au</code>. Cannot be <code>null</code>.
+     * @param encoding the sample encoding. Cannot be <code>null</code>.
+     * @param sampleRate the number of samples per second, per channel.
+     * @param channels the number of channels.
+     * @param bitsPerSample the size of a sample.
+     * @param dataOffset the position of the first sample in the file.
+     * @param dataLength the size of the samples, in bytes.
+     */
+    public AudioHeader(String container,
+                       Encoding encoding,
+                       int sampleRate,
+                       int channels,
+                       int bitsPerSample,
+                       long dataOffset,
+                       long dataLength) {
+        Assert.notNull(container, "container");
+        Assert.notNull(encoding, "encoding");
+        mContainer = container;
+        mEncoding = encoding;
+        mSampleRate = sampleRate;
+        mChannels = channels;
+        mBitsPerSample = bitsPerSample;
+        mDataOffset = dataOffset;
+        mDataLength = dataLength;
+    }
+
+    public String getContainer() {
+        return mContainer;
+    }
+
+    public Encoding getEncoding() {
+        return mEncoding;
+    }
+
+    public int getSampleRate() {
+        return mSampleRate;
+    }
+
+    public int getChannels() {
+        return mChannels;
+    }
+
+    public int getBitsPerSample() {
+        return mBitsPerSample;
+    }
+
+    public long getDataOffset() {
+        return mDataOffset;
+    }
+
+    public long getDataLength() {
+        return mDataLength;
+    }
+
+    /**
+     * Computes the duration of the audio from the data length.
+     * 
+     * @return the duration, or <code>null</code> if it cannot be computed.
+     */
+    public Duration getDuration() {
+        long bytesPerSecond = (long) mSampleRate * mChannels * mBitsPerSample / 8;
+        if (bytesPerSecond <= 0) return null;
+        return Duration.milliseconds(mDataLength * Duration.SECOND_IN_MILLIS / bytesPerSecond);
+    }
+
+    @Override
+    public String toString() {
+        return "AudioHeader [container="
+               + mContainer
+               + ", encoding="
+               + mEncoding
+               + ", sampleRate="
+               + mSampleRate
+               + ", channels="
+               + mChannels
+               + ", bitsPerSample="
+               + mBitsPerSample
+               + ", dataOffset="
+               + mDataOffset
+               + ", dataLength="
+               + mDataLength
+               + "]";
+    }
+}
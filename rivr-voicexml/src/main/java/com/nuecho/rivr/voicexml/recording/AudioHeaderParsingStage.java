@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.recording;
+
+import java.io.*;
+import java.nio.*;
+
+import com.nuecho.rivr.voicexml.recording.AudioHeader.Encoding;
+import com.nuecho.rivr.voicexml.servlet.*;
+
+/**
+ * {@link RecordingProcessingStage} reading the header of WAV (RIFF) and Sun/NeXT
+ * (<code>.au</code>) recordings. The resulting {@link AudioHeader} is set as
+ * the {@value #AUDIO_HEADER_ATTRIBUTE} attribute. Recordings in an other
+ * format are left untouched.
+ * <p>
+ * For recordings kept in memory, the header is read directly from the recording
+ * {@link ByteBuffer}. For spooled recordings, only the first
+ * {@value #MAXIMUM_HEADER_SIZE} bytes of the file are read.
+ * 
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public final class AudioHeaderParsingStage implements RecordingProcessingStage {
+
+    public static final String AUDIO_HEADER_ATTRIBUTE = "audioHeader";
+
+    public static final int MAXIMUM_HEADER_SIZE = 64 * 1024;
+
+    private static final String WAV_CONTAINER = "wav";
+    private static final String AU_CONTAINER = "au";
+
+    private static final int RIFF_MAGIC = 0x46464952; // "RIFF", little-endian
+    private static final int WAVE_MAGIC = 0x45564157; // "WAVE", little-endian
+    private static final int FMT_CHUNK = 0x20746d66; // "fmt ", little-endian
+    private static final int DATA_CHUNK = 0x61746164; // "data", little-endian
+    private static final int AU_MAGIC = 0x2e736e64; // ".snd", big-endian
+
+    private static final int WAVE_FORMAT_PCM = 1;
+    private static final int WAVE_FORMAT_ALAW = 6;
+    private static final int WAVE_FORMAT_MULAW = 7;
+    private static final int WAVE_FORMAT_EXTENSIBLE = 0xfffe;
+
+    private static final int AU_ENCODING_MULAW = 1;
+    private static final int AU_ENCODING_LINEAR_8 = 2;
+    private static final int AU_ENCODING_LINEAR_32 = 5;
+    private static final int AU_ENCODING_ALAW = 27;
+    private static final long AU_UNKNOWN_SIZE = 0xffffffffL;
+
+    @Override
+    public void process(ProcessedRecording recording) throws IOException {
+        FileUpload file = recording.getFile();
+        AudioHeader audioHeader;
+        if (file.isSpooled()) {
+            audioHeader = parse(readHeader(file), file.getSize());
+        } else {
+            ByteBuffer content = file.getByteBuffer();
+            if (content == null) return;
+            audioHeader = parse(content);
+        }
+
+        if (audioHeader != null) {
+            recording.setAttribute(AUDIO_HEADER_ATTRIBUTE, audioHeader);
+        }
+    }
+
+    /**
+     * Gets the header set by this stage.
+     * 
+     * @param recording the processed recording.
+     * @return the header, or <code>null</code> if the recording format is not
+     *         supported.
+     */
+    public static AudioHeader getAudioHeader(ProcessedRecording recording) {
+        return (AudioHeader) recording.getAttribute(AUDIO_HEADER_ATTRIBUTE);
+    }
+
+    /**
+     * Parses an audio header.
+     * 
+     * @param content the audio file content. Its position is not modified.
+     * @return the header, or <code>null</code> if the format is not supported
+     *         or the header is truncated.
+     */
+    public static AudioHeader parse(ByteBuffer content) {
+        return parse(content, content.remaining());
+    }
+
+    private static AudioHeader parse(ByteBuffer content, long size) {
+        ByteBuffer buffer = content.duplicate();
+        try {
+            if (buffer.remaining() >= 12 && buffer.order(ByteOrder.LITTLE_ENDIAN).getInt(buffer.position()) == RIFF_MAGIC)
+                return parseWav(buffer, size);
+            if (buffer.remaining() >= 24 && buffer.order(ByteOrder.BIG_ENDIAN).getInt(buffer.position()) == AU_MAGIC)
+                return parseAu(buffer, size);
+        } catch (BufferUnderflowException exception) {
+            return null;
+        } catch (IndexOutOfBoundsException exception) {
+            return null;
+        }
+        return null;
+    }
+
+    private static AudioHeader parseWav(ByteBuffer buffer, long size) {
+        int start = buffer.position();
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position(start + 8);
+        if (buffer.getInt() != WAVE_MAGIC) return null;
+
+        int format = -1;
+        int channels = 0;
+        int sampleRate = 0;
+        int bitsPerSample = 0;
+
+        while (buffer.remaining() >= 8) {
+            int chunkId = buffer.getInt();
+            long chunkSize = buffer.getInt() & 0xffffffffL;
+            int chunkStart = buffer.position();
+
+            if (chunkId == FMT_CHUNK) {
+                format = buffer.getShort() & 0xffff;
+                channels = buffer.getShort() & 0xffff;
+                sampleRate = buffer.getInt();
+                buffer.getInt(); // byte rate
+                buffer.getShort(); // block align
+                bitsPerSample = buffer.getShort() & 0xffff;
+                if (format == WAVE_FORMAT_EXTENSIBLE && chunkSize >= 26) {
+                    format = buffer.getShort(chunkStart + 24) & 0xffff;
+                }
+            } else if (chunkId == DATA_CHUNK) {
+                if (format == -1) return null;
+                // streamed files may have a placeholder data size
+                long dataLength = Math.min(chunkSize, size - (chunkStart - start));
+                return new AudioHeader(WAV_CONTAINER,
+                                       getWavEncoding(format, bitsPerSample),
+                                       sampleRate,
+                                       channels,
+                                       bitsPerSample,
+                                       chunkStart - start,
+                                       dataLength);
+            }
+
+            long next = chunkStart + chunkSize + (chunkSize & 1);
+            if (next > buffer.limit()) return null;
+            buffer.position((int) next);
+        }
+
+        return null;
+    }
+
+    private static Encoding getWavEncoding(int format, int bitsPerSample) {
+        switch (format) {
+            case WAVE_FORMAT_PCM:
+                return bitsPerSample == 8 ? Encoding.PCM_UNSIGNED : Encoding.PCM_SIGNED;
+            case WAVE_FORMAT_ALAW:
+                return Encoding.A_LAW;
+            case WAVE_FORMAT_MULAW:
+                return Encoding.MU_LAW;
+            default:
+                return Encoding.OTHER;
+        }
+    }
+
+    private static AudioHeader parseAu(ByteBuffer buffer, long size) {
+        int start = buffer.position();
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        buffer.position(start + 4);
+        long dataOffset = buffer.getInt() & 0xffffffffL;
+        long dataSize = buffer.getInt() & 0xffffffffL;
+        int encoding = buffer.getInt();
+        int sampleRate = buffer.getInt();
+        int channels = buffer.getInt();
+
+        long available = size - dataOffset;
+        if (available < 0) return null;
+        long dataLength = dataSize == AU_UNKNOWN_SIZE ? available : Math.min(dataSize, available);
+
+        Encoding sampleEncoding;
+        int bitsPerSample;
+        if (encoding == AU_ENCODING_MULAW) {
+            sampleEncoding = Encoding.MU_LAW;
+            bitsPerSample = 8;
+        } else if (encoding == AU_ENCODING_ALAW) {
+            sampleEncoding = Encoding.A_LAW;
+            bitsPerSample = 8;
+        } else if (encoding >= AU_ENCODING_LINEAR_8 && encoding <= AU_ENCODING_LINEAR_32) {
+            sampleEncoding = Encoding.PCM_SIGNED;
+            bitsPerSample = (encoding - 1) * 8;
+        } else {
+            sampleEncoding = Encoding.OTHER;
+            bitsPerSample = 0;
+        }
+
+        return new AudioHeader(AU_CONTAINER,
+                               sampleEncoding,
+                               sampleRate,
+                               channels,
+                               bitsPerSample,
+                               dataOffset,
+                               dataLength);
+    }
+
+    private static ByteBuffer readHeader(FileUpload file) throws IOException {
+        byte[] header = new byte[(int) Math.min(file.getSize(), MAXIMUM_HEADER_SIZE)];
+        DataInputStream inputStream = new DataInputStream(file.getInputStream());
+        try {
+            inputStream.readFully(header);
+        } finally {
+            inputStream.close();
+        }
+        return ByteBuffer.wrap(header);
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.recording;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.regex.*;
+
+import com.nuecho.rivr.core.util.*;
+import com.nuecho.rivr.voicexml.servlet.*;
+
+/**
+ * {@link RecordingProcessingStage} writing recordings to a local directory.
+ * Each recording is written under a new unique name, keeping the extension of
+ * the uploaded file name if any. The file is first written under a temporary
+ * name and then renamed, so a file found in the directory is always complete.
+ * The archived {@link File} is set as the {@value #ARCHIVED_FILE_ATTRIBUTE}
+ * attribute.
+ * 
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public final class FileArchivingStage implements RecordingProcessingStage {
+
+    public static final String ARCHIVED_FILE_ATTRIBUTE = "archivedFile";
+
+    private static final String PARTIAL_FILE_SUFFIX = ".part";
+    private static final Pattern EXTENSION_PATTERN = Pattern.compile("[A-Za-z0-9]{1,8}");
+
+    private final File mDirectory;
+    private final String mPrefix;
+
+    /**
+     * @param directory the archive directory. It is created if needed. Cannot
+     *            be <code>null</code>.
+     * @param prefix the prefix of the archived file names. Cannot be
+     *            <code>null</code>.
+     */
+    public FileArchivingStage(File directory, String prefix) {
+        Assert.notNull(directory, "directory");
+        Assert.notNull(prefix, "prefix");
+        mDirectory = directory;
+        mPrefix = prefix;
+    }
+
+    public FileArchivingStage(File directory) {
+        this(directory, "");
+    }
+
+    @Override
+    public void process(ProcessedRecording recording) throws IOException {
+        FileUpload file = recording.getFile();
+        if (file.getSize() == -1) return;
+
+        Path directory = mDirectory.toPath();
+        Files.createDirectories(directory);
+
+        String name = mPrefix + UUID.randomUUID() + getExtension(file.getName());
+        Path target = directory.resolve(name);
+        Path partial = directory.resolve(name + PARTIAL_FILE_SUFFIX);
+
+        InputStream content = file.getInputStream();
+        try {
+            Files.copy(content, partial);
+        } catch (IOException exception) {
+            Files.deleteIfExists(partial);
+            throw exception;
+        } finally {
+            content.close();
+        }
+
+        Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE);
+        recording.setAttribute(ARCHIVED_FILE_ATTRIBUTE, target.toFile());
+    }
+
+    /**
+     * Gets the file written by this stage.
+     * 
+     * @param recording the processed recording.
+     * @return the archived file, or <code>null</code> if the recording has no
+     *         content.
+     */
+    public static File getArchivedFile(ProcessedRecording recording) {
+        return (File) recording.getAttribute(ARCHIVED_FILE_ATTRIBUTE);
+    }
+
+    private static String getExtension(String fileName) {
+        if (fileName == null) return "";
+        int dotIndex = fileName.lastIndexOf('.');
+        if (dotIndex == -1) return "";
+        String extension = fileName.substring(dotIndex + 1);
+        if (!EXTENSION_PATTERN.matcher(extension).matches()) return "";
+        return "." + extension;
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.recording;
+
+import java.util.*;
+
+import com.nuecho.rivr.core.util.*;
+import com.nuecho.rivr.voicexml.servlet.*;
+
+/**
+ * Result of the {@link RecordingProcessor} pipeline: the recorded file along
+ * with the attributes set by the {@link RecordingProcessingStage stages}.
+ * <p>
+ * Attributes are set on a processing thread. They should only be read by the
+ * dialogue once the processing has completed.
+ * 
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public final class ProcessedRecording {
+
+    private final FileUpload mFile;
+    private final Map<String, Object> mAttributes = new LinkedHashMap<String, Object>();
+
+    public ProcessedRecording(FileUpload file) {
+        Assert.notNull(file, "file");
+        mFile = file;
+    }
+
+    public FileUpload getFile() {
+        return mFile;
+    }
+
+    public Object getAttribute(String name) {
+        return mAttributes.get(name);
+    }
+
+    public void setAttribute(String name, Object value) {
+        Assert.notNull(name, "name");
+        mAttributes.put(name, value);
+    }
+
+    public Set<String> getAttributeNames() {
+        return Collections.unmodifiableSet(mAttributes.keySet());
+    }
+
+    @Override
+    public String toString() {
+        return "ProcessedRecording [file=" + mFile + ", attributes=" + mAttributes + "]";
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.recording;
+
+/**
+ * A step of the {@link RecordingProcessor} pipeline. Stages are invoked in
+ * order, on a processing thread, for each recording. A stage can read the
+ * attributes set by the previous stages and set its own results as attributes
+ * of the {@link ProcessedRecording}.
+ * <p>
+ * A stage instance is shared by all recordings and must therefore be
+ * thread-safe.
+ * 
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public interface RecordingProcessingStage {
+
+    /**
+     * Processes a recording.
+     * 
+     * @param recording the recording being processed.
+     * @throws Exception if the recording cannot be processed. The remaining
+     *             stages are skipped and the processing completes with this
+     *             exception.
+     */
+    void process(ProcessedRecording recording) throws Exception;
+}
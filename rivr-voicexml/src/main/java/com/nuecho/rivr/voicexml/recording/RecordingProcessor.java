@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.recording;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import com.nuecho.rivr.core.util.*;
+import com.nuecho.rivr.voicexml.servlet.*;
+import com.nuecho.rivr.voicexml.turn.input.*;
+
+/**
+ * Pipeline of {@link RecordingProcessingStage stages} run on recordings off
+ * the dialogue thread. When set on the {@link VoiceXmlInputTurnFactory}, each
+ * uploaded recording is submitted as soon as the input turn is created and the
+ * dialogue gets a {@link java.util.concurrent.CompletionStage CompletionStage}
+ * through {@link RecordingInfo#getProcessedRecording()}. The dialogue can thus
+ * play its next prompt and collect the result later.
+ * <p>
+ * Recordings are processed by a bounded pool of threads. Idle threads are
+ * released after the <code>keepAlive</code> duration. Recordings submitted
+ * while all threads are busy wait in a bounded queue; once the queue is full,
+ * the processing completes immediately with a
+ * {@link RejectedExecutionException} instead of blocking the request thread.
+ * 
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public final class RecordingProcessor {
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 100;
+
+    private static final String THREAD_NAME_PREFIX = "Recording processor thread ";
+    private static final Duration DEFAULT_KEEP_ALIVE = Duration.minutes(1);
+
+    private final List<RecordingProcessingStage> mStages;
+    private final ThreadPoolExecutor mExecutor;
+
+    /**
+     * @param stages the stages, in processing order. Cannot be
+     *            <code>null</code>.
+     * @param maximumThreads maximum number of recordings processed at the same
+     *            time. Must be positive.
+     * @param queueCapacity maximum number of recordings waiting for a thread.
+     *            Must be positive.
+     * @param keepAlive time after which an idle thread is released. Cannot be
+     *            <code>null</code>.
+     */
+    public RecordingProcessor(List<RecordingProcessingStage> stages,
+                              int maximumThreads,
+                              int queueCapacity,
+                              Duration keepAlive) {
+        Assert.noNullValues(stages, "stages");
+        Assert.positive(maximumThreads, "maximumThreads");
+        Assert.positive(queueCapacity, "queueCapacity");
+        Assert.notNull(keepAlive, "keepAlive");
+        mStages = new ArrayList<RecordingProcessingStage>(stages);
+
+        ThreadFactory threadFactory = new ThreadFactory() {
+            private final AtomicInteger mThreadCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, THREAD_NAME_PREFIX + mThreadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+
+        mExecutor = new ThreadPoolExecutor(maximumThreads,
+                                           maximumThreads,
+                                           keepAlive.getMilliseconds(),
+                                           TimeUnit.MILLISECONDS,
+                                           new ArrayBlockingQueue<Runnable>(queueCapacity),
+                                           threadFactory);
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Creates a processor with one thread per available processor and a queue
+     * of {@value #DEFAULT_QUEUE_CAPACITY} recordings.
+     * 
+     * @param stages the stages, in processing order.
+     */
+    public RecordingProcessor(RecordingProcessingStage... stages) {
+        this(Assert.asListChecked(stages),
+             Runtime.getRuntime().availableProcessors(),
+             DEFAULT_QUEUE_CAPACITY,
+             DEFAULT_KEEP_ALIVE);
+    }
+
+    /**
+     * Submits a recording to the pipeline.
+     * 
+     * @param file the recorded file. Cannot be <code>null</code>.
+     * @return the processing, completed with the {@link ProcessedRecording} or
+     *         with the exception thrown by the failing stage.
+     */
+    public CompletableFuture<ProcessedRecording> process(FileUpload file) {
+        final ProcessedRecording recording = new ProcessedRecording(file);
+        final CompletableFuture<ProcessedRecording> processing = new CompletableFuture<ProcessedRecording>();
+
+        try {
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (RecordingProcessingStage stage : mStages) {
+                            stage.process(recording);
+                        }
+                        processing.complete(recording);
+                    } catch (Throwable throwable) {
+                        processing.completeExceptionally(throwable);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException exception) {
+            processing.completeExceptionally(exception);
+        }
+
+        return processing;
+    }
+
+    public List<RecordingProcessingStage> getStages() {
+        return Collections.unmodifiableList(mStages);
+    }
+
+    /**
+     * Gets the number of recordings waiting for a processing thread.
+     * 
+     * @return the queue size.
+     */
+    public int getQueueSize() {
+        return mExecutor.getQueue().size();
+    }
+
+    /**
+     * Stops accepting new recordings. Recordings already submitted are still
+     * processed.
+     */
+    public void shutdown() {
+        mExecutor.shutdown();
+    }
+}
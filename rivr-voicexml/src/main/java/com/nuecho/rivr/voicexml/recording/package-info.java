@@ -0,0 +1,5 @@
+/**
+ * Asynchronous post-processing of recordings (header parsing, archiving, etc.).
+ */
+package com.nuecho.rivr.voicexml.recording;
+
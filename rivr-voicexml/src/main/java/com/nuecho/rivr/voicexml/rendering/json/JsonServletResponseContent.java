@@ -40,10 +40,7 @@ public class JsonServletResponseContent implements ServletResponseContent {
 
     @Override
     public String getContentType() {
-        if (mJsonpMode == JsonpMode.DISABLED) return JSON_MIME_TYPE;
-        else if (mJsonpMode == JsonpMode.NORMAL) return JSON_MIME_TYPE;
-        else if (mJsonpMode == JsonpMode.TEXTAREA) return HTML_MIME_TYPE;
-        else throw new AssertionError("Unexpected JSONP mode: " + mJsonpMode);
+        return getContentType(mJsonpMode);
     }
 
     @Override
@@ -65,27 +62,40 @@ public class JsonServletResponseContent implements ServletResponseContent {
         ByteArrayOutputStream binaryArrayOutputStream = new ByteArrayOutputStream();
         Writer writer = new OutputStreamWriter(binaryArrayOutputStream, Encoding.UTF_8.getId());
 
-        if (mJsonpMode == JsonpMode.TEXTAREA) {
+        writeJsonpPrefix(writer, mJsonpMode, jsonpCallback);
+        JsonUtils.write(writer, jsonData);
+        writeJsonpSuffix(writer, mJsonpMode);
+
+        writer.flush();
+        return binaryArrayOutputStream.toByteArray();
+    }
+
+    static String getContentType(JsonpMode jsonpMode) {
+        if (jsonpMode == JsonpMode.DISABLED) return JSON_MIME_TYPE;
+        else if (jsonpMode == JsonpMode.NORMAL) return JSON_MIME_TYPE;
+        else if (jsonpMode == JsonpMode.TEXTAREA) return HTML_MIME_TYPE;
+        else throw new AssertionError("Unexpected JSONP mode: " + jsonpMode);
+    }
+
+    static void writeJsonpPrefix(Writer writer, JsonpMode jsonpMode, String jsonpCallback) throws IOException {
+        if (jsonpMode == JsonpMode.TEXTAREA) {
             writer.write("<textarea>");
         }
 
-        if (mJsonpMode != JsonpMode.DISABLED) {
+        if (jsonpMode != JsonpMode.DISABLED) {
             writer.write(jsonpCallback);
             writer.write('(');
         }
+    }
 
-        JsonUtils.write(writer, jsonData);
-
-        if (mJsonpMode != JsonpMode.DISABLED) {
+    static void writeJsonpSuffix(Writer writer, JsonpMode jsonpMode) throws IOException {
+        if (jsonpMode != JsonpMode.DISABLED) {
             writer.write(')');
         }
 
-        if (mJsonpMode == JsonpMode.TEXTAREA) {
+        if (jsonpMode == JsonpMode.TEXTAREA) {
             writer.write("</textarea>");
         }
-
-        writer.flush();
-        return binaryArrayOutputStream.toByteArray();
     }
 
     /**
@@ -4,9 +4,8 @@
 
 package com.nuecho.rivr.voicexml.rendering.json;
 
-import java.io.*;
+import java.util.*;
 
-import javax.json.*;
 import javax.servlet.http.*;
 
 import com.nuecho.rivr.core.servlet.*;
@@ -22,7 +21,15 @@ import com.nuecho.rivr.voicexml.util.json.*;
 /**
  * {@link StepRenderer} used for Rivr dialogue runner. All the
  * {@link VoiceXmlOutputTurn VoiceXmlOutputTurns} and {@link VoiceXmlLastTurn
- * VoiceXmlLastTurns} are rendered as JSON object.
+ * VoiceXmlLastTurns} are rendered as JSON object, which is streamed to the
+ * response.
+ * <p>
+ * The JSON object includes the VoiceXML document of the turn in its
+ * <code>voiceXml</code> property, unless the <code>omitVoiceXml</code> request
+ * parameter is present. In that case, the VoiceXML document is not rendered at
+ * all and the output turns coalesced before the turn (see
+ * {@link CoalescingVoiceXmlDialogueChannel}), which would otherwise be rendered
+ * in this document, are listed in the <code>coalescedTurns</code> property.
  * 
  * @author Nu Echo Inc.
  */
@@ -31,12 +38,9 @@ public class JsonStepRenderer implements
 
     private static final String TEXTAREA_PARAMETER = "textarea";
     private static final String CALLBACK_PARAMETER = "callback";
+    private static final String OMIT_VOICE_XML_PARAMETER = "omitVoiceXml";
     private static final String TYPE_OUTPUT_TURN = "outputTurn";
     private static final String TYPE_LAST_TURN = "lastTurn";
-    private static final String TYPE_PROPERTY = "type";
-    private static final String TURN_PROPERTY = "turn";
-    private static final String SERVLET_PATH_PROPERTY = "servletPath";
-    private static final String VOICE_XML_PROPERTY = "voiceXml";
 
     private final VoiceXmlStepRenderer mVoiceXmlStepRenderer;
 
@@ -51,20 +55,27 @@ public class JsonStepRenderer implements
                                                               VoiceXmlDialogueContext dialogueContext)
             throws StepRendererException {
         Assert.notNull(outputTurn, "outputTurn");
-        JsonValue turn = outputTurn.asJson();
-
-        JsonObjectBuilder builder = JsonUtils.createObjectBuilder();
-        JsonUtils.add(builder, TYPE_PROPERTY, TYPE_OUTPUT_TURN);
-        JsonUtils.add(builder, SERVLET_PATH_PROPERTY, VoiceXmlDomUtil.getSubmitPathForTurn(dialogueContext, outputTurn));
-        JsonUtils.add(builder, TURN_PROPERTY, turn);
-
-        ServletResponseContent voiceXmlResponseContent = mVoiceXmlStepRenderer.createDocumentForOutputTurn(outputTurn,
-                                                                                                           request,
-                                                                                                           response,
-                                                                                                           dialogueContext);
-
-        return processResponse(request, builder, voiceXmlResponseContent);
+        String servletPath = VoiceXmlDomUtil.getSubmitPathForTurn(dialogueContext, outputTurn);
+
+        ServletResponseContent voiceXmlResponseContent;
+        List<VoiceXmlOutputTurn> coalescedTurns;
+        if (isVoiceXmlOmitted(request)) {
+            voiceXmlResponseContent = null;
+            coalescedTurns = dialogueContext.completeTurn();
+        } else {
+            coalescedTurns = null;
+            voiceXmlResponseContent = mVoiceXmlStepRenderer.createDocumentForOutputTurn(outputTurn,
+                                                                                        request,
+                                                                                        response,
+                                                                                        dialogueContext);
+        }
 
+        return createResponseContent(request,
+                                     TYPE_OUTPUT_TURN,
+                                     servletPath,
+                                     outputTurn,
+                                     voiceXmlResponseContent,
+                                     coalescedTurns);
     }
 
     @Override
@@ -74,50 +85,46 @@ public class JsonStepRenderer implements
                                                             VoiceXmlDialogueContext dialogueContext)
             throws StepRendererException {
         Assert.notNull(lastTurn, "lastTurn");
-        JsonValue turn = lastTurn.asJson();
 
-        JsonObjectBuilder builder = JsonUtils.createObjectBuilder();
-        JsonUtils.add(builder, TYPE_PROPERTY, TYPE_LAST_TURN);
-        JsonUtils.add(builder, TURN_PROPERTY, turn);
-
-        ServletResponseContent voiceXmlResponseContent = mVoiceXmlStepRenderer.createDocumentForLastTurn(lastTurn,
-                                                                                                         request,
-                                                                                                         response,
-                                                                                                         dialogueContext);
-
-        return processResponse(request, builder, voiceXmlResponseContent);
+        ServletResponseContent voiceXmlResponseContent;
+        List<VoiceXmlOutputTurn> coalescedTurns;
+        if (isVoiceXmlOmitted(request)) {
+            voiceXmlResponseContent = null;
+            coalescedTurns = dialogueContext.completeTurn();
+        } else {
+            coalescedTurns = null;
+            voiceXmlResponseContent = mVoiceXmlStepRenderer.createDocumentForLastTurn(lastTurn,
+                                                                                      request,
+                                                                                      response,
+                                                                                      dialogueContext);
+        }
 
+        return createResponseContent(request, TYPE_LAST_TURN, null, lastTurn, voiceXmlResponseContent, coalescedTurns);
     }
 
-    private JsonServletResponseContent processResponse(HttpServletRequest request,
-                                                       JsonObjectBuilder builder,
-                                                       ServletResponseContent voiceXmlServletResponseContent)
-            throws StepRendererException {
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-        try {
-            voiceXmlServletResponseContent.writeTo(byteArrayOutputStream);
-        } catch (IOException exception1) {
-            throw new StepRendererException("Error while wirting VoiceXML document");
-        }
-
-        try {
-            String voiceXml = new String(byteArrayOutputStream.toByteArray(), "utf-8");
-            JsonUtils.add(builder, VOICE_XML_PROPERTY, voiceXml);
-        } catch (UnsupportedEncodingException exception) {
-            throw new AssertionError("Missing UTF-8 encoding");
-        }
+    private static boolean isVoiceXmlOmitted(HttpServletRequest request) {
+        return request.getParameter(OMIT_VOICE_XML_PARAMETER) != null;
+    }
 
+    private static ServletResponseContent createResponseContent(HttpServletRequest request,
+                                                                String type,
+                                                                String servletPath,
+                                                                JsonSerializable turn,
+                                                                ServletResponseContent voiceXmlResponseContent,
+                                                                List<VoiceXmlOutputTurn> coalescedTurns) {
         String callback = request.getParameter(CALLBACK_PARAMETER);
         String textarea = request.getParameter(TEXTAREA_PARAMETER);
 
         JsonpMode jsonpMode = callback != null
                 ? textarea != null ? JsonpMode.TEXTAREA : JsonpMode.NORMAL
                 : JsonpMode.DISABLED;
-        try {
-            return new JsonServletResponseContent(builder.build(), jsonpMode, callback);
-        } catch (IOException exception) {
-            throw new StepRendererException("Unable to create response.", exception);
-        }
+        return new JsonTurnServletResponseContent(type,
+                                                  servletPath,
+                                                  turn,
+                                                  voiceXmlResponseContent,
+                                                  coalescedTurns,
+                                                  jsonpMode,
+                                                  callback);
     }
 
-}
\ No newline at end of file
+}
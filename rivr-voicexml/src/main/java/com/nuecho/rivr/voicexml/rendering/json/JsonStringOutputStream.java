@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.rendering.json;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.charset.*;
+
+import com.nuecho.rivr.core.servlet.*;
+import com.nuecho.rivr.core.util.*;
+
+/**
+ * {@link OutputStream} decoding the UTF-8 bytes written to it and writing the
+ * resulting characters, escaped as the content of a JSON string, to a
+ * {@link Writer}. The escaping is the same as the one of the
+ * {@link javax.json.stream.JsonGenerator}. This allows a
+ * {@link ServletResponseContent} to be embedded in a JSON string without being
+ * converted to a {@link String} first.
+ * <p>
+ * The surrounding quotes are not written. {@link #finish()} must be called
+ * once all the bytes have been written. Closing this stream does not close the
+ * underlying writer.
+ *
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+final class JsonStringOutputStream extends OutputStream {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final char[] HEXADECIMAL_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final Writer mWriter;
+    private final CharsetDecoder mDecoder;
+    private final ByteBuffer mInput = ByteBuffer.allocate(BUFFER_SIZE);
+    private final CharBuffer mOutput = CharBuffer.allocate(BUFFER_SIZE);
+    private boolean mFinished;
+
+    public JsonStringOutputStream(Writer writer) {
+        Assert.notNull(writer, "writer");
+        mWriter = writer;
+        mDecoder = Charset.forName(Encoding.UTF_8.getId())
+                          .newDecoder()
+                          .onMalformedInput(CodingErrorAction.REPLACE)
+                          .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    @Override
+    public void write(int value) throws IOException {
+        write(new byte[] {(byte) value}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        if (mFinished) throw new IOException("Stream is finished.");
+        int position = offset;
+        int remaining = length;
+        while (remaining > 0) {
+            int count = Math.min(remaining, mInput.remaining());
+            mInput.put(bytes, position, count);
+            position += count;
+            remaining -= count;
+            decode(false);
+        }
+    }
+
+    /**
+     * Decodes the remaining bytes, replacing an incomplete trailing sequence,
+     * and writes the resulting characters. The underlying writer is not
+     * flushed.
+     */
+    public void finish() throws IOException {
+        if (mFinished) return;
+        mFinished = true;
+        decode(true);
+        while (mDecoder.flush(mOutput).isOverflow()) {
+            writeOutput();
+        }
+        writeOutput();
+    }
+
+    @Override
+    public void close() throws IOException {
+        finish();
+    }
+
+    private void decode(boolean endOfInput) throws IOException {
+        mInput.flip();
+        while (mDecoder.decode(mInput, mOutput, endOfInput).isOverflow()) {
+            writeOutput();
+        }
+        writeOutput();
+        mInput.compact();
+    }
+
+    private void writeOutput() throws IOException {
+        mOutput.flip();
+        char[] characters = mOutput.array();
+        int start = 0;
+        int end = mOutput.limit();
+        for (int index = 0; index < end; index++) {
+            char character = characters[index];
+            if (character >= 0x20 && character != '"' && character != '\\') {
+                continue;
+            }
+
+            mWriter.write(characters, start, index - start);
+            writeEscaped(character);
+            start = index + 1;
+        }
+        mWriter.write(characters, start, end - start);
+        mOutput.clear();
+    }
+
+    private void writeEscaped(char character) throws IOException {
+        switch (character) {
+            case '"':
+                mWriter.write("\\\"");
+                break;
+            case '\\':
+                mWriter.write("\\\\");
+                break;
+            case '\b':
+                mWriter.write("\\b");
+                break;
+            case '\f':
+                mWriter.write("\\f");
+                break;
+            case '\n':
+                mWriter.write("\\n");
+                break;
+            case '\r':
+                mWriter.write("\\r");
+                break;
+            case '\t':
+                mWriter.write("\\t");
+                break;
+            default:
+                mWriter.write("\\u00");
+                mWriter.write(HEXADECIMAL_DIGITS[character >> 4]);
+                mWriter.write(HEXADECIMAL_DIGITS[character & 0xf]);
+        }
+    }
+}
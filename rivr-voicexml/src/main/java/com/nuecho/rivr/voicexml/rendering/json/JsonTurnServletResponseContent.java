@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.rendering.json;
+
+import java.io.*;
+import java.util.*;
+
+import javax.json.*;
+import javax.json.stream.*;
+
+import com.nuecho.rivr.core.servlet.*;
+import com.nuecho.rivr.core.util.*;
+import com.nuecho.rivr.voicexml.rendering.json.JsonServletResponseContent.JsonpMode;
+import com.nuecho.rivr.voicexml.util.json.*;
+
+/**
+ * {@link ServletResponseContent} for the JSON representation of a turn. The
+ * JSON object is written directly to the response output stream with a
+ * {@link JsonGenerator} instead of being built in memory, so its length is not
+ * known in advance. The turn is written with
+ * {@link JsonSerializable#writeJson(JsonGenerator, String)}. The VoiceXML
+ * document is streamed into the <code>voiceXml</code> string through a
+ * {@link JsonStringOutputStream}, without being converted to a {@link String}.
+ * 
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+final class JsonTurnServletResponseContent implements ServletResponseContent {
+
+    private static final String TYPE_PROPERTY = "type";
+    private static final String TURN_PROPERTY = "turn";
+    private static final String SERVLET_PATH_PROPERTY = "servletPath";
+    private static final String VOICE_XML_PROPERTY = "voiceXml";
+    private static final String COALESCED_TURNS_PROPERTY = "coalescedTurns";
+
+    private final String mType;
+    private final String mServletPath;
+    private final JsonSerializable mTurn;
+    private final ServletResponseContent mVoiceXmlContent;
+    private final List<? extends JsonSerializable> mCoalescedTurns;
+    private final JsonpMode mJsonpMode;
+    private final String mJsonpCallback;
+
+    /**
+     * @param servletPath the submit path of the turn, <code>null</code> if the
+     *            property must not be written.
+     * @param voiceXmlContent the VoiceXML document of the turn,
+     *            <code>null</code> if the property must not be written.
+     * @param coalescedTurns the turns coalesced before this turn when they are
+     *            not rendered in the VoiceXML document, <code>null</code> or
+     *            empty if the property must not be written.
+     */
+    public JsonTurnServletResponseContent(String type,
+                                          String servletPath,
+                                          JsonSerializable turn,
+                                          ServletResponseContent voiceXmlContent,
+                                          List<? extends JsonSerializable> coalescedTurns,
+                                          JsonpMode jsonpMode,
+                                          String jsonpCallback) {
+        Assert.notNull(type, "type");
+        Assert.notNull(jsonpMode, "jsonpMode");
+        mType = type;
+        mServletPath = servletPath;
+        mTurn = turn;
+        mVoiceXmlContent = voiceXmlContent;
+        mCoalescedTurns = coalescedTurns;
+        mJsonpMode = jsonpMode;
+        mJsonpCallback = jsonpCallback;
+    }
+
+    @Override
+    public String getContentType() {
+        return JsonServletResponseContent.getContentType(mJsonpMode);
+    }
+
+    @Override
+    public void writeTo(OutputStream outputStream) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, Encoding.UTF_8.getId()));
+        JsonServletResponseContent.writeJsonpPrefix(writer, mJsonpMode, mJsonpCallback);
+
+        JsonGenerator generator = JsonUtils.createGenerator(writer);
+        try {
+            generator.writeStartObject();
+            generator.write(TYPE_PROPERTY, mType);
+            if (mServletPath != null) {
+                generator.write(SERVLET_PATH_PROPERTY, mServletPath);
+            }
+
+            JsonUtils.write(generator, TURN_PROPERTY, mTurn);
+
+            if (mCoalescedTurns != null && !mCoalescedTurns.isEmpty()) {
+                JsonUtils.write(generator, COALESCED_TURNS_PROPERTY, mCoalescedTurns);
+            }
+
+            if (mVoiceXmlContent != null) {
+                // the generator cannot stream a string value: its buffered characters are flushed to the writer,
+                // which then receives the member directly (the object always has a preceding member)
+                generator.flush();
+                writeVoiceXmlMember(writer);
+            }
+            generator.writeEnd();
+            // the generator is not closed since this would close the output stream
+            generator.flush();
+        } catch (JsonException exception) {
+            throw new IOException("Unable to write JSON content.", exception);
+        }
+
+        JsonServletResponseContent.writeJsonpSuffix(writer, mJsonpMode);
+        writer.flush();
+    }
+
+    private void writeVoiceXmlMember(Writer writer) throws IOException {
+        writer.write(",\"");
+        writer.write(VOICE_XML_PROPERTY);
+        writer.write("\":\"");
+        JsonStringOutputStream voiceXmlOutputStream = new JsonStringOutputStream(writer);
+        mVoiceXmlContent.writeTo(voiceXmlOutputStream);
+        voiceXmlOutputStream.finish();
+        writer.write('"');
+    }
+
+    @Override
+    public String getContentAsString() {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try {
+            writeTo(outputStream);
+            return new String(outputStream.toByteArray(), Encoding.UTF_8.getId());
+        } catch (IOException exception) {
+            throw new AssertionError(exception);
+        }
+    }
+
+    /**
+     * Always returns <code>null</code> since the content is streamed.
+     */
+    @Override
+    public Integer getContentLength() {
+        return null;
+    }
+}
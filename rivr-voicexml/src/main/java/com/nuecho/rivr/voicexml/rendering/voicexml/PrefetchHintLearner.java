@@ -0,0 +1,407 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.rendering.voicexml;
+
+import static com.nuecho.rivr.voicexml.rendering.voicexml.VoiceXmlDomUtil.*;
+
+import java.util.*;
+import java.util.Map.Entry;
+
+import javax.json.*;
+import javax.json.stream.*;
+
+import org.w3c.dom.*;
+
+import com.nuecho.rivr.core.util.*;
+import com.nuecho.rivr.voicexml.dialogue.*;
+import com.nuecho.rivr.voicexml.util.json.*;
+
+/**
+ * Learns, across dialogues, which turn usually follows each output turn (by
+ * turn name) and which audio files and grammars each turn uses. When a turn is
+ * rendered, the resources likely to be needed by the next turns are declared
+ * in the document with <code>fetchhint="prefetch"</code>, so that the
+ * VoiceXML platform can fetch them while the current turn is executed.
+ * <p>
+ * The declarations are rendered in a form that is never visited, after the
+ * other forms of the document: a field holding the grammars (so that they are
+ * never active) and a block holding the audio files. Only resources referenced
+ * by URI (<code>src</code> attribute) are learned. Resources that are already
+ * used by the current document are not declared again.
+ * <p>
+ * The statistics are bounded: at most {@link #setMaximumTurnNames(int)} turn
+ * names are tracked and, for each of them, at most
+ * {@link #setMaximumSuccessors(int)} next turns and
+ * {@link #setMaximumResources(int)} resources. When a bound is reached, the
+ * least frequent entry is replaced by the new one, which inherits its count.
+ * The statistics can be exported with {@link #asJson()} and reloaded with
+ * {@link #load(JsonObject)}.
+ *
+ * @author Nu Echo Inc.
+ * @see VoiceXmlDialogueContext#setPrefetchHintLearner(PrefetchHintLearner)
+ * @since 1.0.13
+ */
+public final class PrefetchHintLearner implements JsonSerializable {
+
+    public static final int DEFAULT_MAXIMUM_TURN_NAMES = 1024;
+    public static final int DEFAULT_MAXIMUM_SUCCESSORS = 16;
+    public static final int DEFAULT_MAXIMUM_RESOURCES = 64;
+    public static final int DEFAULT_MAXIMUM_HINTS = 8;
+    public static final double DEFAULT_MINIMUM_PROBABILITY = 0.25;
+
+    public static final String PREFETCH_FORM_ID = "prefetchForm";
+    private static final String PREFETCH_FIELD_NAME = "prefetch";
+
+    private static final String AUDIO_RESOURCE_PREFIX = "audio ";
+    private static final String BUILTIN_SCHEME = "builtin:";
+
+    private static final String TURNS_PROPERTY = "turns";
+    private static final String VISITS_PROPERTY = "visits";
+    private static final String SUCCESSORS_PROPERTY = "successors";
+    private static final String RESOURCES_PROPERTY = "resources";
+
+    private int mMaximumTurnNames = DEFAULT_MAXIMUM_TURN_NAMES;
+    private int mMaximumSuccessors = DEFAULT_MAXIMUM_SUCCESSORS;
+    private int mMaximumResources = DEFAULT_MAXIMUM_RESOURCES;
+    private int mMaximumHints = DEFAULT_MAXIMUM_HINTS;
+    private double mMinimumProbability = DEFAULT_MINIMUM_PROBABILITY;
+
+    private final Map<String, TurnStatistics> mTurns = new HashMap<String, TurnStatistics>();
+    private final Map<VoiceXmlDialogueContext, String> mPreviousTurnNames = Collections.synchronizedMap(new WeakHashMap<VoiceXmlDialogueContext, String>());
+
+    public synchronized void setMaximumTurnNames(int maximumTurnNames) {
+        Assert.positive(maximumTurnNames, "maximumTurnNames");
+        mMaximumTurnNames = maximumTurnNames;
+    }
+
+    public synchronized void setMaximumSuccessors(int maximumSuccessors) {
+        Assert.positive(maximumSuccessors, "maximumSuccessors");
+        mMaximumSuccessors = maximumSuccessors;
+    }
+
+    public synchronized void setMaximumResources(int maximumResources) {
+        Assert.positive(maximumResources, "maximumResources");
+        mMaximumResources = maximumResources;
+    }
+
+    /**
+     * @param maximumHints the maximum number of resources declared in a
+     *            document.
+     */
+    public synchronized void setMaximumHints(int maximumHints) {
+        Assert.notNegative(maximumHints, "maximumHints");
+        mMaximumHints = maximumHints;
+    }
+
+    /**
+     * @param minimumProbability the minimum probability, between 0 and 1, that
+     *            a resource is used by the next turn for it to be declared.
+     *            This is the product of the probability of the next turn and
+     *            of the probability that this turn uses the resource.
+     */
+    public synchronized void setMinimumProbability(double minimumProbability) {
+        Assert.between(0, minimumProbability, 1);
+        mMinimumProbability = minimumProbability;
+    }
+
+    /**
+     * Records the rendering of a turn document and declares the resources
+     * likely to be used by the next turns in it.
+     *
+     * @param turnName the name of the rendered turn.
+     * @param document the rendered document.
+     * @param dialogueContext the context of the dialogue, used to associate
+     *            the turn with the previous one of the same dialogue.
+     */
+    public void process(String turnName, Document document, VoiceXmlDialogueContext dialogueContext) {
+        Assert.notNull(turnName, "turnName");
+        process(Collections.singletonList(new RenderedTurn(turnName, document.getDocumentElement())),
+                document,
+                dialogueContext);
+    }
+
+    /**
+     * Records the rendering of a document holding several turns, i.e. the
+     * coalesced turns followed by the turn of the document, and declares the
+     * resources likely to be used by the turns following the last one.
+     *
+     * @param renderedTurns the turns of the document in the order they are
+     *            executed, with the resources of each one. Cannot be empty.
+     */
+    void process(List<RenderedTurn> renderedTurns, Document document, VoiceXmlDialogueContext dialogueContext) {
+        Assert.notEmpty(renderedTurns, "renderedTurns");
+        String lastTurnName = renderedTurns.get(renderedTurns.size() - 1).mName;
+        String previousTurnName = mPreviousTurnNames.put(dialogueContext, lastTurnName);
+        Set<String> documentResources = getResources(document.getDocumentElement());
+
+        List<String> hints;
+        synchronized (this) {
+            for (RenderedTurn renderedTurn : renderedTurns) {
+                if (previousTurnName != null) {
+                    TurnStatistics previousTurn = mTurns.get(previousTurnName);
+                    if (previousTurn != null) {
+                        previousTurn.mSuccessors.add(renderedTurn.mName, 1, mMaximumSuccessors);
+                    }
+                }
+
+                TurnStatistics turn = getTurnStatistics(renderedTurn.mName);
+                if (turn != null) {
+                    turn.mVisits++;
+                    for (String resource : renderedTurn.mResources) {
+                        turn.mResources.add(resource, 1, mMaximumResources);
+                    }
+                }
+                previousTurnName = renderedTurn.mName;
+            }
+
+            hints = predict(lastTurnName, documentResources);
+        }
+
+        addPrefetchForm(document, hints);
+    }
+
+    /**
+     * Replaces the statistics with the ones exported by {@link #asJson()}.
+     *
+     * @param statistics the exported statistics. Cannot be <code>null</code>.
+     */
+    public synchronized void load(JsonObject statistics) {
+        Assert.notNull(statistics, "statistics");
+        mTurns.clear();
+        JsonObject turns = statistics.getJsonObject(TURNS_PROPERTY);
+        if (turns == null) return;
+
+        for (Entry<String, JsonValue> entry : turns.entrySet()) {
+            TurnStatistics turn = getTurnStatistics(entry.getKey());
+            if (turn == null) continue;
+
+            JsonObject turnObject = (JsonObject) entry.getValue();
+            turn.mVisits = JsonUtils.getLongProperty(turnObject, VISITS_PROPERTY);
+            load(turn.mSuccessors, turnObject.getJsonObject(SUCCESSORS_PROPERTY), mMaximumSuccessors);
+            load(turn.mResources, turnObject.getJsonObject(RESOURCES_PROPERTY), mMaximumResources);
+        }
+    }
+
+    public synchronized void clear() {
+        mTurns.clear();
+    }
+
+    @Override
+    public synchronized JsonValue asJson() {
+        JsonObjectBuilder builder = JsonUtils.createObjectBuilder();
+        addJsonProperties(builder);
+        return builder.build();
+    }
+
+    @Override
+    public synchronized void writeJson(JsonGenerator generator, String name) {
+        JsonObjectBuilder builder = JsonUtils.writeStartObject(generator, name);
+        addJsonProperties(builder);
+        generator.writeEnd();
+    }
+
+    private void addJsonProperties(JsonObjectBuilder builder) {
+        JsonObjectBuilder turnsBuilder = JsonUtils.createObjectBuilder();
+        for (Entry<String, TurnStatistics> entry : mTurns.entrySet()) {
+            TurnStatistics turn = entry.getValue();
+            JsonObjectBuilder turnBuilder = JsonUtils.createObjectBuilder();
+            turnBuilder.add(VISITS_PROPERTY, turn.mVisits);
+            turnBuilder.add(SUCCESSORS_PROPERTY, turn.mSuccessors.asJson());
+            turnBuilder.add(RESOURCES_PROPERTY, turn.mResources.asJson());
+            turnsBuilder.add(entry.getKey(), turnBuilder);
+        }
+        builder.add(TURNS_PROPERTY, turnsBuilder);
+    }
+
+    @Override
+    public String toString() {
+        return JsonUtils.toString(this);
+    }
+
+    private TurnStatistics getTurnStatistics(String turnName) {
+        TurnStatistics turn = mTurns.get(turnName);
+        if (turn == null && mTurns.size() < mMaximumTurnNames) {
+            turn = new TurnStatistics();
+            mTurns.put(turnName, turn);
+        }
+        return turn;
+    }
+
+    private List<String> predict(String turnName, Set<String> excludedResources) {
+        TurnStatistics turn = mTurns.get(turnName);
+        if (turn == null || mMaximumHints == 0) return Collections.emptyList();
+
+        long transitionCount = turn.mSuccessors.getTotal();
+        final Map<String, Double> scores = new HashMap<String, Double>();
+        for (Entry<String, Long> successorEntry : turn.mSuccessors.entrySet()) {
+            double successorProbability = (double) successorEntry.getValue() / transitionCount;
+            if (successorProbability < mMinimumProbability) {
+                continue;
+            }
+
+            TurnStatistics successor = mTurns.get(successorEntry.getKey());
+            if (successor == null || successor.mVisits == 0) {
+                continue;
+            }
+
+            for (Entry<String, Long> resourceEntry : successor.mResources.entrySet()) {
+                String resource = resourceEntry.getKey();
+                double score = successorProbability * resourceEntry.getValue() / successor.mVisits;
+                if (score < mMinimumProbability || excludedResources.contains(resource)) {
+                    continue;
+                }
+
+                Double previousScore = scores.get(resource);
+                if (previousScore == null || previousScore < score) {
+                    scores.put(resource, score);
+                }
+            }
+        }
+
+        List<String> hints = new ArrayList<String>(scores.keySet());
+        Collections.sort(hints, new Comparator<String>() {
+            @Override
+            public int compare(String first, String second) {
+                return scores.get(second).compareTo(scores.get(first));
+            }
+        });
+        return hints.size() > mMaximumHints ? hints.subList(0, mMaximumHints) : hints;
+    }
+
+    private static Set<String> getResources(Element element) {
+        Set<String> resources = new HashSet<String>();
+        NodeList audioElements = element.getElementsByTagName(AUDIO_ELEMENT);
+        for (int index = 0; index < audioElements.getLength(); index++) {
+            String src = ((Element) audioElements.item(index)).getAttribute(SRC_ATTRIBUTE);
+            if (!src.isEmpty()) {
+                resources.add(AUDIO_RESOURCE_PREFIX + src);
+            }
+        }
+
+        NodeList grammarElements = element.getElementsByTagName(GRAMMAR_ELEMENT);
+        for (int index = 0; index < grammarElements.getLength(); index++) {
+            Element grammarElement = (Element) grammarElements.item(index);
+            String src = grammarElement.getAttribute(SRC_ATTRIBUTE);
+            if (!src.isEmpty() && !src.startsWith(BUILTIN_SCHEME)) {
+                String mode = grammarElement.getAttribute(MODE_ATTRIBUTE);
+                resources.add((mode.isEmpty() ? VOICE_INPUT_MODE : mode) + " " + src);
+            }
+        }
+        return resources;
+    }
+
+    private static void addPrefetchForm(Document document, List<String> hints) {
+        if (hints.isEmpty()) return;
+
+        Element formElement = DomUtils.appendNewElement(document.getDocumentElement(), FORM_ELEMENT);
+        formElement.setAttribute(ID_ATTRIBUTE, PREFETCH_FORM_ID);
+        Element fieldElement = null;
+        Element promptElement = null;
+
+        for (String hint : hints) {
+            int separatorIndex = hint.indexOf(' ');
+            String src = hint.substring(separatorIndex + 1);
+            Element element;
+            if (hint.startsWith(AUDIO_RESOURCE_PREFIX)) {
+                if (promptElement == null) {
+                    promptElement = DomUtils.appendNewElement(DomUtils.appendNewElement(formElement, BLOCK_ELEMENT),
+                                                              PROMPT_ATTRIBUTE);
+                }
+                element = DomUtils.appendNewElement(promptElement, AUDIO_ELEMENT);
+            } else {
+                if (fieldElement == null) {
+                    fieldElement = DomUtils.appendNewElement(formElement, FIELD_ELEMENT);
+                    fieldElement.setAttribute(NAME_ATTRIBUTE, PREFETCH_FIELD_NAME);
+                }
+                element = DomUtils.appendNewElement(fieldElement, GRAMMAR_ELEMENT);
+                element.setAttribute(MODE_ATTRIBUTE, hint.substring(0, separatorIndex));
+            }
+            element.setAttribute(SRC_ATTRIBUTE, src);
+            element.setAttribute(FETCH_HINT_ATTRIBUTE, PREFETCH_PROPERTY_VALUE);
+        }
+    }
+
+    private static void load(BoundedCounter counter, JsonObject counts, int maximumSize) {
+        if (counts == null) return;
+
+        for (Entry<String, JsonValue> entry : counts.entrySet()) {
+            counter.add(entry.getKey(), ((JsonNumber) entry.getValue()).longValue(), maximumSize);
+        }
+    }
+
+    /**
+     * A turn rendered in a document, with the resources used by its elements.
+     */
+    static final class RenderedTurn {
+        private final String mName;
+        private final Set<String> mResources;
+
+        /**
+         * @param name the turn name.
+         * @param element the element holding the turn, before any other turn
+         *            is added to it.
+         */
+        RenderedTurn(String name, Element element) {
+            Assert.notNull(name, "name");
+            mName = name;
+            mResources = getResources(element);
+        }
+    }
+
+    private static final class TurnStatistics {
+        private long mVisits;
+        private final BoundedCounter mSuccessors = new BoundedCounter();
+        private final BoundedCounter mResources = new BoundedCounter();
+    }
+
+    /**
+     * Frequency counter keeping at most a given number of keys. A new key
+     * replaces the least frequent one and inherits its count, so that
+     * frequent keys are eventually kept (space-saving algorithm).
+     */
+    private static final class BoundedCounter {
+        private final Map<String, Long> mCounts = new HashMap<String, Long>();
+        private long mTotal;
+
+        public void add(String key, long count, int maximumSize) {
+            mTotal += count;
+            Long currentCount = mCounts.get(key);
+            if (currentCount != null) {
+                mCounts.put(key, currentCount + count);
+                return;
+            }
+
+            if (mCounts.size() < maximumSize) {
+                mCounts.put(key, count);
+                return;
+            }
+
+            Entry<String, Long> leastFrequentEntry = null;
+            for (Entry<String, Long> entry : mCounts.entrySet()) {
+                if (leastFrequentEntry == null || entry.getValue() < leastFrequentEntry.getValue()) {
+                    leastFrequentEntry = entry;
+                }
+            }
+            mCounts.remove(leastFrequentEntry.getKey());
+            mCounts.put(key, leastFrequentEntry.getValue() + count);
+        }
+
+        public long getTotal() {
+            return mTotal;
+        }
+
+        public Set<Entry<String, Long>> entrySet() {
+            return mCounts.entrySet();
+        }
+
+        public JsonObjectBuilder asJson() {
+            JsonObjectBuilder builder = JsonUtils.createObjectBuilder();
+            for (Entry<String, Long> entry : mCounts.entrySet()) {
+                builder.add(entry.getKey(), entry.getValue());
+            }
+            return builder;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.rendering.voicexml;
+
+import java.io.*;
+
+import javax.xml.stream.*;
+
+import org.w3c.dom.*;
+
+import com.nuecho.rivr.core.servlet.*;
+import com.nuecho.rivr.core.util.*;
+
+/**
+ * {@link ServletResponseContent} streaming a {@link Document org.w3c.Document}
+ * directly to the response output stream through an {@link XMLStreamWriter}.
+ * Unlike {@link XmlDocumentServletResponseContent}, the document is neither
+ * pretty-printed nor buffered: it is serialized when
+ * {@link #writeTo(OutputStream)} is called and its length is therefore not
+ * known in advance.
+ * <p>
+ * The wrapped document must not be modified after this object is created.
+ * Since DOM implementations are not guaranteed to be thread-safe, even for
+ * read access, instances of this class must not be shared between requests.
+ * 
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public class StreamingXmlDocumentServletResponseContent implements ServletResponseContent {
+
+    private static final XMLOutputFactory XML_OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+    private final Document mDocument;
+    private final String mContentType;
+
+    public StreamingXmlDocumentServletResponseContent(Document document, String contentType) {
+        Assert.notNull(document, "document");
+        mDocument = document;
+        mContentType = contentType;
+    }
+
+    @Override
+    public String getContentType() {
+        return mContentType;
+    }
+
+    @Override
+    public void writeTo(OutputStream outputStream) throws IOException {
+        try {
+            XMLStreamWriter writer = XML_OUTPUT_FACTORY.createXMLStreamWriter(outputStream, Encoding.UTF_8.getId());
+            try {
+                DomUtils.writeToXmlStreamWriter(mDocument, writer, Encoding.UTF_8);
+                writer.flush();
+            } finally {
+                writer.close();
+            }
+        } catch (XMLStreamException exception) {
+            throw new IOException("Unable to write XML document.", exception);
+        }
+    }
+
+    @Override
+    public String getContentAsString() {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try {
+            writeTo(outputStream);
+            return new String(outputStream.toByteArray(), Encoding.UTF_8.getId());
+        } catch (IOException exception) {
+            throw new AssertionError(exception);
+        }
+    }
+
+    /**
+     * Always returns <code>null</code> since the document is streamed.
+     */
+    @Override
+    public Integer getContentLength() {
+        return null;
+    }
+}
@@ -3,6 +3,7 @@
  */
 package com.nuecho.rivr.voicexml.rendering.voicexml;
 
+import java.io.*;
 import java.text.*;
 import java.util.*;
 import java.util.Map.Entry;
@@ -170,6 +171,7 @@ public final class VoiceXmlDomUtil {
 
     public static final String RIVR_INPUT_TURN_PROPERTY = "inputTurn";
     public static final String RIVR_INPUT_TURN_SCOPE_OBJECT = RIVR_SCOPE_OBJECT + "." + RIVR_INPUT_TURN_PROPERTY;
+    public static final String RIVR_SUBMIT_PATH_SCOPE_OBJECT = RIVR_SCOPE_OBJECT + ".submitPath";
 
     public static final String RIVR_DIALOGUE_ID_PROPERTY = "dialogueId";
     public static final String RIVR_DIALOGUE_ID_SCOPE_OBJECT = RIVR_SCOPE_OBJECT + "." + RIVR_DIALOGUE_ID_PROPERTY;
@@ -189,6 +191,10 @@ public final class VoiceXmlDomUtil {
     private static final Pattern ECMASCRIPT_LINE_SEPARATOR_PATTERN = Pattern.compile("\\u2028");
     private static final Pattern ECMASCRIPT_PARAGRAPH_SEPARATOR_PATTERN = Pattern.compile("\\u2029");
     private static final Pattern URI_PATH_REPLACEMENT_CHAR = Pattern.compile("[^a-zA-Z0-9./_-]");
+    private static final Pattern URI_SCHEME_PATTERN = Pattern.compile("^[a-zA-Z][a-zA-Z0-9+.-]*:");
+
+    private static final String SRGS_XML_MEDIA_TYPE = "application/srgs+xml";
+    private static final String SRGS_ABNF_MEDIA_TYPE = "application/srgs";
 
     public static Element createVoiceXmlDocumentRoot(VoiceXmlDialogueContext voiceXmlDialogueContext) {
         String language = voiceXmlDialogueContext.getLanguage();
@@ -240,6 +246,151 @@ public final class VoiceXmlDomUtil {
         return vxmlElement.getOwnerDocument();
     }
 
+    /**
+     * Creates the document of an output turn when root document scaffolding
+     * is enabled (see
+     * {@link VoiceXmlDialogueContext#setRootDocumentScaffoldingEnabled(boolean)}
+     * ). The document refers to the scaffolded root document of the dialogue
+     * and only initializes the input turn and the submit path of the turn: the
+     * properties, the event handler, the fatal error form and the submit form
+     * are in the root document (see {@link #addRootDocumentScaffolding}).
+     * 
+     * @since 1.0.13
+     */
+    public static Document createScaffoldedDocument(VoiceXmlDialogueContext voiceXmlDialogueContext,
+                                                    VoiceXmlOutputTurn outputTurn) {
+        Element vxmlElement = createVoiceXmlDocumentRoot(voiceXmlDialogueContext);
+        vxmlElement.setAttribute(APPLICATION_ATTRIBUTE, getScaffoldedRootDocumentPath(voiceXmlDialogueContext));
+
+        StringBuilder script = new StringBuilder();
+        script.append(RIVR_SCOPE_OBJECT)
+              .append(".")
+              .append(LOCAL_ERROR_HANDLING_PROPERTY)
+              .append(" = ")
+              .append(FALSE)
+              .append("; ");
+
+        script.append(RIVR_INPUT_TURN_SCOPE_OBJECT).append(" = {}; ");
+
+        script.append(RIVR_SUBMIT_PATH_SCOPE_OBJECT)
+              .append(" = ")
+              .append(createEcmaScriptStringLiteral(getSubmitPathForTurn(voiceXmlDialogueContext, outputTurn)))
+              .append(";");
+        createScript(vxmlElement, script.toString());
+
+        return vxmlElement.getOwnerDocument();
+    }
+
+    /**
+     * Adds the parts of the output turn documents that only depend on the
+     * dialogue context to a root document: the fetch and context properties,
+     * the event handler, the fatal error form and the submit form. The fatal
+     * error form is created by the fatal error form factory of the context
+     * with a <code>null</code> turn.
+     * 
+     * @since 1.0.13
+     */
+    public static void addRootDocumentScaffolding(Document rootDocument, VoiceXmlDialogueContext voiceXmlDialogueContext) {
+        Element vxmlElement = rootDocument.getDocumentElement();
+        processFetchRendering(voiceXmlDialogueContext, vxmlElement);
+        processProperties(voiceXmlDialogueContext, vxmlElement);
+        addEventHandler(vxmlElement);
+        addFatalErrorHandlerForm(voiceXmlDialogueContext, rootDocument, null);
+        addSubmitForm(voiceXmlDialogueContext, rootDocument, EXPR_ATTRIBUTE, RIVR_SUBMIT_PATH_SCOPE_OBJECT);
+    }
+
+    /**
+     * Returns the path of the scaffolded root document of a dialogue. The path
+     * ends with a version derived from the fetch configuration, the properties
+     * and the fatal error form factory of the context, so that the VoiceXML
+     * platform fetches it again when they change.
+     * 
+     * @since 1.0.13
+     */
+    public static String getScaffoldedRootDocumentPath(VoiceXmlDialogueContext voiceXmlDialogueContext) {
+        final int prime = 31;
+        int version = 1;
+        version = prime * version + voiceXmlDialogueContext.getProperties().hashCode();
+        DefaultFetchConfiguration fetchConfiguration = voiceXmlDialogueContext.getFetchConfiguration();
+        version = prime * version + (fetchConfiguration == null ? 0 : fetchConfiguration.hashCode());
+        version = prime * version + System.identityHashCode(voiceXmlDialogueContext.getFatalErrorFormFactory());
+
+        return voiceXmlDialogueContext.getContextPath()
+               + voiceXmlDialogueContext.getServletPath()
+               + VoiceXmlDialogueServlet.ROOT_PATH
+               + voiceXmlDialogueContext.getDialogueId()
+               + "/"
+               + Integer.toHexString(version);
+    }
+
+    /**
+     * Finds the <code>&lt;goto&gt;</code> elements transitioning to a given
+     * target.
+     * 
+     * @param parent the element in which the search is done.
+     * @param next the value of the <code>next</code> attribute, e.g.
+     *            <code>#submitForm</code>.
+     * @return the matching elements, in document order.
+     * @since 1.0.13
+     */
+    public static List<Element> getGotoElements(Element parent, String next) {
+        List<Element> gotoElements = new ArrayList<Element>();
+        NodeList nodes = parent.getElementsByTagName(GOTO_ELEMENT);
+        for (int i = 0; i < nodes.getLength(); i++) {
+            Element gotoElement = (Element) nodes.item(i);
+            if (next.equals(gotoElement.getAttribute(NEXT_ATTRIBUTE))) {
+                gotoElements.add(gotoElement);
+            }
+        }
+        return gotoElements;
+    }
+
+    /**
+     * Adds the generic event handler of the output turns: events are added to
+     * the input turn, which is then submitted. A second error is handled by the
+     * fatal error form.
+     * 
+     * @since 1.0.13
+     */
+    public static void addEventHandler(Element vxmlElement) {
+        Element catchElement = DomUtils.appendNewElement(vxmlElement, CATCH_ELEMENT);
+
+        Element ifErrorElement = DomUtils.appendNewElement(catchElement, IF_ELEMENT);
+        ifErrorElement.setAttribute(COND_ATTRIBUTE, "_event.substring(0, 5) == \"error\"");
+
+        Element ifErrorHandlingElement = DomUtils.appendNewElement(ifErrorElement, IF_ELEMENT);
+        ifErrorHandlingElement.setAttribute(COND_ATTRIBUTE, RIVR_SCOPE_OBJECT + "." + LOCAL_ERROR_HANDLING_PROPERTY);
+        createGotoFatalHandler(ifErrorHandlingElement);
+
+        DomUtils.appendNewElement(ifErrorHandlingElement, ELSE_ELEMENT);
+
+        StringBuilder setErrorHandlingScript = new StringBuilder();
+        setErrorHandlingScript.append(RIVR_SCOPE_OBJECT)
+                              .append(".")
+                              .append(LOCAL_ERROR_HANDLING_PROPERTY)
+                              .append("=")
+                              .append(TRUE);
+        createScript(ifErrorHandlingElement, setErrorHandlingScript.toString());
+
+        addEventHandlerScript(catchElement);
+        createGotoSubmit(catchElement);
+    }
+
+    /**
+     * @since 1.0.13
+     */
+    public static void addEventHandlerScript(Element parent) {
+        StringBuilder addEventScript = new StringBuilder();
+        addEventScript.append(RIVR_SCOPE_OBJECT)
+                      .append(".addEventResult(")
+                      .append(EVENT_NAME_VARIABLE)
+                      .append(", ")
+                      .append(EVENT_MESSAGE_VARIABLE)
+                      .append(")");
+
+        createScript(parent, addEventScript.toString());
+    }
+
     private static void processProperties(VoiceXmlDialogueContext voiceXmlDialogueContext, Element vxmlElement) {
         Map<String, String> properties = voiceXmlDialogueContext.getProperties();
         if (properties != null) {
@@ -313,11 +464,25 @@ public final class VoiceXmlDomUtil {
             promptElement.setAttribute(XML_LANGUAGE_ATTRIBUTE, language);
         }
 
-        processAudioItems(audioItems, promptElement);
+        processAudioItems(audioItems, promptElement, voiceXmlDialogueContext);
     }
 
     public static void processAudioItems(List<? extends AudioItem> audioItems, Element promptElement)
             throws VoiceXmlDocumentRenderingException {
+        processAudioItems(audioItems, promptElement, null);
+    }
+
+    /**
+     * @param dialogueContext the context against which the relative audio file
+     *            locations are resolved (see
+     *            {@link #resolveAudioLocation(String, VoiceXmlDialogueContext)}
+     *            ). <code>null</code> to render locations as is.
+     * @since 1.0.13
+     */
+    public static void processAudioItems(List<? extends AudioItem> audioItems,
+                                         Element promptElement,
+                                         VoiceXmlDialogueContext dialogueContext)
+            throws VoiceXmlDocumentRenderingException {
 
         boolean lastItemWasText = false;
         for (AudioItem audioItem : audioItems) {
@@ -326,7 +491,7 @@ public final class VoiceXmlDomUtil {
                 Element audioElement = DomUtils.appendNewElement(promptElement, AUDIO_ELEMENT);
 
                 //src and expr are mutually exclusive, this is enforced in AudioFile.
-                setAttribute(audioElement, SRC_ATTRIBUTE, audioFile.getLocation());
+                setAttribute(audioElement, SRC_ATTRIBUTE, resolveAudioLocation(audioFile.getLocation(), dialogueContext));
                 setAttribute(audioElement, EXPR_ATTRIBUTE, audioFile.getExpression());
 
                 SpeechSynthesis alternate = audioFile.getAlternate();
@@ -478,10 +643,11 @@ public final class VoiceXmlDomUtil {
     private static Element createSubmitElement(Element parent,
                                                VoiceXmlDialogueContext voiceXmlDialogueContext,
                                                SubmitMethod method,
-                                               VoiceXmlOutputTurn outputTurn,
+                                               String targetAttribute,
+                                               String target,
                                                String... nameList) {
         Element submitElement = DomUtils.appendNewElement(parent, SUBMIT_ELEMENT);
-        submitElement.setAttribute(NEXT_ATTRIBUTE, getSubmitPathForTurn(voiceXmlDialogueContext, outputTurn));
+        submitElement.setAttribute(targetAttribute, target);
 
         submitElement.setAttribute(NAME_LIST_ATTRIBUTE, StringUtils.join(nameList, " "));
         submitElement.setAttribute(METHOD_ATTRIBUTE, method.name());
@@ -551,6 +717,13 @@ public final class VoiceXmlDomUtil {
     }
 
     public static void addSubmitForm(VoiceXmlDialogueContext dialogueContext, Document document, VoiceXmlOutputTurn turn) {
+        addSubmitForm(dialogueContext, document, NEXT_ATTRIBUTE, getSubmitPathForTurn(dialogueContext, turn));
+    }
+
+    private static void addSubmitForm(VoiceXmlDialogueContext dialogueContext,
+                                      Document document,
+                                      String targetAttribute,
+                                      String target) {
         Element vxmlElement = document.getDocumentElement();
         Element formElement = DomUtils.appendNewElement(vxmlElement, FORM_ELEMENT);
         formElement.setAttribute(ID_ATTRIBUTE, SUBMIT_FORM_ID);
@@ -569,13 +742,19 @@ public final class VoiceXmlDomUtil {
         Element submitElement = createSubmitElement(ifElement,
                                                     dialogueContext,
                                                     SubmitMethod.post,
-                                                    turn,
+                                                    targetAttribute,
+                                                    target,
                                                     INPUT_TURN_VARIABLE,
                                                     RECORDING_VARIABLE);
         submitElement.setAttribute(ENCTYPE_ATTRIBUTE, MULTIPART_FORM_DATA);
         DomUtils.appendNewElement(ifElement, ELSE_ELEMENT);
 
-        submitElement = createSubmitElement(ifElement, dialogueContext, SubmitMethod.post, turn, INPUT_TURN_VARIABLE);
+        createSubmitElement(ifElement,
+                            dialogueContext,
+                            SubmitMethod.post,
+                            targetAttribute,
+                            target,
+                            INPUT_TURN_VARIABLE);
     }
 
     public static void addFatalErrorHandlerForm(VoiceXmlDialogueContext dialogueContext,
@@ -591,11 +770,49 @@ public final class VoiceXmlDomUtil {
         return DomUtils.appendNewElement(formElement, BLOCK_ELEMENT);
     }
 
+    /**
+     * Resolves a relative audio file location (one that has no scheme and
+     * does not start with <code>/</code>) to the servlet audio URI when the
+     * dialogue context has an {@link AudioRepository}. Other locations are
+     * returned unchanged.
+     *
+     * @param location the location, possibly <code>null</code>.
+     * @param dialogueContext the dialogue context, possibly <code>null</code>.
+     * @since 1.0.13
+     */
+    public static String resolveAudioLocation(String location, VoiceXmlDialogueContext dialogueContext) {
+        if (location == null || dialogueContext == null || dialogueContext.getAudioRepository() == null)
+            return location;
+        if (location.startsWith("/") || URI_SCHEME_PATTERN.matcher(location).find()) return location;
+
+        return dialogueContext.getContextPath()
+               + dialogueContext.getServletPath()
+               + VoiceXmlDialogueServlet.AUDIO_PATH
+               + location;
+    }
+
     public static void processDtmfRecognition(DtmfRecognition dtmfRecognition, Element formItemElement)
             throws VoiceXmlDocumentRenderingException {
+        processDtmfRecognition(dtmfRecognition, formItemElement, null);
+    }
+
+    /**
+     * @param dialogueContext the context in which large inline grammars are
+     *            registered (see
+     *            {@link VoiceXmlDialogueContext#setGrammarRegistry(GrammarRegistry)}
+     *            ). <code>null</code> to inline all grammars.
+     * @since 1.0.13
+     */
+    public static void processDtmfRecognition(DtmfRecognition dtmfRecognition,
+                                              Element formItemElement,
+                                              VoiceXmlDialogueContext dialogueContext)
+            throws VoiceXmlDocumentRenderingException {
         if (dtmfRecognition == null) return;
 
-        VoiceXmlDomUtil.renderGrammars(dtmfRecognition.getGrammarItems(), formItemElement, DTMF_INPUT_MODE);
+        VoiceXmlDomUtil.renderGrammars(dtmfRecognition.getGrammarItems(),
+                                       formItemElement,
+                                       DTMF_INPUT_MODE,
+                                       dialogueContext);
 
         addDurationProperty(formItemElement, INTER_DIGIT_TIMEOUT_PROPERTY, dtmfRecognition.getInterDigitTimeout());
 
@@ -610,9 +827,26 @@ public final class VoiceXmlDomUtil {
 
     public static void processSpeechRecognition(SpeechRecognition speechRecognition, Element formItemElement)
             throws VoiceXmlDocumentRenderingException {
+        processSpeechRecognition(speechRecognition, formItemElement, null);
+    }
+
+    /**
+     * @param dialogueContext the context in which large inline grammars are
+     *            registered (see
+     *            {@link VoiceXmlDialogueContext#setGrammarRegistry(GrammarRegistry)}
+     *            ). <code>null</code> to inline all grammars.
+     * @since 1.0.13
+     */
+    public static void processSpeechRecognition(SpeechRecognition speechRecognition,
+                                              Element formItemElement,
+                                              VoiceXmlDialogueContext dialogueContext)
+            throws VoiceXmlDocumentRenderingException {
         if (speechRecognition == null) return;
 
-        VoiceXmlDomUtil.renderGrammars(speechRecognition.getGrammarItems(), formItemElement, VOICE_INPUT_MODE);
+        VoiceXmlDomUtil.renderGrammars(speechRecognition.getGrammarItems(),
+                                       formItemElement,
+                                       VOICE_INPUT_MODE,
+                                       dialogueContext);
 
         addDurationProperty(formItemElement, COMPLETE_TIMEOUT_PROPERTY, speechRecognition.getCompleteTimeout());
 
@@ -639,10 +873,31 @@ public final class VoiceXmlDomUtil {
 
     public static void renderGrammars(List<? extends GrammarItem> grammarItems, Element parent, String mode)
             throws VoiceXmlDocumentRenderingException {
+        renderGrammars(grammarItems, parent, mode, null);
+    }
+
+    /**
+     * Renders grammars. Inline grammars above the threshold of the dialogue
+     * context grammar registry are registered and rendered as references to
+     * their URI instead of being copied in the document.
+     *
+     * @param dialogueContext the dialogue context, or <code>null</code> to
+     *            inline all grammars.
+     * @since 1.0.13
+     */
+    public static void renderGrammars(List<? extends GrammarItem> grammarItems,
+                                      Element parent,
+                                      String mode,
+                                      VoiceXmlDialogueContext dialogueContext)
+            throws VoiceXmlDocumentRenderingException {
         for (GrammarItem grammarItem : grammarItems) {
             Element grammarElement;
+            String registeredGrammarUri = registerGrammar(grammarItem, dialogueContext);
 
-            if (grammarItem instanceof GrammarReference) {
+            if (registeredGrammarUri != null) {
+                grammarElement = DomUtils.appendNewElement(parent, GRAMMAR_ELEMENT);
+                grammarElement.setAttribute(SRC_ATTRIBUTE, registeredGrammarUri);
+            } else if (grammarItem instanceof GrammarReference) {
                 grammarElement = DomUtils.appendNewElement(parent, GRAMMAR_ELEMENT);
                 GrammarReference grammarReference = (GrammarReference) grammarItem;
 
@@ -674,6 +929,60 @@ public final class VoiceXmlDomUtil {
         }
     }
 
+    private static String registerGrammar(GrammarItem grammarItem, VoiceXmlDialogueContext dialogueContext)
+            throws VoiceXmlDocumentRenderingException {
+        if (dialogueContext == null) return null;
+        GrammarRegistry grammarRegistry = dialogueContext.getGrammarRegistry();
+        if (grammarRegistry == null) return null;
+
+        int threshold = grammarRegistry.getThreshold();
+        String contentType = grammarItem.getMediaType();
+        byte[] content;
+        if (grammarItem instanceof InlineStringGrammar) {
+            InlineStringGrammar inlineStringGrammar = (InlineStringGrammar) grammarItem;
+            // these attributes cannot be specified on a grammar reference
+            if (inlineStringGrammar.getBase() != null
+                || inlineStringGrammar.getLanguage() != null
+                || inlineStringGrammar.getRoot() != null
+                || inlineStringGrammar.getTagFormat() != null
+                || inlineStringGrammar.getVersion() != null) return null;
+
+            String source = inlineStringGrammar.getSource();
+            // a UTF-8 character takes at most 3 bytes
+            if ((long) source.length() * 3 <= threshold) return null;
+
+            try {
+                content = source.getBytes(Encoding.UTF_8.getId());
+            } catch (UnsupportedEncodingException exception) {
+                throw new AssertionError(exception);
+            }
+
+            if (contentType == null) {
+                contentType = source.trim().startsWith("<") ? SRGS_XML_MEDIA_TYPE : SRGS_ABNF_MEDIA_TYPE;
+            }
+        } else if (grammarItem instanceof InlineXmlGrammar) {
+            Document document = ((InlineXmlGrammar) grammarItem).getDocument();
+            if (!document.getDocumentElement().getTagName().equals(GRAMMAR_ELEMENT)) return null;
+
+            try {
+                content = DomUtils.writeToByteArray(document, Encoding.UTF_8);
+            } catch (IOException exception) {
+                throw new VoiceXmlDocumentRenderingException("Unable to serialize XML grammar", exception);
+            }
+
+            if (contentType == null) {
+                contentType = SRGS_XML_MEDIA_TYPE;
+            }
+        } else return null;
+
+        if (content.length <= threshold) return null;
+
+        return dialogueContext.getContextPath()
+               + dialogueContext.getServletPath()
+               + VoiceXmlDialogueServlet.GRAMMAR_PATH
+               + grammarRegistry.register(content, contentType);
+    }
+
     public static void renderInlineStringGrammar(Element grammarElement, InlineStringGrammar inlineStringGrammar) {
         DomUtils.appendNewCData(grammarElement, inlineStringGrammar.getSource());
         setAttribute(grammarElement, BASE_ATTRIBUTE, inlineStringGrammar.getBase());
@@ -14,6 +14,7 @@ import org.w3c.dom.*;
 import com.nuecho.rivr.core.servlet.*;
 import com.nuecho.rivr.core.util.*;
 import com.nuecho.rivr.voicexml.dialogue.*;
+import com.nuecho.rivr.voicexml.rendering.voicexml.PrefetchHintLearner.RenderedTurn;
 import com.nuecho.rivr.voicexml.turn.*;
 import com.nuecho.rivr.voicexml.turn.input.*;
 import com.nuecho.rivr.voicexml.turn.last.*;
@@ -22,7 +23,11 @@ import com.nuecho.rivr.voicexml.turn.output.*;
 /**
  * VoiceXML specialization of {@link StepRenderer}. {@link VoiceXmlOutputTurn
  * VoiceXmlOutputTurns} and {@link VoiceXmlLastTurn VoiceXmlLastTurns} are
- * converted to VoiceXML documents.
+ * converted to VoiceXML documents. The turns buffered by a
+ * {@link CoalescingVoiceXmlDialogueChannel}, if any, are rendered as forms
+ * preceding the ones of the converted turn. If the dialogue context has a
+ * {@link PrefetchHintLearner}, the resources likely to be used by the next
+ * turns are declared at the end of the document.
  * 
  * @author Nu Echo Inc.
  */
@@ -30,10 +35,26 @@ public class VoiceXmlStepRenderer implements
         StepRenderer<VoiceXmlInputTurn, VoiceXmlOutputTurn, VoiceXmlLastTurn, VoiceXmlDialogueContext> {
 
     private static final String VOICE_XML_MIME_TYPE = "application/voicexml+xml";
+    private static final String COALESCED_FORM_ID_PREFIX = "coalescedForm";
 
     private final List<VoiceXmlDocumentAdapter> mVoiceXmlDocumentAdapters;
+    private final boolean mStreamingEnabled;
 
     public VoiceXmlStepRenderer(List<? extends VoiceXmlDocumentAdapter> voiceXmlDocumentAdapters) {
+        this(voiceXmlDocumentAdapters, false);
+    }
+
+    /**
+     * @param voiceXmlDocumentAdapters the adapters applied to each generated
+     *            document, may be <code>null</code>.
+     * @param streamingEnabled whether the documents are streamed to the
+     *            response (see {@link StreamingXmlDocumentServletResponseContent})
+     *            instead of being serialized to a buffer beforehand.
+     * @since 1.0.13
+     */
+    public VoiceXmlStepRenderer(List<? extends VoiceXmlDocumentAdapter> voiceXmlDocumentAdapters,
+                                boolean streamingEnabled) {
+        mStreamingEnabled = streamingEnabled;
         if (voiceXmlDocumentAdapters != null) {
             mVoiceXmlDocumentAdapters = new ArrayList<VoiceXmlDocumentAdapter>(voiceXmlDocumentAdapters);
         } else {
@@ -62,9 +83,21 @@ public class VoiceXmlStepRenderer implements
     private ServletResponseContent renderTurn(VoiceXmlDocumentTurn turn, VoiceXmlDialogueContext voiceXmlDialogueContext)
             throws StepRendererException {
         Assert.notNull(turn, "turn");
+        PrefetchHintLearner prefetchHintLearner = voiceXmlDialogueContext.getPrefetchHintLearner();
+        List<RenderedTurn> renderedTurns = prefetchHintLearner == null ? null : new ArrayList<RenderedTurn>();
+
         Document voiceXmlDocument;
         try {
             voiceXmlDocument = turn.getVoiceXmlDocument(voiceXmlDialogueContext);
+            List<VoiceXmlOutputTurn> coalescedTurns = voiceXmlDialogueContext.completeTurn();
+            // the resources of the turn are collected before the coalesced turns are added to its document
+            RenderedTurn renderedTurn = renderedTurns == null
+                    ? null
+                    : new RenderedTurn(turn.getName(), voiceXmlDocument.getDocumentElement());
+            insertCoalescedTurns(voiceXmlDocument, coalescedTurns, voiceXmlDialogueContext, renderedTurns);
+            if (renderedTurns != null) {
+                renderedTurns.add(renderedTurn);
+            }
         } catch (VoiceXmlDocumentRenderingException exception) {
             throw new StepRendererException(exception);
         }
@@ -79,7 +112,13 @@ public class VoiceXmlStepRenderer implements
             throw new StepRendererException("Error white applying adapter.", exception);
         }
 
-        voiceXmlDialogueContext.incrementTurnIndex();
+        if (prefetchHintLearner != null) {
+            prefetchHintLearner.process(renderedTurns, voiceXmlDocument, voiceXmlDialogueContext);
+        }
+
+        if (mStreamingEnabled) return new StreamingXmlDocumentServletResponseContent(voiceXmlDocument,
+                                                                                     VOICE_XML_MIME_TYPE);
+
         try {
             return new XmlDocumentServletResponseContent(voiceXmlDocument, VOICE_XML_MIME_TYPE);
         } catch (IOException exception) {
@@ -87,4 +126,54 @@ public class VoiceXmlStepRenderer implements
         }
     }
 
+    /**
+     * Inserts the forms of the turns buffered by a
+     * {@link CoalescingVoiceXmlDialogueChannel} before the first form of the
+     * document, each one continuing with the next.
+     *
+     * @param renderedTurns the list to which the coalesced turns are added in
+     *            execution order, <code>null</code> if they are not recorded.
+     */
+    private static void insertCoalescedTurns(Document document,
+                                             List<VoiceXmlOutputTurn> coalescedTurns,
+                                             VoiceXmlDialogueContext voiceXmlDialogueContext,
+                                             List<RenderedTurn> renderedTurns) throws VoiceXmlDocumentRenderingException {
+        if (coalescedTurns.isEmpty()) return;
+
+        Element vxmlElement = document.getDocumentElement();
+        Element firstFormElement = getFirstForm(vxmlElement);
+        String nextFormId = firstFormElement.getAttribute(VoiceXmlDomUtil.ID_ATTRIBUTE);
+        if (nextFormId.isEmpty()) {
+            nextFormId = VoiceXmlDomUtil.FORM_ID;
+            firstFormElement.setAttribute(VoiceXmlDomUtil.ID_ATTRIBUTE, nextFormId);
+        }
+
+        Node insertionPoint = firstFormElement;
+        RenderedTurn[] renderedCoalescedTurns = new RenderedTurn[coalescedTurns.size()];
+        for (int index = coalescedTurns.size() - 1; index >= 0; index--) {
+            String formId = COALESCED_FORM_ID_PREFIX + index;
+            VoiceXmlOutputTurn coalescedTurn = coalescedTurns.get(index);
+            Element formElement = coalescedTurn.createCoalescedForm(document,
+                                                                    formId,
+                                                                    nextFormId,
+                                                                    voiceXmlDialogueContext);
+            renderedCoalescedTurns[index] = new RenderedTurn(coalescedTurn.getName(), formElement);
+            vxmlElement.insertBefore(formElement, insertionPoint);
+            insertionPoint = formElement;
+            nextFormId = formId;
+        }
+
+        if (renderedTurns != null) {
+            renderedTurns.addAll(Arrays.asList(renderedCoalescedTurns));
+        }
+    }
+
+    private static Element getFirstForm(Element vxmlElement) throws VoiceXmlDocumentRenderingException {
+        for (Node node = vxmlElement.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node instanceof Element && VoiceXmlDomUtil.FORM_ELEMENT.equals(((Element) node).getTagName()))
+                return (Element) node;
+        }
+        throw new VoiceXmlDocumentRenderingException("Unable to coalesce turns: document has no form.");
+    }
+
 }
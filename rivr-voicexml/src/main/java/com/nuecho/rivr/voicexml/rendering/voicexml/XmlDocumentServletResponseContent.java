@@ -24,9 +24,7 @@ public class XmlDocumentServletResponseContent implements ServletResponseContent
     private final String mContentType;
 
     public XmlDocumentServletResponseContent(Document document, String contentType) throws IOException {
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-        writeToOutputStream(document, byteArrayOutputStream, Encoding.UTF_8);
-        mContent = byteArrayOutputStream.toByteArray();
+        mContent = writeToByteArray(document, Encoding.UTF_8);
         mContentType = contentType;
     }
 
@@ -0,0 +1,401 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.servlet;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+import javax.servlet.http.*;
+
+import com.nuecho.rivr.core.util.*;
+
+/**
+ * Audio files served by the {@link VoiceXmlDialogueServlet} from a local
+ * directory, under {@link VoiceXmlDialogueServlet#AUDIO_PATH}.
+ * <p>
+ * Files are memory-mapped the first time they are requested and kept mapped,
+ * outside of the Java heap, as long as the total size of the mapped files does
+ * not exceed the {@link #setCacheSize(long) cache size}. When it does, the
+ * least recently served files are unmapped first. Files larger than the cache
+ * size are transferred from their {@link FileChannel} on each request.
+ * <p>
+ * Responses include an <code>ETag</code> and a <code>Last-Modified</code>
+ * header, both derived from the file size and modification time, so that
+ * conditional requests can be answered with a <code>304 Not Modified</code>
+ * status. Single byte ranges (<code>Range: bytes=...</code>, optionally with
+ * <code>If-Range</code>) are answered with a <code>206 Partial Content</code>
+ * status.
+ * <p>
+ * The size and modification time of a file are checked on each request and a
+ * modified file is mapped again. Files should however be replaced atomically
+ * (e.g. by renaming a new file over the old one) rather than rewritten in
+ * place: on most platforms, truncating a mapped file makes accessing the
+ * mapping fail.
+ *
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public final class AudioRepository {
+
+    public static final long DEFAULT_CACHE_SIZE = 64L * 1024 * 1024;
+
+    private static final String IF_NONE_MATCH = "If-None-Match";
+    private static final String IF_MODIFIED_SINCE = "If-Modified-Since";
+    private static final String IF_RANGE = "If-Range";
+    private static final String RANGE = "Range";
+    private static final String ETAG = "ETag";
+    private static final String LAST_MODIFIED = "Last-Modified";
+    private static final String CACHE_CONTROL = "Cache-Control";
+    private static final String ACCEPT_RANGES = "Accept-Ranges";
+    private static final String CONTENT_RANGE = "Content-Range";
+    private static final String CONTENT_LENGTH = "Content-Length";
+    private static final String WEAK_ETAG_PREFIX = "W/";
+
+    private static final String BYTES_UNIT = "bytes";
+    private static final String BYTE_RANGE_PREFIX = BYTES_UNIT + "=";
+    private static final long[] UNSATISFIABLE_RANGE = new long[0];
+
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+    private static final Map<String, String> CONTENT_TYPES = new HashMap<String, String>();
+
+    static {
+        CONTENT_TYPES.put("wav", "audio/x-wav");
+        CONTENT_TYPES.put("mp3", "audio/mpeg");
+        CONTENT_TYPES.put("ogg", "audio/ogg");
+        CONTENT_TYPES.put("au", "audio/basic");
+        CONTENT_TYPES.put("ul", "audio/basic");
+        CONTENT_TYPES.put("al", "audio/x-alaw-basic");
+        CONTENT_TYPES.put("vox", "audio/x-vox");
+    }
+
+    private final File mDirectory;
+    private long mCacheSize = DEFAULT_CACHE_SIZE;
+    private long mCachedSize;
+
+    private final LinkedHashMap<String, MappedAudioFile> mCache = new LinkedHashMap<String, MappedAudioFile>(16,
+                                                                                                          0.75f,
+                                                                                                          true);
+    private final AtomicLong mHitCount = new AtomicLong();
+    private final AtomicLong mMissCount = new AtomicLong();
+
+    /**
+     * @param directory the directory from which files are served. Cannot be
+     *            <code>null</code>.
+     * @throws IOException if the directory does not exist or cannot be
+     *             resolved.
+     */
+    public AudioRepository(File directory) throws IOException {
+        Assert.notNull(directory, "directory");
+        mDirectory = directory.getCanonicalFile();
+        if (!mDirectory.isDirectory()) throw new FileNotFoundException("Not a directory: " + mDirectory);
+    }
+
+    public File getDirectory() {
+        return mDirectory;
+    }
+
+    /**
+     * Sets the maximum total size of the memory-mapped files.
+     *
+     * @param cacheSize the maximum size, in bytes. 0 disables the cache.
+     */
+    public synchronized void setCacheSize(long cacheSize) {
+        Assert.notNegative(cacheSize, "cacheSize");
+        mCacheSize = cacheSize;
+        evict();
+    }
+
+    public synchronized long getCacheSize() {
+        return mCacheSize;
+    }
+
+    /**
+     * @return the total size, in bytes, of the files currently memory-mapped.
+     */
+    public synchronized long getCachedSize() {
+        return mCachedSize;
+    }
+
+    /**
+     * @return the number of requests served from a memory-mapped file.
+     */
+    public long getHitCount() {
+        return mHitCount.get();
+    }
+
+    /**
+     * @return the number of requests for which the file was not already
+     *         memory-mapped.
+     */
+    public long getMissCount() {
+        return mMissCount.get();
+    }
+
+    /**
+     * Sends a file, a part of it or a <code>304 Not Modified</code> status if
+     * the client already has it.
+     *
+     * @param path the path of the file, relative to the directory.
+     * @param contentType the file content type, or <code>null</code> to
+     *            derive it from the file extension.
+     * @param maxAge how long the client may use the file without revalidating
+     *            it. {@link Duration#ZERO} means that the client must
+     *            revalidate on each use.
+     * @return <code>false</code> if there is no such file, in which case
+     *         nothing is sent.
+     */
+    public boolean send(HttpServletRequest request,
+                        HttpServletResponse response,
+                        String path,
+                        String contentType,
+                        Duration maxAge) throws IOException {
+        MappedAudioFile audioFile = getAudioFile(path);
+        if (audioFile == null) return false;
+
+        response.setHeader(ACCEPT_RANGES, BYTES_UNIT);
+        response.setHeader(ETAG, audioFile.mETag);
+        response.setDateHeader(LAST_MODIFIED, audioFile.mLastModified);
+        response.setHeader(CACHE_CONTROL, maxAge.getMilliseconds() == 0
+                ? "no-cache"
+                : "private, max-age=" + maxAge.getMilliseconds() / Duration.SECOND_IN_MILLIS);
+
+        if (isNotModified(request, audioFile)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return true;
+        }
+
+        long length = audioFile.mLength;
+        long start = 0;
+        long end = length - 1;
+
+        String range = request.getHeader(RANGE);
+        if (range != null && isRangeApplicable(request, audioFile)) {
+            long[] bounds = parseRange(range, length);
+            if (bounds == UNSATISFIABLE_RANGE) {
+                response.setHeader(CONTENT_RANGE, BYTES_UNIT + " */" + length);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return true;
+            }
+
+            if (bounds != null) {
+                start = bounds[0];
+                end = bounds[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(CONTENT_RANGE, BYTES_UNIT + " " + start + "-" + end + "/" + length);
+            }
+        }
+
+        response.setContentType(contentType != null ? contentType : getContentType(path));
+        long count = end - start + 1;
+        response.setHeader(CONTENT_LENGTH, Long.toString(count));
+
+        WritableByteChannel outputChannel = Channels.newChannel(response.getOutputStream());
+        if (audioFile.mContent != null) {
+            ByteBuffer content = audioFile.mContent.duplicate();
+            content.position((int) start);
+            content.limit((int) (end + 1));
+            while (content.hasRemaining()) {
+                outputChannel.write(content);
+            }
+        } else {
+            transfer(audioFile.mFile, start, count, outputChannel);
+        }
+        return true;
+    }
+
+    private MappedAudioFile getAudioFile(String path) throws IOException {
+        if (!isValidPath(path)) return null;
+
+        MappedAudioFile cachedAudioFile;
+        synchronized (this) {
+            cachedAudioFile = mCache.get(path);
+        }
+
+        if (cachedAudioFile != null && cachedAudioFile.isCurrent()) {
+            mHitCount.incrementAndGet();
+            return cachedAudioFile;
+        }
+
+        mMissCount.incrementAndGet();
+        File file = new File(mDirectory, path).getCanonicalFile();
+        if (!file.getPath().startsWith(mDirectory.getPath() + File.separator) || !file.isFile()) return null;
+
+        long length = file.length();
+        long lastModified = file.lastModified();
+        synchronized (this) {
+            if (length > mCacheSize || length > Integer.MAX_VALUE)
+                return new MappedAudioFile(file, length, lastModified, null);
+        }
+
+        MappedAudioFile audioFile = new MappedAudioFile(file, length, lastModified, map(file, length));
+        synchronized (this) {
+            MappedAudioFile replacedAudioFile = mCache.put(path, audioFile);
+            if (replacedAudioFile != null) {
+                mCachedSize -= replacedAudioFile.mLength;
+            }
+            mCachedSize += length;
+            evict();
+        }
+        return audioFile;
+    }
+
+    private void evict() {
+        Iterator<MappedAudioFile> iterator = mCache.values().iterator();
+        while (mCachedSize > mCacheSize && iterator.hasNext()) {
+            // the mapping is released when the buffer is garbage-collected
+            mCachedSize -= iterator.next().mLength;
+            iterator.remove();
+        }
+    }
+
+    private static boolean isValidPath(String path) {
+        if (path.isEmpty() || path.startsWith("/") || path.indexOf('\\') != -1 || path.indexOf('\0') != -1)
+            return false;
+
+        for (String segment : path.split("/")) {
+            if (segment.equals("..")) return false;
+        }
+        return true;
+    }
+
+    private static ByteBuffer map(File file, long length) throws IOException {
+        FileInputStream inputStream = new FileInputStream(file);
+        try {
+            return inputStream.getChannel().map(MapMode.READ_ONLY, 0, length);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    private static void transfer(File file, long start, long count, WritableByteChannel outputChannel)
+            throws IOException {
+        FileInputStream inputStream = new FileInputStream(file);
+        try {
+            FileChannel fileChannel = inputStream.getChannel();
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long transferred = fileChannel.transferTo(position, remaining, outputChannel);
+                if (transferred <= 0) throw new EOFException("File truncated while being sent: " + file);
+                position += transferred;
+                remaining -= transferred;
+            }
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    private static boolean isNotModified(HttpServletRequest request, MappedAudioFile audioFile) {
+        String ifNoneMatch = request.getHeader(IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            for (String candidate : ifNoneMatch.split(",")) {
+                candidate = candidate.trim();
+                if (candidate.startsWith(WEAK_ETAG_PREFIX)) {
+                    candidate = candidate.substring(WEAK_ETAG_PREFIX.length());
+                }
+                if (candidate.equals("*") || candidate.equals(audioFile.mETag)) return true;
+            }
+            return false;
+        }
+
+        long ifModifiedSince = getDateHeader(request, IF_MODIFIED_SINCE);
+        return ifModifiedSince != -1 && ifModifiedSince >= audioFile.mLastModified;
+    }
+
+    private static boolean isRangeApplicable(HttpServletRequest request, MappedAudioFile audioFile) {
+        String ifRange = request.getHeader(IF_RANGE);
+        if (ifRange == null) return true;
+        if (ifRange.trim().startsWith("\"")) return ifRange.trim().equals(audioFile.mETag);
+
+        long date = getDateHeader(request, IF_RANGE);
+        return date != -1 && date == audioFile.mLastModified;
+    }
+
+    private static long getDateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException exception) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return the first and last positions of the range,
+     *         {@link #UNSATISFIABLE_RANGE} if the range is outside of the file,
+     *         or <code>null</code> if the header must be ignored (malformed or
+     *         multiple ranges).
+     */
+    private static long[] parseRange(String range, long length) {
+        range = range.trim();
+        if (!range.startsWith(BYTE_RANGE_PREFIX)) return null;
+
+        String byteRange = range.substring(BYTE_RANGE_PREFIX.length()).trim();
+        if (byteRange.indexOf(',') != -1) return null;
+
+        int dashIndex = byteRange.indexOf('-');
+        if (dashIndex == -1) return null;
+
+        String first = byteRange.substring(0, dashIndex).trim();
+        String last = byteRange.substring(dashIndex + 1).trim();
+        try {
+            if (first.isEmpty()) {
+                // suffix range: the last N bytes
+                long suffixLength = Long.parseLong(last);
+                if (suffixLength <= 0 || length == 0) return UNSATISFIABLE_RANGE;
+                return new long[] {Math.max(0, length - suffixLength), length - 1};
+            }
+
+            long start = Long.parseLong(first);
+            if (start < 0) return null;
+
+            long end = length - 1;
+            if (!last.isEmpty()) {
+                long lastPosition = Long.parseLong(last);
+                if (lastPosition < start) return null;
+                end = Math.min(lastPosition, end);
+            }
+
+            if (start >= length) return UNSATISFIABLE_RANGE;
+            return new long[] {start, end};
+        } catch (NumberFormatException exception) {
+            return null;
+        }
+    }
+
+    private static String getContentType(String path) {
+        int dotIndex = path.lastIndexOf('.');
+        if (dotIndex == -1) return DEFAULT_CONTENT_TYPE;
+
+        String contentType = CONTENT_TYPES.get(path.substring(dotIndex + 1).toLowerCase(Locale.US));
+        return contentType != null ? contentType : DEFAULT_CONTENT_TYPE;
+    }
+
+    private static final class MappedAudioFile {
+        private final File mFile;
+        private final long mLength;
+        private final long mModificationTime;
+        private final long mLastModified;
+        private final String mETag;
+        private final ByteBuffer mContent;
+
+        public MappedAudioFile(File file, long length, long lastModified, ByteBuffer content) {
+            mFile = file;
+            mLength = length;
+            mModificationTime = lastModified;
+            // HTTP dates have a one-second resolution
+            mLastModified = lastModified / Duration.SECOND_IN_MILLIS * Duration.SECOND_IN_MILLIS;
+            mETag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+            mContent = content;
+        }
+
+        public boolean isCurrent() {
+            return mFile.length() == mLength && mFile.lastModified() == mModificationTime;
+        }
+    }
+}
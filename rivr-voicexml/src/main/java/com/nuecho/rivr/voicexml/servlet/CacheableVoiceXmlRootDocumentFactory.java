@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.servlet;
+
+import javax.servlet.http.*;
+
+/**
+ * {@link VoiceXmlRootDocumentFactory} able to declare that the root document
+ * only depends on the context path and the servlet path of the request. Such
+ * a document is rendered once by the {@link VoiceXmlDialogueServlet}, then
+ * served from memory with an entity tag and a <code>Cache-Control</code>
+ * header, allowing the VoiceXML platform to cache it.
+ * 
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public interface CacheableVoiceXmlRootDocumentFactory extends VoiceXmlRootDocumentFactory {
+
+    /**
+     * Indicates whether the root document returned for this request can be
+     * cached.
+     * 
+     * @param request the root document request.
+     * @return <code>true</code> if the document only depends on the context
+     *         path and the servlet path of the request.
+     */
+    boolean isCacheable(HttpServletRequest request);
+
+}
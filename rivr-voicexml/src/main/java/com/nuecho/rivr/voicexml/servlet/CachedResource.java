@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.servlet;
+
+import java.io.*;
+import java.security.*;
+import java.util.zip.*;
+
+import javax.servlet.http.*;
+
+import com.nuecho.rivr.core.util.*;
+
+/**
+ * Immutable resource content served from memory. The entity tag and the
+ * compressed form of the content are computed once, when the resource is
+ * created.
+ * <p>
+ * Responses include an <code>ETag</code>, a <code>Last-Modified</code>, a
+ * <code>Cache-Control</code> and a <code>Content-Length</code> header. The
+ * content is sent compressed with gzip if the client accepts it and if this
+ * makes it smaller. Conditional requests (<code>If-None-Match</code> or
+ * <code>If-Modified-Since</code>) for an unchanged resource are answered with
+ * a <code>304 Not Modified</code> status and an empty body.
+ * 
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public final class CachedResource {
+
+    private static final String IF_NONE_MATCH = "If-None-Match";
+    private static final String IF_MODIFIED_SINCE = "If-Modified-Since";
+    private static final String ACCEPT_ENCODING = "Accept-Encoding";
+    private static final String ETAG = "ETag";
+    private static final String LAST_MODIFIED = "Last-Modified";
+    private static final String CACHE_CONTROL = "Cache-Control";
+    private static final String CONTENT_ENCODING = "Content-Encoding";
+    private static final String VARY = "Vary";
+
+    private static final String GZIP = "gzip";
+    private static final String WEAK_ETAG_PREFIX = "W/";
+    private static final String GZIP_ETAG_SUFFIX = "-gz";
+
+    private final byte[] mContent;
+    private final byte[] mCompressedContent;
+    private final String mContentType;
+    private final String mETag;
+    private final String mCompressedETag;
+    private final long mLastModified;
+
+    /**
+     * @param content the resource content. Must not be modified afterward.
+     * @param contentType the resource content type.
+     */
+    public CachedResource(byte[] content, String contentType) {
+        this(content, contentType, System.currentTimeMillis());
+    }
+
+    /**
+     * @param content the resource content. Must not be modified afterward.
+     * @param contentType the resource content type.
+     * @param lastModified the time at which the resource was last modified,
+     *            in milliseconds since the epoch.
+     */
+    public CachedResource(byte[] content, String contentType, long lastModified) {
+        Assert.notNull(content, "content");
+        Assert.notNull(contentType, "contentType");
+        mContent = content;
+        mContentType = contentType;
+        // HTTP dates have a one-second resolution
+        mLastModified = lastModified / Duration.SECOND_IN_MILLIS * Duration.SECOND_IN_MILLIS;
+
+        String digest = digest(content);
+        mETag = "\"" + digest + "\"";
+
+        byte[] compressedContent = compress(content);
+        if (compressedContent.length < content.length) {
+            mCompressedContent = compressedContent;
+            mCompressedETag = "\"" + digest + GZIP_ETAG_SUFFIX + "\"";
+        } else {
+            mCompressedContent = null;
+            mCompressedETag = null;
+        }
+    }
+
+    public String getETag() {
+        return mETag;
+    }
+
+    public String getContentType() {
+        return mContentType;
+    }
+
+    public long getLastModified() {
+        return mLastModified;
+    }
+
+    /**
+     * @return the size of the uncompressed content, in bytes.
+     */
+    public int getSize() {
+        return mContent.length;
+    }
+
+    /**
+     * Sends this resource, or a <code>304 Not Modified</code> status if the
+     * client already has it.
+     * 
+     * @param maxAge how long the client may use the resource without
+     *            revalidating it. {@link Duration#ZERO} means that the client
+     *            must revalidate on each use.
+     */
+    public void send(HttpServletRequest request, HttpServletResponse response, Duration maxAge) throws IOException {
+        send(request, response, maxAge, false);
+    }
+
+    /**
+     * Sends this resource, or a <code>304 Not Modified</code> status if the
+     * client already has it.
+     * 
+     * @param maxAge how long the client may use the resource without
+     *            revalidating it. {@link Duration#ZERO} means that the client
+     *            must revalidate on each use.
+     * @param immutable <code>true</code> if the content served at the request
+     *            URI never changes, in which case the client does not need to
+     *            revalidate the resource even when the user reloads it.
+     */
+    public void send(HttpServletRequest request, HttpServletResponse response, Duration maxAge, boolean immutable)
+            throws IOException {
+        boolean compressed = mCompressedContent != null && acceptsGzip(request.getHeader(ACCEPT_ENCODING));
+        String eTag = compressed ? mCompressedETag : mETag;
+
+        if (mCompressedContent != null) {
+            response.setHeader(VARY, ACCEPT_ENCODING);
+        }
+        response.setHeader(ETAG, eTag);
+        response.setDateHeader(LAST_MODIFIED, mLastModified);
+        response.setHeader(CACHE_CONTROL, getCacheControl(maxAge, immutable));
+
+        if (isNotModified(request)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        byte[] content = compressed ? mCompressedContent : mContent;
+        if (compressed) {
+            response.setHeader(CONTENT_ENCODING, GZIP);
+        }
+        response.setContentType(mContentType);
+        response.setContentLength(content.length);
+        response.getOutputStream().write(content);
+    }
+
+    private boolean isNotModified(HttpServletRequest request) {
+        String ifNoneMatch = request.getHeader(IF_NONE_MATCH);
+        if (ifNoneMatch != null) return matches(ifNoneMatch);
+
+        long ifModifiedSince;
+        try {
+            ifModifiedSince = request.getDateHeader(IF_MODIFIED_SINCE);
+        } catch (IllegalArgumentException exception) {
+            return false;
+        }
+        return ifModifiedSince != -1 && ifModifiedSince >= mLastModified;
+    }
+
+    private boolean matches(String ifNoneMatch) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*")) return true;
+            if (candidate.startsWith(WEAK_ETAG_PREFIX)) {
+                candidate = candidate.substring(WEAK_ETAG_PREFIX.length());
+            }
+            if (candidate.equals(mETag) || candidate.equals(mCompressedETag)) return true;
+        }
+        return false;
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) return false;
+
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parameters = coding.split(";");
+            String name = parameters[0].trim();
+            if (!name.equalsIgnoreCase(GZIP) && !name.equals("*")) {
+                continue;
+            }
+
+            for (int index = 1; index < parameters.length; index++) {
+                String parameter = parameters[index].trim();
+                if (parameter.startsWith("q=") && isZero(parameter.substring(2))) return false;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean isZero(String quality) {
+        try {
+            return Double.parseDouble(quality) == 0;
+        } catch (NumberFormatException exception) {
+            return false;
+        }
+    }
+
+    private static String getCacheControl(Duration maxAge, boolean immutable) {
+        if (maxAge.getMilliseconds() == 0) return "no-cache";
+        String cacheControl = "private, max-age=" + maxAge.getMilliseconds() / Duration.SECOND_IN_MILLIS;
+        return immutable ? cacheControl + ", immutable" : cacheControl;
+    }
+
+    private static String digest(byte[] content) {
+        try {
+            return StringUtils.bytesToHex(MessageDigest.getInstance("MD5").digest(content));
+        } catch (NoSuchAlgorithmException exception) {
+            throw new AssertionError(exception);
+        }
+    }
+
+    private static byte[] compress(byte[] content) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(content.length);
+        try {
+            GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream);
+            gzipOutputStream.write(content);
+            gzipOutputStream.close();
+        } catch (IOException exception) {
+            throw new AssertionError(exception);
+        }
+        return outputStream.toByteArray();
+    }
+}
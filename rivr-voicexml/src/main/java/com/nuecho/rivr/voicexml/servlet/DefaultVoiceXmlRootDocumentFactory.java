@@ -19,10 +19,12 @@ import com.nuecho.rivr.core.util.*;
  * <li>load the <code>rivr.js</code> script which contains the necessary
  * JavaScript methods for result manipulation</li>
  * </ul>
+ * The document only depends on the context path and the servlet path, so it
+ * is {@link CacheableVoiceXmlRootDocumentFactory cacheable}.
  * 
  * @author Nu Echo Inc.
  */
-public class DefaultVoiceXmlRootDocumentFactory implements VoiceXmlRootDocumentFactory {
+public class DefaultVoiceXmlRootDocumentFactory implements CacheableVoiceXmlRootDocumentFactory {
 
     @Override
     public Document getDocument(HttpServletRequest request) {
@@ -37,4 +39,12 @@ public class DefaultVoiceXmlRootDocumentFactory implements VoiceXmlRootDocumentF
         return vxmlElement.getOwnerDocument();
     }
 
+    /**
+     * @since 1.0.13
+     */
+    @Override
+    public boolean isCacheable(HttpServletRequest request) {
+        return true;
+    }
+
 }
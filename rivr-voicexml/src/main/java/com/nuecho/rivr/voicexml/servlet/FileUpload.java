@@ -4,16 +4,29 @@
 
 package com.nuecho.rivr.voicexml.servlet;
 
+import java.io.*;
+import java.nio.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
 
 import javax.json.*;
+import javax.json.stream.*;
 
+import com.nuecho.rivr.core.util.*;
+import com.nuecho.rivr.voicexml.recording.*;
 import com.nuecho.rivr.voicexml.util.json.*;
 
 /**
  * HTTP-uploaded file via <code>multipart/form-data</code>, typically the audio
  * file of a recording. This class contains the content type, the headers and
- * the data (ie. a byte array).
+ * the data.
+ * <p>
+ * Small uploads are kept in a byte array. Larger ones are spooled to a
+ * temporary file by the {@link VoiceXmlInputTurnFactory} and are read back from
+ * this file, outside of the Java heap, with {@link #getInputStream()}. The
+ * temporary file is deleted when the upload is {@link #release() released},
+ * which the {@link VoiceXmlDialogueServlet} does when the dialogue ends.
  * 
  * @author Nu Echo Inc.
  */
@@ -26,12 +39,30 @@ public final class FileUpload implements JsonSerializable {
     private final String mName;
     private final String mContentType;
     private final byte[] mContent;
+    private final File mSpoolFile;
+    private final long mSize;
     private final Map<String, String> mHeaders;
 
+    private CompletionStage<?> mPendingProcessing;
+    private boolean mReleased;
+    private boolean mDeleted;
+
     public FileUpload(String name, String contentType, byte[] content, Map<String, String> headers) {
         mName = name;
         mContentType = contentType;
         mContent = content;
+        mSpoolFile = null;
+        mSize = content == null ? -1 : content.length;
+        mHeaders = headers;
+    }
+
+    FileUpload(String name, String contentType, File spoolFile, long size, Map<String, String> headers) {
+        Assert.notNull(spoolFile, "spoolFile");
+        mName = name;
+        mContentType = contentType;
+        mContent = null;
+        mSpoolFile = spoolFile;
+        mSize = size;
         mHeaders = headers;
     }
 
@@ -43,8 +74,145 @@ public final class FileUpload implements JsonSerializable {
         return mContentType;
     }
 
+    /**
+     * Returns the data as a byte array. For spooled uploads, the temporary file
+     * is read into a new array on each call: prefer {@link #getInputStream()}
+     * for large uploads.
+     * 
+     * @return the data, or <code>null</code> if there is no data.
+     * @throws IllegalStateException if the spooled data cannot be read or the
+     *             upload has been released.
+     */
     public byte[] getContent() {
-        return mContent;
+        if (mSpoolFile == null) return mContent;
+
+        try {
+            return readSpoolFile();
+        } catch (IOException exception) {
+            throw new IllegalStateException("Unable to read spooled upload " + mSpoolFile, exception);
+        }
+    }
+
+    /**
+     * Returns a read-only view of the data. Each call returns a new buffer
+     * with its own position and limit. For spooled uploads, the temporary file
+     * is read into a new buffer on each call.
+     * 
+     * @return the data, or <code>null</code> if there is no data.
+     * @throws IOException if the spooled data cannot be read.
+     * @throws IllegalStateException if the upload has been released.
+     * @since 1.0.13
+     */
+    public ByteBuffer getByteBuffer() throws IOException {
+        if (mSpoolFile != null) return ByteBuffer.wrap(readSpoolFile()).asReadOnlyBuffer();
+        if (mContent != null) return ByteBuffer.wrap(mContent).asReadOnlyBuffer();
+        return null;
+    }
+
+    /**
+     * Returns a new stream reading the data. Streams reading a spooled upload
+     * should be closed, since an open file cannot be deleted on some platforms.
+     * 
+     * @return the data stream, or <code>null</code> if there is no data.
+     * @throws IOException if the spooled data cannot be opened.
+     * @throws IllegalStateException if the upload has been released.
+     * @since 1.0.13
+     */
+    public InputStream getInputStream() throws IOException {
+        if (mSpoolFile != null) return new FileInputStream(getSpoolFile());
+        if (mContent != null) return new ByteArrayInputStream(mContent);
+        return null;
+    }
+
+    /**
+     * @return the data size in bytes, or <code>-1</code> if there is no data.
+     * @since 1.0.13
+     */
+    public long getSize() {
+        return mSize;
+    }
+
+    /**
+     * @return <code>true</code> if the data has been spooled to a temporary
+     *         file.
+     * @since 1.0.13
+     */
+    public boolean isSpooled() {
+        return mSpoolFile != null;
+    }
+
+    /**
+     * Deletes the temporary file of a spooled upload. If the recording of this
+     * upload is being processed by a {@link RecordingProcessor}, the file is
+     * deleted once the processing completes. The data of a released spooled
+     * upload cannot be read anymore. Releasing an upload more than once, or an
+     * upload kept in memory, has no effect.
+     * <p>
+     * The {@link VoiceXmlDialogueServlet} releases the uploads of a dialogue
+     * when it ends. A dialogue can release them earlier once it is done with
+     * the data.
+     * 
+     * @since 1.0.13
+     */
+    public void release() {
+        if (mSpoolFile == null) return;
+
+        CompletionStage<?> pendingProcessing;
+        synchronized (this) {
+            if (mReleased) return;
+            mReleased = true;
+            pendingProcessing = mPendingProcessing;
+        }
+
+        if (pendingProcessing == null) {
+            deleteSpoolFile();
+        } else {
+            pendingProcessing.whenComplete(new BiConsumer<Object, Throwable>() {
+                @Override
+                public void accept(Object result, Throwable error) {
+                    deleteSpoolFile();
+                }
+            });
+        }
+    }
+
+    /**
+     * @return <code>true</code> if this upload has been released.
+     * @since 1.0.13
+     */
+    public synchronized boolean isReleased() {
+        return mReleased;
+    }
+
+    synchronized void setPendingProcessing(CompletionStage<?> pendingProcessing) {
+        mPendingProcessing = pendingProcessing;
+    }
+
+    private synchronized File getSpoolFile() {
+        if (mDeleted) throw new IllegalStateException("Upload has been released.");
+        return mSpoolFile;
+    }
+
+    private byte[] readSpoolFile() throws IOException {
+        byte[] content = new byte[(int) mSize];
+        RandomAccessFile randomAccessFile = new RandomAccessFile(getSpoolFile(), "r");
+        try {
+            randomAccessFile.readFully(content);
+        } finally {
+            randomAccessFile.close();
+        }
+        return content;
+    }
+
+    private void deleteSpoolFile() {
+        synchronized (this) {
+            mDeleted = true;
+        }
+
+        if (!mSpoolFile.delete() && mSpoolFile.exists()) {
+            // still open somewhere (e.g. on Windows)
+            mSpoolFile.deleteOnExit();
+        }
     }
 
     public Set<String> getHeaderNames() {
@@ -57,19 +225,31 @@ public final class FileUpload implements JsonSerializable {
 
     @Override
     public String toString() {
-        return asJson().toString();
+        return JsonUtils.toString(this);
     }
 
     @Override
     public JsonValue asJson() {
         JsonObjectBuilder builder = JsonUtils.createObjectBuilder();
+        addJsonProperties(builder);
+        return builder.build();
+    }
+
+    @Override
+    public void writeJson(JsonGenerator generator, String name) {
+        JsonObjectBuilder builder = JsonUtils.writeStartObject(generator, name);
+        addJsonProperties(builder);
+        generator.writeEnd();
+    }
+
+    private void addJsonProperties(JsonObjectBuilder builder) {
         JsonUtils.add(builder, FILENAME_PROPERTY, mName);
         JsonUtils.add(builder, TYPE_PROPERTY, mContentType);
-        if (mContent != null) {
-            builder.add(SIZE_PROPERTY, (long) mContent.length);
+        long size = getSize();
+        if (size != -1) {
+            builder.add(SIZE_PROPERTY, size);
         }
         //content is not serialized
-        return builder.build();
     }
 
     @Override
@@ -77,7 +257,8 @@ public final class FileUpload implements JsonSerializable {
         final int prime = 31;
         int result = 1;
         result = prime * result + ((mContentType == null) ? 0 : mContentType.hashCode());
-        result = prime * result + Arrays.hashCode(mContent);
+        // the content itself is not hashed since it can be large
+        result = prime * result + (int) mSize;
         result = prime * result + ((mHeaders == null) ? 0 : mHeaders.hashCode());
         result = prime * result + ((mName == null) ? 0 : mName.hashCode());
         return result;
@@ -92,6 +273,11 @@ public final class FileUpload implements JsonSerializable {
         if (mContentType == null) {
             if (other.mContentType != null) return false;
         } else if (!mContentType.equals(other.mContentType)) return false;
+        if (mSize != other.mSize) return false;
+        // spooled uploads are each in their own file
+        if (mSpoolFile == null) {
+            if (other.mSpoolFile != null) return false;
+        } else if (!mSpoolFile.equals(other.mSpoolFile)) return false;
         if (!Arrays.equals(mContent, other.mContent)) return false;
         if (mHeaders == null) {
             if (other.mHeaders != null) return false;
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.servlet;
+
+import java.io.*;
+import java.security.*;
+import java.util.*;
+
+import com.nuecho.rivr.core.util.*;
+
+/**
+ * Content-addressed store of the grammars served by the
+ * {@link VoiceXmlDialogueServlet} under {@link VoiceXmlDialogueServlet#GRAMMAR_PATH}.
+ * <p>
+ * Inline grammars larger than the {@link #setThreshold(int) threshold} are
+ * registered when documents are rendered and referenced by URI instead of
+ * being copied in each document. Since a grammar name is the SHA-256 digest of
+ * its content type and content, a name always designates the same content and
+ * the grammars are served with immutable caching headers: the VoiceXML
+ * platform can fetch and compile each grammar once and reuse it across turns
+ * and calls.
+ * <p>
+ * The registry is bounded by the total size of the grammars it contains. When
+ * it is full, the least recently registered or served grammars are evicted.
+ * Since each rendering registers the grammars again, only the grammars that
+ * have not been used for a while are evicted.
+ *
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public final class GrammarRegistry {
+
+    public static final int DEFAULT_THRESHOLD = 4096;
+    public static final long DEFAULT_MAXIMUM_SIZE = 32L * 1024 * 1024;
+
+    private volatile int mThreshold = DEFAULT_THRESHOLD;
+    private long mMaximumSize = DEFAULT_MAXIMUM_SIZE;
+    private long mSize;
+
+    private final LinkedHashMap<String, CachedResource> mGrammars = new LinkedHashMap<String, CachedResource>(16,
+                                                                                                           0.75f,
+                                                                                                           true);
+
+    /**
+     * Sets the size above which inline grammars are registered and referenced
+     * by URI.
+     *
+     * @param threshold the threshold, in bytes.
+     */
+    public void setThreshold(int threshold) {
+        Assert.notNegative(threshold, "threshold");
+        mThreshold = threshold;
+    }
+
+    public int getThreshold() {
+        return mThreshold;
+    }
+
+    /**
+     * Sets the maximum total size of the registered grammars.
+     *
+     * @param maximumSize the maximum size, in bytes.
+     */
+    public synchronized void setMaximumSize(long maximumSize) {
+        Assert.positive(maximumSize, "maximumSize");
+        mMaximumSize = maximumSize;
+        evict();
+    }
+
+    public synchronized long getMaximumSize() {
+        return mMaximumSize;
+    }
+
+    /**
+     * Registers a grammar. Registering the same content more than once has no
+     * effect other than marking the grammar as recently used.
+     *
+     * @param content the grammar content. Must not be modified afterward.
+     * @param contentType the grammar content type. Cannot be <code>null</code>.
+     * @return the name of the grammar, relative to
+     *         {@link VoiceXmlDialogueServlet#GRAMMAR_PATH}.
+     */
+    public String register(byte[] content, String contentType) {
+        Assert.notNull(content, "content");
+        Assert.notNull(contentType, "contentType");
+        String name = getName(content, contentType);
+
+        synchronized (this) {
+            if (mGrammars.get(name) != null) return name;
+        }
+
+        CachedResource grammar = new CachedResource(content, contentType);
+        synchronized (this) {
+            if (mGrammars.put(name, grammar) == null) {
+                mSize += content.length;
+                evict();
+            }
+        }
+        return name;
+    }
+
+    /**
+     * @param name the grammar name, as returned by
+     *            {@link #register(byte[], String)}.
+     * @return the grammar, or <code>null</code> if there is no such grammar in
+     *         the registry.
+     */
+    public synchronized CachedResource get(String name) {
+        return mGrammars.get(name);
+    }
+
+    public synchronized long getSize() {
+        return mSize;
+    }
+
+    public synchronized void clear() {
+        mGrammars.clear();
+        mSize = 0;
+    }
+
+    private void evict() {
+        Iterator<CachedResource> iterator = mGrammars.values().iterator();
+        // the most recently registered grammar is never evicted
+        while (mSize > mMaximumSize && mGrammars.size() > 1) {
+            mSize -= iterator.next().getSize();
+            iterator.remove();
+        }
+    }
+
+    private static String getName(byte[] content, String contentType) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(contentType.getBytes(Encoding.UTF_8.getId()));
+            digest.update((byte) 0);
+            return StringUtils.bytesToHex(digest.digest(content));
+        } catch (UnsupportedEncodingException exception) {
+            throw new AssertionError(exception);
+        } catch (NoSuchAlgorithmException exception) {
+            throw new AssertionError(exception);
+        }
+    }
+}
@@ -11,6 +11,7 @@ import org.slf4j.*;
 import com.nuecho.rivr.core.channel.*;
 import com.nuecho.rivr.core.servlet.*;
 import com.nuecho.rivr.voicexml.dialogue.*;
+import com.nuecho.rivr.voicexml.rendering.voicexml.*;
 import com.nuecho.rivr.voicexml.turn.input.*;
 import com.nuecho.rivr.voicexml.turn.output.*;
 
@@ -22,15 +23,127 @@ import com.nuecho.rivr.voicexml.turn.output.*;
 public final class VoiceXmlDialogueContextFactory implements
         DialogueContextFactory<VoiceXmlDialogueContext, VoiceXmlInputTurn, VoiceXmlOutputTurn> {
 
+    private boolean mTurnCoalescingEnabled;
+    private boolean mRootDocumentScaffoldingEnabled;
+    private GrammarRegistry mGrammarRegistry;
+    private AudioRepository mAudioRepository;
+    private PrefetchHintLearner mPrefetchHintLearner;
+
+    /**
+     * Sets whether the dialogue channel of the created contexts is decorated
+     * with a {@link CoalescingVoiceXmlDialogueChannel}, so that the output
+     * turns not needing any input back are rendered in the document of the
+     * next turn instead of in their own.
+     *
+     * @param turnCoalescingEnabled <code>true</code> to coalesce turns.
+     * @since 1.0.13
+     */
+    public void setTurnCoalescingEnabled(boolean turnCoalescingEnabled) {
+        mTurnCoalescingEnabled = turnCoalescingEnabled;
+    }
+
+    /**
+     * @since 1.0.13
+     */
+    public boolean isTurnCoalescingEnabled() {
+        return mTurnCoalescingEnabled;
+    }
+
+    /**
+     * Sets whether root document scaffolding is enabled in the created
+     * contexts.
+     *
+     * @param rootDocumentScaffoldingEnabled <code>true</code> to enable root
+     *            document scaffolding.
+     * @see VoiceXmlDialogueContext#setRootDocumentScaffoldingEnabled(boolean)
+     * @since 1.0.13
+     */
+    public void setRootDocumentScaffoldingEnabled(boolean rootDocumentScaffoldingEnabled) {
+        mRootDocumentScaffoldingEnabled = rootDocumentScaffoldingEnabled;
+    }
+
+    /**
+     * @since 1.0.13
+     */
+    public boolean isRootDocumentScaffoldingEnabled() {
+        return mRootDocumentScaffoldingEnabled;
+    }
+
+    /**
+     * Sets the grammar registry of the created contexts.
+     *
+     * @param grammarRegistry the registry, or <code>null</code> to inline all
+     *            grammars.
+     * @see VoiceXmlDialogueContext#setGrammarRegistry(GrammarRegistry)
+     * @since 1.0.13
+     */
+    public void setGrammarRegistry(GrammarRegistry grammarRegistry) {
+        mGrammarRegistry = grammarRegistry;
+    }
+
+    /**
+     * @since 1.0.13
+     */
+    public GrammarRegistry getGrammarRegistry() {
+        return mGrammarRegistry;
+    }
+
+    /**
+     * Sets the audio repository of the created contexts.
+     *
+     * @param audioRepository the repository, or <code>null</code> to render
+     *            audio file locations as is.
+     * @see VoiceXmlDialogueContext#setAudioRepository(AudioRepository)
+     * @since 1.0.13
+     */
+    public void setAudioRepository(AudioRepository audioRepository) {
+        mAudioRepository = audioRepository;
+    }
+
+    /**
+     * @since 1.0.13
+     */
+    public AudioRepository getAudioRepository() {
+        return mAudioRepository;
+    }
+
+    /**
+     * Sets the prefetch hint learner of the created contexts.
+     *
+     * @param prefetchHintLearner the learner, or <code>null</code> to declare
+     *            no resources.
+     * @see VoiceXmlDialogueContext#setPrefetchHintLearner(PrefetchHintLearner)
+     * @since 1.0.13
+     */
+    public void setPrefetchHintLearner(PrefetchHintLearner prefetchHintLearner) {
+        mPrefetchHintLearner = prefetchHintLearner;
+    }
+
+    /**
+     * @since 1.0.13
+     */
+    public PrefetchHintLearner getPrefetchHintLearner() {
+        return mPrefetchHintLearner;
+    }
+
     @Override
     public VoiceXmlDialogueContext createDialogueContext(HttpServletRequest request,
                                                          String dialogueId,
                                                          DialogueChannel<VoiceXmlInputTurn, VoiceXmlOutputTurn> dialogueChannel,
                                                          Logger logger) {
-        return new VoiceXmlDialogueContext(dialogueChannel,
-                                           logger,
-                                           dialogueId,
-                                           request.getContextPath(),
-                                           request.getServletPath());
+        if (mTurnCoalescingEnabled) {
+            dialogueChannel = CoalescingVoiceXmlDialogueChannel.wrap(dialogueChannel);
+        }
+
+        VoiceXmlDialogueContext dialogueContext = new VoiceXmlDialogueContext(dialogueChannel,
+                                                                              logger,
+                                                                              dialogueId,
+                                                                              request.getContextPath(),
+                                                                              request.getServletPath());
+        dialogueContext.setRootDocumentScaffoldingEnabled(mRootDocumentScaffoldingEnabled);
+        dialogueContext.setGrammarRegistry(mGrammarRegistry);
+        dialogueContext.setAudioRepository(mAudioRepository);
+        dialogueContext.setPrefetchHintLearner(mPrefetchHintLearner);
+        return dialogueContext;
     }
 }
\ No newline at end of file
@@ -5,13 +5,14 @@
 package com.nuecho.rivr.voicexml.servlet;
 
 import java.io.*;
-import java.security.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 import javax.servlet.*;
 import javax.servlet.http.*;
 
 import org.slf4j.*;
+import org.slf4j.helpers.*;
 import org.w3c.dom.*;
 
 import com.nuecho.rivr.core.dialogue.*;
@@ -19,6 +20,7 @@ import com.nuecho.rivr.core.servlet.*;
 import com.nuecho.rivr.core.servlet.session.*;
 import com.nuecho.rivr.core.util.*;
 import com.nuecho.rivr.voicexml.dialogue.*;
+import com.nuecho.rivr.voicexml.recording.*;
 import com.nuecho.rivr.voicexml.rendering.json.*;
 import com.nuecho.rivr.voicexml.rendering.voicexml.*;
 import com.nuecho.rivr.voicexml.turn.*;
@@ -27,6 +29,7 @@ import com.nuecho.rivr.voicexml.turn.input.*;
 import com.nuecho.rivr.voicexml.turn.last.*;
 import com.nuecho.rivr.voicexml.turn.output.*;
 import com.nuecho.rivr.voicexml.util.*;
+import com.nuecho.rivr.voicexml.util.json.*;
 
 /**
  * Implementation of the {@link DialogueServlet} specialized for VoiceXML. This
@@ -81,6 +84,89 @@ import com.nuecho.rivr.voicexml.util.*;
  * org.slf4j.LoggerFactory} can be found. Default: (none:
  * {@link org.slf4j.LoggerFactory#getILoggerFactory()} is used as the logger
  * factory).</dd>
+ * <dt>com.nuecho.rivr.voicexml.overflowLastTurn.class</dt>
+ * <dd>Class name of the {@link VoiceXmlLastTurn} rendered when a new dialogue
+ * is refused because the maximum number of concurrent dialogues is reached
+ * (see <code>com.nuecho.rivr.core.maximumConcurrentDialogues</code>). This
+ * class must extends {@link VoiceXmlLastTurn}, be public and non-abstract and
+ * have a public no-argument constructor. Default: (none: an {@link Exit} is
+ * rendered)</dd>
+ * <dt>com.nuecho.rivr.voicexml.overflowLastTurn.key</dt>
+ * <dd>As an alternative to
+ * <code>com.nuecho.rivr.voicexml.overflowLastTurn.class</code>, this indicates
+ * the servlet context attribute name under which the overflow
+ * {@link VoiceXmlLastTurn} can be found. Default: (none: an {@link Exit} is
+ * rendered)</dd>
+ * <dt>com.nuecho.rivr.voicexml.streamingRenderingEnabled</dt>
+ * <dd>Whether VoiceXML documents are streamed directly to the response
+ * instead of being pretty-printed to a buffer beforehand. When enabled, the
+ * responses are sent without a <code>Content-Length</code> header. Possible
+ * values are <code>true</code> or <code>false</code>. Default:
+ * <code>false</code></dd>
+ * <dt>com.nuecho.rivr.voicexml.rootDocumentMaxAge</dt>
+ * <dd>How long the VoiceXML platform may cache the root document without
+ * revalidating it, when the root document factory declares it
+ * {@link CacheableVoiceXmlRootDocumentFactory cacheable}. A value of 0 forces
+ * the platform to revalidate the document on each use. Format is the one
+ * expected by {@link Duration#parse(String)}. Default: <code>1h</code></dd>
+ * <dt>com.nuecho.rivr.voicexml.staticResourceMaxAge</dt>
+ * <dd>How long the VoiceXML platform may cache static resources, such as
+ * <code>rivr.js</code> or the ones registered with
+ * {@link #addStaticResource(String, byte[], String)}, without revalidating
+ * them. A value of 0 forces the platform to revalidate them on each use.
+ * Format is the one expected by {@link Duration#parse(String)}. Default:
+ * <code>1h</code></dd>
+ * <dt>com.nuecho.rivr.voicexml.uploadSpoolThreshold</dt>
+ * <dd>Size, in bytes, above which uploaded files (e.g. recordings) are spooled
+ * to a temporary file in the servlet context temporary directory instead of
+ * being kept in memory. The file is deleted when the dialogue ends. Default:
+ * 262144 (256 KiB)</dd>
+ * <dt>com.nuecho.rivr.voicexml.maximumUploadSize</dt>
+ * <dd>Maximum size, in bytes, of an uploaded file. Requests containing a
+ * larger file are rejected while they are read. Default: (none: no limit)</dd>
+ * <dt>com.nuecho.rivr.voicexml.turnCoalescingEnabled</dt>
+ * <dd>Whether the output turns that don't need any input back (such as
+ * {@link Message Messages}) are rendered in the document of the next turn
+ * instead of in their own, saving a round trip each (see
+ * {@link CoalescingVoiceXmlDialogueChannel}). Possible values are
+ * <code>true</code> or <code>false</code>. Default: <code>false</code></dd>
+ * <dt>com.nuecho.rivr.voicexml.rootDocumentScaffoldingEnabled</dt>
+ * <dd>Whether the parts of the output turn documents that only depend on the
+ * dialogue context (properties, event handler, fatal error form and submit
+ * form) are rendered once in the root document of the dialogue instead of in
+ * each document (see
+ * {@link VoiceXmlDialogueContext#setRootDocumentScaffoldingEnabled(boolean)}
+ * ). Possible values are <code>true</code> or <code>false</code>. Default:
+ * <code>false</code></dd>
+ * <dt>com.nuecho.rivr.voicexml.grammarRegistryThreshold</dt>
+ * <dd>Size, in bytes, above which inline grammars are served from a
+ * content-addressed URI under {@link #GRAMMAR_PATH} with immutable caching
+ * headers and referenced from the documents instead of being copied in each
+ * of them (see {@link GrammarRegistry}). Default: (none: all grammars are
+ * inlined)</dd>
+ * <dt>com.nuecho.rivr.voicexml.grammarRegistryMaximumSize</dt>
+ * <dd>Maximum total size, in bytes, of the grammars kept in the grammar
+ * registry. Default: 33554432 (32 MiB)</dd>
+ * <dt>com.nuecho.rivr.voicexml.audioDirectory</dt>
+ * <dd>Directory from which audio files are served under {@link #AUDIO_PATH}
+ * (see {@link AudioRepository}). When set, relative <code>AudioFile</code>
+ * locations are resolved to this endpoint. A relative directory is resolved
+ * against the web application root. Default: (none: audio files are not
+ * served)</dd>
+ * <dt>com.nuecho.rivr.voicexml.audioCacheSize</dt>
+ * <dd>Maximum total size, in bytes, of the audio files kept memory-mapped.
+ * Default: 67108864 (64 MiB)</dd>
+ * <dt>com.nuecho.rivr.voicexml.prefetchHintsEnabled</dt>
+ * <dd>Whether the transitions between turns are learned across dialogues and
+ * the audio files and grammars likely to be used by the next turns are
+ * declared with <code>fetchhint="prefetch"</code> in each document (see
+ * {@link PrefetchHintLearner}). Possible values are <code>true</code> or
+ * <code>false</code>. Default: <code>false</code></dd>
+ * <dt>com.nuecho.rivr.voicexml.prefetchStatistics</dt>
+ * <dd>JSON file, as exported by {@link PrefetchHintLearner#asJson()}, from
+ * which the prefetch hint statistics are loaded at startup. Implies
+ * <code>com.nuecho.rivr.voicexml.prefetchHintsEnabled</code>. Default:
+ * (none)</dd>
  * </dl>
  * <p>
  * <b>Important:</b> one of the following must be specified, they are mutually
@@ -105,14 +191,39 @@ public class VoiceXmlDialogueServlet
     private static final String INITIAL_ARGUMENT_DIALOGUE_FACTORY = INITIAL_ARGUMENT_PREFIX + "dialogueFactory";
     private static final String INITIAL_ARGUMENT_DIALOGUE = INITIAL_ARGUMENT_PREFIX + "dialogue";
     private static final String INITIAL_ARGUMENT_LOGGER_FACTORY = INITIAL_ARGUMENT_PREFIX + "loggerFactory";
+    private static final String INITIAL_ARGUMENT_OVERFLOW_LAST_TURN = INITIAL_ARGUMENT_PREFIX + "overflowLastTurn";
+    private static final String INITIAL_ARGUMENT_ROOT_DOCUMENT_MAX_AGE = INITIAL_ARGUMENT_PREFIX + "rootDocumentMaxAge";
+    private static final String INITIAL_ARGUMENT_STATIC_RESOURCE_MAX_AGE = INITIAL_ARGUMENT_PREFIX
+                                                                           + "staticResourceMaxAge";
+    private static final String INITIAL_ARGUMENT_STREAMING_RENDERING_ENABLED = INITIAL_ARGUMENT_PREFIX
+                                                                               + "streamingRenderingEnabled";
+    private static final String INITIAL_ARGUMENT_UPLOAD_SPOOL_THRESHOLD = INITIAL_ARGUMENT_PREFIX
+                                                                          + "uploadSpoolThreshold";
+    private static final String INITIAL_ARGUMENT_MAXIMUM_UPLOAD_SIZE = INITIAL_ARGUMENT_PREFIX + "maximumUploadSize";
+    private static final String INITIAL_ARGUMENT_TURN_COALESCING_ENABLED = INITIAL_ARGUMENT_PREFIX
+                                                                           + "turnCoalescingEnabled";
+    private static final String INITIAL_ARGUMENT_ROOT_DOCUMENT_SCAFFOLDING_ENABLED = INITIAL_ARGUMENT_PREFIX
+                                                                                     + "rootDocumentScaffoldingEnabled";
+    private static final String INITIAL_ARGUMENT_GRAMMAR_REGISTRY_THRESHOLD = INITIAL_ARGUMENT_PREFIX
+                                                                              + "grammarRegistryThreshold";
+    private static final String INITIAL_ARGUMENT_GRAMMAR_REGISTRY_MAXIMUM_SIZE = INITIAL_ARGUMENT_PREFIX
+                                                                                 + "grammarRegistryMaximumSize";
+    private static final String INITIAL_ARGUMENT_AUDIO_DIRECTORY = INITIAL_ARGUMENT_PREFIX + "audioDirectory";
+    private static final String INITIAL_ARGUMENT_AUDIO_CACHE_SIZE = INITIAL_ARGUMENT_PREFIX + "audioCacheSize";
+    private static final String INITIAL_ARGUMENT_PREFETCH_HINTS_ENABLED = INITIAL_ARGUMENT_PREFIX
+                                                                          + "prefetchHintsEnabled";
+    private static final String INITIAL_ARGUMENT_PREFETCH_STATISTICS = INITIAL_ARGUMENT_PREFIX + "prefetchStatistics";
+
+    private static final String OVERFLOW_DIALOGUE_ID = "overflow";
 
     public static final String ROOT_PATH = "/root/";
+    public static final String GRAMMAR_PATH = "/grammars/";
+    public static final String AUDIO_PATH = "/audio/";
     public static final String RIVR_SCRIPT = "/scripts/rivr.js";
 
-    private static final String IF_NONE_MATCH = "If-None-Match";
-    private static final String ETAG = "ETag";
 
     private VoiceXmlStepRenderer mVoiceXmlStepRenderer;
+    private VoiceXmlStepRenderer mOverflowStepRenderer;
     private JsonStepRenderer mJsonStepRenderer;
 
     public static final String VOICE_XML_CONTENT_TYPE = "application/voicexml+xml";
@@ -120,10 +231,27 @@ public class VoiceXmlDialogueServlet
 
     private static final String ACCEPT_HEADER = "Accept";
 
+    private final VoiceXmlInputTurnFactory mInputTurnFactory = new VoiceXmlInputTurnFactory();
+    private final VoiceXmlDialogueContextFactory mDialogueContextFactory = new VoiceXmlDialogueContextFactory();
+
     private VoiceXmlRootDocumentFactory mRootDocumentFactory = new DefaultVoiceXmlRootDocumentFactory();
+    private Duration mRootDocumentMaxAge = Duration.hours(1);
+    private final ConcurrentMap<String, CachedResource> mRootDocuments = new ConcurrentHashMap<String, CachedResource>();
+
+    private Duration mStaticResourceMaxAge = Duration.hours(1);
+    private final ConcurrentMap<String, CachedResource> mStaticResources = new ConcurrentHashMap<String, CachedResource>();
+
+    private final GrammarRegistry mGrammarRegistry = new GrammarRegistry();
+
+    private AudioRepository mAudioRepository;
 
     private List<? extends VoiceXmlDocumentAdapter> mVoiceXmlDocumentAdapters;
 
+    private boolean mStreamingRenderingEnabled;
+
+    private VoiceXmlLastTurn mOverflowLastTurn = new Exit(OVERFLOW_DIALOGUE_ID);
+    private final ConcurrentMap<String, ServletResponseContent> mOverflowResponseContents = new ConcurrentHashMap<String, ServletResponseContent>();
+
     protected void initializeVoiceXmlDialogueServlet() {}
 
     @Override
@@ -136,29 +264,329 @@ public class VoiceXmlDialogueServlet
                 return;
             }
 
-            if (RIVR_SCRIPT.equals(pathInfo)) {
-                processRessource(request, response, pathInfo);
+            if (pathInfo.startsWith(GRAMMAR_PATH)) {
+                processGrammar(request, response);
                 return;
             }
+
+            AudioRepository audioRepository = mAudioRepository;
+            if (audioRepository != null && pathInfo.startsWith(AUDIO_PATH)) {
+                String path = pathInfo.substring(AUDIO_PATH.length());
+                if (!audioRepository.send(request,
+                                          response,
+                                          path,
+                                          getServletContext().getMimeType(path),
+                                          mStaticResourceMaxAge)) {
+                    response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                }
+                return;
+            }
+
+            CachedResource staticResource = mStaticResources.get(pathInfo);
+            if (staticResource != null) {
+                staticResource.send(request, response, mStaticResourceMaxAge);
+                return;
+            }
+        }
+
+        try {
+            super.doGet(request, response);
+        } finally {
+            registerSpooledFileUploads(request);
+        }
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException,
+            IOException {
+        try {
+            super.doPost(request, response);
+        } finally {
+            registerSpooledFileUploads(request);
         }
+    }
+
+    private void registerSpooledFileUploads(HttpServletRequest request) {
+        // spooled files are released when the dialogue ends, or right away if the session is gone
+        @SuppressWarnings("unchecked")
+        List<FileUpload> fileUploads = (List<FileUpload>) request.getAttribute(VoiceXmlInputTurnFactory.SPOOLED_FILE_UPLOADS_ATTRIBUTE);
+        if (fileUploads == null) return;
 
-        super.doGet(request, response);
+        VoiceXmlDialogueContext dialogueContext;
+        try {
+            dialogueContext = getSession(request).getDialogueContext();
+        } catch (SessionNotFoundException exception) {
+            dialogueContext = null;
+        }
+
+        for (FileUpload fileUpload : fileUploads) {
+            if (dialogueContext != null) {
+                dialogueContext.addFileUpload(fileUpload);
+            } else {
+                fileUpload.release();
+            }
+        }
     }
 
     public void setRootDocumentFactory(VoiceXmlRootDocumentFactory rootDocumentFactory) {
         Assert.notNull(rootDocumentFactory, "rootDocumentFactory");
         mRootDocumentFactory = rootDocumentFactory;
+        mRootDocuments.clear();
+    }
+
+    /**
+     * Sets how long the VoiceXML platform may cache a
+     * {@link CacheableVoiceXmlRootDocumentFactory cacheable} root document
+     * without revalidating it.
+     * 
+     * @param rootDocumentMaxAge the maximum age. {@link Duration#ZERO} forces
+     *            the platform to revalidate the document on each use. Cannot
+     *            be <code>null</code>.
+     * @since 1.0.13
+     */
+    public final void setRootDocumentMaxAge(Duration rootDocumentMaxAge) {
+        Assert.notNull(rootDocumentMaxAge, "rootDocumentMaxAge");
+        mRootDocumentMaxAge = rootDocumentMaxAge;
+    }
+
+    /**
+     * Sets the {@link VoiceXmlLastTurn} rendered when a new dialogue is refused
+     * because the maximum number of concurrent dialogues is reached, e.g. a
+     * busy message followed by an exit. If not set, an {@link Exit} is
+     * rendered.
+     *
+     * @param overflowLastTurn the overflow last turn. Cannot be
+     *            <code>null</code>.
+     * @since 1.0.13
+     */
+    public void setOverflowLastTurn(VoiceXmlLastTurn overflowLastTurn) {
+        Assert.notNull(overflowLastTurn, "overflowLastTurn");
+        mOverflowLastTurn = overflowLastTurn;
+        mOverflowResponseContents.clear();
+    }
+
+    /**
+     * Sets whether VoiceXML documents are streamed directly to the response
+     * (see {@link StreamingXmlDocumentServletResponseContent}) instead of being
+     * pretty-printed to a buffer beforehand. This has no effect once the
+     * servlet is initialized: it must be called from the constructor or from
+     * {@link #initializeVoiceXmlDialogueServlet()}.
+     *
+     * @param streamingRenderingEnabled <code>true</code> to stream documents.
+     * @since 1.0.13
+     */
+    public final void setStreamingRenderingEnabled(boolean streamingRenderingEnabled) {
+        mStreamingRenderingEnabled = streamingRenderingEnabled;
+    }
+
+    /**
+     * Sets whether the output turns that don't need any input back from the
+     * VoiceXML platform are rendered in the document of the next turn instead
+     * of in their own. This only affects the dialogues started afterwards.
+     *
+     * @param turnCoalescingEnabled <code>true</code> to coalesce turns.
+     * @see CoalescingVoiceXmlDialogueChannel
+     * @since 1.0.13
+     */
+    public final void setTurnCoalescingEnabled(boolean turnCoalescingEnabled) {
+        mDialogueContextFactory.setTurnCoalescingEnabled(turnCoalescingEnabled);
+    }
+
+    /**
+     * Sets whether the parts of the output turn documents that only depend on
+     * the dialogue context are rendered once in the root document of the
+     * dialogue instead of in each document. This only affects the dialogues
+     * started afterwards.
+     *
+     * @param rootDocumentScaffoldingEnabled <code>true</code> to render these
+     *            parts in the root document.
+     * @see VoiceXmlDialogueContext#setRootDocumentScaffoldingEnabled(boolean)
+     * @since 1.0.13
+     */
+    public final void setRootDocumentScaffoldingEnabled(boolean rootDocumentScaffoldingEnabled) {
+        mDialogueContextFactory.setRootDocumentScaffoldingEnabled(rootDocumentScaffoldingEnabled);
+    }
+
+    /**
+     * Sets the size above which inline grammars are served from a
+     * content-addressed URI and referenced from the documents instead of being
+     * copied in each of them. This only affects the dialogues started
+     * afterwards.
+     *
+     * @param grammarRegistryThreshold the threshold, in bytes, or
+     *            <code>-1</code> to inline all grammars (the default).
+     * @see GrammarRegistry
+     * @see VoiceXmlDialogueContext#setGrammarRegistry(GrammarRegistry)
+     * @since 1.0.13
+     */
+    public final void setGrammarRegistryThreshold(int grammarRegistryThreshold) {
+        if (grammarRegistryThreshold == -1) {
+            mDialogueContextFactory.setGrammarRegistry(null);
+        } else {
+            mGrammarRegistry.setThreshold(grammarRegistryThreshold);
+            mDialogueContextFactory.setGrammarRegistry(mGrammarRegistry);
+        }
+    }
+
+    /**
+     * Sets the maximum total size of the grammars kept in the grammar
+     * registry. The least recently used grammars are evicted first.
+     *
+     * @param grammarRegistryMaximumSize the maximum size, in bytes.
+     * @since 1.0.13
+     */
+    public final void setGrammarRegistryMaximumSize(long grammarRegistryMaximumSize) {
+        mGrammarRegistry.setMaximumSize(grammarRegistryMaximumSize);
+    }
+
+    /**
+     * Sets the repository from which audio files are served under
+     * {@link #AUDIO_PATH}. This only affects the resolution of audio file
+     * locations in the dialogues started afterwards.
+     *
+     * @param audioRepository the repository, or <code>null</code> to stop
+     *            serving audio files (the default).
+     * @see VoiceXmlDialogueContext#setAudioRepository(AudioRepository)
+     * @since 1.0.13
+     */
+    public final void setAudioRepository(AudioRepository audioRepository) {
+        mAudioRepository = audioRepository;
+        mDialogueContextFactory.setAudioRepository(audioRepository);
+    }
+
+    /**
+     * @since 1.0.13
+     */
+    public final AudioRepository getAudioRepository() {
+        return mAudioRepository;
+    }
+
+    /**
+     * Sets the learner declaring, in each document, the resources likely to be
+     * used by the next turns. This only affects the dialogues started
+     * afterwards.
+     *
+     * @param prefetchHintLearner the learner, or <code>null</code> to declare
+     *            no resources (the default).
+     * @see VoiceXmlDialogueContext#setPrefetchHintLearner(PrefetchHintLearner)
+     * @since 1.0.13
+     */
+    public final void setPrefetchHintLearner(PrefetchHintLearner prefetchHintLearner) {
+        mDialogueContextFactory.setPrefetchHintLearner(prefetchHintLearner);
+    }
+
+    /**
+     * Returns the prefetch hint learner, e.g. to export its statistics with
+     * {@link PrefetchHintLearner#asJson()}.
+     *
+     * @return the learner, or <code>null</code> if there is none.
+     * @since 1.0.13
+     */
+    public final PrefetchHintLearner getPrefetchHintLearner() {
+        return mDialogueContextFactory.getPrefetchHintLearner();
+    }
+
+    /**
+     * Sets how long the VoiceXML platform may cache static resources without
+     * revalidating them.
+     * 
+     * @param staticResourceMaxAge the maximum age. {@link Duration#ZERO}
+     *            forces the platform to revalidate the resources on each use.
+     *            Cannot be <code>null</code>.
+     * @since 1.0.13
+     */
+    public final void setStaticResourceMaxAge(Duration staticResourceMaxAge) {
+        Assert.notNull(staticResourceMaxAge, "staticResourceMaxAge");
+        mStaticResourceMaxAge = staticResourceMaxAge;
+    }
+
+    /**
+     * Sets the size above which uploaded files are spooled to a temporary file
+     * instead of being kept in memory.
+     * 
+     * @param uploadSpoolThreshold the threshold, in bytes.
+     * @see VoiceXmlInputTurnFactory#setSpoolThreshold(int)
+     * @since 1.0.13
+     */
+    public final void setUploadSpoolThreshold(int uploadSpoolThreshold) {
+        mInputTurnFactory.setSpoolThreshold(uploadSpoolThreshold);
+    }
+
+    /**
+     * Sets the maximum size of an uploaded file.
+     * 
+     * @param maximumUploadSize the maximum size, in bytes, or <code>-1</code>
+     *            for no limit.
+     * @see VoiceXmlInputTurnFactory#setMaximumUploadSize(long)
+     * @since 1.0.13
+     */
+    public final void setMaximumUploadSize(long maximumUploadSize) {
+        mInputTurnFactory.setMaximumUploadSize(maximumUploadSize);
+    }
+
+    /**
+     * Sets the processor to which recordings are submitted, off the dialogue
+     * thread, as soon as they are received. The processor is not shut down by
+     * the servlet: {@link RecordingProcessor#shutdown()} can be called from
+     * {@link #destroyDialogueServlet()}.
+     * 
+     * @param recordingProcessor the processor, or <code>null</code> if
+     *            recordings are not processed (the default).
+     * @see RecordingInfo#getProcessedRecording()
+     * @since 1.0.13
+     */
+    public final void setRecordingProcessor(RecordingProcessor recordingProcessor) {
+        mInputTurnFactory.setRecordingProcessor(recordingProcessor);
+    }
+
+    /**
+     * Registers a static resource (e.g. a JavaScript file) served by this
+     * servlet from memory. The resource is hashed and compressed once and is
+     * served with validators and caching headers (see {@link CachedResource}).
+     * 
+     * @param path the path of the resource, relative to the servlet path, e.g.
+     *            <code>/scripts/application.js</code>. Cannot be
+     *            <code>null</code>. A previously registered resource with the
+     *            same path is replaced.
+     * @param content the resource content. Cannot be <code>null</code>.
+     * @param contentType the resource content type. Cannot be
+     *            <code>null</code>.
+     * @since 1.0.13
+     */
+    public final void addStaticResource(String path, byte[] content, String contentType) {
+        Assert.notNull(path, "path");
+        Assert.ensure(path.startsWith("/"), "path should start with '/'");
+        Assert.ensure(!path.startsWith(ROOT_PATH), "path should not start with '" + ROOT_PATH + "'");
+        Assert.ensure(!path.startsWith(GRAMMAR_PATH), "path should not start with '" + GRAMMAR_PATH + "'");
+        Assert.ensure(!path.startsWith(AUDIO_PATH), "path should not start with '" + AUDIO_PATH + "'");
+        mStaticResources.put(path, new CachedResource(content, contentType));
+    }
+
+    /**
+     * Unregisters a static resource.
+     * 
+     * @param path the path of the resource, relative to the servlet path.
+     * @since 1.0.13
+     */
+    public final void removeStaticResource(String path) {
+        mStaticResources.remove(path);
     }
 
     @Override
     protected final void initDialogueServlet() throws DialogueServletInitializationException {
-        setInputTurnFactory(new VoiceXmlInputTurnFactory());
-        setDialogueContextFactory(new VoiceXmlDialogueContextFactory());
+        mInputTurnFactory.setSpoolDirectory((File) getServletContext().getAttribute(ServletContext.TEMPDIR));
+        setInputTurnFactory(mInputTurnFactory);
+        setDialogueContextFactory(mDialogueContextFactory);
         setErrorHandler(new DefaultErrorHandler());
+        addRivrScript();
         initializeProperties();
         initializeVoiceXmlDialogueServlet();
 
-        mVoiceXmlStepRenderer = new VoiceXmlStepRenderer(mVoiceXmlDocumentAdapters);
+        mVoiceXmlStepRenderer = new VoiceXmlStepRenderer(mVoiceXmlDocumentAdapters, mStreamingRenderingEnabled);
+        // the overflow document is shared between requests, so it must be buffered
+        mOverflowStepRenderer = mStreamingRenderingEnabled
+                ? new VoiceXmlStepRenderer(mVoiceXmlDocumentAdapters)
+                : mVoiceXmlStepRenderer;
         mJsonStepRenderer = new JsonStepRenderer(mVoiceXmlStepRenderer);
     }
 
@@ -188,6 +616,160 @@ public class VoiceXmlDialogueServlet
             setErrorHandler(errorHandler);
         }
 
+        VoiceXmlLastTurn overflowLastTurn = find(INITIAL_ARGUMENT_OVERFLOW_LAST_TURN, VoiceXmlLastTurn.class);
+        if (overflowLastTurn != null) {
+            setOverflowLastTurn(overflowLastTurn);
+        }
+
+        String rootDocumentMaxAge = getServletConfig().getInitParameter(INITIAL_ARGUMENT_ROOT_DOCUMENT_MAX_AGE);
+        if (rootDocumentMaxAge != null) {
+            try {
+                setRootDocumentMaxAge(Duration.parse(rootDocumentMaxAge));
+            } catch (IllegalArgumentException exception) {
+                throw new DialogueServletInitializationException("Unable to parse duration for init-arg '"
+                                                                 + INITIAL_ARGUMENT_ROOT_DOCUMENT_MAX_AGE
+                                                                 + "'", exception);
+            }
+        }
+
+        String staticResourceMaxAge = getServletConfig().getInitParameter(INITIAL_ARGUMENT_STATIC_RESOURCE_MAX_AGE);
+        if (staticResourceMaxAge != null) {
+            try {
+                setStaticResourceMaxAge(Duration.parse(staticResourceMaxAge));
+            } catch (IllegalArgumentException exception) {
+                throw new DialogueServletInitializationException("Unable to parse duration for init-arg '"
+                                                                 + INITIAL_ARGUMENT_STATIC_RESOURCE_MAX_AGE
+                                                                 + "'", exception);
+            }
+        }
+
+        Boolean streamingRenderingEnabled = getBooleanInitParameter(INITIAL_ARGUMENT_STREAMING_RENDERING_ENABLED);
+        if (streamingRenderingEnabled != null) {
+            setStreamingRenderingEnabled(streamingRenderingEnabled.booleanValue());
+        }
+
+        Boolean turnCoalescingEnabled = getBooleanInitParameter(INITIAL_ARGUMENT_TURN_COALESCING_ENABLED);
+        if (turnCoalescingEnabled != null) {
+            setTurnCoalescingEnabled(turnCoalescingEnabled.booleanValue());
+        }
+
+        Boolean rootDocumentScaffoldingEnabled = getBooleanInitParameter(INITIAL_ARGUMENT_ROOT_DOCUMENT_SCAFFOLDING_ENABLED);
+        if (rootDocumentScaffoldingEnabled != null) {
+            setRootDocumentScaffoldingEnabled(rootDocumentScaffoldingEnabled.booleanValue());
+        }
+
+        Long uploadSpoolThreshold = getSizeInitParameter(INITIAL_ARGUMENT_UPLOAD_SPOOL_THRESHOLD);
+        if (uploadSpoolThreshold != null) {
+            setUploadSpoolThreshold((int) Math.min(uploadSpoolThreshold, Integer.MAX_VALUE));
+        }
+
+        Long maximumUploadSize = getSizeInitParameter(INITIAL_ARGUMENT_MAXIMUM_UPLOAD_SIZE);
+        if (maximumUploadSize != null) {
+            setMaximumUploadSize(maximumUploadSize);
+        }
+
+        Long grammarRegistryThreshold = getSizeInitParameter(INITIAL_ARGUMENT_GRAMMAR_REGISTRY_THRESHOLD);
+        if (grammarRegistryThreshold != null) {
+            setGrammarRegistryThreshold((int) Math.min(grammarRegistryThreshold, Integer.MAX_VALUE));
+        }
+
+        Long grammarRegistryMaximumSize = getSizeInitParameter(INITIAL_ARGUMENT_GRAMMAR_REGISTRY_MAXIMUM_SIZE);
+        if (grammarRegistryMaximumSize != null) {
+            setGrammarRegistryMaximumSize(grammarRegistryMaximumSize);
+        }
+
+        String audioDirectory = getServletConfig().getInitParameter(INITIAL_ARGUMENT_AUDIO_DIRECTORY);
+        if (audioDirectory != null) {
+            File directory = new File(audioDirectory);
+            if (!directory.isAbsolute()) {
+                String realPath = getServletContext().getRealPath("/" + audioDirectory);
+                if (realPath != null) {
+                    directory = new File(realPath);
+                }
+            }
+
+            try {
+                setAudioRepository(new AudioRepository(directory));
+            } catch (IOException exception) {
+                throw new DialogueServletInitializationException("Unable to use directory for init-arg '"
+                                                                 + INITIAL_ARGUMENT_AUDIO_DIRECTORY
+                                                                 + "'", exception);
+            }
+        }
+
+        Long audioCacheSize = getSizeInitParameter(INITIAL_ARGUMENT_AUDIO_CACHE_SIZE);
+        if (audioCacheSize != null && mAudioRepository != null) {
+            mAudioRepository.setCacheSize(audioCacheSize);
+        }
+
+        Boolean prefetchHintsEnabled = getBooleanInitParameter(INITIAL_ARGUMENT_PREFETCH_HINTS_ENABLED);
+        String prefetchStatistics = getServletConfig().getInitParameter(INITIAL_ARGUMENT_PREFETCH_STATISTICS);
+        if (prefetchStatistics != null || prefetchHintsEnabled != null && prefetchHintsEnabled.booleanValue()) {
+            PrefetchHintLearner prefetchHintLearner = new PrefetchHintLearner();
+            if (prefetchStatistics != null) {
+                loadPrefetchStatistics(prefetchHintLearner, new File(prefetchStatistics));
+            }
+            setPrefetchHintLearner(prefetchHintLearner);
+        }
+
+    }
+
+    private void loadPrefetchStatistics(PrefetchHintLearner prefetchHintLearner, File file)
+            throws DialogueServletInitializationException {
+        // on first startup, there are no statistics yet
+        if (!file.exists()) return;
+
+        try {
+            Reader reader = new InputStreamReader(new FileInputStream(file), Encoding.UTF_8.getId());
+            try {
+                prefetchHintLearner.load(JsonUtils.createReader(reader).readObject());
+            } finally {
+                reader.close();
+            }
+        } catch (IOException exception) {
+            throw new DialogueServletInitializationException("Unable to read file for init-arg '"
+                                                             + INITIAL_ARGUMENT_PREFETCH_STATISTICS
+                                                             + "'", exception);
+        } catch (RuntimeException exception) {
+            throw new DialogueServletInitializationException("Unable to parse file for init-arg '"
+                                                             + INITIAL_ARGUMENT_PREFETCH_STATISTICS
+                                                             + "'", exception);
+        }
+    }
+
+    private Boolean getBooleanInitParameter(String name) throws DialogueServletInitializationException {
+        String value = getServletConfig().getInitParameter(name);
+        if (value == null) return null;
+
+        if (!value.equalsIgnoreCase("true") && !value.equalsIgnoreCase("false"))
+            throw new DialogueServletInitializationException("Unable to parse boolean for init-arg '"
+                                                             + name
+                                                             + "': '"
+                                                             + value
+                                                             + "'");
+        return Boolean.valueOf(value);
+    }
+
+    private Long getSizeInitParameter(String name) throws DialogueServletInitializationException {
+        String value = getServletConfig().getInitParameter(name);
+        if (value == null) return null;
+
+        try {
+            long size = Long.parseLong(value.trim());
+            if (size > 0) return size;
+        } catch (NumberFormatException exception) {
+            throw new DialogueServletInitializationException("Unable to parse size for init-arg '"
+                                                             + name
+                                                             + "': '"
+                                                             + value
+                                                             + "'", exception);
+        }
+
+        throw new DialogueServletInitializationException("Size for init-arg '"
+                                                         + name
+                                                         + "' should be positive: '"
+                                                         + value
+                                                         + "'");
     }
 
     private void setImplicitDialogueFactory() throws DialogueServletInitializationException {
@@ -294,41 +876,167 @@ public class VoiceXmlDialogueServlet
         return mVoiceXmlStepRenderer;
     }
 
-    private void processRessource(HttpServletRequest request, HttpServletResponse response, String pathInfo)
-            throws IOException, ServletException {
-        InputStream inputStream = VoiceXmlDialogueServlet.class.getResourceAsStream(pathInfo.substring(1));
-        byte[] bytes = IOUtils.toByteArray(inputStream);
-        String eTag = getETag(bytes);
-        String ifNoneMatch = request.getHeader(IF_NONE_MATCH);
+    @Override
+    protected void renderOutputTurn(VoiceXmlOutputTurn outputTurn,
+                                    HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    Session<VoiceXmlInputTurn, VoiceXmlOutputTurn, VoiceXmlFirstTurn, VoiceXmlLastTurn, VoiceXmlDialogueContext> session)
+            throws IOException, StepRendererException {
+        VoiceXmlDialogueContext dialogueContext = session.getDialogueContext();
+        if (dialogueContext.isRootDocumentScaffoldingEnabled()) {
+            renderScaffoldedRootDocument(request, dialogueContext);
+        }
+        super.renderOutputTurn(outputTurn, request, response, session);
+    }
 
-        if (eTag.equals(ifNoneMatch)) {
-            response.sendError(HttpServletResponse.SC_NOT_MODIFIED, "Not Modified");
-        } else {
-            response.setContentType(JAVASCRIPT_CONTENT_TYPE);
-            response.addHeader(ETAG, eTag);
-            response.getOutputStream().write(bytes);
+    /**
+     * Renders the overflow {@link VoiceXmlLastTurn} without creating a
+     * dialogue. The VoiceXML document only depends on the context and servlet
+     * paths, so it is rendered once for each of them and then reused.
+     */
+    @Override
+    protected ServletResponseContent createOverflowResponseContent(HttpServletRequest request,
+                                                                   HttpServletResponse response)
+            throws StepRendererException {
+        StepRenderer<VoiceXmlInputTurn, VoiceXmlOutputTurn, VoiceXmlLastTurn, VoiceXmlDialogueContext> stepRenderer = getStepRenderer(request,
+                                                                                                                                      null);
+        if (stepRenderer != mVoiceXmlStepRenderer) return renderOverflowLastTurn(stepRenderer, request, response);
+
+        String key = request.getContextPath() + request.getServletPath();
+        ServletResponseContent responseContent = mOverflowResponseContents.get(key);
+        if (responseContent == null) {
+            responseContent = renderOverflowLastTurn(mOverflowStepRenderer, request, response);
+            mOverflowResponseContents.put(key, responseContent);
         }
+        return responseContent;
+    }
+
+    private ServletResponseContent renderOverflowLastTurn(StepRenderer<VoiceXmlInputTurn, VoiceXmlOutputTurn, VoiceXmlLastTurn, VoiceXmlDialogueContext> stepRenderer,
+                                                          HttpServletRequest request,
+                                                          HttpServletResponse response) throws StepRendererException {
+        VoiceXmlDialogueContext dialogueContext = new VoiceXmlDialogueContext(null,
+                                                                              NOPLogger.NOP_LOGGER,
+                                                                              OVERFLOW_DIALOGUE_ID,
+                                                                              request.getContextPath(),
+                                                                              request.getServletPath());
+        return stepRenderer.createDocumentForLastTurn(mOverflowLastTurn, request, response, dialogueContext);
+    }
+
+    private void processGrammar(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String name = request.getPathInfo().substring(GRAMMAR_PATH.length());
+        CachedResource grammar = mGrammarRegistry.get(name);
+        if (grammar == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        // the name is derived from the content: it never designates another grammar
+        grammar.send(request, response, Duration.year(1), true);
     }
 
     private void processRootDocument(HttpServletRequest request, HttpServletResponse response) throws ServletException,
             IOException {
 
+        // scaffolded root documents: /root/<dialogue id>/<version>
+        String rootPath = request.getPathInfo().substring(ROOT_PATH.length());
+        int slashIndex = rootPath.indexOf('/');
+        if (slashIndex != -1) {
+            processScaffoldedRootDocument(request, response, rootPath.substring(0, slashIndex));
+            return;
+        }
+
         try {
-            Document rootDocument = mRootDocumentFactory.getDocument(request);
+            VoiceXmlRootDocumentFactory rootDocumentFactory = mRootDocumentFactory;
+            if (rootDocumentFactory instanceof CacheableVoiceXmlRootDocumentFactory
+                && ((CacheableVoiceXmlRootDocumentFactory) rootDocumentFactory).isCacheable(request)) {
+                String key = request.getContextPath() + request.getServletPath();
+                CachedResource rootDocument = mRootDocuments.get(key);
+                if (rootDocument == null) {
+                    rootDocument = new CachedResource(renderRootDocument(rootDocumentFactory, request),
+                                                      VOICE_XML_CONTENT_TYPE);
+                    mRootDocuments.put(key, rootDocument);
+                }
+                rootDocument.send(request, response, mRootDocumentMaxAge);
+                return;
+            }
+
+            byte[] bytes = renderRootDocument(rootDocumentFactory, request);
             response.setContentType(VOICE_XML_CONTENT_TYPE);
-            DomUtils.writeToOutputStream(rootDocument, response.getOutputStream(), Encoding.UTF_8);
+            response.setContentLength(bytes.length);
+            response.getOutputStream().write(bytes);
         } catch (VoiceXmlDocumentRenderingException exception) {
             throw new ServletException("Error while rendering root document.", exception);
         }
     }
 
-    private String getETag(byte[] bytes) throws ServletException {
+    private void processScaffoldedRootDocument(HttpServletRequest request,
+                                               HttpServletResponse response,
+                                               String dialogueId) throws IOException {
+        CachedResource rootDocument = null;
         try {
-            byte[] digest = MessageDigest.getInstance("MD5").digest(bytes);
-            return StringUtils.bytesToHex(digest);
-        } catch (NoSuchAlgorithmException exception) {
-            throw new ServletException("Could not create message digest.", exception);
+            VoiceXmlDialogueContext dialogueContext = getExistingSession(dialogueId).getDialogueContext();
+            if (dialogueContext != null) {
+                String path = request.getContextPath() + request.getServletPath() + request.getPathInfo();
+                rootDocument = dialogueContext.getScaffoldedRootDocument(path);
+            }
+        } catch (SessionNotFoundException exception) {
+            // unknown dialogue
         }
+
+        if (rootDocument == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        // the path changes with the scaffolding, so the document can be cached
+        rootDocument.send(request, response, mRootDocumentMaxAge);
+    }
+
+    /**
+     * Renders the root document referred to by the output turn about to be
+     * rendered, unless it was already rendered for the same version. This is
+     * done while the dialogue waits for its next input turn, so the context
+     * does not change while it is read.
+     */
+    private void renderScaffoldedRootDocument(HttpServletRequest request, VoiceXmlDialogueContext dialogueContext)
+            throws StepRendererException {
+        String path = VoiceXmlDomUtil.getScaffoldedRootDocumentPath(dialogueContext);
+        if (dialogueContext.getScaffoldedRootDocument(path) != null) return;
+
+        try {
+            Document rootDocument = mRootDocumentFactory.getDocument(request);
+            VoiceXmlDomUtil.addRootDocumentScaffolding(rootDocument, dialogueContext);
+            byte[] bytes = DomUtils.writeToByteArray(rootDocument, Encoding.UTF_8);
+            dialogueContext.setScaffoldedRootDocument(path, new CachedResource(bytes, VOICE_XML_CONTENT_TYPE));
+        } catch (VoiceXmlDocumentRenderingException exception) {
+            throw new StepRendererException("Error while rendering root document.", exception);
+        } catch (IOException exception) {
+            throw new StepRendererException("Error while rendering root document.", exception);
+        }
+    }
+
+    private void addRivrScript() throws DialogueServletInitializationException {
+        InputStream inputStream = VoiceXmlDialogueServlet.class.getResourceAsStream(RIVR_SCRIPT.substring(1));
+        if (inputStream == null)
+            throw new DialogueServletInitializationException("Unable to find resource '" + RIVR_SCRIPT + "'.");
+
+        try {
+            try {
+                addStaticResource(RIVR_SCRIPT, IOUtils.toByteArray(inputStream), JAVASCRIPT_CONTENT_TYPE);
+            } finally {
+                inputStream.close();
+            }
+        } catch (IOException exception) {
+            throw new DialogueServletInitializationException("Unable to load resource '" + RIVR_SCRIPT + "'.",
+                                                             exception);
+        }
+    }
+
+    private static byte[] renderRootDocument(VoiceXmlRootDocumentFactory rootDocumentFactory,
+                                             HttpServletRequest request) throws VoiceXmlDocumentRenderingException,
+            IOException {
+        Document rootDocument = rootDocumentFactory.getDocument(request);
+        return DomUtils.writeToByteArray(rootDocument, Encoding.UTF_8);
     }
 
 }
\ No newline at end of file
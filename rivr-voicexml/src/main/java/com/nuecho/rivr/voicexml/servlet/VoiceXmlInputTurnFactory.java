@@ -6,6 +6,7 @@ package com.nuecho.rivr.voicexml.servlet;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.regex.*;
 
 import javax.json.*;
@@ -17,6 +18,7 @@ import org.apache.commons.fileupload.servlet.*;
 
 import com.nuecho.rivr.core.servlet.*;
 import com.nuecho.rivr.core.util.*;
+import com.nuecho.rivr.voicexml.recording.*;
 import com.nuecho.rivr.voicexml.turn.first.*;
 import com.nuecho.rivr.voicexml.turn.input.*;
 import com.nuecho.rivr.voicexml.util.*;
@@ -24,6 +26,14 @@ import com.nuecho.rivr.voicexml.util.json.*;
 
 /**
  * VoiceXML specialization of {@link InputTurnFactory}.
+ * <p>
+ * Uploaded files larger than the {@link #setSpoolThreshold(int) spool
+ * threshold} are streamed to a temporary file instead of being buffered in
+ * memory. The file is deleted when the {@link FileUpload} is
+ * {@link FileUpload#release() released}. The spooled uploads of a request are
+ * listed in the {@value #SPOOLED_FILE_UPLOADS_ATTRIBUTE} request attribute, so
+ * that the {@link VoiceXmlDialogueServlet} can release them when the dialogue
+ * ends.
  * 
  * @author Nu Echo Inc.
  */
@@ -65,6 +75,71 @@ public final class VoiceXmlInputTurnFactory implements InputTurnFactory<VoiceXml
 
     private static final Pattern CHAR_SET_PATTERN = Pattern.compile("charset\\s*=\\s*([^ ;]+)");
 
+    public static final int DEFAULT_SPOOL_THRESHOLD = 256 * 1024;
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final String SPOOL_FILE_PREFIX = "rivr-upload-";
+    private static final String SPOOL_FILE_SUFFIX = ".tmp";
+
+    static final String SPOOLED_FILE_UPLOADS_ATTRIBUTE = "com.nuecho.rivr.voicexml.spooledFileUploads";
+
+    private int mSpoolThreshold = DEFAULT_SPOOL_THRESHOLD;
+    private long mMaximumUploadSize = -1;
+    private File mSpoolDirectory;
+    private RecordingProcessor mRecordingProcessor;
+
+    /**
+     * Sets the size above which uploaded files are spooled to a temporary file
+     * instead of being kept in memory.
+     * 
+     * @param spoolThreshold the threshold, in bytes. 0 spools every file.
+     *            Default: {@link #DEFAULT_SPOOL_THRESHOLD}.
+     * @since 1.0.13
+     */
+    public void setSpoolThreshold(int spoolThreshold) {
+        Assert.notNegative(spoolThreshold, "spoolThreshold");
+        mSpoolThreshold = spoolThreshold;
+    }
+
+    /**
+     * Sets the maximum size of an uploaded file. The limit is enforced while
+     * the request is read: an oversized upload is rejected with an
+     * {@link InputTurnFactoryException} as soon as the limit is exceeded.
+     * 
+     * @param maximumUploadSize the maximum size, in bytes, or <code>-1</code>
+     *            for no limit (the default). Spooled files cannot exceed
+     *            {@link Integer#MAX_VALUE} bytes in any case.
+     * @since 1.0.13
+     */
+    public void setMaximumUploadSize(long maximumUploadSize) {
+        Assert.ensure(maximumUploadSize == -1 || maximumUploadSize > 0, "maximumUploadSize should be positive or -1");
+        mMaximumUploadSize = maximumUploadSize;
+    }
+
+    /**
+     * Sets the directory where uploaded files are spooled.
+     * 
+     * @param spoolDirectory the directory, or <code>null</code> to use the
+     *            default temporary directory (the default).
+     * @since 1.0.13
+     */
+    public void setSpoolDirectory(File spoolDirectory) {
+        mSpoolDirectory = spoolDirectory;
+    }
+
+    /**
+     * Sets the processor to which recordings are submitted as soon as the input
+     * turn is created.
+     * 
+     * @param recordingProcessor the processor, or <code>null</code> if
+     *            recordings are not processed (the default).
+     * @see RecordingInfo#getProcessedRecording()
+     * @since 1.0.13
+     */
+    public void setRecordingProcessor(RecordingProcessor recordingProcessor) {
+        mRecordingProcessor = recordingProcessor;
+    }
+
     @Override
     public VoiceXmlFirstTurn createFirstTurn(HttpServletRequest request, HttpServletResponse response)
             throws InputTurnFactoryException {
@@ -96,8 +171,20 @@ public final class VoiceXmlInputTurnFactory implements InputTurnFactory<VoiceXml
                                                 + INPUT_TURN_PARAMETER
                                                 + "' parameter.");
 
-        JsonReader jsonReader = JsonUtils.createReader(result);
-        JsonObject resultObject = jsonReader.readObject();
+        // the value and the recognition result, which can be large, are only decoded on first access
+        LazyJsonValue resultObject;
+        try {
+            resultObject = LazyJsonValue.parse(result, VALUE_PROPERTY, RECOGNITION_PROPERTY + "/" + RESULT_PROPERTY);
+        } catch (JsonException exception) {
+            throw new InputTurnFactoryException("Unable to process request. Invalid JSON in '"
+                                                + INPUT_TURN_PARAMETER
+                                                + "' parameter.", exception);
+        }
+        if (resultObject.getValueType() != JsonValue.ValueType.OBJECT)
+            throw new InputTurnFactoryException("Unable to process request. '"
+                                                + INPUT_TURN_PARAMETER
+                                                + "' parameter should be a JSON object.");
+
         VoiceXmlInputTurn voiceXmlInputTurn = new VoiceXmlInputTurn();
         voiceXmlInputTurn.setFiles(files);
 
@@ -109,10 +196,17 @@ public final class VoiceXmlInputTurnFactory implements InputTurnFactory<VoiceXml
         return voiceXmlInputTurn;
     }
 
-    private static void addEvents(JsonObject resultObject, VoiceXmlInputTurn voiceXmlInputTurn) {
-        if (!resultObject.containsKey(EVENTS_PROPERTY)) return;
+    private static JsonObject getObject(LazyJsonValue object, String property) {
+        LazyJsonValue member = object.getMember(property);
+        if (member == null) return null;
+        return (JsonObject) member.getValue();
+    }
+
+    private static void addEvents(LazyJsonValue resultObject, VoiceXmlInputTurn voiceXmlInputTurn) {
+        LazyJsonValue eventArray = resultObject.getMember(EVENTS_PROPERTY);
+        if (eventArray == null) return;
 
-        List<JsonValue> eventObjects = resultObject.getJsonArray(EVENTS_PROPERTY);
+        List<JsonValue> eventObjects = (JsonArray) eventArray.getValue();
         List<VoiceXmlEvent> events = new ArrayList<VoiceXmlEvent>();
         for (JsonValue jsonValue : eventObjects) {
             JsonObject eventObject = (JsonObject) jsonValue;
@@ -126,17 +220,17 @@ public final class VoiceXmlInputTurnFactory implements InputTurnFactory<VoiceXml
         voiceXmlInputTurn.setEvents(events);
     }
 
-    private static void addObject(JsonObject resultObject, VoiceXmlInputTurn voiceXmlInputTurn) {
-        if (!resultObject.containsKey(VALUE_PROPERTY)) return;
+    private static void addObject(LazyJsonValue resultObject, VoiceXmlInputTurn voiceXmlInputTurn) {
+        LazyJsonValue subdialogueResultJsonValue = resultObject.getMember(VALUE_PROPERTY);
+        if (subdialogueResultJsonValue == null) return;
 
-        JsonValue subdialogueResultJsonValue = resultObject.get(VALUE_PROPERTY);
-        voiceXmlInputTurn.setJsonValue(subdialogueResultJsonValue);
+        voiceXmlInputTurn.setLazyJsonValue(subdialogueResultJsonValue);
     }
 
-    private static void addTransferStatusInfo(JsonObject resultObject, VoiceXmlInputTurn voiceXmlInputTurn) {
-        if (!resultObject.containsKey(TRANSFER_PROPERTY)) return;
+    private static void addTransferStatusInfo(LazyJsonValue resultObject, VoiceXmlInputTurn voiceXmlInputTurn) {
+        JsonObject transferResultObject = getObject(resultObject, TRANSFER_PROPERTY);
+        if (transferResultObject == null) return;
 
-        JsonObject transferResultObject = resultObject.getJsonObject(TRANSFER_PROPERTY);
 
         TransferStatus transferStatus = new TransferStatus(transferResultObject.getString(TRANSFER_STATUS_PROPERTY));
 
@@ -153,12 +247,11 @@ public final class VoiceXmlInputTurnFactory implements InputTurnFactory<VoiceXml
         voiceXmlInputTurn.setTransferResult(new TransferStatusInfo(transferStatus, duration));
     }
 
-    private static void addRecordingInfo(JsonObject resultObject,
-                                         VoiceXmlInputTurn voiceXmlInputTurn,
-                                         Map<String, FileUpload> files) {
-        if (!resultObject.containsKey(RECORDING_META_DATA_PROPERTY)) return;
-
-        JsonObject recordingMetaData = resultObject.getJsonObject(RECORDING_META_DATA_PROPERTY);
+    private void addRecordingInfo(LazyJsonValue resultObject,
+                                  VoiceXmlInputTurn voiceXmlInputTurn,
+                                  Map<String, FileUpload> files) {
+        JsonObject recordingMetaData = getObject(resultObject, RECORDING_META_DATA_PROPERTY);
+        if (recordingMetaData == null) return;
 
         Duration duration;
         if (recordingMetaData.containsKey(DURATION_PROPERTY)) {
@@ -179,20 +272,27 @@ public final class VoiceXmlInputTurnFactory implements InputTurnFactory<VoiceXml
             file = files.get(RECORDING_PARAMETER);
         }
 
-        voiceXmlInputTurn.setRecordingInfo(new RecordingInfo(file, duration, maxTime, dtmfTermChar));
-    }
+        CompletionStage<ProcessedRecording> processedRecording;
+        if (file != null && mRecordingProcessor != null) {
+            processedRecording = mRecordingProcessor.process(file);
+            file.setPendingProcessing(processedRecording);
+        } else {
+            processedRecording = null;
+        }
 
-    private void addRecognitionInfo(JsonObject jsonObject, VoiceXmlInputTurn voiceXmlInputTurn) {
+        voiceXmlInputTurn.setRecordingInfo(new RecordingInfo(file, duration, maxTime, dtmfTermChar, processedRecording));
+    }
 
-        if (!jsonObject.containsKey(RECOGNITION_PROPERTY)) return;
+    private void addRecognitionInfo(LazyJsonValue jsonObject, VoiceXmlInputTurn voiceXmlInputTurn) {
 
-        JsonObject recognitionObject = jsonObject.getJsonObject(RECOGNITION_PROPERTY);
+        LazyJsonValue recognitionObject = jsonObject.getMember(RECOGNITION_PROPERTY);
+        if (recognitionObject == null) return;
 
-        JsonArray recognitionResultArray = recognitionObject.getJsonArray(RESULT_PROPERTY);
+        LazyJsonValue recognitionResultArray = recognitionObject.getMember(RESULT_PROPERTY);
 
         MarkInfo markInfo = null;
-        if (recognitionObject.containsKey(MARK_PROPERTY)) {
-            JsonObject markObject = recognitionObject.getJsonObject(MARK_PROPERTY);
+        JsonObject markObject = getObject(recognitionObject, MARK_PROPERTY);
+        if (markObject != null) {
             long timeInMilliseconds = JsonUtils.getLongProperty(markObject, MARK_TIME_PROPERTY);
             markInfo = new MarkInfo(markObject.getString(MARK_NAME_PROPERTY), Duration.milliseconds(timeInMilliseconds));
         }
@@ -205,28 +305,33 @@ public final class VoiceXmlInputTurnFactory implements InputTurnFactory<VoiceXml
                                                   Map<String, FileUpload> files) throws InputTurnFactoryException {
         if (ServletFileUpload.isMultipartContent(request)) {
             ServletFileUpload servletFileUpload = new ServletFileUpload();
+            servletFileUpload.setFileSizeMax(getFileSizeMax());
             try {
                 FileItemIterator itemIterator = servletFileUpload.getItemIterator(request);
                 while (itemIterator.hasNext()) {
                     FileItemStream fileItemStream = itemIterator.next();
-
-                    byte[] bytes;
                     String parameterName = fileItemStream.getFieldName();
-                    try {
-                        InputStream stream = fileItemStream.openStream();
-                        bytes = IOUtils.toByteArray(stream);
-                    } catch (IOException exception) {
-                        throw new ServletException("Unable to read stream from " + parameterName, exception);
-                    }
 
                     if (!fileItemStream.isFormField()) {
-                        FileUpload fileUpload = new FileUpload(fileItemStream.getName(),
-                                                               fileItemStream.getContentType(),
-                                                               bytes,
-                                                               getHeaders(fileItemStream));
+                        FileUpload fileUpload;
+                        try {
+                            fileUpload = createFileUpload(fileItemStream);
+                        } catch (IOException exception) {
+                            throw new ServletException("Unable to read stream from " + parameterName, exception);
+                        }
 
                         files.put(parameterName, fileUpload);
+                        if (fileUpload.isSpooled()) {
+                            addSpooledFileUpload(request, fileUpload);
+                        }
                     } else {
+                        byte[] bytes;
+                        try {
+                            bytes = IOUtils.toByteArray(fileItemStream.openStream());
+                        } catch (IOException exception) {
+                            throw new ServletException("Unable to read stream from " + parameterName, exception);
+                        }
+
                         String encoding = findEncoding(request, fileItemStream);
                         try {
                             parameters.put(parameterName, new String(bytes, encoding));
@@ -241,6 +346,9 @@ public final class VoiceXmlInputTurnFactory implements InputTurnFactory<VoiceXml
 
                 }
             } catch (Exception exception) {
+                for (FileUpload fileUpload : files.values()) {
+                    fileUpload.release();
+                }
                 throw new InputTurnFactoryException("Unable to get recording.", exception);
             }
         } else {
@@ -254,6 +362,73 @@ public final class VoiceXmlInputTurnFactory implements InputTurnFactory<VoiceXml
 
     }
 
+    private long getFileSizeMax() {
+        if (mMaximumUploadSize == -1) return Integer.MAX_VALUE;
+        return Math.min(mMaximumUploadSize, Integer.MAX_VALUE);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void addSpooledFileUpload(HttpServletRequest request, FileUpload fileUpload) {
+        List<FileUpload> fileUploads = (List<FileUpload>) request.getAttribute(SPOOLED_FILE_UPLOADS_ATTRIBUTE);
+        if (fileUploads == null) {
+            fileUploads = new ArrayList<FileUpload>();
+            request.setAttribute(SPOOLED_FILE_UPLOADS_ATTRIBUTE, fileUploads);
+        }
+        fileUploads.add(fileUpload);
+    }
+
+    private FileUpload createFileUpload(FileItemStream fileItemStream) throws IOException {
+        String name = fileItemStream.getName();
+        String contentType = fileItemStream.getContentType();
+        Map<String, String> headers = getHeaders(fileItemStream);
+
+        InputStream inputStream = fileItemStream.openStream();
+        try {
+            ByteArrayOutputStream memoryOutputStream = new ByteArrayOutputStream();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int length;
+            while ((length = inputStream.read(buffer)) != -1) {
+                if (memoryOutputStream.size() + length > mSpoolThreshold) {
+                    File spoolFile = File.createTempFile(SPOOL_FILE_PREFIX, SPOOL_FILE_SUFFIX, mSpoolDirectory);
+                    long size;
+                    try {
+                        size = spool(spoolFile, memoryOutputStream, buffer, length, inputStream);
+                    } catch (IOException exception) {
+                        if (!spoolFile.delete()) {
+                            spoolFile.deleteOnExit();
+                        }
+                        throw exception;
+                    }
+                    return new FileUpload(name, contentType, spoolFile, size, headers);
+                }
+                memoryOutputStream.write(buffer, 0, length);
+            }
+            return new FileUpload(name, contentType, memoryOutputStream.toByteArray(), headers);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    private static long spool(File spoolFile,
+                              ByteArrayOutputStream memoryOutputStream,
+                              byte[] buffer,
+                              int length,
+                              InputStream inputStream) throws IOException {
+        OutputStream outputStream = new FileOutputStream(spoolFile);
+        try {
+            memoryOutputStream.writeTo(outputStream);
+            long size = memoryOutputStream.size();
+            int chunkLength = length;
+            do {
+                outputStream.write(buffer, 0, chunkLength);
+                size += chunkLength;
+            } while ((chunkLength = inputStream.read(buffer)) != -1);
+            return size;
+        } finally {
+            outputStream.close();
+        }
+    }
+
     private String findEncoding(HttpServletRequest request, FileItemStream fileItemStream) {
 
         String encoding = null;
@@ -34,11 +34,6 @@ public class VoiceXmlTestDialogueChannel
         extends
         TestDialogueChannel<VoiceXmlInputTurn, VoiceXmlOutputTurn, VoiceXmlFirstTurn, VoiceXmlLastTurn, VoiceXmlDialogueContext> {
 
-    private static final String CONFIDENCE_PROPERTY = "confidence";
-    private static final String INTERPRETATION_PROPERTY = "interpretation";
-    private static final String INPUTMODE_PROPERTY = "inputmode";
-    private static final String UTTERANCE_PROPERTY = "utterance";
-
     public VoiceXmlTestDialogueChannel(String name, Duration defaultTimeout) {
         super(name, defaultTimeout);
     }
@@ -138,10 +133,10 @@ public class VoiceXmlTestDialogueChannel
 
     private JsonObject createDtmfHypothesis(String dtmfString, JsonValue interpretation) {
         JsonObjectBuilder builder = JsonUtils.createObjectBuilder();
-        JsonUtils.add(builder, UTTERANCE_PROPERTY, dtmfString);
-        JsonUtils.add(builder, INPUTMODE_PROPERTY, "dtmf");
-        JsonUtils.add(builder, INTERPRETATION_PROPERTY, interpretation);
-        builder.add(CONFIDENCE_PROPERTY, 1.0);
+        JsonUtils.add(builder, NBestList.UTTERANCE_PROPERTY, dtmfString);
+        JsonUtils.add(builder, NBestList.INPUTMODE_PROPERTY, "dtmf");
+        JsonUtils.add(builder, NBestList.INTERPRETATION_PROPERTY, interpretation);
+        builder.add(NBestList.CONFIDENCE_PROPERTY, 1.0);
         return builder.build();
     }
 }
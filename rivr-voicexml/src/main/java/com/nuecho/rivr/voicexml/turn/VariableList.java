@@ -8,6 +8,7 @@ import java.util.*;
 import java.util.Map.Entry;
 
 import javax.json.*;
+import javax.json.stream.*;
 
 import com.nuecho.rivr.core.util.*;
 import com.nuecho.rivr.voicexml.rendering.voicexml.*;
@@ -93,7 +94,7 @@ public final class VariableList implements Iterable<Entry<String, String>>, Json
 
     @Override
     public String toString() {
-        return asJson().toString();
+        return JsonUtils.toString(this);
     }
 
     @Override
@@ -101,16 +102,35 @@ public final class VariableList implements Iterable<Entry<String, String>>, Json
         JsonArrayBuilder builder = JsonUtils.createArrayBuilder();
         for (Entry<String, String> entry : this) {
             JsonObjectBuilder variableBuilder = JsonUtils.createObjectBuilder();
-            JsonUtils.add(variableBuilder, VARIABLE_NAME_PROPERTY, entry.getKey());
-            if (entry.getValue() != null) {
-                JsonUtils.add(variableBuilder, INITIAL_VALUE_PROPERTY, entry.getValue());
-            }
-
+            addVariableProperties(variableBuilder, entry);
             builder.add(variableBuilder);
         }
         return builder.build();
     }
 
+    @Override
+    public void writeJson(JsonGenerator generator, String name) {
+        if (name == null) {
+            generator.writeStartArray();
+        } else {
+            generator.writeStartArray(name);
+        }
+
+        for (Entry<String, String> entry : this) {
+            JsonObjectBuilder variableBuilder = JsonUtils.writeStartObject(generator, null);
+            addVariableProperties(variableBuilder, entry);
+            generator.writeEnd();
+        }
+        generator.writeEnd();
+    }
+
+    private static void addVariableProperties(JsonObjectBuilder builder, Entry<String, String> entry) {
+        JsonUtils.add(builder, VARIABLE_NAME_PROPERTY, entry.getKey());
+        if (entry.getValue() != null) {
+            JsonUtils.add(builder, INITIAL_VALUE_PROPERTY, entry.getValue());
+        }
+    }
+
     @Override
     public Iterator<Entry<String, String>> iterator() {
         return Collections.unmodifiableCollection(mVariables.entrySet()).iterator();
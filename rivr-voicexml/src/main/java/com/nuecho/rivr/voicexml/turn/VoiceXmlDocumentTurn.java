@@ -7,6 +7,7 @@ package com.nuecho.rivr.voicexml.turn;
 import java.util.*;
 
 import javax.json.*;
+import javax.json.stream.*;
 
 import org.w3c.dom.*;
 
@@ -43,18 +44,40 @@ public abstract class VoiceXmlDocumentTurn implements JsonSerializable {
 
     /**
      * Adds top level properties to the JSON representation of this turn
+     * <p>
+     * When the turn is written with {@link #writeJson(JsonGenerator, String)},
+     * the builder writes each property directly to the generator. A property
+     * cannot then be added twice, since it cannot be replaced, and
+     * {@link JsonObjectBuilder#build()} must not be called.
      *
      * @param builder A {@link JsonObjectBuilder} that can be used to create the
      *            top level JSON properties
      */
     protected void addTopLevelProperties(JsonObjectBuilder builder) {}
 
+    /**
+     * Adds the properties of the <code>data</code> object of the JSON
+     * representation of this turn. The builder has the same restrictions as
+     * the one passed to {@link #addTopLevelProperties(JsonObjectBuilder)}.
+     *
+     * @param builder A {@link JsonObjectBuilder} that can be used to create the
+     *            turn properties
+     */
     protected abstract void addTurnProperties(JsonObjectBuilder builder);
 
     public final void addAdapter(VoiceXmlDocumentAdapter adapter) {
         mAdapters.add(adapter);
     }
 
+    /**
+     * @return <code>true</code> if at least one {@link VoiceXmlDocumentAdapter}
+     *         has been added to this turn.
+     * @since 1.0.13
+     */
+    protected final boolean hasAdapters() {
+        return !mAdapters.isEmpty();
+    }
+
     public final String getName() {
         return mName;
     }
@@ -70,7 +93,7 @@ public abstract class VoiceXmlDocumentTurn implements JsonSerializable {
 
     @Override
     public final String toString() {
-        return asJson().toString();
+        return JsonUtils.toString(this);
     }
 
     @Override
@@ -85,6 +108,19 @@ public abstract class VoiceXmlDocumentTurn implements JsonSerializable {
         return builder.build();
     }
 
+    @Override
+    public final void writeJson(JsonGenerator generator, String name) {
+        JsonObjectBuilder builder = JsonUtils.writeStartObject(generator, name);
+        JsonUtils.add(builder, NAME_PROPERTY, getName());
+
+        JsonObjectBuilder dataBuilder = JsonUtils.writeStartObject(generator, DATA_PROPERTY);
+        addTurnProperties(dataBuilder);
+        generator.writeEnd();
+
+        addTopLevelProperties(builder);
+        generator.writeEnd();
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
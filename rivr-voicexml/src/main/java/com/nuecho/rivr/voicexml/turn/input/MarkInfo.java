@@ -5,6 +5,7 @@
 package com.nuecho.rivr.voicexml.turn.input;
 
 import javax.json.*;
+import javax.json.stream.*;
 
 import com.nuecho.rivr.core.util.*;
 import com.nuecho.rivr.voicexml.util.json.*;
@@ -40,9 +41,20 @@ public final class MarkInfo implements JsonSerializable {
     @Override
     public JsonValue asJson() {
         JsonObjectBuilder builder = JsonUtils.createObjectBuilder();
+        addJsonProperties(builder);
+        return builder.build();
+    }
+
+    @Override
+    public void writeJson(JsonGenerator generator, String name) {
+        JsonObjectBuilder builder = JsonUtils.writeStartObject(generator, name);
+        addJsonProperties(builder);
+        generator.writeEnd();
+    }
+
+    private void addJsonProperties(JsonObjectBuilder builder) {
         JsonUtils.add(builder, NAME_PROPERTY, mName);
         JsonUtils.addDurationProperty(builder, TIME_PROPERTY, mTime);
-        return builder.build();
     }
 
     @Override
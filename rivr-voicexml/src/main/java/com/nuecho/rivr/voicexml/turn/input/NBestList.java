@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+package com.nuecho.rivr.voicexml.turn.input;
+
+import java.util.*;
+
+import javax.json.*;
+
+import com.nuecho.rivr.core.util.*;
+import com.nuecho.rivr.voicexml.util.json.*;
+
+/**
+ * Typed, immutable view of a VoiceXML recognition result
+ * (<code>application.lastresult$</code>). The view is backed by the
+ * {@link LazyJsonValue} of the result: building it only locates the
+ * hypotheses, and each hypothesis is decoded on the first access to one of its
+ * values and then cached. Accessing the top hypothesis of a large N-best
+ * result therefore does not decode the other hypotheses.
+ * <p>
+ * Hypotheses are ordered as received from the platform, i.e. by decreasing
+ * confidence.
+ * 
+ * @author Nu Echo Inc.
+ * @see RecognitionInfo#getNBestList()
+ * @see <a
+ *      href="https://www.w3.org/TR/voicexml20/#dml5.1.5">https://www.w3.org/TR/voicexml20/#dml5.1.5</a>
+ * @since 1.0.13
+ */
+public final class NBestList implements Iterable<RecognitionHypothesis> {
+
+    public static final String CONFIDENCE_PROPERTY = "confidence";
+    public static final String UTTERANCE_PROPERTY = "utterance";
+    public static final String INPUTMODE_PROPERTY = "inputmode";
+    public static final String INTERPRETATION_PROPERTY = "interpretation";
+
+    private static final String DTMF_INPUTMODE = "dtmf";
+    private static final String VOICE_INPUTMODE = "voice";
+
+    private final LazyJsonValue mRecognitionResult;
+    private final List<LazyJsonValue> mElements;
+    private final JsonObject[] mHypotheses;
+
+    public NBestList(JsonArray recognitionResult) {
+        this(LazyJsonValue.of(recognitionResult));
+    }
+
+    /**
+     * @param recognitionResult the recognition result. Must be a JSON array.
+     */
+    public NBestList(LazyJsonValue recognitionResult) {
+        Assert.notNull(recognitionResult, "recognitionResult");
+        Assert.ensure(recognitionResult.getValueType() == JsonValue.ValueType.ARRAY,
+                      "recognitionResult should be a JSON array");
+        mRecognitionResult = recognitionResult;
+        mElements = recognitionResult.getElements();
+        mHypotheses = new JsonObject[mElements.size()];
+    }
+
+    public int size() {
+        return mHypotheses.length;
+    }
+
+    public boolean isEmpty() {
+        return mHypotheses.length == 0;
+    }
+
+    /**
+     * @param index the hypothesis index.
+     * @return the confidence, between 0 and 1, or {@link Double#NaN} if the
+     *         platform did not provide it.
+     */
+    public double getConfidence(int index) {
+        JsonValue confidence = getHypothesisObject(index).get(CONFIDENCE_PROPERTY);
+        return confidence instanceof JsonNumber ? ((JsonNumber) confidence).doubleValue() : Double.NaN;
+    }
+
+    public String getUtterance(int index) {
+        return getString(getHypothesisObject(index), UTTERANCE_PROPERTY);
+    }
+
+    public String getInputMode(int index) {
+        return getInputMode(getString(getHypothesisObject(index), INPUTMODE_PROPERTY));
+    }
+
+    /**
+     * Gets the semantic interpretation of a hypothesis.
+     * 
+     * @param index the hypothesis index.
+     * @return the interpretation, or {@link JsonValue#NULL} if there is none.
+     */
+    public JsonValue getInterpretation(int index) {
+        JsonValue interpretation = getHypothesisObject(index).get(INTERPRETATION_PROPERTY);
+        return interpretation == null ? JsonValue.NULL : interpretation;
+    }
+
+    public RecognitionHypothesis getHypothesis(int index) {
+        Assert.between(0, index, size() - 1);
+        return new RecognitionHypothesis(this, index);
+    }
+
+    /**
+     * @return the hypothesis with the highest confidence, or <code>null</code>
+     *         if the list is empty.
+     */
+    public RecognitionHypothesis getTopHypothesis() {
+        if (isEmpty()) return null;
+        return new RecognitionHypothesis(this, 0);
+    }
+
+    /**
+     * @param minimumConfidence the confidence threshold.
+     * @return <code>true</code> if the top hypothesis has a confidence greater
+     *         than or equal to the threshold.
+     */
+    public boolean isTopHypothesisAccepted(double minimumConfidence) {
+        return !isEmpty() && getConfidence(0) >= minimumConfidence;
+    }
+
+    /**
+     * @param minimumConfidence the confidence threshold.
+     * @return the number of hypotheses having a confidence greater than or
+     *         equal to the threshold.
+     */
+    public int countAccepted(double minimumConfidence) {
+        int count = 0;
+        for (int index = 0; index < mHypotheses.length; index++) {
+            if (getConfidence(index) >= minimumConfidence) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param minimumConfidence the confidence threshold.
+     * @return the hypotheses having a confidence greater than or equal to the
+     *         threshold, in order.
+     */
+    public List<RecognitionHypothesis> getAcceptedHypotheses(double minimumConfidence) {
+        List<RecognitionHypothesis> hypotheses = new ArrayList<RecognitionHypothesis>();
+        for (int index = 0; index < mHypotheses.length; index++) {
+            if (getConfidence(index) >= minimumConfidence) {
+                hypotheses.add(new RecognitionHypothesis(this, index));
+            }
+        }
+        return hypotheses;
+    }
+
+    /**
+     * @return the raw recognition result. All the hypotheses are decoded.
+     */
+    public JsonArray getRecognitionResult() {
+        return (JsonArray) mRecognitionResult.getValue();
+    }
+
+    @Override
+    public Iterator<RecognitionHypothesis> iterator() {
+        return new Iterator<RecognitionHypothesis>() {
+            private int mIndex;
+
+            @Override
+            public boolean hasNext() {
+                return mIndex < size();
+            }
+
+            @Override
+            public RecognitionHypothesis next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return new RecognitionHypothesis(NBestList.this, mIndex++);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return mRecognitionResult.getText();
+    }
+
+    private JsonObject getHypothesisObject(int index) {
+        JsonObject hypothesis = mHypotheses[index];
+        if (hypothesis == null) {
+            hypothesis = (JsonObject) mElements.get(index).getValue();
+            mHypotheses[index] = hypothesis;
+        }
+        return hypothesis;
+    }
+
+    private static String getString(JsonObject object, String property) {
+        JsonValue value = object.get(property);
+        if (value instanceof JsonString) return ((JsonString) value).getString();
+        return null;
+    }
+
+    private static String getInputMode(String inputMode) {
+        if (DTMF_INPUTMODE.equals(inputMode)) return DTMF_INPUTMODE;
+        if (VOICE_INPUTMODE.equals(inputMode)) return VOICE_INPUTMODE;
+        return inputMode;
+    }
+}
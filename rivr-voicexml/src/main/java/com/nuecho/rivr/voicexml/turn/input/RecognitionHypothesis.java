@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+package com.nuecho.rivr.voicexml.turn.input;
+
+import javax.json.*;
+
+/**
+ * A hypothesis of a {@link NBestList}. This is a lightweight view: the values
+ * are read from the list.
+ * 
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public final class RecognitionHypothesis {
+
+    private final NBestList mNBestList;
+    private final int mIndex;
+
+    RecognitionHypothesis(NBestList nBestList, int index) {
+        mNBestList = nBestList;
+        mIndex = index;
+    }
+
+    /**
+     * @return the position of this hypothesis in the N-best list, 0 being the
+     *         top hypothesis.
+     */
+    public int getIndex() {
+        return mIndex;
+    }
+
+    /**
+     * @return the confidence, between 0 and 1, or {@link Double#NaN} if the
+     *         platform did not provide it.
+     */
+    public double getConfidence() {
+        return mNBestList.getConfidence(mIndex);
+    }
+
+    public String getUtterance() {
+        return mNBestList.getUtterance(mIndex);
+    }
+
+    public String getInputMode() {
+        return mNBestList.getInputMode(mIndex);
+    }
+
+    /**
+     * @return the interpretation, or {@link JsonValue#NULL} if there is none.
+     */
+    public JsonValue getInterpretation() {
+        return mNBestList.getInterpretation(mIndex);
+    }
+
+    @Override
+    public String toString() {
+        return "RecognitionHypothesis [index="
+               + mIndex
+               + ", confidence="
+               + getConfidence()
+               + ", utterance="
+               + getUtterance()
+               + ", inputMode="
+               + getInputMode()
+               + "]";
+    }
+}
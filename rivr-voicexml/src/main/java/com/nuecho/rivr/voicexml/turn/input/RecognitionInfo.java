@@ -4,6 +4,7 @@
 package com.nuecho.rivr.voicexml.turn.input;
 
 import javax.json.*;
+import javax.json.stream.*;
 
 import com.nuecho.rivr.core.util.*;
 import com.nuecho.rivr.voicexml.turn.output.audio.*;
@@ -25,17 +26,49 @@ public final class RecognitionInfo implements JsonSerializable {
 
     private static final String MARK_INFO_PROPERTY = "markInfo";
     private static final String RECOGNITION_RESULT_PROPERTY = "recognitionResult";
-    private final JsonArray mRecognitionResult;
+    private final LazyJsonValue mRecognitionResult;
     private final MarkInfo mMarkInfo;
+    private volatile NBestList mNBestList;
 
     public RecognitionInfo(JsonArray recognitionResult, MarkInfo markInfo) {
         Assert.notNull(recognitionResult, RECOGNITION_RESULT_PROPERTY);
+        mRecognitionResult = LazyJsonValue.of(recognitionResult);
+        mMarkInfo = markInfo;
+    }
+
+    /**
+     * @param recognitionResult the recognition result, decoded on the first
+     *            call to {@link #getRecognitionResult()}. Must be a JSON array.
+     * @param markInfo the mark information, or <code>null</code>.
+     * @since 1.0.13
+     */
+    public RecognitionInfo(LazyJsonValue recognitionResult, MarkInfo markInfo) {
+        Assert.notNull(recognitionResult, RECOGNITION_RESULT_PROPERTY);
+        Assert.ensure(recognitionResult.getValueType() == JsonValue.ValueType.ARRAY,
+                      RECOGNITION_RESULT_PROPERTY + " should be a JSON array");
         mRecognitionResult = recognitionResult;
         mMarkInfo = markInfo;
     }
 
     public JsonArray getRecognitionResult() {
-        return mRecognitionResult;
+        return (JsonArray) mRecognitionResult.getValue();
+    }
+
+    /**
+     * Gets a typed view of the recognition result. The view is built on the
+     * first call, without decoding the recognition result: each hypothesis is
+     * decoded when it is first accessed.
+     * 
+     * @return the N-best list.
+     * @since 1.0.13
+     */
+    public NBestList getNBestList() {
+        NBestList nBestList = mNBestList;
+        if (nBestList == null) {
+            nBestList = new NBestList(mRecognitionResult);
+            mNBestList = nBestList;
+        }
+        return nBestList;
     }
 
     public MarkInfo getMarkInfo() {
@@ -44,23 +77,34 @@ public final class RecognitionInfo implements JsonSerializable {
 
     @Override
     public String toString() {
-        return asJson().toString();
+        return JsonUtils.toString(this);
     }
 
     @Override
     public JsonValue asJson() {
         JsonObjectBuilder builder = JsonUtils.createObjectBuilder();
-        JsonUtils.add(builder, RECOGNITION_RESULT_PROPERTY, mRecognitionResult);
-        JsonUtils.add(builder, MARK_INFO_PROPERTY, mMarkInfo);
+        addJsonProperties(builder);
         return builder.build();
     }
 
+    @Override
+    public void writeJson(JsonGenerator generator, String name) {
+        JsonObjectBuilder builder = JsonUtils.writeStartObject(generator, name);
+        addJsonProperties(builder);
+        generator.writeEnd();
+    }
+
+    private void addJsonProperties(JsonObjectBuilder builder) {
+        JsonUtils.add(builder, RECOGNITION_RESULT_PROPERTY, getRecognitionResult());
+        JsonUtils.add(builder, MARK_INFO_PROPERTY, mMarkInfo);
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
         int result = 1;
         result = prime * result + ((mMarkInfo == null) ? 0 : mMarkInfo.hashCode());
-        result = prime * result + ((mRecognitionResult == null) ? 0 : mRecognitionResult.hashCode());
+        result = prime * result + getRecognitionResult().hashCode();
         return result;
     }
 
@@ -73,9 +117,7 @@ public final class RecognitionInfo implements JsonSerializable {
         if (mMarkInfo == null) {
             if (other.mMarkInfo != null) return false;
         } else if (!mMarkInfo.equals(other.mMarkInfo)) return false;
-        if (mRecognitionResult == null) {
-            if (other.mRecognitionResult != null) return false;
-        } else if (!mRecognitionResult.equals(other.mRecognitionResult)) return false;
+        if (!getRecognitionResult().equals(other.getRecognitionResult())) return false;
         return true;
     }
 }
\ No newline at end of file
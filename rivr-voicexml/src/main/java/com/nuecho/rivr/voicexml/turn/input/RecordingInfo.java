@@ -3,9 +3,13 @@
  */
 package com.nuecho.rivr.voicexml.turn.input;
 
+import java.util.concurrent.*;
+
 import javax.json.*;
+import javax.json.stream.*;
 
 import com.nuecho.rivr.core.util.*;
+import com.nuecho.rivr.voicexml.recording.*;
 import com.nuecho.rivr.voicexml.servlet.*;
 import com.nuecho.rivr.voicexml.turn.output.*;
 import com.nuecho.rivr.voicexml.turn.output.Interaction.FinalRecordingWindow;
@@ -32,18 +36,48 @@ public final class RecordingInfo implements JsonSerializable {
     private final Duration mDuration;
     private final boolean mMaxTime;
     private final String mDtmfTerm;
+    private final CompletionStage<ProcessedRecording> mProcessedRecording;
 
     public RecordingInfo(FileUpload file, Duration duration, boolean maxTime, String dtmfTerm) {
+        this(file, duration, maxTime, dtmfTerm, null);
+    }
+
+    /**
+     * @param processedRecording the asynchronous processing of the recorded
+     *            file, or <code>null</code> if the file is not processed.
+     * @since 1.0.13
+     */
+    public RecordingInfo(FileUpload file,
+                         Duration duration,
+                         boolean maxTime,
+                         String dtmfTerm,
+                         CompletionStage<ProcessedRecording> processedRecording) {
         mFile = file;
         mDuration = duration;
         mMaxTime = maxTime;
         mDtmfTerm = dtmfTerm;
+        mProcessedRecording = processedRecording;
     }
 
     public FileUpload getFile() {
         return mFile;
     }
 
+    /**
+     * Gets the processing of the recorded file by the {@link RecordingProcessor}
+     * configured on the {@link VoiceXmlInputTurnFactory}. The processing runs
+     * off the dialogue thread: the dialogue can go on and collect the result
+     * later, e.g. with
+     * <code>getProcessedRecording().toCompletableFuture().get()</code>.
+     * 
+     * @return the processing, or <code>null</code> if there is no recorded
+     *         file or no processor is configured.
+     * @since 1.0.13
+     */
+    public CompletionStage<ProcessedRecording> getProcessedRecording() {
+        return mProcessedRecording;
+    }
+
     public boolean isMaxTime() {
         return mMaxTime;
     }
@@ -58,17 +92,28 @@ public final class RecordingInfo implements JsonSerializable {
 
     @Override
     public String toString() {
-        return asJson().toString();
+        return JsonUtils.toString(this);
     }
 
     @Override
     public JsonValue asJson() {
         JsonObjectBuilder builder = JsonUtils.createObjectBuilder();
+        addJsonProperties(builder);
+        return builder.build();
+    }
+
+    @Override
+    public void writeJson(JsonGenerator generator, String name) {
+        JsonObjectBuilder builder = JsonUtils.writeStartObject(generator, name);
+        addJsonProperties(builder);
+        generator.writeEnd();
+    }
+
+    private void addJsonProperties(JsonObjectBuilder builder) {
         JsonUtils.add(builder, DTMF_TERM_PROPERTY, mDtmfTerm);
         builder.add(MAX_TIME_PROPERTY, mMaxTime);
         builder.add(DURATION_PROPERTY, mDuration.getMilliseconds());
         JsonUtils.add(builder, "file", mFile);
-        return builder.build();
     }
 
     @Override
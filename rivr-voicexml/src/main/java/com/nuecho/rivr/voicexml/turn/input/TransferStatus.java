@@ -4,6 +4,7 @@
 package com.nuecho.rivr.voicexml.turn.input;
 
 import javax.json.*;
+import javax.json.stream.*;
 
 import com.nuecho.rivr.voicexml.turn.output.*;
 import com.nuecho.rivr.voicexml.util.json.*;
@@ -41,6 +42,11 @@ public class TransferStatus implements JsonSerializable {
         return JsonUtils.wrap(mStatusCode);
     }
 
+    @Override
+    public void writeJson(JsonGenerator generator, String name) {
+        JsonUtils.write(generator, name, mStatusCode);
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -4,6 +4,7 @@
 package com.nuecho.rivr.voicexml.turn.input;
 
 import javax.json.*;
+import javax.json.stream.*;
 
 import com.nuecho.rivr.core.util.*;
 import com.nuecho.rivr.voicexml.turn.output.*;
@@ -40,15 +41,26 @@ public final class TransferStatusInfo implements JsonSerializable {
 
     @Override
     public String toString() {
-        return asJson().toString();
+        return JsonUtils.toString(this);
     }
 
     @Override
     public JsonValue asJson() {
         JsonObjectBuilder builder = JsonUtils.createObjectBuilder();
+        addJsonProperties(builder);
+        return builder.build();
+    }
+
+    @Override
+    public void writeJson(JsonGenerator generator, String name) {
+        JsonObjectBuilder builder = JsonUtils.writeStartObject(generator, name);
+        addJsonProperties(builder);
+        generator.writeEnd();
+    }
+
+    private void addJsonProperties(JsonObjectBuilder builder) {
         JsonUtils.add(builder, STATUS_PROPERTY, mStatus.asJson());
         builder.add(DURATION_PROPERTY, mDuration.getMilliseconds());
-        return builder.build();
     }
 
     @Override
@@ -7,6 +7,7 @@ package com.nuecho.rivr.voicexml.turn.input;
 import java.util.*;
 
 import javax.json.*;
+import javax.json.stream.*;
 
 import com.nuecho.rivr.core.util.*;
 import com.nuecho.rivr.voicexml.util.json.*;
@@ -94,15 +95,26 @@ public final class VoiceXmlEvent implements JsonSerializable {
 
     @Override
     public String toString() {
-        return asJson().toString();
+        return JsonUtils.toString(this);
     }
 
     @Override
     public JsonValue asJson() {
         JsonObjectBuilder builder = JsonUtils.createObjectBuilder();
+        addJsonProperties(builder);
+        return builder.build();
+    }
+
+    @Override
+    public void writeJson(JsonGenerator generator, String name) {
+        JsonObjectBuilder builder = JsonUtils.writeStartObject(generator, name);
+        addJsonProperties(builder);
+        generator.writeEnd();
+    }
+
+    private void addJsonProperties(JsonObjectBuilder builder) {
         JsonUtils.add(builder, NAME_PROPERTY, mName);
         JsonUtils.add(builder, MESSAGE_PROPERT, mMessage);
-        return builder.build();
     }
 
     @Override
@@ -8,6 +8,7 @@ import static java.util.Collections.*;
 import java.util.*;
 
 import javax.json.*;
+import javax.json.stream.*;
 
 import com.nuecho.rivr.core.channel.*;
 import com.nuecho.rivr.core.util.*;
@@ -35,7 +36,7 @@ public final class VoiceXmlInputTurn implements InputTurn, JsonSerializable {
     private static final String VALUE_PROPERTY = "value";
 
     private List<VoiceXmlEvent> mEvents = emptyList();
-    private JsonValue mJsonValue;
+    private LazyJsonValue mJsonValue;
     private RecognitionInfo mRecognitionInfo;
     private RecordingInfo mRecordingInfo;
     private TransferStatusInfo mTransferResult;
@@ -46,7 +47,8 @@ public final class VoiceXmlInputTurn implements InputTurn, JsonSerializable {
     }
 
     public JsonValue getJsonValue() {
-        return mJsonValue;
+        if (mJsonValue == null) return null;
+        return mJsonValue.getValue();
     }
 
     public RecognitionInfo getRecognitionInfo() {
@@ -67,6 +69,16 @@ public final class VoiceXmlInputTurn implements InputTurn, JsonSerializable {
     }
 
     public void setJsonValue(JsonValue jsonValue) {
+        mJsonValue = jsonValue == null ? null : LazyJsonValue.of(jsonValue);
+    }
+
+    /**
+     * Sets the value, decoded on the first call to {@link #getJsonValue()}.
+     * 
+     * @param jsonValue the value, or <code>null</code>.
+     * @since 1.0.13
+     */
+    public void setLazyJsonValue(LazyJsonValue jsonValue) {
         mJsonValue = jsonValue;
     }
 
@@ -92,18 +104,29 @@ public final class VoiceXmlInputTurn implements InputTurn, JsonSerializable {
 
     @Override
     public String toString() {
-        return asJson().toString();
+        return JsonUtils.toString(this);
     }
 
     @Override
     public JsonValue asJson() {
         JsonObjectBuilder builder = JsonUtils.createObjectBuilder();
-        JsonUtils.add(builder, VALUE_PROPERTY, mJsonValue);
-        JsonUtils.add(builder, EVENTS_PROPERTY, JsonUtils.toJson(mEvents));
+        addJsonProperties(builder);
+        return builder.build();
+    }
+
+    @Override
+    public void writeJson(JsonGenerator generator, String name) {
+        JsonObjectBuilder builder = JsonUtils.writeStartObject(generator, name);
+        addJsonProperties(builder);
+        generator.writeEnd();
+    }
+
+    private void addJsonProperties(JsonObjectBuilder builder) {
+        JsonUtils.add(builder, VALUE_PROPERTY, getJsonValue());
+        JsonUtils.add(builder, EVENTS_PROPERTY, mEvents);
         JsonUtils.add(builder, RECOGNITION_INFO_PROPERTY, mRecognitionInfo);
         JsonUtils.add(builder, RECORDING_INFO_PROPERTY, mRecordingInfo);
         JsonUtils.add(builder, TRANSFER_RESULT_PROPERTY, mTransferResult);
-        return builder.build();
     }
 
     @Override
@@ -112,7 +135,7 @@ public final class VoiceXmlInputTurn implements InputTurn, JsonSerializable {
         int result = 1;
         result = prime * result + ((mEvents == null) ? 0 : mEvents.hashCode());
         result = prime * result + ((mFiles == null) ? 0 : mFiles.hashCode());
-        result = prime * result + ((mJsonValue == null) ? 0 : mJsonValue.hashCode());
+        result = prime * result + ((mJsonValue == null) ? 0 : getJsonValue().hashCode());
         result = prime * result + ((mRecognitionInfo == null) ? 0 : mRecognitionInfo.hashCode());
         result = prime * result + ((mRecordingInfo == null) ? 0 : mRecordingInfo.hashCode());
         result = prime * result + ((mTransferResult == null) ? 0 : mTransferResult.hashCode());
@@ -133,7 +156,7 @@ public final class VoiceXmlInputTurn implements InputTurn, JsonSerializable {
         } else if (!mFiles.equals(other.mFiles)) return false;
         if (mJsonValue == null) {
             if (other.mJsonValue != null) return false;
-        } else if (!mJsonValue.equals(other.mJsonValue)) return false;
+        } else if (!getJsonValue().equals(other.getJsonValue())) return false;
         if (mRecognitionInfo == null) {
             if (other.mRecognitionInfo != null) return false;
         } else if (!mRecognitionInfo.equals(other.mRecognitionInfo)) return false;
@@ -56,6 +56,7 @@ public class BridgeTransfer extends SupervisedTransfer {
 
     @Override
     protected void customizeTransferElement(Element transferElement) throws VoiceXmlDocumentRenderingException {
+        super.customizeTransferElement(transferElement);
         setDurationAttribute(transferElement, MAXTIME_ATTRIBUTE, mMaximumTime);
     }
 
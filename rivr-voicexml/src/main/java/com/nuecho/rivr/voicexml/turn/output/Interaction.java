@@ -10,6 +10,7 @@ import static com.nuecho.rivr.voicexml.turn.input.VoiceXmlEvent.*;
 import java.util.*;
 
 import javax.json.*;
+import javax.json.stream.*;
 
 import org.w3c.dom.*;
 
@@ -40,10 +41,12 @@ public class Interaction extends VoiceXmlOutputTurn {
     private static final String RECORDING_PROPERTY = "recording";
     private static final String RECOGNITION_PROPERTY = "recognition";
     private static final String PROMPTS_PROPERTY = "prompts";
+    private static final String RETRY_POLICY_PROPERTY = "retryPolicy";
 
     private final List<Prompt> mPrompts;
     private final FinalRecognitionWindow mFinalRecognitionWindow;
     private final FinalRecordingWindow mFinalRecordingWindow;
+    private RetryPolicy mRetryPolicy;
 
     /**
      * @param name The name of this turn. Not empty.
@@ -99,6 +102,27 @@ public class Interaction extends VoiceXmlOutputTurn {
         return mFinalRecordingWindow;
     }
 
+    /**
+     * @return the policy handling <code>noinput</code> and <code>nomatch</code>
+     *         events on the VoiceXML platform, or <code>null</code> if these
+     *         events are always reported to the dialogue.
+     * @since 1.0.13
+     */
+    public final RetryPolicy getRetryPolicy() {
+        return mRetryPolicy;
+    }
+
+    /**
+     * @param retryPolicy the policy handling <code>noinput</code> and
+     *            <code>nomatch</code> events on the VoiceXML platform, or
+     *            <code>null</code> if these events are always reported to the
+     *            dialogue.
+     * @since 1.0.13
+     */
+    public final void setRetryPolicy(RetryPolicy retryPolicy) {
+        mRetryPolicy = retryPolicy;
+    }
+
     @Override
     protected final String getOuputTurnType() {
         return INTERACTION_TURN_TYPE;
@@ -106,9 +130,10 @@ public class Interaction extends VoiceXmlOutputTurn {
 
     @Override
     protected void addTurnProperties(JsonObjectBuilder builder) {
-        JsonUtils.add(builder, PROMPTS_PROPERTY, JsonUtils.toJson(mPrompts));
+        JsonUtils.add(builder, PROMPTS_PROPERTY, mPrompts);
         JsonUtils.add(builder, RECOGNITION_PROPERTY, mFinalRecognitionWindow);
         JsonUtils.add(builder, RECORDING_PROPERTY, mFinalRecordingWindow);
+        JsonUtils.add(builder, RETRY_POLICY_PROPERTY, mRetryPolicy);
     }
 
     @Override
@@ -117,8 +142,8 @@ public class Interaction extends VoiceXmlOutputTurn {
         DtmfRecognition dtmfGlobalRecognition = factorizeGlobalDtmfRecognition();
         SpeechRecognition speechGlobalRecognition = factorizeGlobalSpeechRecognition();
 
-        processDtmfRecognition(dtmfGlobalRecognition, formElement);
-        processSpeechRecognition(speechGlobalRecognition, formElement);
+        processDtmfRecognition(dtmfGlobalRecognition, formElement, dialogueContext);
+        processSpeechRecognition(speechGlobalRecognition, formElement, dialogueContext);
 
         boolean hasAtLeastOneField = false;
 
@@ -146,10 +171,13 @@ public class Interaction extends VoiceXmlOutputTurn {
             String formItemName = PROMPT_FORM_ITEM_NAME_PREFIX + interactionPromptIndex;
             formItemElement.setAttribute(NAME_ATTRIBUTE, formItemName);
 
-            processDtmfRecognition(getLocalDtmfRecognition(dtmfRecognition, dtmfGlobalRecognition), formItemElement);
+            processDtmfRecognition(getLocalDtmfRecognition(dtmfRecognition, dtmfGlobalRecognition),
+                                   formItemElement,
+                                   dialogueContext);
 
             processSpeechRecognition(getLocalSpeechRecognition(speechRecognition, speechGlobalRecognition),
-                                     formItemElement);
+                                     formItemElement,
+                                     dialogueContext);
 
             if (usingField) {
                 if (mFinalRecognitionWindow != null
@@ -179,11 +207,13 @@ public class Interaction extends VoiceXmlOutputTurn {
                 recognitionFormItemElement.setAttribute(NAME_ATTRIBUTE, RECOGNITION_FORM_ITEM_NAME);
                 processDtmfRecognition(getLocalDtmfRecognition(mFinalRecognitionWindow.getDtmfRecognition(),
                                                                dtmfGlobalRecognition),
-                                       recognitionFormItemElement);
+                                       recognitionFormItemElement,
+                                       dialogueContext);
 
                 processSpeechRecognition(getLocalSpeechRecognition(mFinalRecognitionWindow.getSpeechRecognition(),
                                                                    speechGlobalRecognition),
-                                         recognitionFormItemElement);
+                                         recognitionFormItemElement,
+                                         dialogueContext);
 
                 addDurationProperty(recognitionFormItemElement,
                                     TIMEOUT_PROPERTY,
@@ -196,7 +226,7 @@ public class Interaction extends VoiceXmlOutputTurn {
             Recording recording = mFinalRecordingWindow.getRecording();
             DtmfRecognition dtmfTermRecognition = recording.getDtmfTermRecognition();
             if (dtmfTermRecognition != null) {
-                processDtmfRecognition(dtmfTermRecognition, recordingFormItemElement);
+                processDtmfRecognition(dtmfTermRecognition, recordingFormItemElement, dialogueContext);
             }
 
             setBooleanAttribute(recordingFormItemElement, BEEP_ATTRIBUTE, recording.getBeep());
@@ -238,10 +268,58 @@ public class Interaction extends VoiceXmlOutputTurn {
         }
 
         if (hasAtLeastOneField) {
-            createFormLevelFilled(formElement);
+            createFormLevelFilled(formElement, dialogueContext);
+        }
+
+        if (mRetryPolicy != null) {
+            String language = mPrompts.isEmpty() ? null : mPrompts.get(mPrompts.size() - 1).getLanguage();
+            createRetryHandlers(formElement,
+                                NOINPUT_ELEMENT,
+                                mRetryPolicy.getMaximumNoInputs(),
+                                mRetryPolicy.getNoInputReprompts(),
+                                language,
+                                dialogueContext);
+            createRetryHandlers(formElement,
+                                NOMATCH_ELEMENT,
+                                mRetryPolicy.getMaximumNoMatches(),
+                                mRetryPolicy.getNoMatchReprompts(),
+                                language,
+                                dialogueContext);
         }
     }
 
+    /**
+     * Renders form-level handlers for the first <code>maximumRetries</code>
+     * occurrences of an event, playing the reprompt matching the occurrence
+     * (or the last one) before listening again, and a handler reporting the
+     * next occurrence to the dialogue. Since the handler with the highest count
+     * not greater than the event counter is selected, only one handler per
+     * reprompt is needed.
+     */
+    private static void createRetryHandlers(Element formElement,
+                                            String eventElementName,
+                                            int maximumRetries,
+                                            List<List<AudioItem>> reprompts,
+                                            String language,
+                                            VoiceXmlDialogueContext dialogueContext)
+            throws VoiceXmlDocumentRenderingException {
+        if (maximumRetries == 0) return;
+
+        int handlerCount = Math.max(1, Math.min(maximumRetries, reprompts.size()));
+        for (int count = 1; count <= handlerCount; count++) {
+            Element retryElement = DomUtils.appendNewElement(formElement, eventElementName);
+            retryElement.setAttribute(COUNT_ATTRIBUTE, Integer.toString(count));
+            if (!reprompts.isEmpty()) {
+                createPrompt(language, retryElement, dialogueContext, null, reprompts.get(count - 1));
+            }
+        }
+
+        Element exhaustedElement = DomUtils.appendNewElement(formElement, eventElementName);
+        exhaustedElement.setAttribute(COUNT_ATTRIBUTE, Integer.toString(maximumRetries + 1));
+        addEventHandlerScript(exhaustedElement);
+        createGotoSubmit(exhaustedElement);
+    }
+
     private void addRecordingResultHandlerScript(Recording recording, Element parent) {
         createScript(parent, RIVR_SCOPE_OBJECT
                              + ".addRecordingResult(dialog."
@@ -486,14 +564,15 @@ public class Interaction extends VoiceXmlOutputTurn {
         }
     }
 
-    private void createFormLevelFilled(Element parent) throws VoiceXmlDocumentRenderingException {
+    private void createFormLevelFilled(Element parent, VoiceXmlDialogueContext dialogueContext)
+            throws VoiceXmlDocumentRenderingException {
         Element filledElement = DomUtils.appendNewElement(parent, FILLED_ELEMENT);
         filledElement.setAttribute(MODE_ATTRIBUTE, ANY_MODE);
 
         if (mFinalRecognitionWindow != null) {
             List<? extends AudioItem> acknowledgeAudioItems = mFinalRecognitionWindow.getAcknowledgeAudioItems();
             if (!acknowledgeAudioItems.isEmpty()) {
-                processAudioItems(acknowledgeAudioItems, filledElement);
+                processAudioItems(acknowledgeAudioItems, filledElement, dialogueContext);
             }
         }
 
@@ -607,11 +686,22 @@ public class Interaction extends VoiceXmlOutputTurn {
         @Override
         public JsonValue asJson() {
             JsonObjectBuilder builder = JsonUtils.createObjectBuilder();
-            JsonUtils.add(builder, ACKNOWLEDGE_AUDIO_ITEMS_PROPERTY, JsonUtils.toJson(mAcknowledgeAudioItems));
+            addJsonProperties(builder);
+            return builder.build();
+        }
+
+        @Override
+        public void writeJson(JsonGenerator generator, String name) {
+            JsonObjectBuilder builder = JsonUtils.writeStartObject(generator, name);
+            addJsonProperties(builder);
+            generator.writeEnd();
+        }
+
+        private void addJsonProperties(JsonObjectBuilder builder) {
+            JsonUtils.add(builder, ACKNOWLEDGE_AUDIO_ITEMS_PROPERTY, mAcknowledgeAudioItems);
             JsonUtils.add(builder, DTMF_RECOGNITION_PROPERTY, mDtmfRecognition);
             JsonUtils.add(builder, SPEECH_RECOGNITION_PROPERTY, mSpeechRecognition);
             JsonUtils.addDurationProperty(builder, NO_INPUT_TIMEOUT_PROPERTY, mNoInputTimeout);
-            return builder.build();
         }
 
         @Override
@@ -648,7 +738,7 @@ public class Interaction extends VoiceXmlOutputTurn {
 
         @Override
         public String toString() {
-            return asJson().toString();
+            return JsonUtils.toString(this);
         }
     }
 
@@ -710,10 +800,21 @@ public class Interaction extends VoiceXmlOutputTurn {
         @Override
         public JsonValue asJson() {
             JsonObjectBuilder builder = JsonUtils.createObjectBuilder();
+            addJsonProperties(builder);
+            return builder.build();
+        }
+
+        @Override
+        public void writeJson(JsonGenerator generator, String name) {
+            JsonObjectBuilder builder = JsonUtils.writeStartObject(generator, name);
+            addJsonProperties(builder);
+            generator.writeEnd();
+        }
+
+        private void addJsonProperties(JsonObjectBuilder builder) {
             JsonUtils.addDurationProperty(builder, NO_INPUT_TIMEOUT_PROPERTY, mNoInputTimeout);
             JsonUtils.add(builder, RECORDING_PROPERTY, mRecording);
-            JsonUtils.add(builder, ACKNOWLEDGE_AUDIO_ITEMS_PROPERTY, JsonUtils.toJson(mAcknowledgeAudioItems));
-            return builder.build();
+            JsonUtils.add(builder, ACKNOWLEDGE_AUDIO_ITEMS_PROPERTY, mAcknowledgeAudioItems);
         }
 
         @Override
@@ -746,7 +847,171 @@ public class Interaction extends VoiceXmlOutputTurn {
 
         @Override
         public String toString() {
-            return asJson().toString();
+            return JsonUtils.toString(this);
+        }
+    }
+
+    /**
+     * A {@link RetryPolicy} lets the VoiceXML platform handle the first
+     * <code>noinput</code> and <code>nomatch</code> events of an
+     * {@link Interaction} by itself: the reprompt associated with the event
+     * occurrence is played and recognition is restarted, without a round trip
+     * to the dialogue. The dialogue only receives the event once the maximum
+     * number of retries for that event is exceeded, or the result when one is
+     * obtained.
+     * <p>
+     * Reprompts are escalating: the first one is played on the first
+     * occurrence of the event, the second one on the second occurrence, and so
+     * on. The last reprompt is used for the remaining occurrences. When there
+     * is no reprompt for an event, recognition is restarted silently.
+     *
+     * @author Nu Echo Inc.
+     * @since 1.0.13
+     */
+    public static final class RetryPolicy implements JsonSerializable {
+        private static final String MAXIMUM_NO_INPUTS_PROPERTY = "maximumNoInputs";
+        private static final String MAXIMUM_NO_MATCHES_PROPERTY = "maximumNoMatches";
+        private static final String NO_INPUT_REPROMPTS_PROPERTY = "noInputReprompts";
+        private static final String NO_MATCH_REPROMPTS_PROPERTY = "noMatchReprompts";
+
+        private final int mMaximumNoInputs;
+        private final int mMaximumNoMatches;
+        private final List<List<AudioItem>> mNoInputReprompts = new ArrayList<List<AudioItem>>();
+        private final List<List<AudioItem>> mNoMatchReprompts = new ArrayList<List<AudioItem>>();
+
+        /**
+         * @param maximumNoInputs number of <code>noinput</code> events handled
+         *            by the platform. Not negative.
+         * @param maximumNoMatches number of <code>nomatch</code> events handled
+         *            by the platform. Not negative.
+         */
+        public RetryPolicy(int maximumNoInputs, int maximumNoMatches) {
+            Assert.notNegative(maximumNoInputs, "maximumNoInputs");
+            Assert.notNegative(maximumNoMatches, "maximumNoMatches");
+            mMaximumNoInputs = maximumNoInputs;
+            mMaximumNoMatches = maximumNoMatches;
+        }
+
+        public int getMaximumNoInputs() {
+            return mMaximumNoInputs;
+        }
+
+        public int getMaximumNoMatches() {
+            return mMaximumNoMatches;
+        }
+
+        /**
+         * Adds the reprompt played on the next occurrence of the
+         * <code>noinput</code> event.
+         *
+         * @param audioItems audio items of the reprompt.
+         * @return this policy
+         */
+        public RetryPolicy addNoInputReprompt(AudioItem... audioItems) {
+            return addNoInputReprompt(asListChecked(audioItems));
+        }
+
+        /**
+         * Adds the reprompt played on the next occurrence of the
+         * <code>noinput</code> event.
+         *
+         * @param audioItems audio items of the reprompt.
+         * @return this policy
+         */
+        public RetryPolicy addNoInputReprompt(List<? extends AudioItem> audioItems) {
+            Assert.noNullValues(audioItems, "audioItems");
+            mNoInputReprompts.add(new ArrayList<AudioItem>(audioItems));
+            return this;
+        }
+
+        /**
+         * Adds the reprompt played on the next occurrence of the
+         * <code>nomatch</code> event.
+         *
+         * @param audioItems audio items of the reprompt.
+         * @return this policy
+         */
+        public RetryPolicy addNoMatchReprompt(AudioItem... audioItems) {
+            return addNoMatchReprompt(asListChecked(audioItems));
+        }
+
+        /**
+         * Adds the reprompt played on the next occurrence of the
+         * <code>nomatch</code> event.
+         *
+         * @param audioItems audio items of the reprompt.
+         * @return this policy
+         */
+        public RetryPolicy addNoMatchReprompt(List<? extends AudioItem> audioItems) {
+            Assert.noNullValues(audioItems, "audioItems");
+            mNoMatchReprompts.add(new ArrayList<AudioItem>(audioItems));
+            return this;
+        }
+
+        public List<List<AudioItem>> getNoInputReprompts() {
+            return Collections.unmodifiableList(mNoInputReprompts);
+        }
+
+        public List<List<AudioItem>> getNoMatchReprompts() {
+            return Collections.unmodifiableList(mNoMatchReprompts);
+        }
+
+        @Override
+        public JsonValue asJson() {
+            JsonObjectBuilder builder = JsonUtils.createObjectBuilder();
+            addJsonProperties(builder);
+            return builder.build();
+        }
+
+        @Override
+        public void writeJson(JsonGenerator generator, String name) {
+            JsonObjectBuilder builder = JsonUtils.writeStartObject(generator, name);
+            addJsonProperties(builder);
+            generator.writeEnd();
+        }
+
+        private void addJsonProperties(JsonObjectBuilder builder) {
+            builder.add(MAXIMUM_NO_INPUTS_PROPERTY, mMaximumNoInputs);
+            builder.add(MAXIMUM_NO_MATCHES_PROPERTY, mMaximumNoMatches);
+            JsonUtils.add(builder, NO_INPUT_REPROMPTS_PROPERTY, toJson(mNoInputReprompts));
+            JsonUtils.add(builder, NO_MATCH_REPROMPTS_PROPERTY, toJson(mNoMatchReprompts));
+        }
+
+        private static JsonArrayBuilder toJson(List<List<AudioItem>> reprompts) {
+            JsonArrayBuilder arrayBuilder = JsonUtils.createArrayBuilder();
+            for (List<AudioItem> reprompt : reprompts) {
+                arrayBuilder.add(JsonUtils.toJson(reprompt));
+            }
+            return arrayBuilder;
+        }
+
+        @Override
+        public int hashCode() {
+            final int prime = 31;
+            int result = 1;
+            result = prime * result + mMaximumNoInputs;
+            result = prime * result + mMaximumNoMatches;
+            result = prime * result + mNoInputReprompts.hashCode();
+            result = prime * result + mNoMatchReprompts.hashCode();
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (obj == null) return false;
+            if (getClass() != obj.getClass()) return false;
+            RetryPolicy other = (RetryPolicy) obj;
+            if (mMaximumNoInputs != other.mMaximumNoInputs) return false;
+            if (mMaximumNoMatches != other.mMaximumNoMatches) return false;
+            if (!mNoInputReprompts.equals(other.mNoInputReprompts)) return false;
+            if (!mNoMatchReprompts.equals(other.mNoMatchReprompts)) return false;
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return JsonUtils.toString(this);
         }
     }
 
@@ -884,12 +1149,23 @@ public class Interaction extends VoiceXmlOutputTurn {
         @Override
         public JsonValue asJson() {
             JsonObjectBuilder builder = JsonUtils.createObjectBuilder();
+            addJsonProperties(builder);
+            return builder.build();
+        }
+
+        @Override
+        public void writeJson(JsonGenerator generator, String name) {
+            JsonObjectBuilder builder = JsonUtils.writeStartObject(generator, name);
+            addJsonProperties(builder);
+            generator.writeEnd();
+        }
+
+        private void addJsonProperties(JsonObjectBuilder builder) {
             JsonUtils.add(builder, LANGUAGE_PROPERTY, mLanguage);
             JsonUtils.add(builder, BARGE_IN_TYPE_PROPERTY, mBargeInType == null ? null : mBargeInType.name());
-            JsonUtils.add(builder, AUDIO_ITEMS_PROPERTY, JsonUtils.toJson(mAudioItems));
+            JsonUtils.add(builder, AUDIO_ITEMS_PROPERTY, mAudioItems);
             JsonUtils.add(builder, DTMF_RECOGNITION_PROPERTY, mDtmfRecognition);
             JsonUtils.add(builder, SPEECH_RECOGNITION_PROPERTY, mSpeechRecognition);
-            return builder.build();
         }
 
         @Override
@@ -928,7 +1204,7 @@ public class Interaction extends VoiceXmlOutputTurn {
 
         @Override
         public String toString() {
-            return asJson().toString();
+            return JsonUtils.toString(this);
         }
     }
 
@@ -971,6 +1247,7 @@ public class Interaction extends VoiceXmlOutputTurn {
 
         private String mLanguage;
         private BargeInType mBargeInType;
+        private RetryPolicy mRetryPolicy;
 
         private boolean mBuilt;
 
@@ -1000,6 +1277,21 @@ public class Interaction extends VoiceXmlOutputTurn {
             return this;
         }
 
+        /**
+         * Sets the policy handling <code>noinput</code> and
+         * <code>nomatch</code> events on the VoiceXML platform instead of
+         * reporting each of them to the dialogue.
+         *
+         * @param retryPolicy the policy, or <code>null</code> to report every
+         *            event to the dialogue (the default).
+         * @return this builder
+         * @since 1.0.13
+         */
+        public Builder setRetryPolicy(RetryPolicy retryPolicy) {
+            mRetryPolicy = retryPolicy;
+            return this;
+        }
+
         /**
          * Sets the language code for the prompts that will be added using one
          * of the <code>addPrompt(...)</code> methods.
@@ -1236,7 +1528,7 @@ public class Interaction extends VoiceXmlOutputTurn {
                 finalRecognitionWindow.setAcknowledgeAudioItems(acknowledgeAudioItems);
             }
 
-            return new Interaction(mName, mPrompts, finalRecognitionWindow);
+            return withRetryPolicy(new Interaction(mName, mPrompts, finalRecognitionWindow));
 
         }
 
@@ -1279,7 +1571,7 @@ public class Interaction extends VoiceXmlOutputTurn {
                 finalRecordingWindow.setAcknowledgeAudioItems(acknowledgeAudioItems);
             }
 
-            return new Interaction(mName, mPrompts, finalRecordingWindow);
+            return withRetryPolicy(new Interaction(mName, mPrompts, finalRecordingWindow));
         }
 
         /**
@@ -1290,7 +1582,12 @@ public class Interaction extends VoiceXmlOutputTurn {
          */
         public Interaction build() {
             checkBuilt();
-            return new Interaction(mName, mPrompts);
+            return withRetryPolicy(new Interaction(mName, mPrompts));
+        }
+
+        private Interaction withRetryPolicy(Interaction interaction) {
+            interaction.setRetryPolicy(mRetryPolicy);
+            return interaction;
         }
 
         private void checkBuilt() {
@@ -97,7 +97,7 @@ public class Message extends VoiceXmlOutputTurn {
 
     @Override
     protected void addTurnProperties(JsonObjectBuilder builder) {
-        JsonUtils.add(builder, AUDIO_ITEMS_PROPERTY, JsonUtils.toJson(mAudioItems));
+        JsonUtils.add(builder, AUDIO_ITEMS_PROPERTY, mAudioItems);
         JsonUtils.add(builder, LANGUAGE_PROPERTY, mLanguage);
         if (mBargeIn == null) {
             builder.addNull(BARGE_IN_PROPERTY);
@@ -106,6 +106,11 @@ public class Message extends VoiceXmlOutputTurn {
         }
     }
 
+    @Override
+    public boolean isCoalescable() {
+        return !hasAdapters();
+    }
+
     @Override
     protected void fillVoiceXmlDocument(Document document, Element formElement, VoiceXmlDialogueContext dialogueContext)
             throws VoiceXmlDocumentRenderingException {
@@ -11,6 +11,7 @@ import static java.util.Collections.*;
 import java.util.*;
 
 import javax.json.*;
+import javax.json.stream.*;
 
 import org.w3c.dom.*;
 
@@ -188,7 +189,7 @@ public class ObjectCall extends VoiceXmlOutputTurn {
         JsonUtils.add(builder, TYPE_PROPERTY, mType);
         JsonUtils.add(builder, POST_OBJECT_SCRIPT_PROPERTY, mPostObjectScript);
 
-        JsonUtils.add(builder, PARAMETERS_PROPERTY, JsonUtils.toJson(mParameters));
+        JsonUtils.add(builder, PARAMETERS_PROPERTY, mParameters);
         JsonUtils.add(builder, FETCH_CONFIGURATION_PROPERTY, mFetchConfiguration);
 
         if (mArchives != null) {
@@ -353,12 +354,23 @@ public class ObjectCall extends VoiceXmlOutputTurn {
         @Override
         public JsonValue asJson() {
             JsonObjectBuilder builder = JsonUtils.createObjectBuilder();
+            addJsonProperties(builder);
+            return builder.build();
+        }
+
+        @Override
+        public void writeJson(JsonGenerator generator, String name) {
+            JsonObjectBuilder builder = JsonUtils.writeStartObject(generator, name);
+            addJsonProperties(builder);
+            generator.writeEnd();
+        }
+
+        private void addJsonProperties(JsonObjectBuilder builder) {
             JsonUtils.add(builder, NAME_PROPERTY, mName);
             JsonUtils.add(builder, EXPRESSION_PROPERTY, mExpression);
             JsonUtils.add(builder, VALUE_PROPERTY, mValue);
             JsonUtils.add(builder, TYPE_PROPERTY, mType);
             JsonUtils.add(builder, VALUE_TYPE_PROPERTY, mValueType);
-            return builder.build();
         }
     }
 
@@ -374,6 +386,11 @@ public class ObjectCall extends VoiceXmlOutputTurn {
         public JsonValue asJson() {
             return JsonUtils.wrap(name());
         }
+
+        @Override
+        public void writeJson(JsonGenerator generator, String name) {
+            JsonUtils.write(generator, name, name());
+        }
     }
 
     /**
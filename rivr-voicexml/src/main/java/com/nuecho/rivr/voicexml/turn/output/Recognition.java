@@ -10,6 +10,7 @@ import java.util.*;
 import java.util.Map.Entry;
 
 import javax.json.*;
+import javax.json.stream.*;
 
 import com.nuecho.rivr.core.util.*;
 import com.nuecho.rivr.voicexml.turn.output.grammar.*;
@@ -118,22 +119,40 @@ public abstract class Recognition implements JsonSerializable {
 
     @Override
     public final String toString() {
-        return asJson().toString();
+        return JsonUtils.toString(this);
     }
 
     @Override
     public JsonValue asJson() {
         JsonObjectBuilder builder = JsonUtils.createObjectBuilder();
+        addAllJsonProperties(builder);
+        return builder.build();
+    }
+
+    @Override
+    public void writeJson(JsonGenerator generator, String name) {
+        JsonObjectBuilder builder = JsonUtils.writeStartObject(generator, name);
+        addAllJsonProperties(builder);
+        generator.writeEnd();
+    }
 
+    private void addAllJsonProperties(JsonObjectBuilder builder) {
         JsonObjectBuilder propertiesBuilder = JsonUtils.createObjectBuilder();
         for (Entry<String, String> entry : mProperties.entrySet()) {
             JsonUtils.add(propertiesBuilder, entry.getKey(), entry.getValue());
         }
         JsonUtils.add(builder, PROPERTIES_PROPERTY, propertiesBuilder);
-        JsonUtils.add(builder, GRAMMARS_PROPERTY, JsonUtils.toJson(mGrammarItems));
+        JsonUtils.add(builder, GRAMMARS_PROPERTY, mGrammarItems);
         addJsonProperties(builder);
-        return builder.build();
     }
 
+    /**
+     * Adds the properties specific to this recognition configuration, after the
+     * <code>properties</code> and <code>grammars</code> properties. When the
+     * configuration is written with {@link #writeJson(JsonGenerator, String)},
+     * the builder streams each property to the generator: adding a property
+     * twice fails instead of replacing it, and
+     * {@link JsonObjectBuilder#build()} is not supported.
+     */
     protected abstract void addJsonProperties(JsonObjectBuilder builder);
 }
\ No newline at end of file
@@ -5,6 +5,7 @@
 package com.nuecho.rivr.voicexml.turn.output;
 
 import javax.json.*;
+import javax.json.stream.*;
 
 import com.nuecho.rivr.core.util.*;
 import com.nuecho.rivr.voicexml.turn.input.*;
@@ -147,6 +148,18 @@ public final class Recording implements JsonSerializable {
     @Override
     public JsonValue asJson() {
         JsonObjectBuilder builder = JsonUtils.createObjectBuilder();
+        addJsonProperties(builder);
+        return builder.build();
+    }
+
+    @Override
+    public void writeJson(JsonGenerator generator, String name) {
+        JsonObjectBuilder builder = JsonUtils.writeStartObject(generator, name);
+        addJsonProperties(builder);
+        generator.writeEnd();
+    }
+
+    private void addJsonProperties(JsonObjectBuilder builder) {
         JsonUtils.addBooleanProperty(builder, BEEP_PROPERTY, mBeep);
         JsonUtils.addBooleanProperty(builder, DTMF_TERM_PROPERTY, mDtmfTerm);
         JsonUtils.addBooleanProperty(builder, POST_AUDIO_TO_SERVER_PROPERTY, mPostAudioToServer);
@@ -155,7 +168,6 @@ public final class Recording implements JsonSerializable {
         JsonUtils.add(builder, DTMF_TERM_RECOGNITION_PROPERTY, mDtmfTermRecognition);
         JsonUtils.add(builder, TYPE_PROPERTY, mType);
         JsonUtils.add(builder, CLIENT_SIDE_ASSIGNATION_DESTINATION_PROPERTY, mClientSideAssignationDestination);
-        return builder.build();
     }
 
     @Override
@@ -208,6 +220,6 @@ public final class Recording implements JsonSerializable {
 
     @Override
     public String toString() {
-        return asJson().toString();
+        return JsonUtils.toString(this);
     }
 }
\ No newline at end of file
@@ -74,6 +74,15 @@ public class Script extends VoiceXmlOutputTurn {
         JsonUtils.add(builder, VARIABLES_PROPERTY, mVariables);
     }
 
+    /**
+     * A script can be coalesced when it has no variables, since no value is
+     * then expected by the dialogue.
+     */
+    @Override
+    public boolean isCoalescable() {
+        return mVariables.isEmpty() && !hasAdapters();
+    }
+
     @Override
     protected void fillVoiceXmlDocument(Document document, Element formElement, VoiceXmlDialogueContext dialogueContext)
             throws VoiceXmlDocumentRenderingException {
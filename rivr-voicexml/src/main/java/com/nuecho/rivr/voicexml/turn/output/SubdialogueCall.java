@@ -11,6 +11,7 @@ import java.util.*;
 import java.util.Map.Entry;
 
 import javax.json.*;
+import javax.json.stream.*;
 
 import org.w3c.dom.*;
 
@@ -148,7 +149,7 @@ public class SubdialogueCall extends VoiceXmlOutputTurn {
         JsonUtils.add(builder, SUBMIT_URI_PROPERTY, mUri);
         JsonUtils.add(builder, SUBMIT_METHOD_PROPERTY, mMethod.name());
         JsonUtils.add(builder, SUBMIT_PARAMETERS_PROPERTY, mSubmitParameters);
-        JsonUtils.add(builder, SUBDIALOGUE_PARAMETERS_PROPERTY, JsonUtils.toJson(mParameters));
+        JsonUtils.add(builder, SUBDIALOGUE_PARAMETERS_PROPERTY, mParameters);
         JsonUtils.add(builder, FETCH_CONFIGURATION_PROPERTY, mFetchConfiguration);
         JsonUtils.add(builder, POST_DIALOGUE_SCRIPT_PROPERTY, getPostDialogueScript());
     }
@@ -275,10 +276,21 @@ public class SubdialogueCall extends VoiceXmlOutputTurn {
         @Override
         public JsonValue asJson() {
             JsonObjectBuilder builder = JsonUtils.createObjectBuilder();
+            addJsonProperties(builder);
+            return builder.build();
+        }
+
+        @Override
+        public void writeJson(JsonGenerator generator, String name) {
+            JsonObjectBuilder builder = JsonUtils.writeStartObject(generator, name);
+            addJsonProperties(builder);
+            generator.writeEnd();
+        }
+
+        private void addJsonProperties(JsonObjectBuilder builder) {
             JsonUtils.add(builder, NAME_PROPERTY, mName);
             JsonUtils.add(builder, EXPRESSION_PROPERTY, mExpression);
             JsonUtils.add(builder, VALUE_PROPERTY, mValue);
-            return builder.build();
         }
     }
 
@@ -10,6 +10,7 @@ import javax.json.*;
 import org.w3c.dom.*;
 
 import com.nuecho.rivr.core.util.*;
+import com.nuecho.rivr.voicexml.dialogue.*;
 import com.nuecho.rivr.voicexml.rendering.voicexml.*;
 import com.nuecho.rivr.voicexml.turn.input.*;
 import com.nuecho.rivr.voicexml.util.json.*;
@@ -94,10 +95,16 @@ public abstract class SupervisedTransfer extends Transfer {
         return mSpeechRecognition;
     }
 
+    @Override
+    protected void customizeTransferElement(Element transferElement, VoiceXmlDialogueContext dialogueContext)
+            throws VoiceXmlDocumentRenderingException {
+        VoiceXmlDomUtil.processDtmfRecognition(mDtmfRecognition, transferElement, dialogueContext);
+        VoiceXmlDomUtil.processSpeechRecognition(mSpeechRecognition, transferElement, dialogueContext);
+        super.customizeTransferElement(transferElement, dialogueContext);
+    }
+
     @Override
     protected void customizeTransferElement(Element transferElement) throws VoiceXmlDocumentRenderingException {
-        VoiceXmlDomUtil.processDtmfRecognition(mDtmfRecognition, transferElement);
-        VoiceXmlDomUtil.processSpeechRecognition(mSpeechRecognition, transferElement);
         setDurationAttribute(transferElement, CONNECT_TIMEOUT_ATTRIBUTE, mConnectTimeout);
         setAttribute(transferElement, TRANSFER_AUDIO_ATTRIBUTE, mTransferAudio);
     }
@@ -76,6 +76,21 @@ public abstract class Transfer extends VoiceXmlOutputTurn {
      */
     protected void customizeTransferElement(Element transferElement) throws VoiceXmlDocumentRenderingException {}
 
+    /**
+     * Allows the customization of the generated transfer element. By default,
+     * this calls {@link #customizeTransferElement(Element)}.
+     * 
+     * @param transferElement The transfer element to customize.
+     * @param dialogueContext The dialogue context.
+     * @throws VoiceXmlDocumentRenderingException when an error occurs while
+     *             rendering the VoiceXml document
+     * @since 1.0.13
+     */
+    protected void customizeTransferElement(Element transferElement, VoiceXmlDialogueContext dialogueContext)
+            throws VoiceXmlDocumentRenderingException {
+        customizeTransferElement(transferElement);
+    }
+
     @Override
     protected final String getOuputTurnType() {
         return TRANSFER_TURN_TYPE;
@@ -102,7 +117,7 @@ public abstract class Transfer extends VoiceXmlOutputTurn {
             transferElement.setAttribute(AAI_ATTRIBUTE, mApplicationToApplicationInformation);
         }
 
-        customizeTransferElement(transferElement);
+        customizeTransferElement(transferElement, dialogueContext);
 
         Element filledElement = DomUtils.appendNewElement(transferElement, FILLED_ELEMENT);
         String script = RIVR_SCOPE_OBJECT
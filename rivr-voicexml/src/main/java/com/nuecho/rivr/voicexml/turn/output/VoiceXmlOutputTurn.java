@@ -40,6 +40,51 @@ public abstract class VoiceXmlOutputTurn extends VoiceXmlDocumentTurn implements
 
     protected abstract String getOuputTurnType();
 
+    /**
+     * Indicates whether this turn can be coalesced with the next one, i.e.
+     * rendered as a form preceding the next turn in its document instead of in
+     * a document of its own (see {@link CoalescingVoiceXmlDialogueChannel}).
+     * This is only possible for turns that don't need any input back from the
+     * VoiceXML platform. Default implementation returns <code>false</code>.
+     * 
+     * @since 1.0.13
+     */
+    public boolean isCoalescable() {
+        return false;
+    }
+
+    /**
+     * Renders this turn as a form of a document generated for another turn.
+     * The form is appended to the document and, once completed, clears the
+     * input turn and continues with the form identified by
+     * <code>nextFormId</code> instead of submitting to the dialogue.
+     * 
+     * @param document the document of the other turn.
+     * @param formId the identifier of the created form.
+     * @param nextFormId the identifier of the form executed after this one.
+     * @return the created form element.
+     * @see #isCoalescable()
+     * @since 1.0.13
+     */
+    public final Element createCoalescedForm(Document document,
+                                             String formId,
+                                             String nextFormId,
+                                             VoiceXmlDialogueContext dialogueContext)
+            throws VoiceXmlDocumentRenderingException {
+        Element formElement = createForm(document);
+        formElement.setAttribute(ID_ATTRIBUTE, formId);
+        fillVoiceXmlDocument(document, formElement, dialogueContext);
+
+        for (Element gotoElement : getGotoElements(formElement, "#" + SUBMIT_FORM_ID)) {
+            // whatever this turn left in the input turn is not for the next one
+            Element scriptElement = document.createElement(SCRIPT_ELEMENT);
+            DomUtils.appendNewText(scriptElement, RIVR_INPUT_TURN_SCOPE_OBJECT + " = {};");
+            gotoElement.getParentNode().insertBefore(scriptElement, gotoElement);
+            gotoElement.setAttribute(NEXT_ATTRIBUTE, "#" + nextFormId);
+        }
+        return formElement;
+    }
+
     @Override
     protected void addTopLevelProperties(JsonObjectBuilder builder) {
         JsonUtils.add(builder, OUTPUT_TURN_TYPE_PROPERTY, getOuputTurnType());
@@ -48,6 +93,8 @@ public abstract class VoiceXmlOutputTurn extends VoiceXmlDocumentTurn implements
     @Override
     protected Document createVoiceXmlDocument(VoiceXmlDialogueContext dialogueContext)
             throws VoiceXmlDocumentRenderingException {
+        if (dialogueContext.isRootDocumentScaffoldingEnabled()) return createScaffoldedVoiceXmlDocument(dialogueContext);
+
         Document document = createDocument(dialogueContext);
         Element formElement = createForm(document);
         fillVoiceXmlDocument(document, formElement, dialogueContext);
@@ -57,40 +104,22 @@ public abstract class VoiceXmlOutputTurn extends VoiceXmlDocumentTurn implements
         return document;
     }
 
-    private static void addEventHandler(Element vxmlElement) {
-        Element catchElement = DomUtils.appendNewElement(vxmlElement, CATCH_ELEMENT);
-
-        Element ifErrorElement = DomUtils.appendNewElement(catchElement, IF_ELEMENT);
-        ifErrorElement.setAttribute(COND_ATTRIBUTE, "_event.substring(0, 5) == \"error\"");
-
-        Element ifErrorHandlingElement = DomUtils.appendNewElement(ifErrorElement, IF_ELEMENT);
-        ifErrorHandlingElement.setAttribute(COND_ATTRIBUTE, RIVR_SCOPE_OBJECT + "." + LOCAL_ERROR_HANDLING_PROPERTY);
-        createGotoFatalHandler(ifErrorHandlingElement);
-
-        DomUtils.appendNewElement(ifErrorHandlingElement, ELSE_ELEMENT);
-
-        StringBuilder setErrorHandlingScript = new StringBuilder();
-        setErrorHandlingScript.append(RIVR_SCOPE_OBJECT)
-                              .append(".")
-                              .append(LOCAL_ERROR_HANDLING_PROPERTY)
-                              .append("=")
-                              .append(TRUE);
-        createScript(ifErrorHandlingElement, setErrorHandlingScript.toString());
+    private Document createScaffoldedVoiceXmlDocument(VoiceXmlDialogueContext dialogueContext)
+            throws VoiceXmlDocumentRenderingException {
+        Document document = createScaffoldedDocument(dialogueContext, this);
+        Element formElement = createForm(document);
+        fillVoiceXmlDocument(document, formElement, dialogueContext);
 
-        addEventHandlerScript(catchElement);
-        createGotoSubmit(catchElement);
+        // the submit form is in the root document
+        String submitForm = getScaffoldedRootDocumentPath(dialogueContext) + "#" + SUBMIT_FORM_ID;
+        for (Element gotoElement : getGotoElements(document.getDocumentElement(), "#" + SUBMIT_FORM_ID)) {
+            gotoElement.setAttribute(NEXT_ATTRIBUTE, submitForm);
+        }
+        return document;
     }
 
     protected static void addEventHandlerScript(Element parent) {
-        StringBuilder addEventScript = new StringBuilder();
-        addEventScript.append(RIVR_SCOPE_OBJECT)
-                      .append(".addEventResult(")
-                      .append(EVENT_NAME_VARIABLE)
-                      .append(", ")
-                      .append(EVENT_MESSAGE_VARIABLE)
-                      .append(")");
-
-        createScript(parent, addEventScript.toString());
+        VoiceXmlDomUtil.addEventHandlerScript(parent);
     }
 
     protected abstract void fillVoiceXmlDocument(Document document,
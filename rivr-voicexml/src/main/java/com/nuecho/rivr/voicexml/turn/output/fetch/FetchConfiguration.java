@@ -5,6 +5,7 @@
 package com.nuecho.rivr.voicexml.turn.output.fetch;
 
 import javax.json.*;
+import javax.json.stream.*;
 
 import com.nuecho.rivr.core.util.*;
 import com.nuecho.rivr.voicexml.turn.output.*;
@@ -72,12 +73,24 @@ public class FetchConfiguration implements JsonSerializable {
 
     @Override
     public String toString() {
-        return asJson().toString();
+        return JsonUtils.toString(this);
     }
 
     @Override
     public JsonValue asJson() {
         JsonObjectBuilder builder = JsonUtils.createObjectBuilder();
+        addAllJsonProperties(builder);
+        return builder.build();
+    }
+
+    @Override
+    public void writeJson(JsonGenerator generator, String name) {
+        JsonObjectBuilder builder = JsonUtils.writeStartObject(generator, name);
+        addAllJsonProperties(builder);
+        generator.writeEnd();
+    }
+
+    private void addAllJsonProperties(JsonObjectBuilder builder) {
         JsonUtils.addDurationProperty(builder, MAX_AGE_PROPERTY, mMaxAge);
         JsonUtils.addDurationProperty(builder, MAX_STALE_PROPERTY, mMaxStale);
         JsonUtils.addDurationProperty(builder, TIME_OUT_PROPERTY, mTimeOut);
@@ -87,8 +100,6 @@ public class FetchConfiguration implements JsonSerializable {
         } else {
             JsonUtils.add(builder, FETCH_HINT_PROPERTY, mFetchHint.name());
         }
-
-        return builder.build();
     }
 
     @Override
@@ -5,6 +5,7 @@
 package com.nuecho.rivr.voicexml.turn.output.grammar;
 
 import javax.json.*;
+import javax.json.stream.*;
 
 import com.nuecho.rivr.voicexml.util.json.*;
 
@@ -55,19 +56,37 @@ public abstract class GrammarItem implements JsonSerializable {
 
     public abstract String getElementType();
 
+    /**
+     * Adds the properties specific to this grammar item to its JSON
+     * representation. When the item is written with
+     * {@link #writeJson(JsonGenerator, String)}, the builder streams each
+     * property to the generator: adding a property twice fails instead of
+     * replacing it, and {@link JsonObjectBuilder#build()} is not supported.
+     */
     protected abstract void addJsonProperties(JsonObjectBuilder builder);
 
     @Override
     public final String toString() {
-        return asJson().toString();
+        return JsonUtils.toString(this);
     }
 
     @Override
     public final JsonValue asJson() {
         JsonObjectBuilder builder = JsonUtils.createObjectBuilder();
+        addAllJsonProperties(builder);
+        return builder.build();
+    }
+
+    @Override
+    public final void writeJson(JsonGenerator generator, String name) {
+        JsonObjectBuilder builder = JsonUtils.writeStartObject(generator, name);
+        addAllJsonProperties(builder);
+        generator.writeEnd();
+    }
+
+    private void addAllJsonProperties(JsonObjectBuilder builder) {
         JsonUtils.add(builder, TYPE_PROPERTY, getElementType());
         addJsonProperties(builder);
-        return builder.build();
     }
 
     @Override
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.util.json;
+
+import java.math.*;
+import java.util.*;
+
+import javax.json.*;
+import javax.json.stream.*;
+
+/**
+ * {@link JsonObjectBuilder} writing each member directly to a
+ * {@link JsonGenerator} instead of accumulating them. This allows the code
+ * producing JSON objects through a {@link JsonObjectBuilder} to be reused for
+ * {@link JsonSerializable#writeJson(JsonGenerator, String)}.
+ * <p>
+ * This builder does not fully honor the {@link JsonObjectBuilder} contract:
+ * <ul>
+ * <li>members are written in the order in which they are added and cannot be
+ * replaced: adding a name twice throws a {@link JsonGenerationException}
+ * instead of replacing the value;</li>
+ * <li>{@link #build()} throws an {@link UnsupportedOperationException}.</li>
+ * </ul>
+ * 
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+final class JsonGeneratorObjectBuilder implements JsonObjectBuilder {
+
+    private final JsonGenerator mGenerator;
+    private final Set<String> mNames = new HashSet<String>();
+
+    public JsonGeneratorObjectBuilder(JsonGenerator generator) {
+        mGenerator = generator;
+    }
+
+    public JsonGenerator getGenerator() {
+        return mGenerator;
+    }
+
+    @Override
+    public JsonObjectBuilder add(String name, JsonValue value) {
+        checkName(name);
+        mGenerator.write(name, value);
+        return this;
+    }
+
+    @Override
+    public JsonObjectBuilder add(String name, String value) {
+        checkName(name);
+        mGenerator.write(name, value);
+        return this;
+    }
+
+    @Override
+    public JsonObjectBuilder add(String name, BigInteger value) {
+        checkName(name);
+        mGenerator.write(name, value);
+        return this;
+    }
+
+    @Override
+    public JsonObjectBuilder add(String name, BigDecimal value) {
+        checkName(name);
+        mGenerator.write(name, value);
+        return this;
+    }
+
+    @Override
+    public JsonObjectBuilder add(String name, int value) {
+        checkName(name);
+        mGenerator.write(name, value);
+        return this;
+    }
+
+    @Override
+    public JsonObjectBuilder add(String name, long value) {
+        checkName(name);
+        mGenerator.write(name, value);
+        return this;
+    }
+
+    @Override
+    public JsonObjectBuilder add(String name, double value) {
+        checkName(name);
+        mGenerator.write(name, value);
+        return this;
+    }
+
+    @Override
+    public JsonObjectBuilder add(String name, boolean value) {
+        checkName(name);
+        mGenerator.write(name, value);
+        return this;
+    }
+
+    @Override
+    public JsonObjectBuilder addNull(String name) {
+        checkName(name);
+        mGenerator.writeNull(name);
+        return this;
+    }
+
+    @Override
+    public JsonObjectBuilder add(String name, JsonObjectBuilder builder) {
+        checkName(name);
+        mGenerator.write(name, builder.build());
+        return this;
+    }
+
+    @Override
+    public JsonObjectBuilder add(String name, JsonArrayBuilder builder) {
+        checkName(name);
+        mGenerator.write(name, builder.build());
+        return this;
+    }
+
+    @Override
+    public JsonObject build() {
+        throw new UnsupportedOperationException("Members are written directly to the generator.");
+    }
+
+    private void checkName(String name) {
+        if (!mNames.add(name))
+            throw new JsonGenerationException("Member '" + name + "' has already been written to the generator.");
+    }
+}
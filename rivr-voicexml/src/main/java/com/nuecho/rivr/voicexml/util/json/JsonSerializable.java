@@ -5,6 +5,7 @@
 package com.nuecho.rivr.voicexml.util.json;
 
 import javax.json.*;
+import javax.json.stream.*;
 
 /**
  * Indicates that the class intances can be converted to a {@link JsonValue JSON
@@ -14,4 +15,16 @@ import javax.json.*;
  */
 public interface JsonSerializable {
     JsonValue asJson();
+
+    /**
+     * Writes the JSON value returned by {@link #asJson()} directly to a
+     * generator, without building it in memory.
+     * 
+     * @param generator the generator to write to.
+     * @param name the name of the value if it is written inside a JSON object,
+     *            <code>null</code> if it is written inside an array or as the
+     *            root value.
+     * @since 1.0.13
+     */
+    void writeJson(JsonGenerator generator, String name);
 }
@@ -5,9 +5,11 @@
 package com.nuecho.rivr.voicexml.util.json;
 
 import java.io.*;
+import java.util.*;
 
 import javax.json.*;
 import javax.json.spi.*;
+import javax.json.stream.*;
 
 import org.w3c.dom.*;
 
@@ -25,17 +27,24 @@ public final class JsonUtils {
     }
 
     private static final JsonProvider PROVIDER = JsonProvider.provider();
+    private static final Map<String, ?> NO_CONFIGURATION = Collections.<String, Object> emptyMap();
+
+    private static final JsonBuilderFactory BUILDER_FACTORY = PROVIDER.createBuilderFactory(NO_CONFIGURATION);
+    private static final JsonGeneratorFactory GENERATOR_FACTORY = PROVIDER.createGeneratorFactory(NO_CONFIGURATION);
+    private static final JsonParserFactory PARSER_FACTORY = PROVIDER.createParserFactory(NO_CONFIGURATION);
+    private static final JsonReaderFactory READER_FACTORY = PROVIDER.createReaderFactory(NO_CONFIGURATION);
+    private static final JsonWriterFactory WRITER_FACTORY = PROVIDER.createWriterFactory(NO_CONFIGURATION);
 
     public static JsonArrayBuilder createArrayBuilder() {
-        return PROVIDER.createArrayBuilder();
+        return BUILDER_FACTORY.createArrayBuilder();
     }
 
     public static JsonObjectBuilder createObjectBuilder() {
-        return PROVIDER.createObjectBuilder();
+        return BUILDER_FACTORY.createObjectBuilder();
     }
 
     public static JsonString wrap(final String string) {
-        return Json.createArrayBuilder().add(string).build().getJsonString(0);
+        return BUILDER_FACTORY.createArrayBuilder().add(string).build().getJsonString(0);
     }
 
     public static void addDurationProperty(JsonObjectBuilder builder, String propertyName, Duration duration) {
@@ -87,33 +96,163 @@ public final class JsonUtils {
     public static void add(JsonObjectBuilder builder, String name, JsonSerializable serializable) {
         if (serializable == null) {
             builder.addNull(name);
+        } else if (builder instanceof JsonGeneratorObjectBuilder) {
+            serializable.writeJson(((JsonGeneratorObjectBuilder) builder).getGenerator(), name);
         } else {
             builder.add(name, serializable.asJson());
         }
     }
 
+    /**
+     * Adds an array property. Equivalent to adding the value returned by
+     * {@link #toJson(Iterable)}, but the array is not built in memory if the
+     * builder has been returned by
+     * {@link #writeStartObject(JsonGenerator, String)}.
+     * 
+     * @since 1.0.13
+     */
+    public static void add(JsonObjectBuilder builder,
+                           String name,
+                           Iterable<? extends JsonSerializable> serializables) {
+        if (serializables != null && builder instanceof JsonGeneratorObjectBuilder) {
+            write(((JsonGeneratorObjectBuilder) builder).getGenerator(), name, serializables);
+        } else {
+            builder.add(name, toJson(serializables));
+        }
+    }
+
+    /**
+     * Writes the start of a JSON object and returns a {@link JsonObjectBuilder}
+     * writing the object members directly to the generator. The object must
+     * be ended with {@link JsonGenerator#writeEnd()}.
+     * 
+     * @param generator the generator to write to.
+     * @param name the name of the object if it is written inside a JSON
+     *            object, <code>null</code> otherwise.
+     * @return a builder on which {@link JsonObjectBuilder#build()} must not be
+     *         called and which rejects a member name added twice instead of
+     *         replacing its value.
+     * @since 1.0.13
+     */
+    public static JsonObjectBuilder writeStartObject(JsonGenerator generator, String name) {
+        if (name == null) {
+            generator.writeStartObject();
+        } else {
+            generator.writeStartObject(name);
+        }
+        return new JsonGeneratorObjectBuilder(generator);
+    }
+
+    /**
+     * @since 1.0.13
+     */
+    public static void write(JsonGenerator generator, String name, JsonValue value) {
+        if (value == null) {
+            value = JsonValue.NULL;
+        }
+
+        if (name == null) {
+            generator.write(value);
+        } else {
+            generator.write(name, value);
+        }
+    }
+
+    /**
+     * @since 1.0.13
+     */
+    public static void write(JsonGenerator generator, String name, String value) {
+        if (value == null) {
+            write(generator, name, JsonValue.NULL);
+        } else if (name == null) {
+            generator.write(value);
+        } else {
+            generator.write(name, value);
+        }
+    }
+
+    /**
+     * @since 1.0.13
+     */
+    public static void write(JsonGenerator generator, String name, JsonSerializable serializable) {
+        if (serializable == null) {
+            write(generator, name, JsonValue.NULL);
+        } else {
+            serializable.writeJson(generator, name);
+        }
+    }
+
+    /**
+     * @since 1.0.13
+     */
+    public static void write(JsonGenerator generator, String name, Iterable<? extends JsonSerializable> serializables) {
+        if (serializables == null) {
+            write(generator, name, JsonValue.NULL);
+            return;
+        }
+
+        if (name == null) {
+            generator.writeStartArray();
+        } else {
+            generator.writeStartArray(name);
+        }
+
+        for (JsonSerializable serializable : serializables) {
+            serializable.writeJson(generator, null);
+        }
+        generator.writeEnd();
+    }
+
+    /**
+     * Returns the JSON text of a {@link JsonSerializable} without building its
+     * JSON value in memory.
+     * 
+     * @since 1.0.13
+     */
+    public static String toString(JsonSerializable serializable) {
+        StringWriter writer = new StringWriter();
+        JsonGenerator generator = createGenerator(writer);
+        serializable.writeJson(generator, null);
+        generator.close();
+        return writer.toString();
+    }
+
     public static long getLongProperty(JsonObject object, String property) {
         return object.getJsonNumber(property).longValue();
     }
 
     public static JsonReader createReader(InputStream inputStream) {
-        return PROVIDER.createReader(inputStream);
+        return READER_FACTORY.createReader(inputStream);
     }
 
     public static JsonReader createReader(Reader reader) {
-        return PROVIDER.createReader(reader);
+        return READER_FACTORY.createReader(reader);
     }
 
     public static JsonReader createReader(String string) {
         return createReader(new StringReader(string));
     }
 
+    /**
+     * @since 1.0.13
+     */
+    public static JsonParser createParser(Reader reader) {
+        return PARSER_FACTORY.createParser(reader);
+    }
+
     public static JsonWriter createWriter(OutputStream outputStream) {
-        return PROVIDER.createWriter(outputStream);
+        return WRITER_FACTORY.createWriter(outputStream);
     }
 
     public static JsonWriter createWriter(Writer writer) {
-        return PROVIDER.createWriter(writer);
+        return WRITER_FACTORY.createWriter(writer);
+    }
+
+    /**
+     * @since 1.0.13
+     */
+    public static JsonGenerator createGenerator(Writer writer) {
+        return GENERATOR_FACTORY.createGenerator(writer);
     }
 
     public static void write(Writer writer, JsonStructure structure) {
@@ -0,0 +1,553 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.util.json;
+
+import java.io.*;
+import java.util.*;
+
+import javax.json.*;
+import javax.json.JsonValue.ValueType;
+import javax.json.stream.*;
+import javax.json.stream.JsonParser.Event;
+
+import com.nuecho.rivr.core.util.*;
+
+/**
+ * A JSON value that may be kept as a range of its source text and only
+ * decoded into a {@link JsonValue} on first access. This avoids building the
+ * tree of large values, such as N-best recognition results, that are never
+ * looked at.
+ * <p>
+ * {@link #parse(String, String...)} first locates the members of the objects
+ * containing lazy values with a lightweight scan. The scan checks the JSON
+ * syntax of the values it skips (brackets, separators, strings, numbers and
+ * literals) without decoding or copying them. Values found at the given lazy
+ * paths are then left as is and only decoded on first access. The other values
+ * are decoded right away. Since the whole text is validated by
+ * {@link #parse(String, String...)}, decoding a lazy value later never fails.
+ * Objects containing lazy values keep their members, which can be accessed
+ * with {@link #getMember(String)}.
+ * 
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public final class LazyJsonValue {
+
+    private static final String PATH_SEPARATOR = "/";
+
+    private final String mSource;
+    private final int mStart;
+    private final int mEnd;
+    private final ValueType mValueType;
+    private final Map<String, LazyJsonValue> mMembers;
+    private volatile JsonValue mValue;
+
+    private LazyJsonValue(String source,
+                          int start,
+                          int end,
+                          ValueType valueType,
+                          Map<String, LazyJsonValue> members,
+                          JsonValue value) {
+        mSource = source;
+        mStart = start;
+        mEnd = end;
+        mValueType = valueType;
+        mMembers = members;
+        mValue = value;
+    }
+
+    /**
+     * Wraps an already decoded value.
+     * 
+     * @param value the value. Cannot be <code>null</code>.
+     * @return the wrapped value.
+     */
+    public static LazyJsonValue of(JsonValue value) {
+        Assert.notNull(value, "value");
+        return new LazyJsonValue(null, 0, 0, value.getValueType(), null, value);
+    }
+
+    /**
+     * Parses a JSON text.
+     * 
+     * @param json the JSON text. Cannot be <code>null</code>.
+     * @param lazyPaths the paths of the values to keep undecoded. A path is a
+     *            list of member names separated by <code>/</code>, e.g.
+     *            <code>recognition/result</code>.
+     * @return the root value.
+     * @throws JsonException if the text is not valid JSON.
+     */
+    public static LazyJsonValue parse(String json, String... lazyPaths) {
+        Assert.notNull(json, "json");
+        Assert.noNullValues(lazyPaths, "lazyPaths");
+
+        PathNode root = new PathNode();
+        for (String lazyPath : lazyPaths) {
+            PathNode node = root;
+            for (String name : lazyPath.split(PATH_SEPARATOR)) {
+                node = node.getOrCreateChild(name);
+            }
+            node.mLazy = true;
+        }
+
+        int start = skipWhitespace(json, 0);
+        Scan scan = new Scan(json);
+        LazyJsonValue value = scanValue(scan, start, root);
+        if (skipWhitespace(json, scan.mEnd) != json.length())
+            throw new JsonException("Unexpected content after JSON value at offset " + scan.mEnd + ".");
+        return value;
+    }
+
+    public ValueType getValueType() {
+        return mValueType;
+    }
+
+    /**
+     * Gets the decoded value. A lazy value is decoded on the first call.
+     * 
+     * @return the value.
+     */
+    public JsonValue getValue() {
+        JsonValue value = mValue;
+        if (value == null) {
+            value = decode();
+            mValue = value;
+        }
+        return value;
+    }
+
+    /**
+     * Gets the JSON text of the value.
+     * 
+     * @return the JSON text.
+     */
+    public String getText() {
+        if (mSource == null) return getValue().toString();
+        return mSource.substring(mStart, mEnd);
+    }
+
+    /**
+     * Gets an object member without decoding the other members.
+     * 
+     * @param name the member name.
+     * @return the member, or <code>null</code> if this value is not an object
+     *         or has no such member.
+     */
+    public LazyJsonValue getMember(String name) {
+        if (mMembers != null) return mMembers.get(name);
+        if (mValueType != ValueType.OBJECT) return null;
+
+        JsonValue member = ((JsonObject) getValue()).get(name);
+        return member == null ? null : of(member);
+    }
+
+    /**
+     * Gets the elements of an array without decoding them. Each element is
+     * decoded on its first access. The elements are located on each call.
+     * 
+     * @return the elements, or <code>null</code> if this value is not an
+     *         array.
+     */
+    public List<LazyJsonValue> getElements() {
+        if (mValueType != ValueType.ARRAY) return null;
+
+        List<LazyJsonValue> elements = new ArrayList<LazyJsonValue>();
+        JsonValue value = mValue;
+        if (value != null) {
+            for (JsonValue element : (JsonArray) value) {
+                elements.add(of(element));
+            }
+            return elements;
+        }
+
+        int index = skipWhitespace(mSource, mStart + 1);
+        if (mSource.charAt(index) == ']') return elements;
+        while (true) {
+            int end = skipValue(mSource, index);
+            elements.add(new LazyJsonValue(mSource, index, end, getValueType(mSource, index), null, null));
+            index = skipWhitespace(mSource, end);
+            if (mSource.charAt(index) == ']') return elements;
+            index = skipWhitespace(mSource, index + 1);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getText();
+    }
+
+    private JsonValue decode() {
+        if (mMembers != null) {
+            JsonObjectBuilder builder = JsonUtils.createObjectBuilder();
+            for (Map.Entry<String, LazyJsonValue> member : mMembers.entrySet()) {
+                builder.add(member.getKey(), member.getValue().getValue());
+            }
+            return builder.build();
+        }
+
+        return read(getText(), mValueType);
+    }
+
+    private static JsonValue read(String text, ValueType valueType) {
+        boolean structure = valueType == ValueType.OBJECT || valueType == ValueType.ARRAY;
+
+        // JSON-P 1.0 only parses objects and arrays
+        JsonParser parser = JsonUtils.createParser(new StringReader(structure ? text : "[" + text + "]"));
+        try {
+            JsonArrayBuilder builder = JsonUtils.createArrayBuilder();
+            Event event = parser.next();
+            if (structure) {
+                addValue(builder, parser, event);
+            } else {
+                addValue(builder, parser, parser.next());
+                if (parser.next() != Event.END_ARRAY) throw new JsonException("Invalid JSON value: " + text);
+            }
+            if (parser.hasNext()) throw new JsonException("Invalid JSON value: " + text);
+            return builder.build().get(0);
+        } catch (NoSuchElementException exception) {
+            throw new JsonException("Invalid JSON value: " + text, exception);
+        } finally {
+            parser.close();
+        }
+    }
+
+    private static LazyJsonValue scanValue(Scan scan, int start, PathNode node) {
+        String source = scan.mSource;
+        if (start >= source.length()) throw new JsonException("Unexpected end of JSON text.");
+
+        ValueType valueType = getValueType(source, start);
+        if (node != null && !node.mLazy && valueType == ValueType.OBJECT) {
+            Map<String, LazyJsonValue> members = scanMembers(scan, start, node);
+            return new LazyJsonValue(source, start, scan.mEnd, valueType, members, null);
+        }
+
+        int end = skipValue(source, start);
+        scan.mEnd = end;
+        if (node != null && node.mLazy) return new LazyJsonValue(source, start, end, valueType, null, null);
+
+        return of(read(source.substring(start, end), valueType));
+    }
+
+    private static Map<String, LazyJsonValue> scanMembers(Scan scan, int start, PathNode node) {
+        String source = scan.mSource;
+        Map<String, LazyJsonValue> members = new LinkedHashMap<String, LazyJsonValue>();
+
+        int index = skipWhitespace(source, start + 1);
+        if (index < source.length() && source.charAt(index) == '}') {
+            scan.mEnd = index + 1;
+            return members;
+        }
+
+        while (true) {
+            if (index >= source.length() || source.charAt(index) != '"')
+                throw new JsonException("Expected member name at offset " + index + ".");
+            int nameEnd = skipString(source, index);
+            String name = source.substring(index + 1, nameEnd - 1);
+            if (name.indexOf('\\') != -1) {
+                name = ((JsonString) read(source.substring(index, nameEnd), ValueType.STRING)).getString();
+            }
+
+            index = skipWhitespace(source, nameEnd);
+            if (index >= source.length() || source.charAt(index) != ':')
+                throw new JsonException("Expected ':' at offset " + index + ".");
+
+            members.put(name, scanValue(scan, skipWhitespace(source, index + 1), node.getChild(name)));
+
+            index = skipWhitespace(source, scan.mEnd);
+            if (index >= source.length()) throw new JsonException("Unexpected end of JSON text.");
+            char separator = source.charAt(index);
+            if (separator == '}') {
+                scan.mEnd = index + 1;
+                return members;
+            }
+            if (separator != ',') throw new JsonException("Expected ',' or '}' at offset " + index + ".");
+            index = skipWhitespace(source, index + 1);
+        }
+    }
+
+    private static ValueType getValueType(String source, int index) {
+        char first = source.charAt(index);
+        switch (first) {
+            case '{':
+                return ValueType.OBJECT;
+            case '[':
+                return ValueType.ARRAY;
+            case '"':
+                return ValueType.STRING;
+            case 't':
+                return ValueType.TRUE;
+            case 'f':
+                return ValueType.FALSE;
+            case 'n':
+                return ValueType.NULL;
+            default:
+                if (first == '-' || first >= '0' && first <= '9') return ValueType.NUMBER;
+                throw new JsonException("Unexpected character '" + first + "' at offset " + index + ".");
+        }
+    }
+
+    /**
+     * Skips a value, checking its syntax.
+     *
+     * @return the offset following the value.
+     * @throws JsonException if the value is not valid JSON.
+     */
+    private static int skipValue(String source, int start) {
+        // whether each enclosing structure is an object (rather than an array)
+        boolean[] objects = new boolean[16];
+        int depth = 0;
+        int index = start;
+        while (true) {
+            index = skipWhitespace(source, index);
+            char character = charAt(source, index);
+            if (character == '{' || character == '[') {
+                boolean object = character == '{';
+                int next = skipWhitespace(source, index + 1);
+                if (charAt(source, next) == (object ? '}' : ']')) {
+                    index = next + 1;
+                } else {
+                    if (depth == objects.length) {
+                        objects = Arrays.copyOf(objects, depth * 2);
+                    }
+                    objects[depth++] = object;
+                    index = object ? skipMemberName(source, next) : next;
+                    continue;
+                }
+            } else {
+                index = skipScalar(source, index);
+            }
+
+            // closes the structures ending after the value, up to the next value
+            while (true) {
+                if (depth == 0) return index;
+                index = skipWhitespace(source, index);
+                character = charAt(source, index);
+                boolean object = objects[depth - 1];
+                if (character == ',') {
+                    index = object ? skipMemberName(source, index + 1) : index + 1;
+                    break;
+                }
+                if (character != (object ? '}' : ']'))
+                    throw new JsonException("Expected ',' or '" + (object ? '}' : ']') + "' at offset " + index + ".");
+                depth--;
+                index++;
+            }
+        }
+    }
+
+    private static int skipMemberName(String source, int start) {
+        int index = skipWhitespace(source, start);
+        if (charAt(source, index) != '"') throw new JsonException("Expected member name at offset " + index + ".");
+        index = skipWhitespace(source, skipString(source, index));
+        if (charAt(source, index) != ':') throw new JsonException("Expected ':' at offset " + index + ".");
+        return index + 1;
+    }
+
+    private static int skipScalar(String source, int start) {
+        switch (getValueType(source, start)) {
+            case STRING:
+                return skipString(source, start);
+            case NUMBER:
+                return skipNumber(source, start);
+            case TRUE:
+                return skipLiteral(source, start, "true");
+            case FALSE:
+                return skipLiteral(source, start, "false");
+            default:
+                return skipLiteral(source, start, "null");
+        }
+    }
+
+    private static int skipString(String source, int start) {
+        int index = start + 1;
+        while (index < source.length()) {
+            char character = source.charAt(index);
+            if (character == '"') return index + 1;
+            if (character < ' ') throw new JsonException("Unescaped control character at offset " + index + ".");
+            if (character == '\\') {
+                index = skipEscape(source, index);
+            } else {
+                index++;
+            }
+        }
+        throw new JsonException("Unterminated JSON string at offset " + start + ".");
+    }
+
+    private static int skipEscape(String source, int start) {
+        char escaped = charAt(source, start + 1);
+        if ("\"\\/bfnrt".indexOf(escaped) != -1) return start + 2;
+        if (escaped != 'u') throw new JsonException("Invalid escape sequence at offset " + start + ".");
+        for (int index = start + 2; index < start + 6; index++) {
+            if (Character.digit(charAt(source, index), 16) == -1)
+                throw new JsonException("Invalid escape sequence at offset " + start + ".");
+        }
+        return start + 6;
+    }
+
+    private static int skipNumber(String source, int start) {
+        int index = start;
+        if (source.charAt(index) == '-') {
+            index++;
+        }
+        if (charAt(source, index) == '0') {
+            index++;
+        } else {
+            index = skipDigits(source, index);
+        }
+        if (index < source.length() && source.charAt(index) == '.') {
+            index = skipDigits(source, index + 1);
+        }
+        if (index < source.length() && (source.charAt(index) == 'e' || source.charAt(index) == 'E')) {
+            index++;
+            if (index < source.length() && (source.charAt(index) == '+' || source.charAt(index) == '-')) {
+                index++;
+            }
+            index = skipDigits(source, index);
+        }
+        if (index < source.length() && !isDelimiter(source.charAt(index)))
+            throw new JsonException("Invalid number at offset " + start + ".");
+        return index;
+    }
+
+    // at least one digit is required
+    private static int skipDigits(String source, int start) {
+        int index = start;
+        while (index < source.length() && source.charAt(index) >= '0' && source.charAt(index) <= '9') {
+            index++;
+        }
+        if (index == start) throw new JsonException("Invalid number at offset " + start + ".");
+        return index;
+    }
+
+    private static int skipLiteral(String source, int start, String literal) {
+        int end = start + literal.length();
+        if (!source.startsWith(literal, start) || end < source.length() && !isDelimiter(source.charAt(end)))
+            throw new JsonException("Invalid literal at offset " + start + ".");
+        return end;
+    }
+
+    private static char charAt(String source, int index) {
+        if (index >= source.length()) throw new JsonException("Unexpected end of JSON text.");
+        return source.charAt(index);
+    }
+
+    private static boolean isDelimiter(char character) {
+        return character == ',' || character == '}' || character == ']' || Character.isWhitespace(character);
+    }
+
+    private static void addValue(JsonArrayBuilder builder, JsonParser parser, Event event) {
+        switch (event) {
+            case START_OBJECT:
+                JsonObjectBuilder objectBuilder = JsonUtils.createObjectBuilder();
+                while (parser.next() != Event.END_OBJECT) {
+                    addValue(objectBuilder, parser.getString(), parser, parser.next());
+                }
+                builder.add(objectBuilder);
+                break;
+            case START_ARRAY:
+                JsonArrayBuilder arrayBuilder = JsonUtils.createArrayBuilder();
+                Event itemEvent;
+                while ((itemEvent = parser.next()) != Event.END_ARRAY) {
+                    addValue(arrayBuilder, parser, itemEvent);
+                }
+                builder.add(arrayBuilder);
+                break;
+            case VALUE_STRING:
+                builder.add(parser.getString());
+                break;
+            case VALUE_NUMBER:
+                builder.add(parser.getBigDecimal());
+                break;
+            case VALUE_TRUE:
+                builder.add(true);
+                break;
+            case VALUE_FALSE:
+                builder.add(false);
+                break;
+            case VALUE_NULL:
+                builder.addNull();
+                break;
+            default:
+                throw new JsonException("Unexpected JSON event: " + event);
+        }
+    }
+
+    private static void addValue(JsonObjectBuilder builder, String name, JsonParser parser, Event event) {
+        switch (event) {
+            case START_OBJECT:
+                JsonObjectBuilder objectBuilder = JsonUtils.createObjectBuilder();
+                while (parser.next() != Event.END_OBJECT) {
+                    addValue(objectBuilder, parser.getString(), parser, parser.next());
+                }
+                builder.add(name, objectBuilder);
+                break;
+            case START_ARRAY:
+                JsonArrayBuilder arrayBuilder = JsonUtils.createArrayBuilder();
+                Event itemEvent;
+                while ((itemEvent = parser.next()) != Event.END_ARRAY) {
+                    addValue(arrayBuilder, parser, itemEvent);
+                }
+                builder.add(name, arrayBuilder);
+                break;
+            case VALUE_STRING:
+                builder.add(name, parser.getString());
+                break;
+            case VALUE_NUMBER:
+                builder.add(name, parser.getBigDecimal());
+                break;
+            case VALUE_TRUE:
+                builder.add(name, true);
+                break;
+            case VALUE_FALSE:
+                builder.add(name, false);
+                break;
+            case VALUE_NULL:
+                builder.addNull(name);
+                break;
+            default:
+                throw new JsonException("Unexpected JSON event: " + event);
+        }
+    }
+
+    private static int skipWhitespace(String source, int index) {
+        while (index < source.length() && Character.isWhitespace(source.charAt(index))) {
+            index++;
+        }
+        return index;
+    }
+
+    private static final class Scan {
+        private final String mSource;
+        // offset following the last scanned value
+        private int mEnd;
+
+        public Scan(String source) {
+            mSource = source;
+        }
+    }
+
+    private static final class PathNode {
+        private boolean mLazy;
+        private Map<String, PathNode> mChildren;
+
+        public PathNode getChild(String name) {
+            if (mChildren == null) return null;
+            return mChildren.get(name);
+        }
+
+        public PathNode getOrCreateChild(String name) {
+            if (mChildren == null) {
+                mChildren = new HashMap<String, PathNode>();
+            }
+
+            PathNode child = mChildren.get(name);
+            if (child == null) {
+                child = new PathNode();
+                mChildren.put(name, child);
+            }
+            return child;
+        }
+    }
+}
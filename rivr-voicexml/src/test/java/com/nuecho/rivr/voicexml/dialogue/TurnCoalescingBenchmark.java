@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.dialogue;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.helpers.*;
+
+import com.nuecho.rivr.core.channel.*;
+import com.nuecho.rivr.core.channel.synchronous.*;
+import com.nuecho.rivr.core.channel.synchronous.step.*;
+import com.nuecho.rivr.core.dialogue.*;
+import com.nuecho.rivr.core.servlet.*;
+import com.nuecho.rivr.core.util.*;
+import com.nuecho.rivr.voicexml.rendering.voicexml.*;
+import com.nuecho.rivr.voicexml.turn.*;
+import com.nuecho.rivr.voicexml.turn.first.*;
+import com.nuecho.rivr.voicexml.turn.input.*;
+import com.nuecho.rivr.voicexml.turn.last.*;
+import com.nuecho.rivr.voicexml.turn.output.*;
+import com.nuecho.rivr.voicexml.turn.output.audio.*;
+import com.nuecho.rivr.voicexml.turn.output.grammar.*;
+
+/**
+ * Measures the latency of a call with and without turn coalescing (
+ * {@link CoalescingVoiceXmlDialogueChannel}). A simulated VoiceXML browser runs
+ * a dialogue playing three messages and a script before asking a question,
+ * then playing a last message before exiting. For each document, the browser
+ * waits for the controller to render it and then for a network round trip of
+ * {@link #mRoundTripMillis} milliseconds. One operation is a whole call.
+ * <p>
+ * Without coalescing, the call takes 7 documents: one per turn. With
+ * coalescing, it takes 2: the question (preceded by the three messages and the
+ * script) and the exit (preceded by the last message).
+ * <p>
+ * Run with <code>gradle :rivr-voicexml:jmh -Pbenchmark=TurnCoalescing</code>.
+ *
+ * @author Nu Echo Inc.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TurnCoalescingBenchmark {
+
+    private static final Duration TIMEOUT = Duration.seconds(10);
+
+    // CHECKSTYLE.OFF: JMH parameters must be public fields
+    @Param({"false", "true"})
+    public boolean mCoalescing;
+
+    @Param({"0", "20"})
+    public int mRoundTripMillis;
+    // CHECKSTYLE.ON
+
+    private final VoiceXmlStepRenderer mStepRenderer = new VoiceXmlStepRenderer(Collections.<VoiceXmlDocumentAdapter> emptyList());
+    private final OutputStream mOutputStream = new OutputStream() {
+        @Override
+        public void write(int b) {}
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {}
+    };
+
+    @Benchmark
+    public int call() throws Exception {
+        SynchronousDialogueChannel<VoiceXmlInputTurn, VoiceXmlOutputTurn, VoiceXmlFirstTurn, VoiceXmlLastTurn, VoiceXmlDialogueContext> channel;
+        channel = new SynchronousDialogueChannel<VoiceXmlInputTurn, VoiceXmlOutputTurn, VoiceXmlFirstTurn, VoiceXmlLastTurn, VoiceXmlDialogueContext>();
+
+        DialogueChannel<VoiceXmlInputTurn, VoiceXmlOutputTurn> dialogueChannel = channel;
+        if (mCoalescing) {
+            dialogueChannel = CoalescingVoiceXmlDialogueChannel.wrap(channel);
+        }
+        VoiceXmlDialogueContext dialogueContext = new VoiceXmlDialogueContext(dialogueChannel,
+                                                                              NOPLogger.NOP_LOGGER,
+                                                                              "dialogue",
+                                                                              "/context",
+                                                                              "/servlet");
+
+        Step<VoiceXmlOutputTurn, VoiceXmlLastTurn> step = channel.start(new CallDialogue(),
+                                                                         new VoiceXmlFirstTurn(),
+                                                                         TIMEOUT,
+                                                                         dialogueContext);
+        int documents = 1;
+        while (step instanceof OutputTurnStep) {
+            VoiceXmlOutputTurn outputTurn = ((OutputTurnStep<VoiceXmlOutputTurn, VoiceXmlLastTurn>) step).getOutputTurn();
+            fetch(mStepRenderer.createDocumentForOutputTurn(outputTurn, null, null, dialogueContext));
+            step = channel.doTurn(new VoiceXmlInputTurn(), TIMEOUT);
+            documents++;
+        }
+
+        VoiceXmlLastTurn lastTurn = ((LastTurnStep<VoiceXmlOutputTurn, VoiceXmlLastTurn>) step).getLastTurn();
+        fetch(mStepRenderer.createDocumentForLastTurn(lastTurn, null, null, dialogueContext));
+        return documents;
+    }
+
+    private void fetch(ServletResponseContent document) throws Exception {
+        document.writeTo(mOutputStream);
+        if (mRoundTripMillis > 0) {
+            Thread.sleep(mRoundTripMillis);
+        }
+    }
+
+    private static final class CallDialogue implements VoiceXmlDialogue {
+        @Override
+        public VoiceXmlLastTurn run(VoiceXmlFirstTurn firstTurn, VoiceXmlDialogueContext context) throws Exception {
+            doTurn(message("welcome", "Welcome to the automated service."), context);
+            doTurn(message("recorded", "Calls may be recorded for quality purposes."), context);
+            doTurn(message("hours", "Our offices are open from nine to five."), context);
+            doTurn(OutputTurns.script("log").setCode("var logged = true;").build(), context);
+
+            DtmfRecognition dtmfRecognition = new DtmfRecognition(new GrammarReference("builtin:dtmf/digits?length=1"));
+            doTurn(OutputTurns.interaction("menu")
+                              .addPrompt(dtmfRecognition, new SpeechSynthesis("Press one for sales."))
+                              .build(dtmfRecognition, Duration.seconds(5)), context);
+
+            doTurn(message("goodbye", "Thank you for calling."), context);
+            return new Exit("exit");
+        }
+
+        private static Message message(String name, String text) {
+            return OutputTurns.message(name).addAudioItem(new SpeechSynthesis(text)).build();
+        }
+
+        private static VoiceXmlInputTurn doTurn(VoiceXmlOutputTurn outputTurn, VoiceXmlDialogueContext context)
+                throws Exception {
+            return context.getDialogueChannel().doTurn(outputTurn, TIMEOUT);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.recording;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.*;
+
+import com.nuecho.rivr.core.util.*;
+import com.nuecho.rivr.voicexml.servlet.*;
+
+/**
+ * @author Nu Echo Inc.
+ */
+public final class RecordingProcessorTest {
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private final CountDownLatch mStageRelease = new CountDownLatch(1);
+    private final CountDownLatch mStageStarted = new CountDownLatch(1);
+    private RecordingProcessor mRecordingProcessor;
+
+    @After
+    public void tearDown() {
+        mStageRelease.countDown();
+        if (mRecordingProcessor != null) {
+            mRecordingProcessor.shutdown();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void recordingsAreRejectedWhenTheQueueIsFull() throws Exception {
+        RecordingProcessingStage blockingStage = new RecordingProcessingStage() {
+            @Override
+            public void process(ProcessedRecording recording) throws Exception {
+                mStageStarted.countDown();
+                mStageRelease.await();
+            }
+        };
+        mRecordingProcessor = new RecordingProcessor(Collections.singletonList(blockingStage),
+                                                     1,
+                                                     1,
+                                                     Duration.minutes(1));
+
+        CompletableFuture<ProcessedRecording> running = mRecordingProcessor.process(createFile());
+        mStageStarted.await();
+        CompletableFuture<ProcessedRecording> queued = mRecordingProcessor.process(createFile());
+        assertEquals(1, mRecordingProcessor.getQueueSize());
+
+        CompletableFuture<ProcessedRecording> rejected = mRecordingProcessor.process(createFile());
+        assertTrue(rejected.isCompletedExceptionally());
+        try {
+            rejected.get();
+            fail("ExecutionException expected.");
+        } catch (ExecutionException exception) {
+            assertTrue(exception.getCause() instanceof RejectedExecutionException);
+        }
+
+        mStageRelease.countDown();
+        assertNotNull(running.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertNotNull(queued.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(0, mRecordingProcessor.getQueueSize());
+    }
+
+    @Test(timeout = 60000)
+    public void stagesRunInOrderUntilOneFails() throws Exception {
+        final List<String> stages = Collections.synchronizedList(new ArrayList<String>());
+        final IllegalStateException failure = new IllegalStateException("Stage failed.");
+        mRecordingProcessor = new RecordingProcessor(new RecordingProcessingStage() {
+            @Override
+            public void process(ProcessedRecording recording) {
+                stages.add("first");
+                recording.setAttribute("first", Boolean.TRUE);
+            }
+        }, new RecordingProcessingStage() {
+            @Override
+            public void process(ProcessedRecording recording) {
+                stages.add("second");
+                if (recording.getFile().getName().equals("failing.wav")) throw failure;
+            }
+        }, new RecordingProcessingStage() {
+            @Override
+            public void process(ProcessedRecording recording) {
+                stages.add("third");
+            }
+        });
+
+        ProcessedRecording recording = mRecordingProcessor.process(createFile()).get(TIMEOUT_SECONDS,
+                                                                                     TimeUnit.SECONDS);
+        assertEquals(Boolean.TRUE, recording.getAttribute("first"));
+        assertEquals(Arrays.asList("first", "second", "third"), stages);
+
+        stages.clear();
+        FileUpload failingFile = new FileUpload("failing.wav", "audio/wav", new byte[1], Collections.<String, String> emptyMap());
+        try {
+            mRecordingProcessor.process(failingFile).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            fail("ExecutionException expected.");
+        } catch (ExecutionException exception) {
+            assertSame(failure, exception.getCause());
+        }
+        assertEquals(Arrays.asList("first", "second"), stages);
+    }
+
+    private static FileUpload createFile() {
+        return new FileUpload("recording.wav", "audio/wav", new byte[1], Collections.<String, String> emptyMap());
+    }
+}
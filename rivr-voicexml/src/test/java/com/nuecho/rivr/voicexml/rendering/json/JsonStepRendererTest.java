@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.rendering.json;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.util.*;
+
+import javax.json.*;
+import javax.servlet.http.*;
+
+import org.junit.*;
+import org.slf4j.helpers.*;
+
+import com.nuecho.rivr.core.channel.*;
+import com.nuecho.rivr.core.util.*;
+import com.nuecho.rivr.voicexml.dialogue.*;
+import com.nuecho.rivr.voicexml.rendering.voicexml.*;
+import com.nuecho.rivr.voicexml.turn.*;
+import com.nuecho.rivr.voicexml.turn.input.*;
+import com.nuecho.rivr.voicexml.turn.output.*;
+import com.nuecho.rivr.voicexml.turn.output.audio.*;
+import com.nuecho.rivr.voicexml.turn.output.grammar.*;
+
+/**
+ * @author Nu Echo Inc.
+ */
+public final class JsonStepRendererTest {
+
+    private CoalescingVoiceXmlDialogueChannel mDialogueChannel;
+    private VoiceXmlDialogueContext mDialogueContext;
+    private JsonStepRenderer mRenderer;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        mDialogueChannel = CoalescingVoiceXmlDialogueChannel.wrap(createProxy(DialogueChannel.class,
+                                                                              Collections.<String, Object> emptyMap()));
+        mDialogueContext = new VoiceXmlDialogueContext(mDialogueChannel,
+                                                       NOPLogger.NOP_LOGGER,
+                                                       "dialogue",
+                                                       "/context",
+                                                       "/servlet");
+        mRenderer = new JsonStepRenderer(new VoiceXmlStepRenderer(Collections.<VoiceXmlDocumentAdapter> emptyList()));
+    }
+
+    @Test
+    public void coalescedTurnsAreListedWhenVoiceXmlIsOmitted() throws Exception {
+        coalesce("welcome", "menu");
+
+        JsonObject step = render(createRequest(true));
+
+        assertFalse(step.containsKey("voiceXml"));
+        JsonArray coalescedTurns = step.getJsonArray("coalescedTurns");
+        assertEquals(2, coalescedTurns.size());
+        assertEquals("welcome", coalescedTurns.getJsonObject(0).getString("name"));
+        assertEquals("message", coalescedTurns.getJsonObject(0).getString("outputTurnType"));
+        assertEquals("menu", coalescedTurns.getJsonObject(1).getString("name"));
+        assertTrue(mDialogueContext.takeCoalescedTurns().isEmpty());
+
+        assertFalse(render(createRequest(true)).containsKey("coalescedTurns"));
+    }
+
+    @Test
+    public void coalescedTurnsAreRenderedInVoiceXml() throws Exception {
+        coalesce("welcome");
+
+        JsonObject step = render(createRequest(false));
+
+        assertFalse(step.containsKey("coalescedTurns"));
+        assertTrue(step.getString("voiceXml").contains("welcome message"));
+        assertTrue(mDialogueContext.takeCoalescedTurns().isEmpty());
+    }
+
+    @Test
+    public void voiceXmlIsStreamedVerbatim() throws Exception {
+        // long enough to split multi-byte sequences across the decoding buffer
+        StringBuilder text = new StringBuilder();
+        for (int index = 0; index < 2000; index++) {
+            text.append("\"caf\u00e9\" \\ \u20ac\ud83d\ude00\t");
+        }
+        Interaction interaction = createInteraction(text.toString());
+
+        VoiceXmlDialogueContext voiceXmlDialogueContext = new VoiceXmlDialogueContext(null,
+                                                                                      NOPLogger.NOP_LOGGER,
+                                                                                      "dialogue",
+                                                                                      "/context",
+                                                                                      "/servlet");
+        VoiceXmlStepRenderer voiceXmlStepRenderer = new VoiceXmlStepRenderer(Collections.<VoiceXmlDocumentAdapter> emptyList());
+        String expected = voiceXmlStepRenderer.createDocumentForOutputTurn(interaction,
+                                                                           null,
+                                                                           null,
+                                                                           voiceXmlDialogueContext)
+                                              .getContentAsString();
+        JsonObject step = render(interaction, createRequest(false));
+
+        assertEquals(expected, step.getString("voiceXml"));
+        assertTrue(expected.contains("caf\u00e9\" \\ \u20ac"));
+    }
+
+    private void coalesce(String... names) throws Exception {
+        for (String name : names) {
+            Message message = OutputTurns.message(name).addAudioItem(new SpeechSynthesis(name + " message")).build();
+            mDialogueChannel.doTurn(message, null);
+        }
+    }
+
+    private JsonObject render(HttpServletRequest request) throws Exception {
+        return render(createInteraction("Press a key."), request);
+    }
+
+    private JsonObject render(Interaction interaction, HttpServletRequest request) throws Exception {
+        String content = mRenderer.createDocumentForOutputTurn(interaction, request, null, mDialogueContext)
+                                  .getContentAsString();
+        JsonObject step = Json.createReader(new StringReader(content)).readObject();
+        assertEquals("question", step.getJsonObject("turn").getString("name"));
+        return step;
+    }
+
+    private static Interaction createInteraction(String prompt) {
+        DtmfRecognition dtmfRecognition = new DtmfRecognition(new GrammarReference("builtin:dtmf/digits?length=1"));
+        return OutputTurns.interaction("question")
+                          .addPrompt(dtmfRecognition, new SpeechSynthesis(prompt))
+                          .build(dtmfRecognition, Duration.seconds(5));
+    }
+
+    private static HttpServletRequest createRequest(boolean omitVoiceXml) {
+        Map<String, Object> parameters = new HashMap<String, Object>();
+        if (omitVoiceXml) {
+            parameters.put("omitVoiceXml", "");
+        }
+        return createProxy(HttpServletRequest.class, parameters);
+    }
+
+    // answers getParameter() from the given parameters and null to any other call
+    @SuppressWarnings("unchecked")
+    private static <T> T createProxy(Class<T> type, final Map<String, Object> parameters) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] arguments) {
+                if (method.getName().equals("getParameter")) return parameters.get(arguments[0]);
+                return null;
+            }
+        });
+    }
+}
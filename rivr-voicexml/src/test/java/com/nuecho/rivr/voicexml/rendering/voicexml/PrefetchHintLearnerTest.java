@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.rendering.voicexml;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.*;
+import java.util.*;
+
+import javax.json.*;
+
+import org.junit.*;
+import org.slf4j.helpers.*;
+
+import com.nuecho.rivr.core.channel.*;
+import com.nuecho.rivr.core.util.*;
+import com.nuecho.rivr.voicexml.dialogue.*;
+import com.nuecho.rivr.voicexml.turn.*;
+import com.nuecho.rivr.voicexml.turn.output.*;
+import com.nuecho.rivr.voicexml.turn.output.audio.*;
+import com.nuecho.rivr.voicexml.turn.output.grammar.*;
+
+/**
+ * @author Nu Echo Inc.
+ */
+public final class PrefetchHintLearnerTest {
+
+    private static final String WELCOME_AUDIO = "http://server/audio/welcome.wav";
+    private static final String MENU_GRAMMAR = "http://server/grammars/menu.grxml";
+
+    private PrefetchHintLearner mPrefetchHintLearner;
+    private CoalescingVoiceXmlDialogueChannel mDialogueChannel;
+    private VoiceXmlDialogueContext mDialogueContext;
+    private final VoiceXmlStepRenderer mStepRenderer = new VoiceXmlStepRenderer(Collections.<VoiceXmlDocumentAdapter> emptyList());
+
+    @Before
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void setUp() {
+        InvocationHandler nullHandler = new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] arguments) {
+                return null;
+            }
+        };
+        DialogueChannel dialogueChannel = (DialogueChannel) Proxy.newProxyInstance(getClass().getClassLoader(),
+                                                                                   new Class<?>[] {DialogueChannel.class},
+                                                                                   nullHandler);
+        mDialogueChannel = CoalescingVoiceXmlDialogueChannel.wrap(dialogueChannel);
+        mDialogueContext = new VoiceXmlDialogueContext(mDialogueChannel,
+                                                       NOPLogger.NOP_LOGGER,
+                                                       "dialogue",
+                                                       "/context",
+                                                       "/servlet");
+        mPrefetchHintLearner = new PrefetchHintLearner();
+        mDialogueContext.setPrefetchHintLearner(mPrefetchHintLearner);
+    }
+
+    @Test
+    public void coalescedTurnsKeepTheirOwnResources() throws Exception {
+        mDialogueChannel.doTurn(OutputTurns.message("welcome")
+                                           .addAudioItem(AudioFile.fromLocation(WELCOME_AUDIO))
+                                           .build(), null);
+        render(createMenu());
+        render(createMenu());
+
+        JsonObject turns = ((JsonObject) mPrefetchHintLearner.asJson()).getJsonObject("turns");
+        JsonObject welcome = turns.getJsonObject("welcome");
+        JsonObject menu = turns.getJsonObject("menu");
+
+        assertEquals(1, welcome.getInt("visits"));
+        assertEquals(Collections.singleton("audio " + WELCOME_AUDIO), welcome.getJsonObject("resources").keySet());
+        assertEquals(1, welcome.getJsonObject("successors").getInt("menu"));
+
+        assertEquals(2, menu.getInt("visits"));
+        assertEquals(Collections.singleton("voice " + MENU_GRAMMAR), menu.getJsonObject("resources").keySet());
+        assertEquals(Collections.singleton("menu"), menu.getJsonObject("successors").keySet());
+    }
+
+    @Test
+    public void loadKeepsTheTurnsWithinTheLimit() throws Exception {
+        mDialogueChannel.doTurn(OutputTurns.message("welcome")
+                                           .addAudioItem(AudioFile.fromLocation(WELCOME_AUDIO))
+                                           .build(), null);
+        render(createMenu());
+        JsonObject statistics = (JsonObject) mPrefetchHintLearner.asJson();
+
+        PrefetchHintLearner prefetchHintLearner = new PrefetchHintLearner();
+        prefetchHintLearner.setMaximumTurnNames(1);
+        prefetchHintLearner.load(statistics);
+
+        JsonObject turns = ((JsonObject) prefetchHintLearner.asJson()).getJsonObject("turns");
+        assertEquals(1, turns.size());
+        String turnName = turns.keySet().iterator().next();
+        assertEquals(statistics.getJsonObject("turns").getJsonObject(turnName), turns.getJsonObject(turnName));
+    }
+
+    private static Interaction createMenu() {
+        SpeechRecognition speechRecognition = new SpeechRecognition(new GrammarReference(MENU_GRAMMAR));
+        return OutputTurns.interaction("menu")
+                          .addPrompt(speechRecognition, new SpeechSynthesis("Say sales or support."))
+                          .build(speechRecognition, Duration.seconds(5));
+    }
+
+    private String render(VoiceXmlOutputTurn outputTurn) throws Exception {
+        return mStepRenderer.createDocumentForOutputTurn(outputTurn, null, null, mDialogueContext).getContentAsString();
+    }
+}
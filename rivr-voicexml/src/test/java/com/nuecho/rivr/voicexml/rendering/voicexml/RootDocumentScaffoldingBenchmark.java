@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.rendering.voicexml;
+
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.helpers.*;
+
+import com.nuecho.rivr.core.util.*;
+import com.nuecho.rivr.voicexml.dialogue.*;
+import com.nuecho.rivr.voicexml.turn.*;
+
+/**
+ * Compares the rendering of output turn documents with and without root
+ * document scaffolding (see
+ * {@link VoiceXmlDialogueContext#setRootDocumentScaffoldingEnabled(boolean)}).
+ * One operation renders a turn to its DOM document and serializes it. The
+ * dialogue context defines a fetch timeout, a fetch audio and a property, as
+ * typical applications do, since they are moved to the root document along
+ * with the event handler, the fatal error form and the submit form.
+ * <p>
+ * The size of the serialized document is reported as the
+ * <code>documentBytes</code> secondary result. As for all event counters, JMH
+ * sums it over the measurement iterations: divide it by the iteration count.
+ * <p>
+ * Run with <code>gradle :rivr-voicexml:jmh -Pbenchmark=RootDocumentScaffolding</code>.
+ *
+ * @author Nu Echo Inc.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RootDocumentScaffoldingBenchmark {
+
+    // CHECKSTYLE.OFF: JMH parameters must be public fields
+    @Param({"message", "interaction", "script", "subdialogue", "transfer"})
+    public String mTurnType;
+
+    @Param({"false", "true"})
+    public boolean mScaffolding;
+    // CHECKSTYLE.ON
+
+    private VoiceXmlDocumentTurn mTurn;
+    private VoiceXmlDialogueContext mDialogueContext;
+
+    @Setup(Level.Trial)
+    public void createTurn() {
+        mDialogueContext = createDialogueContext(mScaffolding);
+        mTurn = VoiceXmlStepRendererBenchmark.createTurn(mTurnType);
+    }
+
+    @Benchmark
+    public byte[] render(DocumentSize documentSize) throws Exception {
+        byte[] document = DomUtils.writeToByteArray(mTurn.getVoiceXmlDocument(mDialogueContext), Encoding.UTF_8);
+        documentSize.mDocumentBytes = document.length;
+        return document;
+    }
+
+    static VoiceXmlDialogueContext createDialogueContext(boolean rootDocumentScaffoldingEnabled) {
+        VoiceXmlDialogueContext dialogueContext = new VoiceXmlDialogueContext(null,
+                                                                              NOPLogger.NOP_LOGGER,
+                                                                              "0f8c1d52-2c0e-4a57-9a4e-3d3c1b7e4f11",
+                                                                              "/context",
+                                                                              "/servlet");
+        dialogueContext.getFetchConfiguration().setDefaultFetchTimeout(Duration.seconds(10));
+        dialogueContext.getFetchConfiguration().setDefaultFetchAudio("/context/audio/wait.wav");
+        dialogueContext.getProperties().put("confidencelevel", "0.5");
+        dialogueContext.setRootDocumentScaffoldingEnabled(rootDocumentScaffoldingEnabled);
+        return dialogueContext;
+    }
+
+    /**
+     * Size of the serialized document.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class DocumentSize {
+        private long mDocumentBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            mDocumentBytes = 0;
+        }
+
+        // reported by JMH
+        public long documentBytes() {
+            return mDocumentBytes;
+        }
+    }
+}
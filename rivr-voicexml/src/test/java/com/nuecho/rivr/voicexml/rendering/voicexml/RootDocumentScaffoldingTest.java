@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.rendering.voicexml;
+
+import static com.nuecho.rivr.voicexml.rendering.voicexml.VoiceXmlDomUtil.*;
+import static org.junit.Assert.*;
+
+import org.junit.*;
+import org.w3c.dom.*;
+
+import com.nuecho.rivr.core.util.*;
+import com.nuecho.rivr.voicexml.dialogue.*;
+import com.nuecho.rivr.voicexml.turn.*;
+
+/**
+ * @author Nu Echo Inc.
+ */
+public final class RootDocumentScaffoldingTest {
+
+    private static final String[] TURN_TYPES = {"message", "interaction", "script", "subdialogue", "transfer"};
+
+    @Test
+    public void scaffoldingIsMovedToRootDocument() throws Exception {
+        VoiceXmlDialogueContext dialogueContext = createDialogueContext(true);
+        String submitForm = getScaffoldedRootDocumentPath(dialogueContext) + "#" + SUBMIT_FORM_ID;
+
+        for (String turnType : TURN_TYPES) {
+            Element vxmlElement = render(turnType, dialogueContext).getDocumentElement();
+            assertEquals(turnType, getScaffoldedRootDocumentPath(dialogueContext),
+                         vxmlElement.getAttribute(APPLICATION_ATTRIBUTE));
+            assertEquals(turnType, 0, countChildElements(vxmlElement, PROPERTY_ELEMENT));
+            assertEquals(turnType, 0, vxmlElement.getElementsByTagName(CATCH_ELEMENT).getLength());
+            assertTrue(turnType, getGotoElements(vxmlElement, "#" + SUBMIT_FORM_ID).isEmpty());
+            assertFalse(turnType, getGotoElements(vxmlElement, submitForm).isEmpty());
+            assertNull(turnType, getForm(vxmlElement, SUBMIT_FORM_ID));
+            assertNull(turnType, getForm(vxmlElement, FATAL_ERROR_HANDLER_FORM_ID));
+        }
+    }
+
+    @Test
+    public void scaffoldedDocumentsAreSmaller() throws Exception {
+        for (String turnType : TURN_TYPES) {
+            int documentBytes = getDocumentBytes(render(turnType, createDialogueContext(false)));
+            int scaffoldedDocumentBytes = getDocumentBytes(render(turnType, createDialogueContext(true)));
+            assertTrue(turnType + ": " + scaffoldedDocumentBytes + " >= " + documentBytes / 2,
+                       scaffoldedDocumentBytes < documentBytes / 2);
+        }
+    }
+
+    private static VoiceXmlDialogueContext createDialogueContext(boolean rootDocumentScaffoldingEnabled) {
+        return RootDocumentScaffoldingBenchmark.createDialogueContext(rootDocumentScaffoldingEnabled);
+    }
+
+    private static Document render(String turnType, VoiceXmlDialogueContext dialogueContext) throws Exception {
+        VoiceXmlDocumentTurn turn = VoiceXmlStepRendererBenchmark.createTurn(turnType);
+        return turn.getVoiceXmlDocument(dialogueContext);
+    }
+
+    private static int getDocumentBytes(Document document) throws Exception {
+        return DomUtils.writeToByteArray(document, Encoding.UTF_8).length;
+    }
+
+    private static int countChildElements(Element parent, String name) {
+        int count = 0;
+        for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node instanceof Element && name.equals(node.getNodeName())) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static Element getForm(Element vxmlElement, String id) {
+        NodeList formElements = vxmlElement.getElementsByTagName(FORM_ELEMENT);
+        for (int index = 0; index < formElements.getLength(); index++) {
+            Element formElement = (Element) formElements.item(index);
+            if (id.equals(formElement.getAttribute(ID_ATTRIBUTE))) return formElement;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.rendering.voicexml;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import javax.xml.parsers.*;
+
+import org.junit.*;
+import org.slf4j.helpers.*;
+import org.w3c.dom.*;
+
+import com.nuecho.rivr.voicexml.dialogue.*;
+import com.nuecho.rivr.voicexml.turn.*;
+
+/**
+ * @author Nu Echo Inc.
+ */
+public final class StreamingXmlDocumentServletResponseContentTest {
+
+    private static final String[] TURN_TYPES = {"message", "interaction", "script", "subdialogue", "transfer", "exit"};
+
+    @Test
+    public void streamedDocumentsMatchBufferedDocuments() throws Exception {
+        for (String turnType : TURN_TYPES) {
+            VoiceXmlDocumentTurn turn = VoiceXmlStepRendererBenchmark.createTurn(turnType);
+            VoiceXmlDialogueContext dialogueContext = new VoiceXmlDialogueContext(null,
+                                                                                  NOPLogger.NOP_LOGGER,
+                                                                                  "dialogue",
+                                                                                  "/context",
+                                                                                  "/servlet");
+            Document document = turn.getVoiceXmlDocument(dialogueContext);
+
+            StreamingXmlDocumentServletResponseContent streamed = new StreamingXmlDocumentServletResponseContent(document,
+                                                                                                                 "application/voicexml+xml");
+            XmlDocumentServletResponseContent buffered = new XmlDocumentServletResponseContent(document,
+                                                                                               "application/voicexml+xml");
+            assertNull(streamed.getContentLength());
+            assertTrue(turnType, parse(streamed.getContentAsString()).isEqualNode(parse(buffered.getContentAsString())));
+        }
+    }
+
+    private static Document parse(String content) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        Document document = factory.newDocumentBuilder().parse(new ByteArrayInputStream(content.getBytes("UTF-8")));
+        removeWhitespace(document);
+        return document;
+    }
+
+    private static void removeWhitespace(Node node) {
+        Node child = node.getFirstChild();
+        while (child != null) {
+            Node next = child.getNextSibling();
+            if (child.getNodeType() == Node.TEXT_NODE && child.getNodeValue().trim().isEmpty()) {
+                node.removeChild(child);
+            } else if (child.getNodeType() == Node.TEXT_NODE) {
+                child.setNodeValue(child.getNodeValue().trim());
+            } else {
+                removeWhitespace(child);
+            }
+            child = next;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.rendering.voicexml;
+
+import java.io.*;
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.helpers.*;
+
+import com.nuecho.rivr.core.servlet.*;
+import com.nuecho.rivr.core.util.*;
+import com.nuecho.rivr.voicexml.dialogue.*;
+import com.nuecho.rivr.voicexml.turn.*;
+import com.nuecho.rivr.voicexml.turn.last.*;
+import com.nuecho.rivr.voicexml.turn.output.*;
+import com.nuecho.rivr.voicexml.turn.output.audio.*;
+import com.nuecho.rivr.voicexml.turn.output.grammar.*;
+
+/**
+ * Compares the buffered rendering of VoiceXML documents (
+ * {@link XmlDocumentServletResponseContent}) with the streaming rendering (
+ * {@link StreamingXmlDocumentServletResponseContent}) for each turn type. One
+ * operation renders a turn to its DOM document and writes the response to a
+ * discarding stream, as the servlet does for each turn.
+ * <p>
+ * Run with <code>gradle :rivr-voicexml:jmh -Pbenchmark=VoiceXmlStepRenderer
+ * -PjmhArgs='-prof gc'</code> to compare the allocation rates as well.
+ *
+ * @author Nu Echo Inc.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class VoiceXmlStepRendererBenchmark {
+
+    private static final String VOICE_XML_MIME_TYPE = "application/voicexml+xml";
+
+    // CHECKSTYLE.OFF: JMH parameters must be public fields
+    @Param({"message", "interaction", "script", "subdialogue", "transfer", "exit"})
+    public String mTurnType;
+
+    @Param({"false", "true"})
+    public boolean mStreaming;
+    // CHECKSTYLE.ON
+
+    private VoiceXmlDocumentTurn mTurn;
+    private VoiceXmlDialogueContext mDialogueContext;
+    private final CountingOutputStream mOutputStream = new CountingOutputStream();
+
+    @Setup(Level.Trial)
+    public void createTurn() {
+        mDialogueContext = new VoiceXmlDialogueContext(null, NOPLogger.NOP_LOGGER, "dialogue", "/context", "/servlet");
+        mTurn = createTurn(mTurnType);
+    }
+
+    @Benchmark
+    public long render() throws Exception {
+        ServletResponseContent responseContent;
+        if (mStreaming) {
+            responseContent = new StreamingXmlDocumentServletResponseContent(mTurn.getVoiceXmlDocument(mDialogueContext),
+                                                                            VOICE_XML_MIME_TYPE);
+        } else {
+            responseContent = new XmlDocumentServletResponseContent(mTurn.getVoiceXmlDocument(mDialogueContext),
+                                                                    VOICE_XML_MIME_TYPE);
+        }
+        responseContent.writeTo(mOutputStream);
+        return mOutputStream.mCount;
+    }
+
+    static VoiceXmlDocumentTurn createTurn(String turnType) {
+        if ("message".equals(turnType))
+            return OutputTurns.message("message")
+                              .addAudioItem(new SpeechSynthesis("Welcome to the automated service. "
+                                                                + "Calls may be recorded for quality purposes."))
+                              .addAudioItem(AudioFile.fromLocation("http://server/audio/menu.wav"))
+                              .build();
+
+        if ("interaction".equals(turnType)) {
+            DtmfRecognition dtmfRecognition = new DtmfRecognition(new GrammarReference("builtin:dtmf/digits?length=4"));
+            SpeechRecognition speechRecognition = new SpeechRecognition(new GrammarReference("http://server/grammars/menu.grxml"),
+                                                                        new InlineStringGrammar("#ABNF 1.0; root $yesno; $yesno = yes | no;"));
+            return OutputTurns.interaction("interaction")
+                              .addPrompt(dtmfRecognition,
+                                         speechRecognition,
+                                         new SpeechSynthesis("Say or enter your four digit code."))
+                              .build(dtmfRecognition, speechRecognition, Duration.seconds(5));
+        }
+
+        if ("script".equals(turnType))
+            return OutputTurns.script("script")
+                              .addVariableString("language", "en-US")
+                              .addVariableExpression("now", "new Date().getTime()")
+                              .setCode("var total = 0; for (var i = 0; i < 10; i++) { total += i; }")
+                              .build();
+
+        if ("subdialogue".equals(turnType))
+            return OutputTurns.subdialogueCall("subdialogue")
+                              .uri("http://server/subdialogue.vxml")
+                              .addSubmitParameterString("account", "12345")
+                              .addSubmitParameterExpression("language", "session.language")
+                              .build();
+
+        if ("transfer".equals(turnType)) {
+            BridgeTransfer.Builder builder = OutputTurns.bridgeTransfer("transfer");
+            builder.setMaximumDuration(Duration.minutes(30));
+            builder.setConnectTimeout(Duration.seconds(20));
+            builder.setDtmfRecognition(new DtmfRecognition(new GrammarReference("builtin:dtmf/digits?length=1")));
+            builder.setDestination("tel:+15145551234");
+            return builder.build();
+        }
+
+        if ("exit".equals(turnType)) return new Exit("exit");
+
+        throw new IllegalArgumentException("Unknown turn type: " + turnType);
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        private long mCount;
+
+        @Override
+        public void write(int b) {
+            mCount++;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            mCount += length;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.servlet;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import javax.servlet.*;
+import javax.servlet.http.*;
+
+import org.junit.*;
+
+import com.nuecho.rivr.core.dialogue.*;
+import com.nuecho.rivr.core.servlet.*;
+import com.nuecho.rivr.core.servlet.admission.*;
+import com.nuecho.rivr.core.servlet.session.*;
+import com.nuecho.rivr.core.util.*;
+import com.nuecho.rivr.voicexml.dialogue.*;
+import com.nuecho.rivr.voicexml.turn.first.*;
+import com.nuecho.rivr.voicexml.turn.input.*;
+import com.nuecho.rivr.voicexml.turn.last.*;
+import com.nuecho.rivr.voicexml.turn.output.*;
+import com.nuecho.rivr.voicexml.turn.output.audio.*;
+
+/**
+ * @author Nu Echo Inc.
+ */
+public final class AsynchronousRequestProcessingTest {
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private final CountDownLatch mDialogueRelease = new CountDownLatch(1);
+    private volatile boolean mDialogueBlocked;
+    private volatile boolean mDialogueFailed;
+    private volatile boolean mRenderingFailed;
+    private TestServlet mServlet;
+
+    @Before
+    public void setUp() throws Exception {
+        mServlet = new TestServlet();
+        mServlet.init(createServletConfig());
+    }
+
+    @After
+    public void tearDown() {
+        mDialogueRelease.countDown();
+        mServlet.destroy();
+    }
+
+    @Test
+    public void stepIsRenderedWhenItCompletes() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/").setAsyncSupported(true);
+        MockHttpServletResponse response = service(request);
+
+        assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+        assertTrue(response.getBodyAsString(), response.getBodyAsString().contains("Hello"));
+        assertEquals(1, mServlet.getDialogueAdmissionController().getActiveDialogues());
+    }
+
+    @Test
+    public void dialogueErrorIsRendered() throws Exception {
+        mDialogueFailed = true;
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/").setAsyncSupported(true);
+        MockHttpServletResponse response = service(request);
+
+        assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+        assertTrue(response.getBodyAsString(), response.getBodyAsString().contains("error"));
+    }
+
+    @Test
+    public void renderingFailureOfFirstTurnStopsTheDialogue() throws Exception {
+        mRenderingFailed = true;
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/").setAsyncSupported(true);
+        MockHttpServletResponse response = service(request);
+
+        assertEquals(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, response.getStatus());
+        assertEquals(0, mServlet.getDialogueAdmissionController().getActiveDialogues());
+    }
+
+    @Test
+    public void timeoutRendersErrorOnlyOnce() throws Exception {
+        mDialogueBlocked = true;
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/").setAsyncSupported(true);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        mServlet.service(request.createRequest(), response.createResponse());
+        assertTrue(request.isAsyncStarted());
+        assertEquals(0, response.getBody().length);
+
+        request.fireTimeout();
+        assertTrue(request.awaitAsyncCompletion(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        String timeoutResponse = response.getBodyAsString();
+        assertTrue(timeoutResponse, timeoutResponse.contains("error"));
+
+        mDialogueRelease.countDown();
+        Thread.sleep(100);
+        assertEquals(timeoutResponse, response.getBodyAsString());
+    }
+
+    private MockHttpServletResponse service(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        mServlet.service(request.createRequest(), response.createResponse());
+        assertTrue(request.isAsyncStarted());
+        assertTrue(request.awaitAsyncCompletion(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        return response;
+    }
+
+    private static ServletConfig createServletConfig() {
+        final ServletContext servletContext = (ServletContext) Proxy.newProxyInstance(AsynchronousRequestProcessingTest.class.getClassLoader(),
+                                                                                      new Class<?>[] {ServletContext.class},
+                                                                                      new InvocationHandler() {
+                                                                                          @Override
+                                                                                          public Object invoke(Object proxy,
+                                                                                                               Method method,
+                                                                                                               Object[] arguments) {
+                                                                                              if (method.getName()
+                                                                                                        .equals("getInitParameterNames")) return Collections.enumeration(Collections.<String> emptyList());
+                                                                                              return null;
+                                                                                          }
+                                                                                      });
+        return (ServletConfig) Proxy.newProxyInstance(AsynchronousRequestProcessingTest.class.getClassLoader(),
+                                                      new Class<?>[] {ServletConfig.class},
+                                                      new InvocationHandler() {
+                                                          @Override
+                                                          public Object invoke(Object proxy,
+                                                                               Method method,
+                                                                               Object[] arguments) {
+                                                              String name = method.getName();
+                                                              if (name.equals("getServletContext")) return servletContext;
+                                                              if (name.equals("getServletName")) return "dialogue";
+                                                              if (name.equals("getInitParameterNames")) return Collections.enumeration(Collections.<String> emptyList());
+                                                              return null;
+                                                          }
+                                                      });
+    }
+
+    private final class TestServlet extends VoiceXmlDialogueServlet {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void initializeVoiceXmlDialogueServlet() {
+            setAsynchronousDialogueChannelEnabled(true);
+            setAsynchronousRequestProcessingEnabled(true);
+            setDialogueAdmissionController(new DialogueAdmissionController(1, 0, Duration.ZERO));
+            setDialogueFactory(new SimpleVoiceXmlDialogueFactory(new VoiceXmlDialogue() {
+                @Override
+                public VoiceXmlLastTurn run(VoiceXmlFirstTurn firstTurn, VoiceXmlDialogueContext context)
+                        throws Exception {
+                    if (mDialogueFailed) throw new IllegalStateException("Dialogue failed.");
+                    if (mDialogueBlocked) {
+                        mDialogueRelease.await();
+                    }
+                    DialogueUtils.doTurn(OutputTurns.message("hello")
+                                                    .addAudioItem(new SpeechSynthesis("Hello"))
+                                                    .build(), context);
+                    return new Exit("exit");
+                }
+            }));
+        }
+
+        @Override
+        protected void renderOutputTurn(VoiceXmlOutputTurn outputTurn,
+                                        HttpServletRequest request,
+                                        HttpServletResponse response,
+                                        Session<VoiceXmlInputTurn, VoiceXmlOutputTurn, VoiceXmlFirstTurn, VoiceXmlLastTurn, VoiceXmlDialogueContext> session)
+                throws IOException, StepRendererException {
+            if (mRenderingFailed) throw new StepRendererException("Rendering failed.");
+            super.renderOutputTurn(outputTurn, request, response, session);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.servlet;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+import javax.servlet.http.*;
+
+import org.junit.*;
+
+import com.nuecho.rivr.core.util.*;
+
+/**
+ * @author Nu Echo Inc.
+ */
+public final class AudioRepositoryTest {
+
+    private static final int LENGTH = 100;
+    private static final Duration MAX_AGE = Duration.minutes(1);
+
+    private final byte[] mContent = new byte[LENGTH];
+    private File mFolder;
+    private AudioRepository mAudioRepository;
+
+    @Before
+    public void setUp() throws Exception {
+        new Random(0).nextBytes(mContent);
+        mFolder = Files.createTempDirectory("audio-repository").toFile();
+        File directory = new File(mFolder, "audio");
+        assertTrue(directory.mkdir());
+        write(new File(directory, "prompt.wav"), mContent);
+        write(new File(mFolder, "secret.wav"), mContent);
+        mAudioRepository = new AudioRepository(directory);
+    }
+
+    @After
+    public void tearDown() {
+        delete(mFolder);
+    }
+
+    @Test
+    public void fileIsSent() throws Exception {
+        MockHttpServletResponse response = send("prompt.wav", new MockHttpServletRequest("GET", "/audio/prompt.wav"));
+
+        assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+        assertArrayEquals(mContent, response.getBody());
+        assertEquals("audio/x-wav", response.getContentType());
+        assertEquals(String.valueOf(LENGTH), response.getHeader("Content-Length"));
+        assertEquals("bytes", response.getHeader("Accept-Ranges"));
+        assertNotNull(response.getHeader("ETag"));
+    }
+
+    @Test
+    public void rangesAreSent() throws Exception {
+        assertRange("bytes=10-19", 10, 19);
+        assertRange("bytes=90-", 90, 99);
+        assertRange("bytes=-10", 90, 99);
+        assertRange("bytes=95-200", 95, 99);
+    }
+
+    @Test
+    public void rangesAreSentFromUncachedFiles() throws Exception {
+        mAudioRepository.setCacheSize(0);
+        assertRange("bytes=10-19", 10, 19);
+        assertEquals(0, mAudioRepository.getCachedSize());
+    }
+
+    @Test
+    public void unsatisfiableRangeIsRefused() throws Exception {
+        MockHttpServletResponse response = send("prompt.wav", new MockHttpServletRequest("GET", "/audio/prompt.wav").setHeader("Range",
+                                                                                                                             "bytes=100-"));
+
+        assertEquals(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE, response.getStatus());
+        assertEquals("bytes */" + LENGTH, response.getHeader("Content-Range"));
+        assertEquals(0, response.getBody().length);
+    }
+
+    @Test
+    public void malformedOrMultipleRangesAreIgnored() throws Exception {
+        for (String range : new String[] {"bytes=0-9,20-29", "bytes=20-10", "items=0-9", "bytes=a-b"}) {
+            MockHttpServletResponse response = send("prompt.wav",
+                                                    new MockHttpServletRequest("GET", "/audio/prompt.wav").setHeader("Range",
+                                                                                                                     range));
+            assertEquals(range, HttpServletResponse.SC_OK, response.getStatus());
+            assertArrayEquals(range, mContent, response.getBody());
+        }
+    }
+
+    @Test
+    public void rangeIsSentOnlyIfTheFileIsUnchanged() throws Exception {
+        MockHttpServletResponse full = send("prompt.wav", new MockHttpServletRequest("GET", "/audio/prompt.wav"));
+        String eTag = full.getHeader("ETag");
+        String lastModified = full.getHeader("Last-Modified");
+
+        for (String ifRange : new String[] {eTag, lastModified}) {
+            MockHttpServletResponse response = send("prompt.wav",
+                                                    new MockHttpServletRequest("GET", "/audio/prompt.wav").setHeader("Range",
+                                                                                                                     "bytes=10-19")
+                                                                                                          .setHeader("If-Range",
+                                                                                                                     ifRange));
+            assertEquals(ifRange, HttpServletResponse.SC_PARTIAL_CONTENT, response.getStatus());
+        }
+
+        String[] changed = {"\"other\"", String.valueOf(Long.parseLong(lastModified) - 1000)};
+        for (String ifRange : changed) {
+            MockHttpServletResponse response = send("prompt.wav",
+                                                    new MockHttpServletRequest("GET", "/audio/prompt.wav").setHeader("Range",
+                                                                                                                     "bytes=10-19")
+                                                                                                          .setHeader("If-Range",
+                                                                                                                     ifRange));
+            assertEquals(ifRange, HttpServletResponse.SC_OK, response.getStatus());
+            assertArrayEquals(ifRange, mContent, response.getBody());
+        }
+    }
+
+    @Test
+    public void unchangedFileIsNotModified() throws Exception {
+        String eTag = send("prompt.wav", new MockHttpServletRequest("GET", "/audio/prompt.wav")).getHeader("ETag");
+        MockHttpServletResponse response = send("prompt.wav", new MockHttpServletRequest("GET", "/audio/prompt.wav").setHeader("If-None-Match",
+                                                                                                                             eTag));
+
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.getStatus());
+        assertEquals(0, response.getBody().length);
+    }
+
+    @Test
+    public void pathsOutsideOfTheDirectoryAreRejected() throws Exception {
+        String[] paths = {"../secret.wav",
+                          "sub/../../secret.wav",
+                          "/secret.wav",
+                          "..\\secret.wav",
+                          "prompt.wav\0.txt",
+                          "",
+                          "missing.wav",
+                          "."};
+        for (String path : paths) {
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            assertFalse(path,
+                        mAudioRepository.send(new MockHttpServletRequest("GET", "/audio/" + path).createRequest(),
+                                              response.createResponse(),
+                                              path,
+                                              null,
+                                              MAX_AGE));
+            assertEquals(path, 0, response.getBody().length);
+        }
+    }
+
+    private void assertRange(String range, int first, int last) throws Exception {
+        MockHttpServletResponse response = send("prompt.wav", new MockHttpServletRequest("GET", "/audio/prompt.wav").setHeader("Range",
+                                                                                                                             range));
+
+        assertEquals(range, HttpServletResponse.SC_PARTIAL_CONTENT, response.getStatus());
+        assertEquals(range, "bytes " + first + "-" + last + "/" + LENGTH, response.getHeader("Content-Range"));
+        assertEquals(range, String.valueOf(last - first + 1), response.getHeader("Content-Length"));
+        assertArrayEquals(range, Arrays.copyOfRange(mContent, first, last + 1), response.getBody());
+    }
+
+    private MockHttpServletResponse send(String path, MockHttpServletRequest request) throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertTrue(mAudioRepository.send(request.createRequest(), response.createResponse(), path, null, MAX_AGE));
+        return response;
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static void write(File file, byte[] content) throws IOException {
+        OutputStream outputStream = new FileOutputStream(file);
+        try {
+            outputStream.write(content);
+        } finally {
+            outputStream.close();
+        }
+    }
+}
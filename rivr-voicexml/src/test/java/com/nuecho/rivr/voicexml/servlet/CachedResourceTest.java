@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.servlet;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+
+import javax.servlet.http.*;
+
+import org.junit.*;
+
+import com.nuecho.rivr.core.util.*;
+
+/**
+ * @author Nu Echo Inc.
+ */
+public final class CachedResourceTest {
+
+    private static final long LAST_MODIFIED = 1380000000000L;
+    private static final Duration MAX_AGE = Duration.minutes(1);
+
+    private final byte[] mContent = createCompressibleContent();
+    private final CachedResource mResource = new CachedResource(mContent, "text/javascript", LAST_MODIFIED + 123);
+
+    @Test
+    public void contentIsSentWithValidators() throws Exception {
+        MockHttpServletResponse response = send(new MockHttpServletRequest("GET", "/rivr.js"), MAX_AGE);
+
+        assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+        assertArrayEquals(mContent, response.getBody());
+        assertEquals(mContent.length, response.getContentLength());
+        assertEquals("text/javascript", response.getContentType());
+        assertEquals(mResource.getETag(), response.getHeader("ETag"));
+        assertEquals(String.valueOf(LAST_MODIFIED), response.getHeader("Last-Modified"));
+        assertEquals("private, max-age=60", response.getHeader("Cache-Control"));
+        assertEquals("Accept-Encoding", response.getHeader("Vary"));
+        assertNull(response.getHeader("Content-Encoding"));
+    }
+
+    @Test
+    public void contentIsCompressedWhenGzipIsAccepted() throws Exception {
+        MockHttpServletResponse response = send(new MockHttpServletRequest("GET", "/rivr.js").setHeader("Accept-Encoding",
+                                                                                                        "deflate, gzip"),
+                                                MAX_AGE);
+
+        assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+        assertEquals("gzip", response.getHeader("Content-Encoding"));
+        assertEquals("Accept-Encoding", response.getHeader("Vary"));
+        assertTrue(response.getBody().length < mContent.length);
+        assertEquals(response.getBody().length, response.getContentLength());
+        assertArrayEquals(mContent, gunzip(response.getBody()));
+        assertFalse(mResource.getETag().equals(response.getHeader("ETag")));
+    }
+
+    @Test
+    public void gzipWithZeroQualityIsNotUsed() throws Exception {
+        MockHttpServletResponse response = send(new MockHttpServletRequest("GET", "/rivr.js").setHeader("Accept-Encoding",
+                                                                                                        "gzip;q=0, identity"),
+                                                MAX_AGE);
+
+        assertNull(response.getHeader("Content-Encoding"));
+        assertArrayEquals(mContent, response.getBody());
+    }
+
+    @Test
+    public void incompressibleContentIsSentAsIs() throws Exception {
+        byte[] content = new byte[64];
+        new Random(0).nextBytes(content);
+        CachedResource resource = new CachedResource(content, "application/octet-stream");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        resource.send(new MockHttpServletRequest("GET", "/data").setHeader("Accept-Encoding", "gzip").createRequest(),
+                      response.createResponse(),
+                      MAX_AGE);
+
+        assertNull(response.getHeader("Content-Encoding"));
+        assertNull(response.getHeader("Vary"));
+        assertArrayEquals(content, response.getBody());
+    }
+
+    @Test
+    public void matchingEntityTagIsNotModified() throws Exception {
+        MockHttpServletResponse compressed = send(new MockHttpServletRequest("GET", "/rivr.js").setHeader("Accept-Encoding",
+                                                                                                          "gzip"),
+                                                  MAX_AGE);
+        String[] eTags = {mResource.getETag(),
+                          "W/" + mResource.getETag(),
+                          "\"other\", " + compressed.getHeader("ETag"),
+                          "*"};
+
+        for (String eTag : eTags) {
+            MockHttpServletResponse response = send(new MockHttpServletRequest("GET", "/rivr.js").setHeader("If-None-Match",
+                                                                                                            eTag),
+                                                    MAX_AGE);
+            assertEquals(eTag, HttpServletResponse.SC_NOT_MODIFIED, response.getStatus());
+            assertEquals(0, response.getBody().length);
+            assertEquals(mResource.getETag(), response.getHeader("ETag"));
+            assertEquals("Accept-Encoding", response.getHeader("Vary"));
+        }
+
+        MockHttpServletResponse response = send(new MockHttpServletRequest("GET", "/rivr.js").setHeader("If-None-Match",
+                                                                                                        "\"other\""),
+                                                MAX_AGE);
+        assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+    }
+
+    @Test
+    public void entityTagTakesPrecedenceOverModificationDate() throws Exception {
+        MockHttpServletResponse response = send(new MockHttpServletRequest("GET", "/rivr.js").setHeader("If-None-Match",
+                                                                                                        "\"other\"")
+                                                                                             .setHeader("If-Modified-Since",
+                                                                                                        String.valueOf(LAST_MODIFIED)),
+                                                MAX_AGE);
+
+        assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+    }
+
+    @Test
+    public void unchangedSinceDateIsNotModified() throws Exception {
+        MockHttpServletResponse notModified = send(new MockHttpServletRequest("GET", "/rivr.js").setHeader("If-Modified-Since",
+                                                                                                           String.valueOf(LAST_MODIFIED)),
+                                                   MAX_AGE);
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, notModified.getStatus());
+        assertEquals(0, notModified.getBody().length);
+
+        MockHttpServletResponse modified = send(new MockHttpServletRequest("GET", "/rivr.js").setHeader("If-Modified-Since",
+                                                                                                        String.valueOf(LAST_MODIFIED - 1000)),
+                                                MAX_AGE);
+        assertEquals(HttpServletResponse.SC_OK, modified.getStatus());
+    }
+
+    @Test
+    public void cacheControlFollowsMaxAge() throws Exception {
+        assertEquals("no-cache", send(new MockHttpServletRequest("GET", "/rivr.js"), Duration.ZERO).getHeader("Cache-Control"));
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        mResource.send(new MockHttpServletRequest("GET", "/rivr.js").createRequest(),
+                       response.createResponse(),
+                       Duration.days(365),
+                       true);
+        assertEquals("private, max-age=31536000, immutable", response.getHeader("Cache-Control"));
+    }
+
+    private MockHttpServletResponse send(MockHttpServletRequest request, Duration maxAge) throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        mResource.send(request.createRequest(), response.createResponse(), maxAge);
+        return response;
+    }
+
+    private static byte[] createCompressibleContent() {
+        StringBuilder builder = new StringBuilder();
+        for (int index = 0; index < 200; index++) {
+            builder.append("function f").append(index).append("() { return ").append(index).append("; }\n");
+        }
+        return builder.toString().getBytes();
+    }
+
+    private static byte[] gunzip(byte[] content) throws IOException {
+        InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(content));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int length;
+        while ((length = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, length);
+        }
+        return outputStream.toByteArray();
+    }
+}
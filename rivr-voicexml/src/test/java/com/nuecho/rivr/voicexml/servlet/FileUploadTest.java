@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.servlet;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.*;
+import org.slf4j.helpers.*;
+
+import com.nuecho.rivr.core.channel.*;
+import com.nuecho.rivr.core.servlet.*;
+import com.nuecho.rivr.voicexml.dialogue.*;
+import com.nuecho.rivr.voicexml.recording.*;
+import com.nuecho.rivr.voicexml.turn.input.*;
+
+/**
+ * @author Nu Echo Inc.
+ */
+public final class FileUploadTest {
+
+    private static final int SPOOL_THRESHOLD = 1000;
+    private static final String BOUNDARY = "boundary";
+
+    private File mSpoolDirectory;
+    private VoiceXmlInputTurnFactory mInputTurnFactory;
+
+    @Before
+    public void setUp() throws IOException {
+        mSpoolDirectory = Files.createTempDirectory("file-upload").toFile();
+        mInputTurnFactory = new VoiceXmlInputTurnFactory();
+        mInputTurnFactory.setSpoolDirectory(mSpoolDirectory);
+        mInputTurnFactory.setSpoolThreshold(SPOOL_THRESHOLD);
+    }
+
+    @After
+    public void tearDown() {
+        for (File file : mSpoolDirectory.listFiles()) {
+            file.delete();
+        }
+        mSpoolDirectory.delete();
+    }
+
+    @Test
+    public void uploadsUpToTheThresholdStayInMemory() throws Exception {
+        byte[] content = createContent(SPOOL_THRESHOLD);
+        MockHttpServletRequest request = createRecordingRequest(content);
+        FileUpload fileUpload = createInputTurn(request).getRecordingInfo().getFile();
+
+        assertFalse(fileUpload.isSpooled());
+        assertArrayEquals(content, fileUpload.getContent());
+        assertEquals(0, mSpoolDirectory.list().length);
+        assertNull(request.createRequest().getAttribute(VoiceXmlInputTurnFactory.SPOOLED_FILE_UPLOADS_ATTRIBUTE));
+    }
+
+    @Test
+    public void largerUploadsAreSpooled() throws Exception {
+        byte[] content = createContent(SPOOL_THRESHOLD + 1);
+        MockHttpServletRequest request = createRecordingRequest(content);
+        FileUpload fileUpload = createInputTurn(request).getRecordingInfo().getFile();
+
+        assertTrue(fileUpload.isSpooled());
+        assertEquals(content.length, fileUpload.getSize());
+        assertArrayEquals(content, read(fileUpload));
+        assertArrayEquals(content, fileUpload.getContent());
+        assertEquals(1, mSpoolDirectory.list().length);
+        assertEquals(Collections.singletonList(fileUpload),
+                     request.createRequest().getAttribute(VoiceXmlInputTurnFactory.SPOOLED_FILE_UPLOADS_ATTRIBUTE));
+
+        fileUpload.release();
+        assertTrue(fileUpload.isReleased());
+        assertEquals(0, mSpoolDirectory.list().length);
+        try {
+            fileUpload.getInputStream();
+            fail("IllegalStateException expected.");
+        } catch (IllegalStateException exception) {
+            // expected
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void releaseIsDeferredWhileTheRecordingIsProcessed() throws Exception {
+        final CountDownLatch processingRelease = new CountDownLatch(1);
+        RecordingProcessor recordingProcessor = new RecordingProcessor(new RecordingProcessingStage() {
+            @Override
+            public void process(ProcessedRecording recording) throws Exception {
+                processingRelease.await();
+                read(recording.getFile());
+            }
+        });
+        mInputTurnFactory.setRecordingProcessor(recordingProcessor);
+
+        try {
+            RecordingInfo recordingInfo = createInputTurn(createRecordingRequest(createContent(SPOOL_THRESHOLD * 2))).getRecordingInfo();
+            recordingInfo.getFile().release();
+            assertTrue(recordingInfo.getFile().isReleased());
+            assertEquals(1, mSpoolDirectory.list().length);
+
+            processingRelease.countDown();
+            recordingInfo.getProcessedRecording().toCompletableFuture().get();
+            assertEquals(0, mSpoolDirectory.list().length);
+        } finally {
+            recordingProcessor.shutdown();
+        }
+    }
+
+    @Test
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void uploadsAreReleasedWhenTheDialogueEnds() throws Exception {
+        final List<DialogueChannelListener> listeners = new ArrayList<DialogueChannelListener>();
+        InvocationHandler listenerRecorder = new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] arguments) {
+                if (method.getName().equals("addListener")) {
+                    listeners.add((DialogueChannelListener) arguments[0]);
+                }
+                return null;
+            }
+        };
+        DialogueChannel dialogueChannel = (DialogueChannel) Proxy.newProxyInstance(getClass().getClassLoader(),
+                                                                                   new Class<?>[] {DialogueChannel.class},
+                                                                                   listenerRecorder);
+        VoiceXmlDialogueContext dialogueContext = new VoiceXmlDialogueContext(dialogueChannel,
+                                                                              NOPLogger.NOP_LOGGER,
+                                                                              "dialogue",
+                                                                              "/context",
+                                                                              "/servlet");
+        FileUpload fileUpload = createSpooledFileUpload();
+        dialogueContext.addFileUpload(fileUpload);
+        assertFalse(fileUpload.isReleased());
+
+        for (DialogueChannelListener listener : listeners) {
+            listener.onStop(dialogueChannel);
+        }
+        assertTrue(fileUpload.isReleased());
+        assertEquals(0, mSpoolDirectory.list().length);
+
+        FileUpload lateFileUpload = createSpooledFileUpload();
+        dialogueContext.addFileUpload(lateFileUpload);
+        assertTrue(lateFileUpload.isReleased());
+        assertEquals(0, mSpoolDirectory.list().length);
+    }
+
+    private FileUpload createSpooledFileUpload() throws IOException {
+        File spoolFile = File.createTempFile("upload", ".tmp", mSpoolDirectory);
+        return new FileUpload("recording.wav", "audio/wav", spoolFile, 0, Collections.<String, String> emptyMap());
+    }
+
+    private VoiceXmlInputTurn createInputTurn(MockHttpServletRequest request) throws Exception {
+        return mInputTurnFactory.createInputTurn(request.createRequest(), null);
+    }
+
+    private static MockHttpServletRequest createRecordingRequest(byte[] content) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        Writer writer = new OutputStreamWriter(body, "US-ASCII");
+        writer.write("--" + BOUNDARY + "\r\n");
+        writer.write("Content-Disposition: form-data; name=\"inputTurn\"\r\n\r\n");
+        writer.write("{\"recordingMetaData\":{\"duration\":1000}}\r\n");
+        writer.write("--" + BOUNDARY + "\r\n");
+        writer.write("Content-Disposition: form-data; name=\"recording\"; filename=\"recording.wav\"\r\n");
+        writer.write("Content-Type: audio/wav\r\n\r\n");
+        writer.flush();
+        body.write(content);
+        writer.write("\r\n--" + BOUNDARY + "--\r\n");
+        writer.flush();
+        return new MockHttpServletRequest("POST", "/dialogue/0/input").setBody("multipart/form-data; boundary="
+                                                                               + BOUNDARY, body.toByteArray());
+    }
+
+    private static byte[] createContent(int size) {
+        byte[] content = new byte[size];
+        new Random(0).nextBytes(content);
+        return content;
+    }
+
+    private static byte[] read(FileUpload fileUpload) throws IOException {
+        InputStream inputStream = fileUpload.getInputStream();
+        try {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int length;
+            while ((length = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, length);
+            }
+            return outputStream.toByteArray();
+        } finally {
+            inputStream.close();
+        }
+    }
+}
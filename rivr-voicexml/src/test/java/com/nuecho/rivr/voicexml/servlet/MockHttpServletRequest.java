@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.servlet;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import javax.servlet.*;
+import javax.servlet.http.*;
+
+/**
+ * {@link HttpServletRequest} backed by maps, created with
+ * {@link #createRequest()}. Asynchronous processing is simulated by an
+ * {@link AsyncContext} whose timeout is fired by {@link #fireTimeout()}.
+ * 
+ * @author Nu Echo Inc.
+ */
+public final class MockHttpServletRequest implements InvocationHandler {
+
+    private final Map<String, String> mHeaders = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+    private final Map<String, String> mParameters = new LinkedHashMap<String, String>();
+    private final Map<String, Object> mAttributes = new HashMap<String, Object>();
+    private final String mMethod;
+    private final String mPathInfo;
+    private boolean mAsyncSupported;
+    private String mContentType;
+    private byte[] mBody = new byte[0];
+
+    private final List<AsyncListener> mAsyncListeners = new CopyOnWriteArrayList<AsyncListener>();
+    private final CountDownLatch mAsyncCompletion = new CountDownLatch(1);
+    private AsyncContext mAsyncContext;
+
+    public MockHttpServletRequest(String method, String pathInfo) {
+        mMethod = method;
+        mPathInfo = pathInfo;
+    }
+
+    public MockHttpServletRequest setHeader(String name, String value) {
+        mHeaders.put(name, value);
+        return this;
+    }
+
+    public MockHttpServletRequest setParameter(String name, String value) {
+        mParameters.put(name, value);
+        return this;
+    }
+
+    public MockHttpServletRequest setBody(String contentType, byte[] body) {
+        mContentType = contentType;
+        mBody = body;
+        return this;
+    }
+
+    public MockHttpServletRequest setAsyncSupported(boolean asyncSupported) {
+        mAsyncSupported = asyncSupported;
+        return this;
+    }
+
+    public HttpServletRequest createRequest() {
+        return (HttpServletRequest) Proxy.newProxyInstance(getClass().getClassLoader(),
+                                                           new Class<?>[] {HttpServletRequest.class},
+                                                           this);
+    }
+
+    public boolean isAsyncStarted() {
+        return mAsyncContext != null;
+    }
+
+    public boolean awaitAsyncCompletion(long timeout, TimeUnit unit) throws InterruptedException {
+        return mAsyncCompletion.await(timeout, unit);
+    }
+
+    public void fireTimeout() throws Exception {
+        for (AsyncListener listener : mAsyncListeners) {
+            listener.onTimeout(new AsyncEvent(mAsyncContext));
+        }
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] arguments) throws Exception {
+        String name = method.getName();
+        if (name.equals("getMethod")) return mMethod;
+        if (name.equals("getPathInfo")) return mPathInfo;
+        if (name.equals("getContextPath")) return "/context";
+        if (name.equals("getServletPath")) return "/servlet";
+        if (name.equals("getProtocol")) return "HTTP/1.1";
+        if (name.equals("getHeader")) return mHeaders.get(arguments[0]);
+        if (name.equals("getHeaderNames")) return Collections.enumeration(mHeaders.keySet());
+        if (name.equals("getDateHeader")) return getDateHeader((String) arguments[0]);
+        if (name.equals("getParameter")) return mParameters.get(arguments[0]);
+        if (name.equals("getParameterNames")) return Collections.enumeration(mParameters.keySet());
+        if (name.equals("getContentType")) return mContentType;
+        if (name.equals("getContentLength")) return mBody.length;
+        if (name.equals("getInputStream")) return createInputStream();
+        if (name.equals("getAttribute")) return mAttributes.get(arguments[0]);
+        if (name.equals("setAttribute")) return mAttributes.put((String) arguments[0], arguments[1]);
+        if (name.equals("removeAttribute")) return mAttributes.remove(arguments[0]);
+        if (name.equals("isAsyncSupported")) return mAsyncSupported;
+        if (name.equals("isAsyncStarted")) return isAsyncStarted();
+        if (name.equals("startAsync")) return startAsync();
+        if (name.equals("getAsyncContext")) return mAsyncContext;
+        if (method.getReturnType() == boolean.class) return false;
+        if (method.getReturnType() == int.class) return -1;
+        if (method.getReturnType() == long.class) return -1L;
+        return null;
+    }
+
+    private ServletInputStream createInputStream() {
+        final InputStream inputStream = new ByteArrayInputStream(mBody);
+        return new ServletInputStream() {
+            @Override
+            public int read() throws IOException {
+                return inputStream.read();
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) throws IOException {
+                return inputStream.read(bytes, offset, length);
+            }
+        };
+    }
+
+    private long getDateHeader(String name) {
+        String value = mHeaders.get(name);
+        return value == null ? -1 : Long.parseLong(value);
+    }
+
+    private AsyncContext startAsync() {
+        if (!mAsyncSupported) throw new IllegalStateException("Asynchronous processing is not supported.");
+
+        mAsyncContext = (AsyncContext) Proxy.newProxyInstance(getClass().getClassLoader(),
+                                                              new Class<?>[] {AsyncContext.class},
+                                                              new InvocationHandler() {
+                                                                  @Override
+                                                                  public Object invoke(Object proxy,
+                                                                                       Method method,
+                                                                                       Object[] arguments) {
+                                                                      String name = method.getName();
+                                                                      if (name.equals("addListener")) {
+                                                                          mAsyncListeners.add((AsyncListener) arguments[0]);
+                                                                      } else if (name.equals("complete")) {
+                                                                          mAsyncCompletion.countDown();
+                                                                      }
+                                                                      return null;
+                                                                  }
+                                                              });
+        return mAsyncContext;
+    }
+}
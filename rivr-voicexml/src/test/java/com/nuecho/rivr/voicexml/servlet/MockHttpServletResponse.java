@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.servlet;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.util.*;
+
+import javax.servlet.*;
+import javax.servlet.http.*;
+
+/**
+ * {@link HttpServletResponse} recording the status, the headers and the body,
+ * created with {@link #createResponse()}.
+ * 
+ * @author Nu Echo Inc.
+ */
+public final class MockHttpServletResponse implements InvocationHandler {
+
+    private final Map<String, String> mHeaders = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+    private final ByteArrayOutputStream mBody = new ByteArrayOutputStream();
+    private int mStatus = HttpServletResponse.SC_OK;
+    private String mContentType;
+    private int mContentLength = -1;
+
+    public HttpServletResponse createResponse() {
+        return (HttpServletResponse) Proxy.newProxyInstance(getClass().getClassLoader(),
+                                                            new Class<?>[] {HttpServletResponse.class},
+                                                            this);
+    }
+
+    public int getStatus() {
+        return mStatus;
+    }
+
+    public String getHeader(String name) {
+        return mHeaders.get(name);
+    }
+
+    public String getContentType() {
+        return mContentType;
+    }
+
+    public int getContentLength() {
+        return mContentLength;
+    }
+
+    public byte[] getBody() {
+        return mBody.toByteArray();
+    }
+
+    public String getBodyAsString() throws UnsupportedEncodingException {
+        return mBody.toString("UTF-8");
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] arguments) {
+        String name = method.getName();
+        if (name.equals("setStatus") || name.equals("sendError")) {
+            mStatus = (Integer) arguments[0];
+        } else if (name.matches("(set|add)(Date|Int)?Header")) {
+            mHeaders.put((String) arguments[0], String.valueOf(arguments[1]));
+        } else if (name.equals("setContentType")) {
+            mContentType = (String) arguments[0];
+        } else if (name.equals("setContentLength")) {
+            mContentLength = (Integer) arguments[0];
+        }
+
+        if (name.equals("getHeader")) return getHeader((String) arguments[0]);
+        if (name.equals("containsHeader")) return mHeaders.containsKey(arguments[0]);
+        if (name.equals("getStatus")) return mStatus;
+        if (name.equals("getContentType")) return mContentType;
+        if (name.equals("getOutputStream")) return createOutputStream();
+        if (method.getReturnType() == boolean.class) return false;
+        return null;
+    }
+
+    private ServletOutputStream createOutputStream() {
+        return new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                mBody.write(b);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) {
+                mBody.write(bytes, offset, length);
+            }
+        };
+    }
+}
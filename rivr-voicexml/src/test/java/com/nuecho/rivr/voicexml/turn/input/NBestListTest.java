@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.turn.input;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import javax.json.*;
+
+import org.junit.*;
+
+import com.nuecho.rivr.voicexml.util.json.*;
+
+/**
+ * @author Nu Echo Inc.
+ */
+public final class NBestListTest {
+
+    private static final String RESULT = "[{\"confidence\":0.9,\"utterance\":\"to boston\",\"inputmode\":\"voice\","
+                                         + "\"interpretation\":{\"city\":\"BOS\"}},"
+                                         + " {\"confidence\":0.4,\"utterance\":\"to austin\",\"inputmode\":\"voice\","
+                                         + "\"interpretation\":{\"city\":\"AUS\"}},"
+                                         + " {\"utterance\":\"1\",\"inputmode\":\"dtmf\"}]";
+
+    @Test
+    public void hypothesesAreReadFromTheLazyResult() {
+        LazyJsonValue inputTurn = LazyJsonValue.parse("{\"recognition\":{\"result\":" + RESULT + "}}",
+                                                      "recognition/result");
+        RecognitionInfo recognitionInfo = new RecognitionInfo(inputTurn.getMember("recognition").getMember("result"),
+                                                              null);
+        NBestList nBestList = recognitionInfo.getNBestList();
+
+        assertNBestList(nBestList);
+        assertSame(nBestList, recognitionInfo.getNBestList());
+        assertEquals(RESULT, nBestList.toString());
+    }
+
+    @Test
+    public void hypothesesAreReadFromTheDecodedResult() {
+        JsonArray recognitionResult = Json.createReader(new StringReader(RESULT)).readArray();
+        NBestList nBestList = new NBestList(recognitionResult);
+
+        assertNBestList(nBestList);
+        assertEquals(recognitionResult, nBestList.getRecognitionResult());
+    }
+
+    @Test
+    public void emptyResult() {
+        NBestList nBestList = new NBestList(LazyJsonValue.parse("{\"result\":[ ]}", "result").getMember("result"));
+        assertTrue(nBestList.isEmpty());
+        assertNull(nBestList.getTopHypothesis());
+        assertFalse(nBestList.isTopHypothesisAccepted(0));
+        assertFalse(nBestList.iterator().hasNext());
+    }
+
+    private static void assertNBestList(NBestList nBestList) {
+        assertEquals(3, nBestList.size());
+
+        RecognitionHypothesis topHypothesis = nBestList.getTopHypothesis();
+        assertEquals(0.9, topHypothesis.getConfidence(), 0);
+        assertEquals("to boston", topHypothesis.getUtterance());
+        assertEquals("voice", topHypothesis.getInputMode());
+        assertEquals("BOS", ((JsonObject) topHypothesis.getInterpretation()).getString("city"));
+
+        RecognitionHypothesis dtmfHypothesis = nBestList.getHypothesis(2);
+        assertTrue(Double.isNaN(dtmfHypothesis.getConfidence()));
+        assertEquals("dtmf", dtmfHypothesis.getInputMode());
+        assertEquals(JsonValue.NULL, dtmfHypothesis.getInterpretation());
+
+        assertTrue(nBestList.isTopHypothesisAccepted(0.5));
+        assertEquals(2, nBestList.countAccepted(0.3));
+        List<RecognitionHypothesis> acceptedHypotheses = nBestList.getAcceptedHypotheses(0.5);
+        assertEquals(1, acceptedHypotheses.size());
+        assertEquals(0, acceptedHypotheses.get(0).getIndex());
+
+        int count = 0;
+        for (RecognitionHypothesis hypothesis : nBestList) {
+            assertEquals(count++, hypothesis.getIndex());
+        }
+        assertEquals(3, count);
+    }
+}
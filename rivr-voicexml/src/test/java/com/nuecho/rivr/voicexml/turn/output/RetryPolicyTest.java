@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.turn.output;
+
+import static com.nuecho.rivr.voicexml.rendering.voicexml.VoiceXmlDomUtil.*;
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+import org.slf4j.helpers.*;
+import org.w3c.dom.*;
+
+import com.nuecho.rivr.core.util.*;
+import com.nuecho.rivr.voicexml.dialogue.*;
+import com.nuecho.rivr.voicexml.turn.output.Interaction.RetryPolicy;
+import com.nuecho.rivr.voicexml.turn.output.audio.*;
+import com.nuecho.rivr.voicexml.turn.output.grammar.*;
+
+/**
+ * @author Nu Echo Inc.
+ */
+public final class RetryPolicyTest {
+
+    private VoiceXmlDialogueContext mDialogueContext;
+
+    @Before
+    public void createDialogueContext() {
+        mDialogueContext = new VoiceXmlDialogueContext(null, NOPLogger.NOP_LOGGER, "dialogue", "/context", "/servlet");
+    }
+
+    @Test
+    public void escalatingRepromptsAndExhaustedHandler() throws Exception {
+        RetryPolicy retryPolicy = new RetryPolicy(3, 2);
+        retryPolicy.addNoInputReprompt(new SpeechSynthesis("noinput one"));
+        retryPolicy.addNoInputReprompt(new SpeechSynthesis("noinput two"));
+        retryPolicy.addNoMatchReprompt(new SpeechSynthesis("nomatch one"));
+
+        List<Element> noInputElements = getHandlers(render(retryPolicy), NOINPUT_ELEMENT);
+        assertEquals(3, noInputElements.size());
+        assertHandler(noInputElements.get(0), 1, "noinput one");
+        assertHandler(noInputElements.get(1), 2, "noinput two");
+        assertExhaustedHandler(noInputElements.get(2), 4);
+
+        List<Element> noMatchElements = getHandlers(render(retryPolicy), NOMATCH_ELEMENT);
+        assertEquals(2, noMatchElements.size());
+        assertHandler(noMatchElements.get(0), 1, "nomatch one");
+        assertExhaustedHandler(noMatchElements.get(1), 3);
+    }
+
+    @Test
+    public void silentRetriesWithoutReprompts() throws Exception {
+        Element formElement = render(new RetryPolicy(2, 0));
+
+        List<Element> noInputElements = getHandlers(formElement, NOINPUT_ELEMENT);
+        assertEquals(2, noInputElements.size());
+        assertHandler(noInputElements.get(0), 1, "");
+        assertExhaustedHandler(noInputElements.get(1), 3);
+
+        assertTrue(getHandlers(formElement, NOMATCH_ELEMENT).isEmpty());
+    }
+
+    @Test
+    public void noHandlersWithoutPolicy() throws Exception {
+        Element formElement = render(null);
+        assertTrue(getHandlers(formElement, NOINPUT_ELEMENT).isEmpty());
+        assertTrue(getHandlers(formElement, NOMATCH_ELEMENT).isEmpty());
+    }
+
+    private Element render(RetryPolicy retryPolicy) throws Exception {
+        Interaction.Builder builder = OutputTurns.interaction("interaction");
+        builder.setRetryPolicy(retryPolicy);
+        builder.addPrompt(new SpeechSynthesis("prompt"));
+        DtmfRecognition dtmfRecognition = new DtmfRecognition(new GrammarReference("builtin:dtmf/digits?length=1"));
+        Interaction interaction = builder.build(dtmfRecognition, Duration.seconds(5));
+
+        Document document = interaction.getVoiceXmlDocument(mDialogueContext);
+        NodeList formElements = document.getElementsByTagName(FORM_ELEMENT);
+        for (int index = 0; index < formElements.getLength(); index++) {
+            Element formElement = (Element) formElements.item(index);
+            if (!SUBMIT_FORM_ID.equals(formElement.getAttribute(ID_ATTRIBUTE))
+                && formElement.getElementsByTagName(FIELD_ELEMENT).getLength() > 0) return formElement;
+        }
+        fail("No interaction form rendered");
+        return null;
+    }
+
+    private static List<Element> getHandlers(Element formElement, String eventElementName) {
+        List<Element> handlers = new ArrayList<Element>();
+        for (Node node = formElement.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node instanceof Element && eventElementName.equals(node.getNodeName())) {
+                handlers.add((Element) node);
+            }
+        }
+        return handlers;
+    }
+
+    private static void assertHandler(Element handlerElement, int count, String reprompt) {
+        assertEquals(Integer.toString(count), handlerElement.getAttribute(COUNT_ATTRIBUTE));
+        assertEquals(reprompt, handlerElement.getTextContent().trim());
+        assertEquals(0, handlerElement.getElementsByTagName(GOTO_ELEMENT).getLength());
+    }
+
+    private static void assertExhaustedHandler(Element handlerElement, int count) {
+        assertEquals(Integer.toString(count), handlerElement.getAttribute(COUNT_ATTRIBUTE));
+        assertEquals(1, handlerElement.getElementsByTagName(SCRIPT_ELEMENT).getLength());
+        Element gotoElement = (Element) handlerElement.getElementsByTagName(GOTO_ELEMENT).item(0);
+        assertEquals("#" + SUBMIT_FORM_ID, gotoElement.getAttribute(NEXT_ATTRIBUTE));
+    }
+}
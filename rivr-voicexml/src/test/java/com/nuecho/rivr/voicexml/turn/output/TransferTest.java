@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.turn.output;
+
+import static org.junit.Assert.*;
+
+import org.junit.*;
+import org.slf4j.helpers.*;
+import org.w3c.dom.*;
+
+import com.nuecho.rivr.core.util.*;
+import com.nuecho.rivr.voicexml.dialogue.*;
+import com.nuecho.rivr.voicexml.rendering.voicexml.*;
+import com.nuecho.rivr.voicexml.servlet.*;
+import com.nuecho.rivr.voicexml.turn.output.grammar.*;
+
+/**
+ * @author Nu Echo Inc.
+ */
+public final class TransferTest {
+
+    private static final String DESTINATION = "tel:+15145551234";
+
+    private VoiceXmlDialogueContext mDialogueContext;
+
+    @Before
+    public void createDialogueContext() {
+        mDialogueContext = new VoiceXmlDialogueContext(null, NOPLogger.NOP_LOGGER, "dialogue", "/context", "/servlet");
+    }
+
+    @Test
+    public void blindTransfer() throws Exception {
+        BlindTransfer.Builder builder = OutputTurns.blindTransfer("blind");
+        builder.setDestination(DESTINATION);
+        builder.setApplicationToApplication("aai-data");
+        Element transferElement = render(builder.build());
+
+        assertEquals("blind", transferElement.getAttribute(VoiceXmlDomUtil.TYPE_ATTRIBUTE));
+        assertEquals(DESTINATION, transferElement.getAttribute(VoiceXmlDomUtil.DEST_ATTRIBUTE));
+        assertEquals("aai-data", transferElement.getAttribute(VoiceXmlDomUtil.AAI_ATTRIBUTE));
+        assertEquals(1, transferElement.getElementsByTagName(VoiceXmlDomUtil.FILLED_ELEMENT).getLength());
+    }
+
+    @Test
+    public void bridgeTransfer() throws Exception {
+        BridgeTransfer.Builder builder = OutputTurns.bridgeTransfer("bridge");
+        builder.setMaximumDuration(Duration.minutes(5));
+        builder.setConnectTimeout(Duration.seconds(20));
+        builder.setTransferAudio("http://server/ringback.wav");
+        builder.setDtmfRecognition(new DtmfRecognition(new GrammarReference("builtin:dtmf/digits?length=1")));
+        builder.setDestination(DESTINATION);
+        Element transferElement = render(builder.build());
+
+        assertEquals("bridge", transferElement.getAttribute(VoiceXmlDomUtil.TYPE_ATTRIBUTE));
+        assertEquals(DESTINATION, transferElement.getAttribute(VoiceXmlDomUtil.DEST_ATTRIBUTE));
+        assertEquals("300000ms", transferElement.getAttribute(VoiceXmlDomUtil.MAXTIME_ATTRIBUTE));
+        assertEquals("20000ms", transferElement.getAttribute(VoiceXmlDomUtil.CONNECT_TIMEOUT_ATTRIBUTE));
+        assertEquals("http://server/ringback.wav", transferElement.getAttribute(VoiceXmlDomUtil.TRANSFER_AUDIO_ATTRIBUTE));
+        assertEquals(1, transferElement.getElementsByTagName(VoiceXmlDomUtil.GRAMMAR_ELEMENT).getLength());
+    }
+
+    @Test
+    public void consultationTransfer() throws Exception {
+        ConsultationTransfer.Builder builder = OutputTurns.consultationTransfer("consultation");
+        builder.setConnectTimeout(Duration.seconds(30));
+        builder.setSpeechRecognition(new SpeechRecognition(new GrammarReference("builtin:grammar/boolean")));
+        builder.setDestination(DESTINATION);
+        Element transferElement = render(builder.build());
+
+        assertEquals("consultation", transferElement.getAttribute(VoiceXmlDomUtil.TYPE_ATTRIBUTE));
+        assertEquals("30000ms", transferElement.getAttribute(VoiceXmlDomUtil.CONNECT_TIMEOUT_ATTRIBUTE));
+        assertFalse(transferElement.hasAttribute(VoiceXmlDomUtil.MAXTIME_ATTRIBUTE));
+        Element grammarElement = (Element) transferElement.getElementsByTagName(VoiceXmlDomUtil.GRAMMAR_ELEMENT)
+                                                          .item(0);
+        assertEquals("builtin:grammar/boolean", grammarElement.getAttribute(VoiceXmlDomUtil.SRC_ATTRIBUTE));
+    }
+
+    @Test
+    public void supervisedTransferRegistersLargeGrammars() throws Exception {
+        GrammarRegistry grammarRegistry = new GrammarRegistry();
+        grammarRegistry.setThreshold(16);
+        mDialogueContext.setGrammarRegistry(grammarRegistry);
+
+        StringBuilder source = new StringBuilder("#ABNF 1.0; root $yesno; $yesno = yes | no");
+        for (int index = 0; index < 100; index++) {
+            source.append(" | option").append(index);
+        }
+        source.append(';');
+
+        ConsultationTransfer.Builder builder = OutputTurns.consultationTransfer("supervised");
+        builder.setSpeechRecognition(new SpeechRecognition(new InlineStringGrammar(source.toString())));
+        builder.setConnectTimeout(Duration.seconds(10));
+        builder.setDestination(DESTINATION);
+        Element transferElement = render(builder.build());
+
+        assertEquals("10000ms", transferElement.getAttribute(VoiceXmlDomUtil.CONNECT_TIMEOUT_ATTRIBUTE));
+        Element grammarElement = (Element) transferElement.getElementsByTagName(VoiceXmlDomUtil.GRAMMAR_ELEMENT)
+                                                          .item(0);
+        assertTrue(grammarElement.getAttribute(VoiceXmlDomUtil.SRC_ATTRIBUTE)
+                                 .contains(VoiceXmlDialogueServlet.GRAMMAR_PATH));
+        assertFalse(grammarElement.hasChildNodes());
+        assertTrue(grammarRegistry.getSize() > 0);
+    }
+
+    private Element render(Transfer transfer) throws Exception {
+        Document document = transfer.getVoiceXmlDocument(mDialogueContext);
+        new XmlDocumentServletResponseContent(document, "application/voicexml+xml").getContentAsString();
+        NodeList transferElements = document.getElementsByTagName(VoiceXmlDomUtil.TRANSFER_ELEMENT);
+        assertEquals(1, transferElements.getLength());
+        Element transferElement = (Element) transferElements.item(0);
+        assertEquals(VoiceXmlDomUtil.TRANSFER_FORM_ITEM_NAME, transferElement.getAttribute(VoiceXmlDomUtil.NAME_ATTRIBUTE));
+        return transferElement;
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.util.json;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import javax.json.*;
+import javax.json.stream.*;
+
+import org.junit.*;
+
+import com.nuecho.rivr.voicexml.turn.output.audio.*;
+
+/**
+ * @author Nu Echo Inc.
+ */
+public final class JsonGeneratorObjectBuilderTest {
+
+    @Test
+    public void membersAreWrittenInOrder() {
+        StringWriter writer = new StringWriter();
+        JsonGenerator generator = JsonUtils.createGenerator(writer);
+        JsonObjectBuilder builder = JsonUtils.writeStartObject(generator, null);
+        builder.add("name", "value").add("count", 2).addNull("none");
+        builder.add("nested", JsonUtils.createObjectBuilder().add("flag", true));
+        generator.writeEnd();
+        generator.close();
+
+        assertEquals("{\"name\":\"value\",\"count\":2,\"none\":null,\"nested\":{\"flag\":true}}", writer.toString());
+    }
+
+    @Test(expected = JsonGenerationException.class)
+    public void memberCannotBeAddedTwice() {
+        JsonObjectBuilder builder = JsonUtils.writeStartObject(JsonUtils.createGenerator(new StringWriter()), null);
+        builder.add("name", "value");
+        builder.add("name", 2);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void buildIsNotSupported() {
+        JsonUtils.writeStartObject(JsonUtils.createGenerator(new StringWriter()), null).build();
+    }
+
+    @Test
+    public void streamedSerializationMatchesBuiltSerialization() {
+        AudioItem audioItem = AudioFile.fromLocation("prompt.wav", new SpeechSynthesis("alternate"));
+
+        StringWriter writer = new StringWriter();
+        JsonGenerator generator = JsonUtils.createGenerator(writer);
+        audioItem.writeJson(generator, null);
+        generator.close();
+
+        assertEquals(audioItem.asJson(), Json.createReader(new StringReader(writer.toString())).readObject());
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.util.json;
+
+import java.io.*;
+import java.util.concurrent.*;
+
+import javax.json.*;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compares the parsing of an <code>inputTurn</code> payload carrying an N-best
+ * recognition result by {@link LazyJsonValue} with the eager decoding of the
+ * whole payload. The payload has the shape posted by the root document: the
+ * events, the recognition result with one entry per hypothesis (confidence,
+ * utterance, input mode and an interpretation object) and the mark.
+ * <p>
+ * <code>lazyParsing</code> is the cost paid for each input turn, where the
+ * N-best is validated but not decoded. <code>lazyParsingAndDecoding</code> adds
+ * the decoding of the N-best, as when the dialogue reads the whole result.
+ * <p>
+ * Run with <code>gradle :rivr-voicexml:jmh -Pbenchmark=LazyJsonValue</code>.
+ *
+ * @author Nu Echo Inc.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LazyJsonValueBenchmark {
+
+    private static final String[] LAZY_PATHS = {"value", "recognition/result"};
+
+    // CHECKSTYLE.OFF: JMH parameters must be public fields
+    @Param({"1", "20", "200"})
+    public int mHypothesisCount;
+    // CHECKSTYLE.ON
+
+    private String mPayload;
+
+    @Setup(Level.Trial)
+    public void createPayload() {
+        mPayload = createPayload(mHypothesisCount);
+    }
+
+    @Benchmark
+    public JsonObject eagerDecoding() {
+        JsonReader reader = Json.createReader(new StringReader(mPayload));
+        try {
+            return reader.readObject();
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Benchmark
+    public LazyJsonValue lazyParsing() {
+        return LazyJsonValue.parse(mPayload, LAZY_PATHS);
+    }
+
+    @Benchmark
+    public JsonValue lazyParsingAndDecoding() {
+        return LazyJsonValue.parse(mPayload, LAZY_PATHS).getMember("recognition").getMember("result").getValue();
+    }
+
+    static String createPayload(int hypothesisCount) {
+        StringBuilder payload = new StringBuilder();
+        payload.append("{\"events\":[],\"recognition\":{\"result\":[");
+        for (int index = 0; index < hypothesisCount; index++) {
+            if (index > 0) {
+                payload.append(',');
+            }
+            payload.append("{\"confidence\":0.")
+                   .append(99 - index % 90)
+                   .append(",\"utterance\":\"I want to fly from Montr\\u00e9al to city number ")
+                   .append(index)
+                   .append(" on \\\"Tuesday\\\"\",\"inputmode\":\"voice\",\"interpretation\":{\"origin\":\"YUL\",")
+                   .append("\"destination\":{\"code\":")
+                   .append(index)
+                   .append(",\"confidence\":0.5},\"date\":\"2013-10-15\",\"flexible\":")
+                   .append(index % 2 == 0)
+                   .append(",\"passengers\":[1,0,null]}}");
+        }
+        payload.append("],\"mark\":{\"name\":\"prompt\",\"time\":1250}}}");
+        return payload.toString();
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2013 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.util.json;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import javax.json.*;
+import javax.json.JsonValue.ValueType;
+
+import org.junit.*;
+
+/**
+ * @author Nu Echo Inc.
+ */
+public final class LazyJsonValueTest {
+
+    private static final String[] LAZY_PATHS = {"value", "recognition/result"};
+
+    @Test
+    public void lazyValuesDecodeLikeEagerValues() {
+        String json = "{\"events\":[{\"name\":\"noinput\"}],"
+                      + "\"value\":\"a \\\"quoted\\\" \\u00e9 string\","
+                      + "\"recognition\":{\"result\":[{\"confidence\":0.85,\"utterance\":\"yes [no]\","
+                      + "\"interpretation\":{\"answer\":true,\"other\":null}}],\"mark\":{\"name\":\"m\",\"time\":10}}}";
+
+        LazyJsonValue value = LazyJsonValue.parse(json, LAZY_PATHS);
+
+        assertEquals(ValueType.OBJECT, value.getValueType());
+        LazyJsonValue result = value.getMember("recognition").getMember("result");
+        assertEquals(ValueType.ARRAY, result.getValueType());
+        assertEquals(Json.createReader(new StringReader(json)).readObject(), value.getValue());
+        assertEquals("a \"quoted\" \u00e9 string", ((JsonString) value.getMember("value").getValue()).getString());
+    }
+
+    @Test
+    public void lazyScalarsAreValidated() {
+        assertEquals(ValueType.NUMBER, LazyJsonValue.parse("{\"value\":-12.5e3}", LAZY_PATHS)
+                                                     .getMember("value")
+                                                     .getValueType());
+        assertInvalid("{\"value\":tru}");
+        assertInvalid("{\"value\":12a}");
+        assertInvalid("{\"value\":\"bad \\x escape\"}");
+        assertInvalid("{\"value\":\"bad \\u00g9 escape\"}");
+        assertInvalid("{\"value\":\"raw \n control\"}");
+        assertInvalid("{\"value\":012}");
+        assertInvalid("{\"value\":1.}");
+        assertInvalid("{\"value\":-}");
+        assertInvalid("{\"value\":nulls}");
+    }
+
+    @Test
+    public void nestedLazyStructuresAreValidated() {
+        StringBuilder json = new StringBuilder("{\"value\":");
+        for (int index = 0; index < 40; index++) {
+            json.append(index % 2 == 0 ? "[{},[]," : "{\"a\\\"b\":");
+        }
+        json.append("\"\\u00e9\"");
+        for (int index = 39; index >= 0; index--) {
+            json.append(index % 2 == 0 ? "]" : "}");
+        }
+        json.append('}');
+
+        LazyJsonValue value = LazyJsonValue.parse(json.toString(), LAZY_PATHS);
+        assertEquals(Json.createReader(new StringReader(json.toString())).readObject(), value.getValue());
+
+        assertInvalid(json.substring(0, json.length() - 2) + "}}");
+        assertInvalid(json.toString().replace("{},", "{\"a\":1,},"));
+    }
+
+    @Test
+    public void malformedLazyStructuresFailWhileParsing() {
+        assertInvalid("{\"value\":{\"a\" 1}}");
+        assertInvalid("{\"value\":[1,,2]}");
+        assertInvalid("{\"value\":{\"a\":[1}]}");
+        assertInvalid("{\"recognition\":{\"result\":[{\"utterance\":\"yes\",}]}}");
+        assertInvalid("{\"recognition\":{\"result\":[{\"confidence\":0..5}]}}");
+    }
+
+    @Test
+    public void arrayElementsAreLocatedWithoutDecoding() {
+        String json = "{\"value\":[ {\"a\":[1,2]} , \"b,]\",3.5e1,[],null ]}";
+        LazyJsonValue value = LazyJsonValue.parse(json, LAZY_PATHS).getMember("value");
+
+        List<LazyJsonValue> elements = value.getElements();
+        assertEquals(5, elements.size());
+        assertEquals("{\"a\":[1,2]}", elements.get(0).getText());
+        assertEquals(ValueType.STRING, elements.get(1).getValueType());
+        assertEquals("b,]", ((JsonString) elements.get(1).getValue()).getString());
+        assertEquals(35, ((JsonNumber) elements.get(2).getValue()).intValue());
+        assertTrue(elements.get(3).getElements().isEmpty());
+        assertEquals(ValueType.NULL, elements.get(4).getValueType());
+
+        List<LazyJsonValue> decodedElements = LazyJsonValue.of(value.getValue()).getElements();
+        assertEquals(5, decodedElements.size());
+        assertEquals(elements.get(0).getValue(), decodedElements.get(0).getValue());
+        assertNull(elements.get(0).getElements());
+    }
+
+    private static void assertInvalid(String json) {
+        try {
+            LazyJsonValue.parse(json, LAZY_PATHS);
+            fail("JsonException expected for " + json);
+        } catch (JsonException exception) {
+            // expected
+        }
+    }
+}